@@ -0,0 +1,111 @@
+package org.example.bench;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.example.config.HibernateConfig;
+import org.example.config.StatsConfig;
+import org.example.db.DatabaseManager;
+import org.example.db.KeyHistoryRepository;
+import org.example.db.PaymentRepository;
+import org.example.stats.BotStats;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Общие заготовки для бенчмарков: тихое логирование, временная база и сборка Update
+ */
+public final class BenchmarkSupport {
+    public static final String SQLITE = "sqlite";
+    public static final String H2_POSTGRESQL = "h2-postgresql";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Без этого замеры меряют скорость консоли, а не бота
+     */
+    public static void quietLogging() {
+        ch.qos.logback.classic.Logger root =
+                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.WARN);
+    }
+
+    /**
+     * Поднимает минимальный контекст с HibernateConfig, DatabaseManager, PaymentRepository и KeyHistoryRepository поверх файла SQLite
+     *
+     * @param dbFile Файл базы (обычно временный)
+     * @return Контекст, который нужно закрыть в @TearDown
+     */
+    public static AnnotationConfigApplicationContext openDatabase(Path dbFile) {
+        return openDatabase(SQLITE, dbFile);
+    }
+
+    /**
+     * То же для выбранного хранилища
+     *
+     * @param backend {@link #SQLITE} или {@link #H2_POSTGRESQL} — H2 в режиме PostgreSQL с диалектом PostgreSQL
+     * @param dbFile  Файл базы SQLite; для H2 база в памяти, файл не используется
+     */
+    public static AnnotationConfigApplicationContext openDatabase(String backend, Path dbFile) {
+        Map<String, Object> properties = new HashMap<>();
+        switch (backend) {
+            case SQLITE -> properties.put("spring.datasource.url", "jdbc:sqlite:" + dbFile.toAbsolutePath());
+            case H2_POSTGRESQL -> {
+                properties.put("bot.database.backend", "postgresql");
+                properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+                properties.put("spring.datasource.url", "jdbc:h2:mem:bench-" + System.nanoTime()
+                        + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH");
+            }
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.hibernate.ddl-auto", "update");
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.register(HibernateConfig.class, StatsConfig.class, BotStats.class, DatabaseManager.class, PaymentRepository.class,
+                KeyHistoryRepository.class);
+        context.refresh();
+        return context;
+    }
+
+    public static Update textUpdate(long userId, String text) {
+        Message message = new Message();
+        message.setMessageId(1);
+        message.setFrom(new User(userId, "Bench", false));
+        message.setChat(new Chat(userId, "private"));
+        message.setText(text);
+
+        Update update = new Update();
+        update.setUpdateId(1);
+        update.setMessage(message);
+        return update;
+    }
+
+    public static Update callbackUpdate(long userId, String callbackData) {
+        Message message = new Message();
+        message.setMessageId(1);
+        message.setChat(new Chat(userId, "private"));
+
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setId("1");
+        callbackQuery.setFrom(new User(userId, "Bench", false));
+        callbackQuery.setMessage(message);
+        callbackQuery.setData(callbackData);
+
+        Update update = new Update();
+        update.setUpdateId(1);
+        update.setCallbackQuery(callbackQuery);
+        return update;
+    }
+}
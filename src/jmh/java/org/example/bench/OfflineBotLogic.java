@@ -0,0 +1,109 @@
+package org.example.bench;
+
+import java.io.Serializable;
+
+import org.example.admin.AdminCommands;
+import org.example.analytics.EventLog;
+import org.example.config.AnalyticsConfig;
+import org.example.config.BotConfig;
+import org.example.config.ClusterConfig;
+import org.example.config.JournalConfig;
+import org.example.config.MediaConfig;
+import org.example.config.RateLimitConfig;
+import org.example.config.SchedulerConfig;
+import org.example.config.StatsConfig;
+import org.example.db.DatabaseManager;
+import org.example.db.KeyHistoryRepository;
+import org.example.db.PaymentRepository;
+import org.example.hiddify.HiddifyApiClient;
+import org.example.logic.BotLogic;
+import org.example.media.StaticMediaService;
+import org.example.ratelimit.UserRateLimiter;
+import org.example.scheduling.PriorityExecutor;
+import org.example.stats.BotStats;
+import org.example.updates.UpdateJournal;
+import org.example.yookassa.YooKassaPayment;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * BotLogic, у которого вызовы Telegram API заменены счетчиком
+ */
+public class OfflineBotLogic extends BotLogic {
+    private long sent;
+
+    // QR-коды бенчмарки не запрашивают, поэтому сервиса QR нет
+    public OfflineBotLogic(BotConfig botConfig, HiddifyApiClient hiddifyClient, DatabaseManager dbManager, PaymentRepository payments,
+                           KeyHistoryRepository keyHistory, YooKassaPayment yooKassaPayment) {
+        super(botConfig, hiddifyClient, dbManager, payments, keyHistory, yooKassaPayment, disabledJournal(), disabledRateLimiter(), null,
+                noStaticMedia(botConfig), disabledEventLog(), new AdminCommands(null, null, null, null, null), detachedStats(),
+                inlineScheduler());
+    }
+
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) {
+        sent++;
+        return null;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * Бенчмарки гоняют один и тот же update_id, журнал отбросил бы их как повторы
+     */
+    public static UpdateJournal disabledJournal() {
+        JournalConfig config = new JournalConfig();
+        config.setEnabled(false);
+        return new UpdateJournal(config);
+    }
+
+    /**
+     * Бенчмарки шлют апдейты одного пользователя подряд, лимит отбросил бы почти все
+     */
+    public static UserRateLimiter disabledRateLimiter() {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setEnabled(false);
+        return new UserRateLimiter(config, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Журнал событий без start() ничего не пишет
+     */
+    public static EventLog disabledEventLog() {
+        AnalyticsConfig config = new AnalyticsConfig();
+        config.setEnabled(false);
+        return new EventLog(config, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Счетчики без базы: пересборка не запускается, считаются только апдейты
+     */
+    public static BotStats detachedStats() {
+        return new BotStats(new StatsConfig(), null);
+    }
+
+    /**
+     * Без start() задачи выполняются в вызывающем потоке, и бенчмарк меряет саму обработку
+     */
+    public static PriorityExecutor inlineScheduler() {
+        return new PriorityExecutor(new SchedulerConfig(), new JournalConfig(), new ClusterConfig(), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Без scan() групп картинок нет, и инструкция отправляется одним текстом, как раньше
+     */
+    public static StaticMediaService noStaticMedia(BotConfig botConfig) {
+        return new StaticMediaService(botConfig, new MediaConfig(), null);
+    }
+
+    public static BotConfig benchConfig() {
+        BotConfig config = new BotConfig();
+        config.setToken("0:bench");
+        config.setUsername("bench_bot");
+        config.setNickname("Bench VPN");
+        return config;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.bench;
+
+import org.example.config.HiddifyConfig;
+import org.example.config.ResilienceConfig;
+import org.example.config.SubscriptionConfig;
+import org.example.hiddify.HiddifyApiClient;
+import org.example.hiddify.HiddifyUser;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Hiddify без сети: сразу отдает ссылку подключения и пользователя панели
+ */
+public class StubHiddifyApiClient extends HiddifyApiClient {
+
+    public StubHiddifyApiClient() {
+        super(new HiddifyConfig(), new ResilienceConfig(), new SubscriptionConfig(), new SimpleMeterRegistry());
+    }
+
+    @Override
+    public String createUser(long userId, int gigabytes, int days) {
+        return "https://vpn.example/sub/2f0b7c1e-6a1d-4b59-9d43-5b8e1f7f3a10";
+    }
+
+    @Override
+    public HiddifyUser getUser(String uuid) {
+        return new HiddifyUser(uuid, true, 100, 12.5, 30, "2025-01-01", HiddifyApiClient.CREATED_BY_BOT);
+    }
+}
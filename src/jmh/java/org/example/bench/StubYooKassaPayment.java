@@ -0,0 +1,34 @@
+package org.example.bench;
+
+import java.math.BigDecimal;
+
+import org.example.config.ResilienceConfig;
+import org.example.config.YooKassaConfig;
+import org.example.yookassa.YooKassaPayment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * ЮKassa без сети: платеж сразу создан и сразу оплачен
+ */
+public class StubYooKassaPayment extends YooKassaPayment {
+
+    public StubYooKassaPayment() {
+        super(new YooKassaConfig(), new ResilienceConfig(), new SimpleMeterRegistry());
+    }
+
+    @Override
+    public String createPayment(BigDecimal amount, String description) {
+        return "https://yoomoney.ru/checkout/payments/v2/contract?orderId=2f0b7c1e-000f-5000-9000-1b3c5d7e9f11";
+    }
+
+    @Override
+    public String checkPaymentStatus(String paymentId) {
+        return "succeeded";
+    }
+
+    @Override
+    public boolean cancelPayment(String paymentId) {
+        return true;
+    }
+}
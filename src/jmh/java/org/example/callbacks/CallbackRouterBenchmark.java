@@ -0,0 +1,78 @@
+package org.example.callbacks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Разбор callback_data и выбор обработчика без работы самих обработчиков.
+ * legacy — прежняя цепочка startsWith и switch по строкам с substring для paymentId.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallbackRouterBenchmark {
+    private static final String PAYMENT_ID = "2f0b7c1e-000f-5000-9000-1b3c5d7e9f11";
+
+    @Param({"show_qr", "check_payment"})
+    public String action;
+
+    private CallbackRouter<Blackhole> router;
+    private String encoded;
+    private String legacy;
+
+    @Setup
+    public void setUp() {
+        router = new CallbackRouter<>();
+        for (CallbackAction callbackAction : CallbackAction.values()) {
+            router.register(callbackAction, Blackhole::consume);
+        }
+        if ("check_payment".equals(action)) {
+            encoded = CallbackCodec.encode(CallbackAction.CHECK_PAYMENT, PAYMENT_ID);
+            legacy = "check_payment:" + PAYMENT_ID;
+        } else {
+            encoded = CallbackCodec.encode(CallbackAction.SHOW_QR);
+            legacy = "show_qr";
+        }
+    }
+
+    @Benchmark
+    public CallbackRouter.Result router(Blackhole blackhole) {
+        return router.dispatch(encoded, blackhole);
+    }
+
+    @Benchmark
+    public int legacy(Blackhole blackhole) {
+        if (legacy.startsWith("check_payment:")) {
+            blackhole.consume(legacy.substring("check_payment:".length()));
+            return 6;
+        }
+        if (legacy.startsWith("cancel_payment:")) {
+            blackhole.consume(legacy.substring("cancel_payment:".length()));
+            return 7;
+        }
+        return switch (legacy) {
+            case "buy_key" -> 1;
+            case "show_key" -> 2;
+            case "show_qr" -> 8;
+            case "instructions" -> 3;
+            case "main_menu" -> 4;
+            case "pay_vpn" -> 5;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.example.bench.BenchmarkSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Чтения и записи DatabaseManager поверх временного файла SQLite и H2 в режиме PostgreSQL
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseManagerBenchmark {
+    private static final int USERS = 1_000;
+    private static final String KEY = "https://vpn.example/sub/2f0b7c1e-6a1d-4b59-9d43-5b8e1f7f3a10";
+
+    @Param({BenchmarkSupport.SQLITE, BenchmarkSupport.H2_POSTGRESQL})
+    private String backend;
+
+    private Path dbFile;
+    private AnnotationConfigApplicationContext context;
+    private DatabaseManager dbManager;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        dbFile = Files.createTempFile("bench-db", ".db");
+        context = BenchmarkSupport.openDatabase(backend, dbFile);
+        dbManager = context.getBean(DatabaseManager.class);
+
+        for (long userId = 1; userId <= USERS; userId++) {
+            dbManager.saveVpnKey(userId, KEY);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(dbFile);
+    }
+
+    private long nextUserId() {
+        next = next % USERS + 1;
+        return next;
+    }
+
+    @Benchmark
+    public String getVpnKey() {
+        return dbManager.getVpnKey(nextUserId());
+    }
+
+    @Benchmark
+    public String getKeyCreationDate() {
+        return dbManager.getKeyCreationDate(nextUserId());
+    }
+
+    @Benchmark
+    public void addUser() {
+        dbManager.addUser(nextUserId());
+    }
+
+    @Benchmark
+    public void saveVpnKey() {
+        dbManager.saveVpnKey(nextUserId(), KEY);
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.hiddify;
+
+import java.util.concurrent.TimeUnit;
+
+import org.example.bench.BenchmarkSupport;
+import org.example.config.HiddifyConfig;
+import org.example.config.ResilienceConfig;
+import org.example.config.SubscriptionConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Сериализация тела запроса на создание пользователя Hiddify
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HiddifyPayloadBenchmark {
+
+    private HiddifyApiClient client;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        client = new HiddifyApiClient(new HiddifyConfig(), new ResilienceConfig(), new SubscriptionConfig(),
+                new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public String createUserPayload() {
+        return client.buildCreateUserPayload(100500L, 100, 30);
+    }
+}
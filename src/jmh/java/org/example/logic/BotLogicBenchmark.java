@@ -0,0 +1,106 @@
+package org.example.logic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.example.bench.BenchmarkSupport;
+import org.example.bench.OfflineBotLogic;
+import org.example.bench.StubHiddifyApiClient;
+import org.example.bench.StubYooKassaPayment;
+import org.example.callbacks.CallbackAction;
+import org.example.callbacks.CallbackCodec;
+import org.example.db.DatabaseManager;
+import org.example.db.KeyHistoryRepository;
+import org.example.db.PaymentRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Полный проход onUpdateReceived для каждого типа апдейта.
+ * Telegram, ЮKassa и Hiddify заглушены, база — настоящая SQLite во временном файле.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BotLogicBenchmark {
+    private static final long USER_ID = 100500L;
+
+    @Param({
+            "/start",
+            "buy_key",
+            "show_key",
+            "instructions",
+            "main_menu",
+            "pay_vpn",
+            "check_payment:2f0b7c1e-000f-5000-9000-1b3c5d7e9f11",
+            "cancel_payment:2f0b7c1e-000f-5000-9000-1b3c5d7e9f11"
+    })
+    public String input;
+
+    private Path dbFile;
+    private AnnotationConfigApplicationContext dbContext;
+    private OfflineBotLogic bot;
+    private Update update;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        dbFile = Files.createTempFile("bench-bot", ".db");
+        dbContext = BenchmarkSupport.openDatabase(dbFile);
+
+        DatabaseManager dbManager = dbContext.getBean(DatabaseManager.class);
+        dbManager.addUser(USER_ID);
+        if ("show_key".equals(input)) {
+            dbManager.saveVpnKey(USER_ID, "https://vpn.example/sub/2f0b7c1e-6a1d-4b59-9d43-5b8e1f7f3a10");
+        }
+
+        bot = new OfflineBotLogic(OfflineBotLogic.benchConfig(), new StubHiddifyApiClient(), dbManager,
+                dbContext.getBean(PaymentRepository.class), dbContext.getBean(KeyHistoryRepository.class),
+                new StubYooKassaPayment());
+        update = input.startsWith("/")
+                ? BenchmarkSupport.textUpdate(USER_ID, input)
+                : BenchmarkSupport.callbackUpdate(USER_ID, callbackData(input));
+    }
+
+    // Параметр — имя действия и, через двоеточие, paymentId; боту уходит закодированная callback_data
+    private static String callbackData(String input) {
+        int colon = input.indexOf(':');
+        String id = colon < 0 ? input : input.substring(0, colon);
+        for (CallbackAction action : CallbackAction.values()) {
+            if (action.id().equals(id)) {
+                return colon < 0 ? CallbackCodec.encode(action) : CallbackCodec.encode(action, input.substring(colon + 1));
+            }
+        }
+        throw new IllegalArgumentException("Unknown callback " + input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dbContext.close();
+        Files.deleteIfExists(dbFile);
+    }
+
+    @Benchmark
+    public long dispatch() {
+        bot.onUpdateReceived(update);
+        return bot.getSent();
+    }
+}
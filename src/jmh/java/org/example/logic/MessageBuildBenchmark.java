@@ -0,0 +1,94 @@
+package org.example.logic;
+
+import static org.example.messages.Keyboards.button;
+import static org.example.messages.Keyboards.keyboard;
+import static org.example.messages.Keyboards.row;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.example.bench.BenchmarkSupport;
+import org.example.bench.OfflineBotLogic;
+import org.example.messages.MessageTemplates;
+import org.example.messages.TemplateRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+/**
+ * Стоимость сборки сообщений, которые бот строит на каждый ответ.
+ * *Rebuilt — прежний способ (клавиатура и текст заново на каждое сообщение), остальные — через MessageTemplates.
+ * Байты на сообщение — в gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBuildBenchmark {
+    private static final String CHAT_ID = "100500";
+    private static final String KEY = "https://vpn.example/sub/2f0b7c1e-6a1d-4b59-9d43-5b8e1f7f3a10";
+    private static final String PAYMENT_ID = "2f0b7c1e-000f-5000-9000-1b3c5d7e9f11";
+
+    private BotLogic bot;
+    private MessageTemplates templates;
+    private String nickname;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        bot = new OfflineBotLogic(OfflineBotLogic.benchConfig(), null, null, null, null, null);
+        templates = TemplateRegistry.load(OfflineBotLogic.benchConfig(), new BigDecimal("100.00")).defaults();
+        nickname = OfflineBotLogic.benchConfig().getNickname();
+    }
+
+    @Benchmark
+    public SendMessage mainMenuRebuilt() {
+        InlineKeyboardMarkup keyboard = keyboard(
+                row(button("💳 Купить ключ", "buy_key")),
+                row(button("🔑 Мой ключ", "show_key"), button("📖 Инструкция", "instructions"))
+        );
+        return bot.createHtmlMessage(CHAT_ID, "🌍 Добро пожаловать в " + nickname + "! 🔒", keyboard);
+    }
+
+    @Benchmark
+    public SendMessage mainMenu() {
+        return bot.createMainMenuMessage(CHAT_ID, templates);
+    }
+
+    @Benchmark
+    public SendMessage keyDetailsRebuilt() {
+        InlineKeyboardMarkup keyboard = keyboard(
+                row(button("📖 Инструкция", "instructions")),
+                row(button("⬅️ Назад в меню", "main_menu"))
+        );
+        String text = "🔧 Ваш ключ VPN:\n\n" + "<code>" + KEY + "</code>" +
+                "\n\n" + "<i>⬆ Нажмите чтобы скопировать</i>" +
+                "\n\n" + "🗓️ Ключ создан: 2024-05-01" + "\n" +
+                "\n❗ Этот ключ действителен 30 дней с момента получения. \n\n" +
+                "⚙️ Для инструкции по подключению нажмите кнопку \"Инструкция\".";
+        return bot.createHtmlMessage(CHAT_ID, text, keyboard);
+    }
+
+    @Benchmark
+    public SendMessage keyDetails() {
+        return bot.createHtmlMessage(CHAT_ID, templates.keyDetails(KEY, "2024-05-01"),
+                templates.keyDetailsKeyboard());
+    }
+
+    @Benchmark
+    public SendMessage paymentLink() {
+        return bot.createHtmlMessage(CHAT_ID, templates.paymentLink("https://yoomoney.ru/checkout?orderId=" + PAYMENT_ID),
+                templates.paymentCheckKeyboard(PAYMENT_ID));
+    }
+}
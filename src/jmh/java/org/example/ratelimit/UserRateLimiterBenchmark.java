@@ -0,0 +1,77 @@
+package org.example.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.example.bench.BenchmarkSupport;
+import org.example.config.RateLimitConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Цена проверки лимита на апдейт: наносекунды и 0 байт на операцию (gc.alloc.rate.norm).
+ * 100 000 пользователей уже в таблице; меню всегда пропускается, оплата всегда отклоняется.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRateLimiterBenchmark {
+    private static final int USERS = 100_000;
+    private static final long FIRST_USER_ID = 500_000_000L;
+
+    private UserRateLimiter limiter;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        long nextUserId() {
+            next = next + 1 == USERS ? 0 : next + 1;
+            return FIRST_USER_ID + next;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        RateLimitConfig config = new RateLimitConfig();
+        config.setMenu(new RateLimitConfig.Budget(1_000, 1_000_000));
+        config.setPayment(new RateLimitConfig.Budget(1, 0));
+        limiter = new UserRateLimiter(config, new SimpleMeterRegistry());
+
+        for (long userId = FIRST_USER_ID; userId < FIRST_USER_ID + USERS; userId++) {
+            limiter.tryAcquire(userId, UserAction.MENU, 0);
+            limiter.tryAcquire(userId, UserAction.PAYMENT, 0);
+        }
+    }
+
+    @Benchmark
+    public boolean admitted(Cursor cursor) {
+        return limiter.tryAcquire(cursor.nextUserId(), UserAction.MENU, 1);
+    }
+
+    @Benchmark
+    public boolean throttled(Cursor cursor) {
+        return limiter.tryAcquire(cursor.nextUserId(), UserAction.PAYMENT, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean admittedContended(Cursor cursor) {
+        return limiter.tryAcquire(cursor.nextUserId(), UserAction.MENU, 1);
+    }
+}
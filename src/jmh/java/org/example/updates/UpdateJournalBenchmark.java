@@ -0,0 +1,65 @@
+package org.example.updates;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.example.bench.BenchmarkSupport;
+import org.example.config.JournalConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Во сколько журнал обходится одному апдейту: запись до обработки и отметка после.
+ * Маленький сегмент, чтобы в замер попадали и смена сегментов, и их удаление.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateJournalBenchmark {
+
+    private Path dir;
+    private UpdateJournal journal;
+    private long updateId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        dir = Files.createTempDirectory("bench-journal");
+        JournalConfig config = new JournalConfig();
+        config.setDir(dir.toString());
+        config.setSegmentSizeBytes(1024 * 1024);
+        journal = new UpdateJournal(config);
+        journal.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public boolean appendAndMarkDone() {
+        long id = ++updateId;
+        boolean appended = journal.append(BotUpdate.callback(id, 500_000_000L, "user500000000", 500_000_000L, 42,
+                "check_payment:2f0b7c1e-000f-5000-9000-1b3c5d7e9f11"));
+        journal.markDone(id);
+        return appended;
+    }
+}
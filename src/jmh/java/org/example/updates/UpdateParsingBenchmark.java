@@ -0,0 +1,108 @@
+package org.example.updates;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+/**
+ * Разбор пачки из 100 апдейтов: как это делает DefaultBotSession и как LongPollUpdateSource.
+ * Результаты нормированы на один апдейт, смотреть стоит на gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateParsingBenchmark {
+    private static final int BATCH = 100;
+
+    private byte[] body;
+    private TelegramUpdateParser parser;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"ok\":true,\"result\":[");
+        for (int i = 0; i < BATCH; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            long userId = 500_000_000L + i;
+            if (i % 2 == 0) {
+                json.append(textUpdate(1_000 + i, userId));
+            } else {
+                json.append(callbackUpdate(1_000 + i, userId));
+            }
+        }
+        json.append("]}");
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+        parser = new TelegramUpdateParser();
+    }
+
+    /**
+     * DefaultBotSession: тело в строку, полный граф Update, затем BotLogic читает нужные поля
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void librarySession(Blackhole blackhole) throws TelegramApiRequestException {
+        List<Update> updates = new GetUpdates().deserializeResponse(new String(body, StandardCharsets.UTF_8));
+        for (Update update : updates) {
+            blackhole.consume(BotUpdate.from(update));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void leanParser(Blackhole blackhole) throws IOException {
+        for (BotUpdate update : parser.parse(body)) {
+            blackhole.consume(update);
+        }
+    }
+
+    private static String user(long userId) {
+        return "{\"id\":" + userId + ",\"is_bot\":false,\"first_name\":\"Иван\",\"last_name\":\"Петров\","
+                + "\"username\":\"user" + userId + "\",\"language_code\":\"ru\",\"is_premium\":true}";
+    }
+
+    private static String chat(long chatId) {
+        return "{\"id\":" + chatId + ",\"first_name\":\"Иван\",\"last_name\":\"Петров\","
+                + "\"username\":\"user" + chatId + "\",\"type\":\"private\"}";
+    }
+
+    private static String textUpdate(long updateId, long userId) {
+        return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId
+                + ",\"from\":" + user(userId) + ",\"chat\":" + chat(userId)
+                + ",\"date\":1717243200,\"text\":\"/start\","
+                + "\"entities\":[{\"offset\":0,\"length\":6,\"type\":\"bot_command\"}]}}";
+    }
+
+    private static String callbackUpdate(long updateId, long userId) {
+        String botMessage = "{\"message_id\":" + updateId
+                + ",\"from\":{\"id\":7000000000,\"is_bot\":true,\"first_name\":\"VPN\",\"username\":\"vpn_bot\"}"
+                + ",\"chat\":" + chat(userId) + ",\"date\":1717243200"
+                + ",\"text\":\"🌍 Добро пожаловать в VPN! 🔒\""
+                + ",\"reply_markup\":{\"inline_keyboard\":[[{\"text\":\"💳 Купить ключ\",\"callback_data\":\"buy_key\"}],"
+                + "[{\"text\":\"🔑 Мой ключ\",\"callback_data\":\"show_key\"},"
+                + "{\"text\":\"📖 Инструкция\",\"callback_data\":\"instructions\"}]]}}";
+        return "{\"update_id\":" + updateId + ",\"callback_query\":{\"id\":\"" + (4_000_000_000_000L + updateId) + "\""
+                + ",\"from\":" + user(userId) + ",\"message\":" + botMessage
+                + ",\"chat_instance\":\"-123456789\",\"data\":\"buy_key\"}}";
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.yookassa;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.example.bench.BenchmarkSupport;
+import org.example.config.ResilienceConfig;
+import org.example.config.YooKassaConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Разбор ответов ЮKassa так, как это делают createPayment и checkPaymentStatus
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class YooKassaResponseBenchmark {
+    // Реальный ответ на POST /v3/payments (сокращены только метаданные)
+    private static final String CREATE_RESPONSE = """
+            {
+              "id": "2f0b7c1e-000f-5000-9000-1b3c5d7e9f11",
+              "status": "pending",
+              "paid": false,
+              "amount": {"value": "100.00", "currency": "RUB"},
+              "confirmation": {
+                "type": "redirect",
+                "confirmation_url": "https://yoomoney.ru/checkout/payments/v2/contract?orderId=2f0b7c1e-000f-5000-9000-1b3c5d7e9f11"
+              },
+              "created_at": "2025-06-01T12:00:00.000Z",
+              "description": "Оплата VPN ключа для пользователя 100500",
+              "metadata": {},
+              "recipient": {"account_id": "100001", "gateway_id": "1000001"},
+              "refundable": false,
+              "test": true
+            }
+            """;
+
+    private static final String STATUS_RESPONSE = """
+            {
+              "id": "2f0b7c1e-000f-5000-9000-1b3c5d7e9f11",
+              "status": "succeeded",
+              "paid": true,
+              "amount": {"value": "100.00", "currency": "RUB"},
+              "captured_at": "2025-06-01T12:01:00.000Z",
+              "created_at": "2025-06-01T12:00:00.000Z",
+              "description": "Оплата VPN ключа для пользователя 100500",
+              "payment_method": {"type": "bank_card", "id": "2f0b7c1e-000f-5000-9000-1b3c5d7e9f11", "saved": false},
+              "refundable": true,
+              "test": true
+            }
+            """;
+
+    private YooKassaPayment payment;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        payment = new YooKassaPayment(new YooKassaConfig(), new ResilienceConfig(), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public void parseCreateResponse(Blackhole blackhole) throws IOException {
+        JsonNode rootNode = payment.parseResponse(CREATE_RESPONSE);
+        blackhole.consume(rootNode.path("confirmation").path("confirmation_url").asText());
+        blackhole.consume(rootNode.path("id").asText());
+        blackhole.consume(rootNode.path("status").asText());
+    }
+
+    @Benchmark
+    public String parseStatusResponse() throws IOException {
+        return payment.parseResponse(STATUS_RESPONSE).path("status").asText();
+    }
+}
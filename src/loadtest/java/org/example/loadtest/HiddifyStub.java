@@ -0,0 +1,47 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Заглушка админского API Hiddify: на создание пользователя отвечает новым uuid,
+ * на запрос пользователя — пользователем с этим uuid, на продление — тем же пользователем с новым пакетом.
+ * Список пользователей пуст, удаление всегда успешно.
+ */
+public class HiddifyStub extends StubServer {
+    public static final String ADMIN_PROXY_PATH = "/admin";
+    public static final String USER_PROXY_PATH = "/user";
+
+    public HiddifyStub(StubBehaviour behaviour) throws IOException {
+        super(behaviour);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        readBody(exchange);
+        if (behaviour.delayAndDecideFailure()) {
+            respond(exchange, 500, "{\"msg\":\"injected failure\"}");
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if ("GET".equals(method) && path.endsWith("/api/v2/admin/user/")) {
+            respond(exchange, 200, "[]");
+        } else if ("DELETE".equals(method) && path.contains("/api/v2/admin/user/")) {
+            respond(exchange, 200, "{}");
+        } else if ("POST".equals(method) && path.endsWith("/api/v2/admin/user/")) {
+            respond(exchange, 200, "{\"uuid\":\"" + UUID.randomUUID() + "\",\"comment\":\"Created via Telegram Bot\"}");
+        } else if (("GET".equals(method) || "PATCH".equals(method)) && path.contains("/api/v2/admin/user/")) {
+            String uuid = path.substring(path.indexOf("/api/v2/admin/user/") + "/api/v2/admin/user/".length()).replace("/", "");
+            String startDate = "PATCH".equals(method) ? LocalDate.now().toString() : "2025-01-01";
+            respond(exchange, 200, "{\"uuid\":\"" + uuid + "\",\"enable\":true,\"usage_limit_GB\":100,"
+                    + "\"current_usage_GB\":0,\"package_days\":30,\"start_date\":\"" + startDate + "\"}");
+        } else {
+            respond(exchange, 404, "{\"msg\":\"not found\"}");
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.BotLauncher;
+import org.example.callbacks.CallbackAction;
+import org.example.callbacks.CallbackCodec;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Нагрузочный стенд: настоящий Spring-контекст бота против локальных заглушек Telegram, ЮKassa и Hiddify.
+ * Каждый виртуальный пользователь проходит /start → buy_key → pay_vpn → check_payment,
+ * по каждому шагу считаются пропускная способность и перцентили задержки.
+ *
+ * Запуск: mvn -P loadtest compile exec:exec -Dloadtest.args="--users=5000 --concurrency=500"
+ */
+public class LoadTestRunner {
+
+    enum Step { START, BUY_KEY, PAY_VPN, CHECK_PAYMENT }
+
+    private static final long FIRST_USER_ID = 1_000_000L;
+    private static final int CALLBACK_MESSAGE_ID = 1;
+
+    private static final class SimulatedUser {
+        final long id;
+        Step step;
+        long stepStartedNanos;
+
+        SimulatedUser(long id) {
+            this.id = id;
+        }
+    }
+
+    private final TelegramStub telegram;
+    private final int users;
+    private final int concurrency;
+    private final long stepTimeoutNanos;
+    private final Map<Long, SimulatedUser> active = new ConcurrentHashMap<>();
+    private final Map<Step, StepStats> stats = new EnumMap<>(Step.class);
+    private final AtomicInteger nextUser = new AtomicInteger();
+    private final AtomicInteger completedFlows = new AtomicInteger();
+    private final CountDownLatch finished;
+
+    public LoadTestRunner(TelegramStub telegram, LoadTestOptions options) {
+        this.telegram = telegram;
+        this.users = options.getInt("users", 2_000);
+        this.concurrency = options.getInt("concurrency", 200);
+        this.stepTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.getLong("stepTimeoutMs", 30_000));
+        this.finished = new CountDownLatch(users);
+        for (Step step : Step.values()) {
+            stats.put(step, new StepStats(step.name().toLowerCase()));
+        }
+        telegram.setListener(this::onBotMessage);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        StubBehaviour telegramBehaviour = StubBehaviour.from(options, "telegram", 5);
+        StubBehaviour yooKassaBehaviour = StubBehaviour.from(options, "yookassa", 150);
+        StubBehaviour hiddifyBehaviour = StubBehaviour.from(options, "hiddify", 200);
+
+        try (TelegramStub telegram = new TelegramStub(telegramBehaviour);
+             YooKassaStub yooKassa = new YooKassaStub(yooKassaBehaviour);
+             HiddifyStub hiddify = new HiddifyStub(hiddifyBehaviour)) {
+            telegram.start();
+            yooKassa.start();
+            hiddify.start();
+
+            // База, журнал и offset каждого прогона — во временном каталоге, чтобы прогоны не видели друг друга
+            Path workDir = Files.createTempDirectory("loadtest-bot");
+            List<String> springArgs = springArgs(options, telegram, yooKassa, hiddify, workDir);
+
+            ConfigurableApplicationContext context = BotLauncher.start(springArgs.toArray(new String[0]));
+            if (!context.isActive()) {
+                System.err.println("Bot failed to start against the stubs");
+                System.exit(1);
+            }
+
+            LoadTestRunner runner = new LoadTestRunner(telegram, options);
+            System.out.printf("Stubs: telegram %s, yookassa %s, hiddify %s%n",
+                    telegramBehaviour, yooKassaBehaviour, hiddifyBehaviour);
+            runner.run();
+
+            context.close();
+            FileSystemUtils.deleteRecursively(workDir);
+        }
+        // Поток DefaultBotSession не демон и сам не останавливается
+        System.exit(0);
+    }
+
+    /**
+     * Свойства приложения, направленные на заглушки.
+     * Любой --app.<свойство>=<значение> пробрасывается в Spring как --<свойство>=<значение>.
+     */
+    static List<String> springArgs(LoadTestOptions options, TelegramStub telegram, YooKassaStub yooKassa,
+                                   HiddifyStub hiddify, Path workDir) {
+        List<String> args = new ArrayList<>(List.of(
+                "--bot.token=123456:LOADTEST",
+                "--bot.username=loadtest_bot",
+                "--bot.nickname=LoadTest VPN",
+                "--bot.apiUrl=" + telegram.apiUrl(),
+                "--yookassa.shopID=loadtest",
+                "--yookassa.secretKey=loadtest",
+                "--yookassa.returnUrl=https://t.me/loadtest_bot",
+                "--yookassa.apiUrl=" + yooKassa.apiUrl(),
+                "--hiddify.secretApi=loadtest",
+                "--hiddify.apiUrl=" + hiddify.baseUrl(),
+                "--hiddify.adminProxyPath=" + HiddifyStub.ADMIN_PROXY_PATH,
+                "--hiddify.userProxyPath=" + HiddifyStub.USER_PROXY_PATH,
+                "--spring.datasource.driver-class-name=org.sqlite.JDBC",
+                "--spring.datasource.url=jdbc:sqlite:" + workDir.resolve("vpn_bot.db").toAbsolutePath(),
+                "--spring.jpa.database-platform=org.hibernate.community.dialect.SQLiteDialect",
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--bot.journal.dir=" + workDir.resolve("journal").toAbsolutePath(),
+                "--bot.polling.offsetFile=" + workDir.resolve("update_offset.bin").toAbsolutePath(),
+                "--bot.analytics.dir=" + workDir.resolve("events").toAbsolutePath(),
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=" + options.get("logLevel", "WARN")
+        ));
+        for (String raw : options.rawKeys()) {
+            if (raw.startsWith("app.")) {
+                args.add("--" + raw.substring("app.".length()) + "=" + options.get(raw, ""));
+            }
+        }
+        return args;
+    }
+
+    public void run() throws InterruptedException {
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        watchdog.scheduleAtFixedRate(this::expireStuckUsers, 1, 1, TimeUnit.SECONDS);
+
+        long started = System.nanoTime();
+        for (int i = 0; i < Math.min(concurrency, users); i++) {
+            startNextUser();
+        }
+        finished.await();
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        watchdog.shutdownNow();
+
+        System.out.printf("%nUsers: %d, concurrency: %d, elapsed: %.1f s, completed flows: %d (%.1f flows/s)%n",
+                users, concurrency, elapsedSeconds, completedFlows.get(), completedFlows.get() / elapsedSeconds);
+        System.out.printf("Telegram stub: %d sendMessage, %d getUpdates%n",
+                telegram.getSentMessages(), telegram.getGetUpdatesCalls());
+        System.out.println(StepStats.header());
+        for (StepStats stepStats : stats.values()) {
+            System.out.println(stepStats.report(elapsedSeconds));
+        }
+    }
+
+    private void startNextUser() {
+        int index = nextUser.getAndIncrement();
+        if (index >= users) {
+            return;
+        }
+        SimulatedUser user = new SimulatedUser(FIRST_USER_ID + index);
+        synchronized (user) {
+            user.step = Step.START;
+            user.stepStartedNanos = System.nanoTime();
+            active.put(user.id, user);
+            telegram.sendText(user.id, "/start");
+        }
+    }
+
+    /**
+     * Шаг завершается первым сообщением бота с клавиатурой.
+     * Промежуточные уведомления без клавиатуры ("Генерируем ключ...") пропускаются.
+     */
+    private void onBotMessage(long chatId, String text, JsonNode replyMarkup) {
+        if (replyMarkup == null || replyMarkup.isNull()) {
+            return;
+        }
+        SimulatedUser user = active.get(chatId);
+        if (user == null) {
+            return;
+        }
+
+        synchronized (user) {
+            long latency = System.nanoTime() - user.stepStartedNanos;
+            StepStats stepStats = stats.get(user.step);
+
+            switch (user.step) {
+                case START -> advance(user, stepStats, latency, findCallback(replyMarkup, CallbackAction.BUY_KEY), Step.BUY_KEY);
+                case BUY_KEY -> advance(user, stepStats, latency, findCallback(replyMarkup, CallbackAction.PAY_VPN), Step.PAY_VPN);
+                case PAY_VPN -> advance(user, stepStats, latency, findCallback(replyMarkup, CallbackAction.CHECK_PAYMENT), Step.CHECK_PAYMENT);
+                case CHECK_PAYMENT -> {
+                    if (text.contains("Ваш ключ VPN готов")) {
+                        stepStats.recordSuccess(latency);
+                        completedFlows.incrementAndGet();
+                    } else {
+                        stepStats.recordFailure();
+                    }
+                    finish(user);
+                }
+            }
+        }
+    }
+
+    private void advance(SimulatedUser user, StepStats stepStats, long latency, String nextCallback, Step nextStep) {
+        if (nextCallback == null) {
+            stepStats.recordFailure();
+            finish(user);
+            return;
+        }
+        stepStats.recordSuccess(latency);
+        user.step = nextStep;
+        user.stepStartedNanos = System.nanoTime();
+        telegram.sendCallback(user.id, CALLBACK_MESSAGE_ID, nextCallback);
+    }
+
+    private void expireStuckUsers() {
+        long now = System.nanoTime();
+        for (SimulatedUser user : active.values()) {
+            synchronized (user) {
+                if (active.containsKey(user.id) && now - user.stepStartedNanos > stepTimeoutNanos) {
+                    stats.get(user.step).recordTimeout();
+                    finish(user);
+                }
+            }
+        }
+    }
+
+    private void finish(SimulatedUser user) {
+        if (active.remove(user.id) != null) {
+            finished.countDown();
+            startNextUser();
+        }
+    }
+
+    /**
+     * Ищет на клавиатуре кнопку, чьи callback-данные начинаются с prefix
+     */
+    private static String findCallback(JsonNode replyMarkup, CallbackAction action) {
+        String prefix = CallbackCodec.prefix(action);
+        for (JsonNode row : replyMarkup.path("inline_keyboard")) {
+            for (JsonNode button : row) {
+                String data = button.path("callback_data").asText("");
+                if (data.startsWith(prefix)) {
+                    return data;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.loadtest;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.example.BotLauncher;
+import org.example.callbacks.CallbackAction;
+import org.example.callbacks.CallbackCodec;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Бот против заглушки своего сервера Bot API с bot.localApi=true. bot.apiUrl задан адресом сервера без /bot,
+ * как его печатает telegram-bot-api. Проверяется, что бот отвечает через этот адрес, а скриншоты инструкции уходят
+ * путями file:// к существующим файлам, без содержимого файлов в запросе.
+ *
+ * Запуск: mvn -P loadtest compile exec:exec -Dloadtest.main=org.example.loadtest.LocalBotApiCheck
+ */
+public class LocalBotApiCheck {
+    private static final long USER_ID = 4_000_000L;
+    private static final Pattern FILE_URI = Pattern.compile("file:/[^\"\\s]+");
+    // Содержимое картинок: если оно есть в запросе, файл загружен ботом, а не передан путем
+    private static final String CONTENT_MARKER = "LOCAL-API-CHECK-CONTENT";
+
+    private final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        Path workDir = Files.createTempDirectory("local-bot-api");
+        Path instructions = Files.createDirectories(workDir.resolve("media").resolve("instructions"));
+        for (String name : List.of("1-android.png", "2-ios.png")) {
+            Files.write(instructions.resolve(name), (CONTENT_MARKER + " " + name).getBytes(StandardCharsets.UTF_8));
+        }
+
+        LocalBotApiCheck check = new LocalBotApiCheck();
+        try (TelegramStub telegram = new TelegramStub(StubBehaviour.from(options, "telegram", 0));
+             YooKassaStub yooKassa = new YooKassaStub(StubBehaviour.from(options, "yookassa", 0));
+             HiddifyStub hiddify = new HiddifyStub(StubBehaviour.from(options, "hiddify", 0))) {
+            telegram.start();
+            yooKassa.start();
+            hiddify.start();
+
+            List<String> springArgs = new ArrayList<>();
+            for (String arg : LoadTestRunner.springArgs(options, telegram, yooKassa, hiddify, workDir)) {
+                springArgs.add(arg.startsWith("--bot.apiUrl=") ? "--bot.apiUrl=" + telegram.baseUrl() : arg);
+            }
+            springArgs.add("--bot.localApi=true");
+            springArgs.add("--bot.media.dir=" + workDir.resolve("media").toAbsolutePath());
+
+            ConfigurableApplicationContext context = BotLauncher.start(springArgs.toArray(new String[0]));
+            if (!context.isActive()) {
+                System.err.println("Bot failed to start against the stub");
+                System.exit(1);
+            }
+            check.run(telegram);
+            context.close();
+        } finally {
+            FileSystemUtils.deleteRecursively(workDir);
+        }
+
+        if (check.failures.isEmpty()) {
+            System.out.println("All local Bot API checks passed");
+            System.exit(0);
+        }
+        System.out.println("Failed: " + String.join(", ", check.failures));
+        System.exit(1);
+    }
+
+    private void run(TelegramStub telegram) throws InterruptedException {
+        CountDownLatch menu = new CountDownLatch(1);
+        telegram.setListener((chatId, text, replyMarkup) -> menu.countDown());
+
+        telegram.sendText(USER_ID, "/start");
+        report("reply through server URL without /bot", menu.await(15, TimeUnit.SECONDS), "no reply to /start");
+
+        telegram.sendCallback(USER_ID, 1, CallbackCodec.encode(CallbackAction.INSTRUCTIONS));
+        String group = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (group == null && System.nanoTime() - deadline < 0) {
+            group = telegram.getMediaRequests().stream()
+                    .filter(request -> request.startsWith("sendMediaGroup\n"))
+                    .findFirst()
+                    .orElse(null);
+            if (group == null) {
+                Thread.sleep(50);
+            }
+        }
+        report("instructions sent as media group", group != null, "no sendMediaGroup request");
+        if (group == null) {
+            return;
+        }
+
+        List<String> uris = new ArrayList<>();
+        Matcher matcher = FILE_URI.matcher(group);
+        while (matcher.find()) {
+            uris.add(matcher.group());
+        }
+        report("images passed as file:// paths", uris.size() == 2, "found " + uris);
+        report("paths point to the media files",
+                uris.stream().allMatch(uri -> Files.isRegularFile(Path.of(URI.create(uri)))), "paths " + uris);
+        report("no file content in the request", !group.contains(CONTENT_MARKER), "file content was uploaded");
+    }
+
+    private void report(String name, boolean passed, String detail) {
+        if (passed) {
+            System.out.printf("%-40s OK%n", name);
+        } else {
+            System.out.printf("%-40s FAILED: %s%n", name, detail);
+            failures.add(name);
+        }
+    }
+}
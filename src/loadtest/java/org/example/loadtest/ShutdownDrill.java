@@ -0,0 +1,185 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Учения по остановке: бот в отдельной JVM получает SIGTERM посреди потока апдейтов, затем запускается снова
+ * на тех же базе, журнале и offset. Каждый пользователь отправляет ровно один /start, поэтому после второго запуска
+ * у каждого должен быть ровно один ответ: ноль — потерянный апдейт, больше одного — повторно обработанный.
+ * Поток апдейтов и отсчет killAfterMs начинаются, когда бот ответил на пробное сообщение, а итоги подводятся после того,
+ * как ответил второй запуск: время старта JVM на результат не влияет.
+ *
+ * Запуск: mvn -P loadtest compile exec:exec -Dloadtest.main=org.example.loadtest.ShutdownDrill \
+ *   -Dloadtest.args="--users=1000 --ratePerSecond=200 --killAfterMs=3000 --app.bot.polling.source=lean"
+ */
+public class ShutdownDrill {
+
+    private static final long FIRST_USER_ID = 3_000_000L;
+    // Пробные сообщения «бот запущен» от пользователей вне проверяемого диапазона
+    private static final long FIRST_PROBE_ID = FIRST_USER_ID - 1;
+    private static final long SECOND_PROBE_ID = FIRST_USER_ID - 2;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        int users = options.getInt("users", 1_000);
+        int ratePerSecond = options.getInt("ratePerSecond", 200);
+        long killAfterMs = options.getLong("killAfterMs", 3_000);
+        long settleMs = options.getLong("settleMs", 10_000);
+        long stopTimeoutMs = options.getLong("stopTimeoutMs", 60_000);
+        long startTimeoutMs = options.getLong("startTimeoutMs", 120_000);
+
+        Path workDir = Files.createTempDirectory("shutdown-drill");
+        Map<Long, LongAdder> replies = new ConcurrentHashMap<>();
+        boolean passed;
+
+        // Задержка Telegram держит обработчики занятыми, чтобы SIGTERM застал их посреди работы
+        try (TelegramStub telegram = new TelegramStub(StubBehaviour.from(options, "telegram", 20));
+             YooKassaStub yooKassa = new YooKassaStub(StubBehaviour.from(options, "yookassa", 150));
+             HiddifyStub hiddify = new HiddifyStub(StubBehaviour.from(options, "hiddify", 200))) {
+            telegram.start();
+            yooKassa.start();
+            hiddify.start();
+            telegram.setListener((chatId, text, replyMarkup) ->
+                    replies.computeIfAbsent(chatId, id -> new LongAdder()).increment());
+
+            List<String> command = new ArrayList<>(List.of(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    "org.example.BotLauncher"));
+            command.addAll(LoadTestRunner.springArgs(options, telegram, yooKassa, hiddify, workDir));
+
+            Process first = launch(command, workDir, "first.log");
+            awaitProbe(first, telegram, replies, FIRST_PROBE_ID, startTimeoutMs);
+
+            AtomicInteger sent = new AtomicInteger();
+            Thread feeder = new Thread(() -> feed(telegram, users, ratePerSecond, sent), "drill-feeder");
+            feeder.setDaemon(true);
+            feeder.start();
+            Thread.sleep(killAfterMs);
+            int repliedBeforeKill = answered(replies, users);
+            long killedAt = System.nanoTime();
+            // На Linux destroy() — это SIGTERM, как при деплое
+            first.destroy();
+            if (!first.waitFor(stopTimeoutMs, TimeUnit.MILLISECONDS)) {
+                first.destroyForcibly();
+                System.out.println("First instance ignored SIGTERM and was killed");
+            }
+            System.out.printf("SIGTERM after %d of %d users sent, %d answered; stopped in %d ms (exit code %d)%n",
+                    sent.get(), users, repliedBeforeKill,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - killedAt), first.exitValue());
+
+            Process second = launch(command, workDir, "second.log");
+            feeder.join();
+            awaitProbe(second, telegram, replies, SECOND_PROBE_ID, startTimeoutMs);
+            awaitSettled(replies, users, settleMs);
+            second.destroy();
+            second.waitFor(stopTimeoutMs, TimeUnit.MILLISECONDS);
+
+            passed = report(replies, users);
+        }
+        if (passed) {
+            FileSystemUtils.deleteRecursively(workDir);
+        } else {
+            System.out.println("Bot logs kept in " + workDir);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static void feed(TelegramStub telegram, int users, int ratePerSecond, AtomicInteger sent) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        long next = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            telegram.sendText(FIRST_USER_ID + i, "/start");
+            sent.incrementAndGet();
+            next += intervalNanos;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static Process launch(List<String> command, Path workDir, String logName) throws IOException {
+        return new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve(logName).toFile())
+                .start();
+    }
+
+    /**
+     * Отправляет пробное сообщение и ждет ответа на него: бот поднялся и опрашивает Telegram.
+     * Не дождавшись, останавливает бота, чтобы его JVM не пережила проверку
+     */
+    private static void awaitProbe(Process bot, TelegramStub telegram, Map<Long, LongAdder> replies, long probeId,
+                                   long timeoutMs) throws InterruptedException {
+        telegram.sendText(probeId, "/start");
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (!replies.containsKey(probeId)) {
+            if (System.nanoTime() > deadline) {
+                bot.destroyForcibly();
+                throw new IllegalStateException("Bot did not answer the probe " + probeId + " within " + timeoutMs + " ms");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * Ждет, пока ответят всем, или пока settleMs подряд не приходит новых ответов
+     */
+    private static void awaitSettled(Map<Long, LongAdder> replies, int users, long settleMs) throws InterruptedException {
+        long total = -1;
+        long lastChange = System.nanoTime();
+        while (answered(replies, users) < users) {
+            long current = replies.values().stream().mapToLong(LongAdder::sum).sum();
+            if (current != total) {
+                total = current;
+                lastChange = System.nanoTime();
+            } else if (System.nanoTime() - lastChange > TimeUnit.MILLISECONDS.toNanos(settleMs)) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        // Все ответили; даем время проявиться повторам
+        Thread.sleep(Math.min(settleMs, 3_000));
+    }
+
+    // Пользователи проверяемого диапазона, получившие хотя бы один ответ; пробные сообщения не считаются
+    private static int answered(Map<Long, LongAdder> replies, int users) {
+        return (int) replies.keySet().stream()
+                .filter(chatId -> chatId >= FIRST_USER_ID && chatId < FIRST_USER_ID + users)
+                .count();
+    }
+
+    private static boolean report(Map<Long, LongAdder> replies, int users) {
+        int lost = 0;
+        int duplicated = 0;
+        for (int i = 0; i < users; i++) {
+            LongAdder count = replies.get(FIRST_USER_ID + i);
+            long n = count == null ? 0 : count.sum();
+            if (n == 0) {
+                lost++;
+            } else if (n > 1) {
+                duplicated++;
+            }
+        }
+        System.out.printf("Users: %d, lost: %d, duplicated: %d%n", users, lost, duplicated);
+        return lost == 0 && duplicated == 0;
+    }
+}
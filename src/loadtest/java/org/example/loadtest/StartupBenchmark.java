@@ -0,0 +1,138 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Сравнение старта обычной и быстрой (профиль fast) сборки. Каждый прогон — отдельная JVM против свежих заглушек:
+ * до запуска в очередь Telegram кладется /start, и время до первого ответа бота (time-to-first-update) меряется
+ * от запуска процесса. Сразу после ответа снимается RSS процесса из /proc (только Linux).
+ *
+ * Сначала: mvn -P fast package (соберет и fat jar с классификатором exec, и тонкий jar с CDS-архивом).
+ * Запуск: mvn -P loadtest compile exec:exec -Dloadtest.main=org.example.loadtest.StartupBenchmark -Dloadtest.args="--runs=5"
+ */
+public class StartupBenchmark {
+
+    private static final long FIRST_USER_ID = 2_000_000L;
+
+    private record Sample(long firstUpdateMs, long rssKb) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        int runs = options.getInt("runs", 5);
+        long timeoutMs = options.getLong("timeoutMs", 120_000);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String heap = options.get("heap", "-Xmx256m");
+        // Процесс бота запускается в своем временном каталоге, поэтому путь абсолютный
+        String target = Path.of(options.get("target", "target")).toAbsolutePath().toString();
+        String version = options.get("version", "1.0-SNAPSHOT");
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("standard", List.of(java, heap,
+                "-jar", target + "/JavaVpnBot-" + version + "-exec.jar"));
+        variants.put("fast", List.of(java, heap,
+                "-XX:SharedArchiveFile=" + target + "/app.jsa",
+                "-Dspring.aot.enabled=true",
+                "-jar", target + "/JavaVpnBot-" + version + ".jar",
+                "--bot.database.backgroundBootstrap=true"));
+
+        Map<String, List<Sample>> results = new LinkedHashMap<>();
+        long userId = FIRST_USER_ID;
+        // Прогоны чередуются, чтобы прогрев диска и page cache не достался одному варианту
+        for (int run = 0; run < runs; run++) {
+            for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+                Sample sample = measure(variant.getValue(), options, userId++, timeoutMs);
+                System.out.printf("%-8s run %d: first update %5d ms, RSS %6d MB%n",
+                        variant.getKey(), run + 1, sample.firstUpdateMs(), sample.rssKb() / 1024);
+                results.computeIfAbsent(variant.getKey(), k -> new ArrayList<>()).add(sample);
+            }
+        }
+
+        System.out.printf("%n%-8s %12s %12s %12s%n", "build", "median ms", "min ms", "median RSS MB");
+        for (Map.Entry<String, List<Sample>> result : results.entrySet()) {
+            long[] times = result.getValue().stream().mapToLong(Sample::firstUpdateMs).sorted().toArray();
+            long[] rss = result.getValue().stream().mapToLong(Sample::rssKb).sorted().toArray();
+            System.out.printf("%-8s %12d %12d %12d%n", result.getKey(), times[times.length / 2], times[0],
+                    rss[rss.length / 2] / 1024);
+        }
+        System.exit(0);
+    }
+
+    private static Sample measure(List<String> command, LoadTestOptions options, long userId, long timeoutMs)
+            throws IOException, InterruptedException {
+        Path workDir = Files.createTempDirectory("startup-bench");
+        boolean failed = true;
+        try (TelegramStub telegram = new TelegramStub(StubBehaviour.from(options, "telegram", 0));
+             YooKassaStub yooKassa = new YooKassaStub(StubBehaviour.from(options, "yookassa", 0));
+             HiddifyStub hiddify = new HiddifyStub(StubBehaviour.from(options, "hiddify", 0))) {
+            telegram.start();
+            yooKassa.start();
+            hiddify.start();
+
+            CountDownLatch answered = new CountDownLatch(1);
+            telegram.setListener((chatId, text, replyMarkup) -> {
+                if (chatId == userId) {
+                    answered.countDown();
+                }
+            });
+            telegram.sendText(userId, "/start");
+
+            List<String> fullCommand = new ArrayList<>(command);
+            fullCommand.addAll(LoadTestRunner.springArgs(options, telegram, yooKassa, hiddify, workDir));
+            ProcessBuilder builder = new ProcessBuilder(fullCommand)
+                    .directory(workDir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(workDir.resolve("bot.log").toFile());
+
+            long started = System.nanoTime();
+            Process process = builder.start();
+            try {
+                if (!answered.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException("No reply within " + timeoutMs + " ms, see "
+                            + workDir.resolve("bot.log") + ", command: " + String.join(" ", command));
+                }
+                long firstUpdateMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                Sample sample = new Sample(firstUpdateMs, rssKb(process.pid()));
+                failed = false;
+                return sample;
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        } finally {
+            // Каталог упавшего прогона с логом бота остается для разбора
+            if (!failed) {
+                FileSystemUtils.deleteRecursively(workDir);
+            }
+        }
+    }
+
+    /**
+     * VmRSS из /proc/[pid]/status; 0, если файла нет (не Linux)
+     */
+    private static long rssKb(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(Arrays.stream(line.split("\\s+")).skip(1).findFirst().orElse("0"));
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Задержки и исходы одного шага сценария
+ */
+public class StepStats {
+    private final String name;
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private long[] latencies = new long[1024];
+    private int size;
+
+    public StepStats(String name) {
+        this.name = name;
+    }
+
+    public synchronized void recordSuccess(long latencyNanos) {
+        if (size == latencies.length) {
+            latencies = Arrays.copyOf(latencies, size * 2);
+        }
+        latencies[size++] = latencyNanos;
+    }
+
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public synchronized int getSuccesses() {
+        return size;
+    }
+
+    public static String header() {
+        return String.format("%-15s %8s %8s %8s %9s %9s %9s %9s %9s",
+                "step", "ok", "failed", "timeout", "p50 ms", "p90 ms", "p99 ms", "max ms", "ok/s");
+    }
+
+    public synchronized String report(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        return String.format("%-15s %8d %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                name, size, failures.sum(), timeouts.sum(),
+                percentileMs(sorted, 0.50), percentileMs(sorted, 0.90), percentileMs(sorted, 0.99),
+                percentileMs(sorted, 1.0), size / elapsedSeconds);
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
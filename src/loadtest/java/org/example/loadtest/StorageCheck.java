@@ -0,0 +1,346 @@
+package org.example.loadtest;
+
+import java.math.BigDecimal;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.example.config.ExportConfig;
+import org.example.config.HibernateConfig;
+import org.example.config.StatsConfig;
+import org.example.db.ClusterRepository;
+import org.example.db.DatabaseManager;
+import org.example.db.KeyHistory;
+import org.example.db.KeyHistoryRepository;
+import org.example.db.PaymentRepository;
+import org.example.db.QueuedUpdate;
+import org.example.db.TenantMigration;
+import org.example.export.ExportFormat;
+import org.example.export.ExportService;
+import org.example.stats.BotStats;
+import org.example.tenancy.TenantContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Один и тот же набор проверок DatabaseManager, PaymentRepository и ClusterRepository против каждого хранилища:
+ * временной SQLite и H2 в режиме PostgreSQL (с диалектом PostgreSQL), а при --postgresUrl — настоящего PostgreSQL.
+ *
+ * Запуск: mvn -P loadtest compile exec:exec -Dloadtest.main=org.example.loadtest.StorageCheck
+ */
+public class StorageCheck {
+
+    @FunctionalInterface
+    private interface Check {
+        void run(AnnotationConfigApplicationContext context);
+    }
+
+    private final Map<String, Check> checks = new LinkedHashMap<>();
+    private final List<String> failures = new ArrayList<>();
+
+    public StorageCheck() {
+        checks.put("user without key", StorageCheck::userWithoutKey);
+        checks.put("save and read key", StorageCheck::saveAndReadKey);
+        checks.put("update key date", StorageCheck::updateKeyDate);
+        checks.put("lease acquire and takeover", StorageCheck::leaseTakeover);
+        checks.put("leader cursor", StorageCheck::leaderCursor);
+        checks.put("queue order and dedup", StorageCheck::queueOrderAndDedup);
+        checks.put("payment transitions", StorageCheck::paymentTransitions);
+        checks.put("key issue once per payment", StorageCheck::keyIssueOncePerPayment);
+        checks.put("export in chunks", StorageCheck::exportInChunks);
+        checks.put("tenant isolation", StorageCheck::tenantIsolation);
+        checks.put("legacy users migration", StorageCheck::legacyUsersMigration);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        Path workDir = Files.createTempDirectory("storage-check");
+
+        Map<String, Map<String, Object>> backends = new LinkedHashMap<>();
+        backends.put("sqlite", Map.of(
+                "spring.datasource.url", "jdbc:sqlite:" + workDir.resolve("check.db").toAbsolutePath()));
+        backends.put("h2-postgresql", Map.of(
+                "bot.database.backend", HibernateConfig.POSTGRESQL,
+                "spring.datasource.driver-class-name", "org.h2.Driver",
+                "spring.datasource.url", "jdbc:h2:mem:storage-check;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH"));
+        String postgresUrl = options.get("postgresUrl", "");
+        if (!postgresUrl.isEmpty()) {
+            backends.put("postgresql", Map.of(
+                    "spring.datasource.url", postgresUrl,
+                    "spring.datasource.username", options.get("postgresUser", "postgres"),
+                    "spring.datasource.password", options.get("postgresPassword", "postgres")));
+        }
+
+        StorageCheck storageCheck = new StorageCheck();
+        for (Map.Entry<String, Map<String, Object>> backend : backends.entrySet()) {
+            storageCheck.runAll(backend.getKey(), backend.getValue());
+        }
+        FileSystemUtils.deleteRecursively(workDir);
+
+        if (storageCheck.failures.isEmpty()) {
+            System.out.println("All storage checks passed");
+            System.exit(0);
+        }
+        System.out.println("Failed: " + String.join(", ", storageCheck.failures));
+        System.exit(1);
+    }
+
+    private void runAll(String backend, Map<String, Object> backendProperties) {
+        Map<String, Object> properties = new HashMap<>(backendProperties);
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("storage-check", properties));
+            context.register(HibernateConfig.class, StatsConfig.class, BotStats.class, DatabaseManager.class, PaymentRepository.class,
+                    KeyHistoryRepository.class, ClusterRepository.class, ExportConfig.class, ExportService.class);
+            context.refresh();
+
+            for (Map.Entry<String, Check> check : checks.entrySet()) {
+                try {
+                    check.getValue().run(context);
+                    System.out.printf("[%s] %-28s OK%n", backend, check.getKey());
+                } catch (RuntimeException | AssertionError e) {
+                    System.out.printf("[%s] %-28s FAILED: %s%n", backend, check.getKey(), e);
+                    failures.add(backend + "/" + check.getKey());
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.printf("[%s] context failed to start: %s%n", backend, e);
+            failures.add(backend);
+        }
+    }
+
+    private static void userWithoutKey(AnnotationConfigApplicationContext context) {
+        DatabaseManager db = context.getBean(DatabaseManager.class);
+        db.addUser(1L);
+        db.addUser(1L);
+        expect(db.getVpnKey(1L) == null, "new user must have no key");
+    }
+
+    private static void saveAndReadKey(AnnotationConfigApplicationContext context) {
+        DatabaseManager db = context.getBean(DatabaseManager.class);
+        db.saveVpnKey(2L, "vless://first");
+        db.saveVpnKey(2L, "vless://second");
+        expect("vless://second".equals(db.getVpnKey(2L)), "key must be overwritten");
+        expect(db.getKeyCreationDate(2L) != null, "key date must be set");
+    }
+
+    private static void updateKeyDate(AnnotationConfigApplicationContext context) {
+        DatabaseManager db = context.getBean(DatabaseManager.class);
+        db.updateKeyCreationDate(3L);
+        expect(db.getKeyCreationDate(3L) == null, "missing user must stay missing");
+        db.saveVpnKey(3L, "vless://key");
+        db.updateKeyCreationDate(3L);
+        expect(db.getKeyCreationDate(3L).matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}"), "date must be updated");
+
+        // Срок проверяет запрос: ключ, выданный сегодня, старше только завтрашней границы
+        LocalDate today = LocalDate.now();
+        expect(db.listKeysIssuedBefore(today, Long.MIN_VALUE, 1_000).stream().noneMatch(row -> (Long) row[0] == 3L),
+                "fresh key must not be listed as issued before today");
+        expect(db.listKeysIssuedBefore(today.plusDays(1), Long.MIN_VALUE, 1_000).stream().anyMatch(row -> (Long) row[0] == 3L),
+                "fresh key must be listed as issued before tomorrow");
+
+        BotStats stats = context.getBean(BotStats.class);
+        long active = stats.snapshot().activeKeys();
+        expect(!db.clearVpnKey(3L, "vless://other"), "another key must not be cleared");
+        expect(db.clearVpnKey(3L, "vless://key"), "own key must be cleared");
+        expect(db.getVpnKey(3L) == null, "cleared key must be gone");
+        expect(stats.snapshot().activeKeys() == active - 1, "cleared key must leave the active key count");
+    }
+
+    private static void leaseTakeover(AnnotationConfigApplicationContext context) {
+        ClusterRepository repository = context.getBean(ClusterRepository.class);
+        expect(repository.tryAcquireLease("check", "a", 1_000, 2_000), "free lease must be acquired");
+        expect(repository.tryAcquireLease("check", "a", 1_500, 2_500), "owner must renew");
+        expect(!repository.tryAcquireLease("check", "b", 2_000, 3_000), "live lease must not be taken");
+        expect(repository.tryAcquireLease("check", "b", 2_600, 3_600), "expired lease must be taken over");
+        repository.releaseLease("check", "b");
+        expect(repository.countLiveLeases("check", 2_700) == 0, "released lease must not be live");
+    }
+
+    private static void leaderCursor(AnnotationConfigApplicationContext context) {
+        ClusterRepository repository = context.getBean(ClusterRepository.class);
+        repository.tryAcquireLease("cursor", "a", 0, Long.MAX_VALUE);
+        expect(repository.commitCursor("cursor", "a", 42), "owner must commit");
+        expect(!repository.commitCursor("cursor", "b", 43), "non-owner must not commit");
+        expect(repository.loadCursor("cursor") == 42, "cursor must survive");
+    }
+
+    private static void queueOrderAndDedup(AnnotationConfigApplicationContext context) {
+        ClusterRepository repository = context.getBean(ClusterRepository.class);
+        for (long updateId = 100; updateId < 160; updateId++) {
+            repository.enqueue(updateId, (int) (updateId % 2), new byte[] {(byte) updateId});
+        }
+        repository.enqueue(100, 0, new byte[] {0});
+
+        List<QueuedUpdate> batch = repository.fetchBatch(List.of(0), 100);
+        expect(batch.size() == 30, "partition 0 must hold 30 updates, got " + batch.size());
+        for (int i = 1; i < batch.size(); i++) {
+            expect(batch.get(i).getUpdateId() > batch.get(i - 1).getUpdateId(), "queue must keep arrival order");
+        }
+        for (QueuedUpdate queued : batch) {
+            repository.remove(queued.getId());
+        }
+        expect(repository.fetchBatch(List.of(0), 100).isEmpty(), "removed updates must be gone");
+    }
+
+    private static void paymentTransitions(AnnotationConfigApplicationContext context) {
+        PaymentRepository payments = context.getBean(PaymentRepository.class);
+        BotStats stats = context.getBean(BotStats.class);
+        payments.create("pay-1", 4L, new BigDecimal("150.00"));
+        payments.create("pay-1", 4L, new BigDecimal("150.00"));
+        payments.create("pay-2", 4L, new BigDecimal("150.00"));
+        expect(payments.markSucceeded("pay-1"), "pending payment must succeed");
+        expect(!payments.markSucceeded("pay-1"), "payment must succeed only once");
+        expect(!payments.markCanceled("pay-1"), "succeeded payment must not be canceled");
+        expect(payments.markCanceled("pay-2"), "pending payment must be canceled");
+        expect(stats.snapshot().revenueToday() == 15_000, "revenue must be counted once");
+
+        stats.rebuild();
+        expect(stats.snapshot().revenueToday() == 15_000, "rebuilt revenue must match");
+        expect(stats.snapshot().pendingPayments() == 0, "no payment must stay pending");
+
+        // Платеж другого арендатора не попадает в показатели основного бота ни сразу, ни после пересборки
+        TenantContext.run("brand2", () -> {
+            payments.create("pay-brand2", 4L, new BigDecimal("200.00"));
+            expect(payments.markSucceeded("pay-brand2"), "tenant payment must succeed");
+            expect(stats.snapshot().revenueToday() == 20_000, "tenant revenue must be counted separately");
+        });
+        expect(stats.snapshot().revenueToday() == 15_000, "tenant revenue must not leak into default stats");
+        stats.rebuild();
+        expect(stats.snapshot().revenueToday() == 15_000, "rebuilt default revenue must exclude tenants");
+        TenantContext.run("brand2", () -> expect(stats.snapshot().revenueToday() == 20_000,
+                "rebuilt tenant revenue must match"));
+    }
+
+    private static void keyIssueOncePerPayment(AnnotationConfigApplicationContext context) {
+        PaymentRepository payments = context.getBean(PaymentRepository.class);
+        KeyHistoryRepository history = context.getBean(KeyHistoryRepository.class);
+        payments.create("pay-key", 5L, new BigDecimal("100.00"));
+        payments.markSucceeded("pay-key");
+
+        expect(payments.claimKeyIssue("pay-key", 5L, new BigDecimal("100.00")), "first claim must win");
+        expect(!payments.claimKeyIssue("pay-key", 5L, new BigDecimal("100.00")), "second claim must lose while the first is running");
+        payments.releaseKeyIssue("pay-key");
+        expect(payments.claimKeyIssue("pay-key", 5L, new BigDecimal("100.00")), "released claim must be taken again");
+
+        history.record(5L, "uuid-5", KeyHistory.ISSUED, "pay-key", 30);
+        expect(payments.isKeyIssued("pay-key"), "payment must be marked as issued");
+        expect(!payments.claimKeyIssue("pay-key", 5L, new BigDecimal("100.00")), "issued payment must not be claimed again");
+
+        // Оплата до появления таблицы payments: первая выдача записывает ее, повторная проверка ключ не выдает
+        expect(payments.claimKeyIssue("pay-before-table", 5L, new BigDecimal("100.00")), "legacy payment must be claimed");
+        expect(!payments.claimKeyIssue("pay-before-table", 5L, new BigDecimal("100.00")), "legacy payment must not be claimed twice");
+
+        history.record(5L, "uuid-5", KeyHistory.RENEWED, null, 45);
+        expect(KeyHistory.RENEWED.equals(history.latest(5L).getAction()), "latest entry must be the renewal");
+        expect(history.history(5L, 10).size() == 2, "both entries must be kept");
+        expect(Long.valueOf(5L).equals(history.ownerOf("uuid-5")), "owner must be found by panel uuid");
+        expect(history.ownerOf("uuid-unknown") == null, "unknown uuid must have no owner");
+    }
+
+    private static void exportInChunks(AnnotationConfigApplicationContext context) {
+        DatabaseManager db = context.getBean(DatabaseManager.class);
+        // Больше двух порций, чтобы проверить продолжение по ключу; id выше, чем у пользователей других проверок
+        long expected = 2L * context.getBean(ExportConfig.class).getChunkRows() + 7;
+        for (long userId = 1_000; userId < 1_000 + expected; userId++) {
+            db.saveVpnKey(userId, "vless://" + userId + ",\"quoted\"");
+        }
+
+        CompletableFuture<Map<String, Long>> lines = new CompletableFuture<>();
+        context.getBean(ExportService.class).start(ExportFormat.CSV, files -> {
+            Map<String, Long> counts = new HashMap<>();
+            for (ExportService.ExportFile file : files) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(file.path())), StandardCharsets.UTF_8))) {
+                    boolean users = file.name().startsWith("users");
+                    counts.put(file.name(), reader.lines().skip(1)
+                            .filter(line -> !users || Long.parseLong(line.substring(0, line.indexOf(','))) >= 1_000)
+                            .count());
+                } catch (IOException | RuntimeException e) {
+                    lines.completeExceptionally(e);
+                    return;
+                }
+            }
+            lines.complete(counts);
+        }, lines::completeExceptionally);
+
+        Map<String, Long> counts = lines.orTimeout(60, TimeUnit.SECONDS).join();
+        expect(counts.get("users.csv.gz") == expected, "export must contain every user, got " + counts);
+        expect(counts.containsKey("payments.csv.gz"), "payments must be exported");
+    }
+
+    private static void tenantIsolation(AnnotationConfigApplicationContext context) {
+        DatabaseManager db = context.getBean(DatabaseManager.class);
+        PaymentRepository payments = context.getBean(PaymentRepository.class);
+        KeyHistoryRepository history = context.getBean(KeyHistoryRepository.class);
+        // Один и тот же Telegram ID в двух ботах — два пользователя
+        db.saveVpnKey(7L, "vless://default-7");
+        payments.create("pay-default", 7L, new BigDecimal("100.00"));
+        history.record(7L, "uuid-default-7", KeyHistory.ISSUED, null, 30);
+        TenantContext.run("brand2", () -> {
+            expect(db.getVpnKey(7L) == null, "other tenant's user must not be visible");
+            db.saveVpnKey(7L, "vless://brand2-7");
+            expect(db.listKeys(Long.MIN_VALUE, 10).size() == 1, "tenant must list only its own keys");
+            expect(!payments.markSucceeded("pay-default"), "other tenant's payment must not change");
+            expect(!payments.claimKeyIssue("pay-default", 7L, new BigDecimal("100.00")), "other tenant's payment must not be claimed");
+            expect(history.latest(7L) == null, "other tenant's history must not be visible");
+            expect(history.ownerOf("uuid-default-7") == null, "other tenant's panel user must have no owner");
+        });
+        expect("vless://default-7".equals(db.getVpnKey(7L)), "default tenant's key must stay");
+        expect(payments.markSucceeded("pay-default"), "own payment must succeed");
+    }
+
+    private static void legacyUsersMigration(AnnotationConfigApplicationContext context) {
+        EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        // База до арендаторов: users с ключом только по Telegram ID и платеж без tenant_id
+        nativeUpdate(entityManagerFactory,
+                "create table users (id bigint primary key, user_key varchar(255) not null, user_data varchar(255) not null)",
+                "insert into users (id, user_key, user_data) values (8, 'vless://legacy-8', '2024-01-01 00:00:00')",
+                "insert into payments (payment_id, user_id, amount_kopecks, status, created_at) " +
+                        "values ('pay-legacy', 8, 10000, 'pending', 0)");
+        TenantMigration.run(entityManagerFactory);
+        TenantMigration.run(entityManagerFactory);
+
+        DatabaseManager db = context.getBean(DatabaseManager.class);
+        expect("vless://legacy-8".equals(db.getVpnKey(8L)), "legacy user must move to the default tenant");
+        expect(context.getBean(PaymentRepository.class).markCanceled("pay-legacy"),
+                "legacy payment must belong to the default tenant");
+        TenantContext.run("brand2", () -> expect(db.getVpnKey(8L) == null, "legacy user must not leak to other tenants"));
+    }
+
+    private static void nativeUpdate(EntityManagerFactory entityManagerFactory, String... statements) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            for (String statement : statements) {
+                entityManager.createNativeQuery(statement).executeUpdate();
+            }
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Искусственная задержка и доля отказов для заглушки внешнего API
+ */
+public class StubBehaviour {
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double failureRate;
+
+    public StubBehaviour(long latencyMs, long jitterMs, double failureRate) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Читает --<prefix>.latencyMs, --<prefix>.jitterMs и --<prefix>.failureRate
+     */
+    public static StubBehaviour from(LoadTestOptions options, String prefix, long defaultLatencyMs) {
+        return new StubBehaviour(
+                options.getLong(prefix + ".latencyMs", defaultLatencyMs),
+                options.getLong(prefix + ".jitterMs", defaultLatencyMs / 2),
+                options.getDouble(prefix + ".failureRate", 0.0)
+        );
+    }
+
+    /**
+     * Ждет заданную задержку и решает, отвечать ли ошибкой
+     *
+     * @return true, если этот вызов должен завершиться отказом
+     */
+    public boolean delayAndDecideFailure() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return failureRate > 0 && random.nextDouble() < failureRate;
+    }
+
+    @Override
+    public String toString() {
+        return latencyMs + "ms ±" + jitterMs + "ms, failures " + (failureRate * 100) + "%";
+    }
+}
@@ -0,0 +1,255 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Заглушка Bot API: отдает апдейты через getUpdates и принимает sendMessage.
+ * Апдейты хранятся до тех пор, пока бот не подтвердит их offset, как у настоящего Telegram.
+ * sendPhoto и sendMediaGroup (multipart) сохраняются целиком и получают в ответ сообщения с фото.
+ */
+public class TelegramStub extends StubServer {
+
+    /**
+     * Получатель сообщений, которые бот отправил пользователям
+     */
+    public interface Listener {
+        void onMessage(long chatId, String text, JsonNode replyMarkup);
+    }
+
+    // Дольше держать long poll заглушке незачем, а завершение прогона ускоряется
+    private static final long MAX_POLL_WAIT_MS = 1_000;
+
+    private final AtomicLong nextUpdateId = new AtomicLong();
+    private final AtomicInteger nextMessageId = new AtomicInteger();
+    private final ConcurrentSkipListMap<Long, ObjectNode> pending = new ConcurrentSkipListMap<>();
+    private final Object signal = new Object();
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder getUpdatesCalls = new LongAdder();
+    private final Queue<String> mediaRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextFileId = new AtomicInteger();
+    private volatile Listener listener = (chatId, text, replyMarkup) -> { };
+
+    public TelegramStub(StubBehaviour behaviour) throws IOException {
+        super(behaviour);
+    }
+
+    /**
+     * Значение для bot.apiUrl: библиотека сама дописывает токен и метод
+     */
+    public String apiUrl() {
+        return baseUrl() + "/bot";
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public long getSentMessages() {
+        return sentMessages.sum();
+    }
+
+    public long getGetUpdatesCalls() {
+        return getUpdatesCalls.sum();
+    }
+
+    /**
+     * Запросы с картинками: имя метода, перевод строки и тело multipart как есть
+     */
+    public List<String> getMediaRequests() {
+        return List.copyOf(mediaRequests);
+    }
+
+    public int getPendingUpdates() {
+        return pending.size();
+    }
+
+    public void sendText(long userId, String text) {
+        ObjectNode message = newMessage(userId);
+        message.set("from", user(userId));
+        message.put("text", text);
+
+        ObjectNode update = objectMapper.createObjectNode();
+        update.set("message", message);
+        enqueue(update);
+    }
+
+    public void sendCallback(long userId, int messageId, String data) {
+        ObjectNode message = newMessage(userId);
+        message.put("message_id", messageId);
+
+        ObjectNode callback = objectMapper.createObjectNode();
+        callback.put("id", Long.toString(nextUpdateId.get() + 1));
+        callback.set("from", user(userId));
+        callback.set("message", message);
+        callback.put("chat_instance", Long.toString(userId));
+        callback.put("data", data);
+
+        ObjectNode update = objectMapper.createObjectNode();
+        update.set("callback_query", callback);
+        enqueue(update);
+    }
+
+    private void enqueue(ObjectNode update) {
+        long updateId = nextUpdateId.incrementAndGet();
+        update.put("update_id", updateId);
+        pending.put(updateId, update);
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        // Имена методов Bot API не зависят от регистра, а библиотека шлет их строчными (sendmessage, getupdates)
+        String method = path.substring(path.lastIndexOf('/') + 1);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("multipart/")) {
+            respondMedia(exchange, method);
+            return;
+        }
+        String body = readBody(exchange);
+        ObjectNode request = body.isEmpty() ? objectMapper.createObjectNode() : (ObjectNode) objectMapper.readTree(body);
+        addQueryParameters(exchange, request);
+
+        if ("getUpdates".equalsIgnoreCase(method)) {
+            getUpdatesCalls.increment();
+            respondUpdates(exchange, request);
+            return;
+        }
+
+        if (behaviour.delayAndDecideFailure()) {
+            respond(exchange, 429, "{\"ok\":false,\"error_code\":429,"
+                    + "\"description\":\"Too Many Requests: injected\",\"parameters\":{\"retry_after\":1}}");
+            return;
+        }
+
+        if ("sendMessage".equalsIgnoreCase(method)) {
+            long chatId = request.path("chat_id").asLong();
+            sentMessages.increment();
+            listener.onMessage(chatId, request.path("text").asText(), request.get("reply_markup"));
+            respond(exchange, 200, "{\"ok\":true,\"result\":" + newMessage(chatId) + "}");
+        } else {
+            // deleteWebhook, editMessageReplyMarkup и прочее — просто "ok"
+            respond(exchange, 200, "{\"ok\":true,\"result\":true}");
+        }
+    }
+
+    private void respondMedia(HttpExchange exchange, String method) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+        mediaRequests.add(method + "\n" + body);
+        if (!"sendMediaGroup".equalsIgnoreCase(method)) {
+            respond(exchange, 200, "{\"ok\":true,\"result\":" + photoMessage() + "}");
+            return;
+        }
+        ArrayNode result = objectMapper.createArrayNode();
+        int photos = Math.max(1, body.split("\"type\":\"photo\"", -1).length - 1);
+        for (int i = 0; i < photos; i++) {
+            result.add(photoMessage());
+        }
+        respond(exchange, 200, "{\"ok\":true,\"result\":" + result + "}");
+    }
+
+    private ObjectNode photoMessage() {
+        ObjectNode photo = objectMapper.createObjectNode();
+        String fileId = "stub-photo-" + nextFileId.incrementAndGet();
+        photo.put("file_id", fileId);
+        photo.put("file_unique_id", fileId);
+        photo.put("width", 1);
+        photo.put("height", 1);
+        ObjectNode message = newMessage(0);
+        message.set("photo", objectMapper.createArrayNode().add(photo));
+        return message;
+    }
+
+    /**
+     * Библиотека шлет параметры JSON-телом, LongPollUpdateSource — в строке запроса
+     */
+    private static void addQueryParameters(HttpExchange exchange, ObjectNode request) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                request.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void respondUpdates(HttpExchange exchange, JsonNode request) throws IOException {
+        long offset = request.path("offset").asLong(0);
+        int limit = request.path("limit").asInt(100);
+        long waitMs = Math.min(request.path("timeout").asLong(0) * 1000, MAX_POLL_WAIT_MS);
+
+        // Все, что меньше offset, бот подтвердил
+        pending.headMap(offset).clear();
+
+        long deadline = System.currentTimeMillis() + waitMs;
+        synchronized (signal) {
+            long remaining;
+            while (pending.isEmpty() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    signal.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        ArrayNode result = objectMapper.createArrayNode();
+        for (Map.Entry<Long, ObjectNode> entry : pending.tailMap(offset).entrySet()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(entry.getValue());
+        }
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", true);
+        response.set("result", result);
+        respond(exchange, 200, objectMapper.writeValueAsString(response));
+    }
+
+    private ObjectNode newMessage(long chatId) {
+        ObjectNode chat = objectMapper.createObjectNode();
+        chat.put("id", chatId);
+        chat.put("type", "private");
+
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("message_id", nextMessageId.incrementAndGet());
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.set("chat", chat);
+        return message;
+    }
+
+    private ObjectNode user(long userId) {
+        ObjectNode user = objectMapper.createObjectNode();
+        user.put("id", userId);
+        user.put("is_bot", false);
+        user.put("first_name", "Load" + userId);
+        user.put("language_code", "ru");
+        return user;
+    }
+}
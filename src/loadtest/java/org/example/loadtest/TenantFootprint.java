@@ -0,0 +1,158 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Сколько стоит каждый бот арендатора (bot.tenancy). Каждый прогон — отдельная JVM с основным ботом и N ботами
+ * арендаторов, у каждого бота своя заглушка Telegram, панель и ЮKassa — общие заглушки. Когда все боты ответили
+ * на /start и прошла пауза на прогрев, из /proc снимаются RSS и число потоков процесса (только Linux);
+ * прирост на арендатора считается относительно прогона без арендаторов.
+ *
+ * Запуск: mvn -P loadtest compile exec:exec -Dloadtest.main=org.example.loadtest.TenantFootprint -Dloadtest.args="--tenants=0,1,4,16"
+ * С LongPollUpdateSource: добавить --app.bot.polling.source=lean.
+ */
+public class TenantFootprint {
+
+    private static final long USER_ID = 3_000_000L;
+
+    private record Sample(int tenants, long rssKb, int threads) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        int[] variants = Arrays.stream(options.get("tenants", "0,1,4,16").split(","))
+                .mapToInt(value -> Integer.parseInt(value.trim())).toArray();
+        long timeoutMs = options.getLong("timeoutMs", 120_000);
+        long settleMs = options.getLong("settleMs", 5_000);
+
+        List<Sample> samples = new ArrayList<>();
+        for (int tenants : variants) {
+            Sample sample = measure(tenants, options, timeoutMs, settleMs);
+            System.out.printf("%3d tenants: RSS %6d MB, threads %4d%n", tenants, sample.rssKb() / 1024, sample.threads());
+            samples.add(sample);
+        }
+
+        Sample base = samples.stream().filter(sample -> sample.tenants() == 0).findFirst().orElse(null);
+        if (base == null) {
+            System.exit(0);
+        }
+        System.out.printf("%n%8s %18s %18s%n", "tenants", "RSS per tenant KB", "threads per tenant");
+        for (Sample sample : samples) {
+            if (sample.tenants() == 0) {
+                continue;
+            }
+            System.out.printf("%8d %18d %18.1f%n", sample.tenants(), (sample.rssKb() - base.rssKb()) / sample.tenants(),
+                    (double) (sample.threads() - base.threads()) / sample.tenants());
+        }
+        System.exit(0);
+    }
+
+    private static Sample measure(int tenants, LoadTestOptions options, long timeoutMs, long settleMs)
+            throws IOException, InterruptedException {
+        Path workDir = Files.createTempDirectory("tenant-footprint");
+        boolean failed = true;
+        List<TelegramStub> telegrams = new ArrayList<>();
+        try (YooKassaStub yooKassa = new YooKassaStub(StubBehaviour.from(options, "yookassa", 0));
+             HiddifyStub hiddify = new HiddifyStub(StubBehaviour.from(options, "hiddify", 0))) {
+            yooKassa.start();
+            hiddify.start();
+
+            // Заглушка 0 — основной бот, остальные — арендаторы
+            CountDownLatch answered = new CountDownLatch(tenants + 1);
+            for (int i = 0; i <= tenants; i++) {
+                TelegramStub telegram = new TelegramStub(StubBehaviour.from(options, "telegram", 0));
+                telegram.start();
+                CountDownLatch once = new CountDownLatch(1);
+                telegram.setListener((chatId, text, replyMarkup) -> {
+                    if (chatId == USER_ID && once.getCount() > 0) {
+                        once.countDown();
+                        answered.countDown();
+                    }
+                });
+                telegram.sendText(USER_ID, "/start");
+                telegrams.add(telegram);
+            }
+
+            List<String> command = new ArrayList<>(List.of(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    options.get("heap", "-Xmx256m"),
+                    "-cp", System.getProperty("java.class.path"),
+                    "org.example.BotLauncher"));
+            command.addAll(LoadTestRunner.springArgs(options, telegrams.get(0), yooKassa, hiddify, workDir));
+            for (int i = 0; i < tenants; i++) {
+                command.addAll(tenantArgs(i, telegrams.get(i + 1), yooKassa, hiddify));
+            }
+            Process process = new ProcessBuilder(command)
+                    .directory(workDir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(workDir.resolve("bot.log").toFile())
+                    .start();
+            try {
+                if (!answered.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException(answered.getCount() + " bots did not reply within " + timeoutMs
+                            + " ms, see " + workDir.resolve("bot.log"));
+                }
+                Thread.sleep(settleMs);
+                Sample sample = new Sample(tenants, procStatus(process.pid(), "VmRSS:"),
+                        (int) procStatus(process.pid(), "Threads:"));
+                failed = false;
+                return sample;
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        } finally {
+            telegrams.forEach(TelegramStub::close);
+            // Каталог упавшего прогона с логом бота остается для разбора
+            if (!failed) {
+                FileSystemUtils.deleteRecursively(workDir);
+            }
+        }
+    }
+
+    private static List<String> tenantArgs(int index, TelegramStub telegram, YooKassaStub yooKassa, HiddifyStub hiddify) {
+        String prefix = "--bot.tenancy.tenants[" + index + "].";
+        String id = "t" + index;
+        return List.of(
+                prefix + "id=" + id,
+                prefix + "bot.token=" + (700_000 + index) + ":TENANT",
+                prefix + "bot.username=" + id + "_bot",
+                prefix + "bot.nickname=Tenant " + index,
+                prefix + "bot.apiUrl=" + telegram.apiUrl(),
+                prefix + "yookassa.shopID=" + id,
+                prefix + "yookassa.secretKey=" + id,
+                prefix + "yookassa.returnUrl=https://t.me/" + id + "_bot",
+                prefix + "yookassa.apiUrl=" + yooKassa.apiUrl(),
+                prefix + "hiddify.secretApi=" + id,
+                prefix + "hiddify.apiUrl=" + hiddify.baseUrl(),
+                prefix + "hiddify.adminProxyPath=" + HiddifyStub.ADMIN_PROXY_PATH,
+                prefix + "hiddify.userProxyPath=" + HiddifyStub.USER_PROXY_PATH);
+    }
+
+    /**
+     * Числовое поле из /proc/[pid]/status (VmRSS в КБ, Threads); 0, если файла нет (не Linux)
+     */
+    private static long procStatus(long pid, String field) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith(field)) {
+                return Long.parseLong(Arrays.stream(line.split("\\s+")).skip(1).findFirst().orElse("0"));
+            }
+        }
+        return 0;
+    }
+}
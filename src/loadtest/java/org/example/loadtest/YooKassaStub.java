@@ -0,0 +1,49 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Заглушка API ЮKassa: платеж создается в статусе pending и сразу считается оплаченным при проверке
+ */
+public class YooKassaStub extends StubServer {
+
+    public YooKassaStub(StubBehaviour behaviour) throws IOException {
+        super(behaviour);
+    }
+
+    /**
+     * Значение для yookassa.apiUrl
+     */
+    public String apiUrl() {
+        return baseUrl() + "/v3/payments";
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        readBody(exchange);
+        if (behaviour.delayAndDecideFailure()) {
+            respond(exchange, 500, "{\"type\":\"error\",\"code\":\"internal_server_error\"}");
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String tail = path.substring("/v3/payments".length());
+
+        if (tail.isEmpty() || "/".equals(tail)) {
+            String paymentId = UUID.randomUUID().toString();
+            respond(exchange, 200, "{\"id\":\"" + paymentId + "\",\"status\":\"pending\",\"paid\":false,"
+                    + "\"amount\":{\"value\":\"100.00\",\"currency\":\"RUB\"},"
+                    + "\"confirmation\":{\"type\":\"redirect\",\"confirmation_url\":\""
+                    + baseUrl() + "/checkout?orderId=" + paymentId + "\"}}");
+        } else if (tail.endsWith("/cancel")) {
+            String paymentId = tail.substring(1, tail.length() - "/cancel".length());
+            respond(exchange, 200, "{\"id\":\"" + paymentId + "\",\"status\":\"canceled\",\"paid\":false}");
+        } else {
+            String paymentId = tail.substring(1);
+            respond(exchange, 200, "{\"id\":\"" + paymentId + "\",\"status\":\"succeeded\",\"paid\":true}");
+        }
+    }
+}
@@ -1,15 +1,10 @@
 package org.example;
 
-
-import org.example.logic.BotLogic;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
-import org.telegram.telegrambots.meta.TelegramBotsApi;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
 @SpringBootApplication
 public class BotLauncher {
@@ -17,19 +12,21 @@ public class BotLauncher {
 
     public static void main(String[] args) {
         logger.info("Starting VPN Bot...");
+        start(args);
+    }
 
+    /**
+     * Поднимает контекст; бота и ботов арендаторов регистрирует BotRegistration еще внутри refresh.
+     * Вынесено из main, чтобы нагрузочный стенд запускал ровно то же самое.
+     *
+     * @param args Аргументы Spring Boot (--bot.token=... и т.д.)
+     * @return Контекст приложения; закрыт, если бота не удалось зарегистрировать
+     */
+    public static ConfigurableApplicationContext start(String... args) {
         ConfigurableApplicationContext context = SpringApplication.run(BotLauncher.class, args);
-
-        try {
-            BotLogic botLogic = context.getBean(BotLogic.class);
-
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(botLogic);
-
-            logger.info("VPN Bot successfully started!");
-        } catch (TelegramApiException e) {
-            logger.error("Failed to start VPN Bot: {}", e.getMessage());
+        if (context.getBean(BotRegistration.class).isFailed()) {
             context.close();
         }
+        return context;
     }
-}
\ No newline at end of file
+}
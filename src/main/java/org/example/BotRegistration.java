@@ -0,0 +1,110 @@
+package org.example;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.example.cluster.ClusterCoordinator;
+import org.example.config.ClusterConfig;
+import org.example.config.PollingConfig;
+import org.example.logic.BotLogic;
+import org.example.shutdown.GracefulShutdown;
+import org.example.tenancy.TenantBots;
+import org.example.updates.LongPollUpdateSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+/**
+ * Регистрирует бота, а за ним ботов арендаторов (bot.tenancy), первым из SmartLifecycle: сразу после создания
+ * синглтонов, еще внутри refresh контекста, а не после возврата из SpringApplication.run.
+ * Раньше регистрироваться некуда: BotLogic нужны его зависимости. Тяжелые из них (QR-коды, медиа, служебные команды)
+ * внедряются ленивыми прокси, а Hibernate с bot.database.backgroundBootstrap=true собирается в фоне.
+ *
+ * Ошибка регистрации не роняет refresh: ее видит BotLauncher через {@link #isFailed()} и закрывает контекст.
+ */
+@Component
+public class BotRegistration implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(BotRegistration.class);
+
+    private final BotLogic botLogic;
+    private final ClusterConfig clusterConfig;
+    private final PollingConfig pollingConfig;
+    private final ClusterCoordinator clusterCoordinator;
+    private final LongPollUpdateSource updateSource;
+    private final GracefulShutdown gracefulShutdown;
+    private final TenantBots tenantBots;
+
+    private volatile boolean running;
+    private volatile boolean failed;
+
+    public BotRegistration(BotLogic botLogic, ClusterConfig clusterConfig, PollingConfig pollingConfig,
+                           ClusterCoordinator clusterCoordinator, LongPollUpdateSource updateSource,
+                           GracefulShutdown gracefulShutdown, TenantBots tenantBots) {
+        this.botLogic = botLogic;
+        this.clusterConfig = clusterConfig;
+        this.pollingConfig = pollingConfig;
+        this.clusterCoordinator = clusterCoordinator;
+        this.updateSource = updateSource;
+        this.gracefulShutdown = gracefulShutdown;
+        this.tenantBots = tenantBots;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        try {
+            botLogic.replayJournal();
+
+            if (clusterConfig.isEnabled()) {
+                // Опрашивать будет тот экземпляр, который станет лидером; обрабатывают все
+                botLogic.clearWebhook();
+                clusterCoordinator.start();
+            } else if (pollingConfig.isLeanSource()) {
+                // Собственный long poll: вебхук снимаем сами, как это делает registerBot
+                botLogic.clearWebhook();
+                updateSource.start(botLogic::handleUpdate);
+                tenantBots.start(null);
+            } else {
+                TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+                gracefulShutdown.setLibrarySession(botsApi.registerBot(botLogic));
+                tenantBots.start(botsApi);
+            }
+
+            // Время от запуска JVM: по нему удобно сравнивать обычную и быструю сборку (профиль fast)
+            logger.info("VPN Bot successfully started in {} ms", ManagementFactory.getRuntimeMXBean().getUptime());
+        } catch (TelegramApiException | IOException e) {
+            logger.error("Failed to start VPN Bot: {}", e.getMessage());
+            failed = true;
+        }
+    }
+
+    /**
+     * Останавливает все GracefulShutdown: у него самая поздняя фаза, так что он останавливается первым
+     */
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return true, если бота не удалось зарегистрировать
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    // Стартуем первыми, раньше любых других SmartLifecycle
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+}
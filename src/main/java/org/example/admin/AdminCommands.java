@@ -0,0 +1,229 @@
+package org.example.admin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import org.example.analytics.EventAnalytics;
+import org.example.backup.BackupService;
+import org.example.config.BotConfig;
+import org.example.export.ExportFormat;
+import org.example.export.ExportService;
+import org.example.stats.BotStats;
+import org.example.sweeper.PanelSweeper;
+import org.example.tenancy.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+/**
+ * Служебные команды для пользователей из bot.adminIds того бота, которому они пишут: у бота арендатора
+ * (bot.tenancy) свой список. Остальным эти команды не видны: для них это обычный нераспознанный текст.
+ * Команды выполняются в потоке бота, поэтому TenantContext уже указывает на его арендатора.
+ */
+@Component
+@Lazy
+public class AdminCommands {
+    private static final Logger logger = LoggerFactory.getLogger(AdminCommands.class);
+    private static final int DEFAULT_REPORT_DAYS = 7;
+
+    private final EventAnalytics analytics;
+    private final BotStats stats;
+    private final ExportService exports;
+    private final BackupService backups;
+    private final PanelSweeper sweeper;
+
+    public AdminCommands(EventAnalytics analytics, BotStats stats, ExportService exports, BackupService backups,
+                         PanelSweeper sweeper) {
+        this.analytics = analytics;
+        this.stats = stats;
+        this.exports = exports;
+        this.backups = backups;
+        this.sweeper = sweeper;
+    }
+
+    /**
+     * @param botConfig Настройки бота, которому пишет пользователь
+     */
+    public static boolean isAdmin(BotConfig botConfig, long userId) {
+        List<Long> adminIds = botConfig.getAdminIds();
+        return adminIds != null && adminIds.contains(userId);
+    }
+
+    /**
+     * Выполняет команду администратора
+     *
+     * @param botConfig Настройки бота, которому пришла команда
+     * @return false, если это не команда администратора или пользователь не администратор этого бота
+     */
+    public boolean handle(AbsSender sender, BotConfig botConfig, long userId, String chatId, String text) {
+        if (!text.startsWith("/") || !isAdmin(botConfig, userId)) {
+            return false;
+        }
+        String[] parts = text.trim().split("\\s+");
+        String command = parts[0];
+        try {
+            switch (command) {
+                case "/analytics" -> reply(sender, chatId, analytics.report(TenantContext.current(),
+                        intArgument(parts, DEFAULT_REPORT_DAYS)));
+                case "/stats" -> reply(sender, chatId, statsReport(stats.snapshot()));
+                case "/export" -> export(sender, chatId, parts);
+                case "/backup", "/backups", "/restore" -> backupCommand(sender, chatId, command, parts);
+                case "/sweep" -> sweep(sender, chatId, parts);
+                default -> {
+                    return false;
+                }
+            }
+            logger.info("Admin {} ran {}", userId, command);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Admin command {} failed: {}", command, e.getMessage(), e);
+            reply(sender, chatId, "❌ Команда " + command + " завершилась ошибкой: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * /export [csv|json]: выгрузка идет в фоне, файлы приходят отдельными сообщениями
+     */
+    private void export(AbsSender sender, String chatId, String[] parts) {
+        ExportFormat format = parts.length < 2 ? ExportFormat.CSV : ExportFormat.of(parts[1]);
+        if (format == null) {
+            reply(sender, chatId, "Формат выгрузки: /export csv или /export json");
+            return;
+        }
+        boolean started = exports.start(format,
+                files -> files.forEach(file -> sendDocument(sender, chatId, file)),
+                e -> reply(sender, chatId, "❌ Выгрузка не удалась: " + e.getMessage()));
+        reply(sender, chatId, started ? "⏳ Выгрузка запущена, файлы придут следующими сообщениями"
+                : "⏳ Предыдущая выгрузка еще не закончилась");
+    }
+
+    /**
+     * Копии — это вся база, общая для всех ботов процесса: ими управляют только администраторы основного бота
+     */
+    private void backupCommand(AbsSender sender, String chatId, String command, String[] parts) throws IOException {
+        if (!TenantContext.DEFAULT.equals(TenantContext.current())) {
+            reply(sender, chatId, "База общая для всех ботов процесса: копиями управляют администраторы основного бота");
+            return;
+        }
+        switch (command) {
+            case "/backup" -> backup(sender, chatId);
+            case "/backups" -> reply(sender, chatId, backupList(backups.list()));
+            default -> restore(sender, chatId, parts);
+        }
+    }
+
+    /**
+     * /backup: внеочередная копия базы в потоке копирования
+     */
+    private void backup(AbsSender sender, String chatId) {
+        reply(sender, chatId, "⏳ Копирую базу");
+        backups.submit(backups::backup).whenComplete((file, e) -> reply(sender, chatId, e == null
+                ? "💾 Копия готова: <code>" + file.getFileName() + "</code>"
+                : "❌ Копия не удалась: " + cause(e).getMessage()));
+    }
+
+    /**
+     * /restore имя: восстановление из копии; перед заменой копия проверяется, текущая база сохраняется
+     */
+    private void restore(AbsSender sender, String chatId, String[] parts) {
+        if (parts.length < 2) {
+            reply(sender, chatId, "Укажите копию: /restore имя_файла (список — /backups)");
+            return;
+        }
+        reply(sender, chatId, "⏳ Проверяю и восстанавливаю " + parts[1]);
+        backups.submit(() -> backups.restore(parts[1])).whenComplete((Path safety, Throwable e) -> reply(sender, chatId,
+                e == null ? "✅ База восстановлена. Прежнее состояние: <code>" + safety.getFileName() + "</code>"
+                        : "❌ Восстановление не выполнено: " + cause(e).getMessage()));
+    }
+
+    /**
+     * /sweep — пробная чистка панели, /sweep run — настоящая
+     */
+    private void sweep(AbsSender sender, String chatId, String[] parts) {
+        boolean dryRun = parts.length < 2 || !"run".equals(parts[1]);
+        reply(sender, chatId, dryRun ? "⏳ Пробная чистка панели" : "⏳ Чистка панели");
+        sweeper.submit(dryRun).whenComplete((report, e) -> reply(sender, chatId, e == null
+                ? sweepReport(report)
+                : "❌ Чистка не удалась: " + cause(e).getMessage()));
+    }
+
+    private static String sweepReport(PanelSweeper.SweepReport r) {
+        return (r.dryRun() ? "🧹 Пробная чистка, ничего не изменено\n\n<pre>" : "🧹 Чистка панели\n\n<pre>")
+                + String.format("%-22s %10d%n", "в панели", r.scanned())
+                + String.format("%-22s %10d%n", "истекшие", r.expired())
+                + String.format("%-22s %10d%n", "сироты", r.orphans())
+                + String.format("%-22s %10d%n", "освобождено", r.reclaimed())
+                + String.format("%-22s %10d%n", "ошибки", r.failed())
+                + String.format("%-22s %10d%n", "длительность, мс", r.durationMs())
+                + "</pre>" + (r.dryRun() ? "\nВыполнить: /sweep run" : "");
+    }
+
+    private static String backupList(List<String> names) {
+        if (names.isEmpty()) {
+            return "Копий пока нет";
+        }
+        StringBuilder text = new StringBuilder("💾 Копии, от новых к старым:\n");
+        names.forEach(name -> text.append("<code>").append(name).append("</code>\n"));
+        return text.toString();
+    }
+
+    private static Throwable cause(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static void sendDocument(AbsSender sender, String chatId, ExportService.ExportFile file) {
+        SendDocument document = new SendDocument();
+        document.setChatId(chatId);
+        document.setDocument(new InputFile(file.path().toFile(), file.name()));
+        document.setCaption(file.name() + ": " + file.rows() + " строк");
+        try {
+            sender.execute(document);
+        } catch (TelegramApiException e) {
+            logger.error("Failed to send export {} to chat {}: {}", file.name(), chatId, e.getMessage());
+        }
+    }
+
+    private static String statsReport(BotStats.Snapshot s) {
+        return "📟 Сейчас\n\n<pre>"
+                + String.format("%-22s %10d%n", "пользователи", s.users())
+                + String.format("%-22s %10d%n", "активные ключи", s.activeKeys())
+                + String.format("%-22s %10d%n", "истекают за 7 дней", s.expiringWeek())
+                + String.format("%-22s %10.2f%n", "выручка сегодня", s.revenueToday() / 100.0)
+                + String.format("%-22s %10.2f%n", "выручка за месяц", s.revenueMonth() / 100.0)
+                + String.format("%-22s %10d%n", "ожидают оплаты", s.pendingPayments())
+                + String.format("%-22s %10d%n", "апдейтов в минуту", s.updatesPerMinute())
+                + "</pre>\nПоказатели этого бота. Апдейты — по этому узлу, остальное сверяется с базой"
+                + " раз в bot.stats.resyncMinutes.";
+    }
+
+    private static int intArgument(String[] parts, int defaultValue) {
+        if (parts.length < 2) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static void reply(AbsSender sender, String chatId, String html) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(html);
+        message.setParseMode("HTML");
+        try {
+            sender.execute(message);
+        } catch (TelegramApiException e) {
+            logger.error("Failed to send admin reply to chat {}: {}", chatId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.analytics;
+
+import java.time.LocalDate;
+
+/**
+ * Итоги одного дня по журналу событий
+ *
+ * @param events          Число событий каждого типа (индекс — EventType.ordinal)
+ * @param startUsers      Уникальные пользователи, отправившие /start
+ * @param buyKeyUsers     ... нажавшие «Купить ключ»
+ * @param payUsers        ... нажавшие «Оплатить»
+ * @param paidUsers       ... с успешной оплатой
+ * @param revenueKopecks  Выручка по успешным платежам, каждый платеж один раз
+ */
+public record DailyRollup(LocalDate day, long[] events, int startUsers, int buyKeyUsers, int payUsers, int paidUsers,
+                          long revenueKopecks) {
+
+    public long count(EventType type) {
+        return events[type.ordinal()];
+    }
+
+    /**
+     * Доля неудачных выдач ключа после оплаты, 0..1
+     */
+    public double provisioningFailureRate() {
+        long issued = count(EventType.KEY_ISSUED);
+        long failed = count(EventType.KEY_FAILED);
+        return issued + failed == 0 ? 0 : (double) failed / (issued + failed);
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.analytics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.example.config.AnalyticsConfig;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Агрегаты по журналу событий: воронка /start → buy_key → pay_vpn → оплата, выручка и доля неудачных выдач ключа.
+ * Файл дня читается потоком, в памяти только уникальные пользователи этого дня.
+ * Итоги прошедших дней больше не меняются и кешируются, заново читается только сегодняшний файл.
+ * Каждый арендатор (bot.tenancy) видит только события своего бота.
+ */
+@Component
+@Lazy
+public class EventAnalytics {
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final AnalyticsConfig config;
+    private final EventLog eventLog;
+    // Итоги закрытых дней по файлу событий: в имени файла и арендатор, и день
+    private final Map<Path, DailyRollup> closedDays = new ConcurrentHashMap<>();
+
+    public EventAnalytics(AnalyticsConfig config, EventLog eventLog) {
+        this.config = config;
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Итоги арендатора за последние days дней, от старых к новым, включая сегодня
+     */
+    public List<DailyRollup> lastDays(String tenant, int days) throws IOException {
+        int count = Math.max(1, Math.min(days, config.getMaxReportDays()));
+        LocalDate today = LocalDate.now(eventLog.zone());
+        List<DailyRollup> rollups = new ArrayList<>(count);
+        for (int i = count - 1; i >= 0; i--) {
+            rollups.add(rollup(tenant, today.minusDays(i), today));
+        }
+        return rollups;
+    }
+
+    DailyRollup rollup(String tenant, LocalDate day, LocalDate today) throws IOException {
+        Path file = eventLog.fileFor(tenant, day);
+        if (day.isBefore(today)) {
+            DailyRollup cached = closedDays.get(file);
+            if (cached != null) {
+                return cached;
+            }
+            DailyRollup rollup = scan(file, day);
+            closedDays.put(file, rollup);
+            return rollup;
+        }
+        return scan(file, day);
+    }
+
+    private DailyRollup scan(Path file, LocalDate day) throws IOException {
+        long[] events = new long[EventType.values().length];
+        Set<Long> startUsers = new HashSet<>();
+        Set<Long> buyKeyUsers = new HashSet<>();
+        Set<Long> payUsers = new HashSet<>();
+        Set<Long> paidUsers = new HashSet<>();
+        Set<Long> paidRefs = new HashSet<>();
+        long revenue = 0;
+
+        if (!Files.exists(file)) {
+            return new DailyRollup(day, events, 0, 0, 0, 0, 0);
+        }
+        int buyKey = EventLog.callbackCode("buy_key");
+        int payVpn = EventLog.callbackCode("pay_vpn");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES - READ_BUFFER_BYTES % EventLog.RECORD_BYTES);
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (buffer.remaining() < EventLog.RECORD_BYTES) {
+                    break;  // Недописанная последняя запись
+                }
+                while (buffer.remaining() >= EventLog.RECORD_BYTES) {
+                    buffer.getLong();  // время
+                    long userId = buffer.getLong();
+                    long ref = buffer.getLong();
+                    EventType type = EventType.of(buffer.get());
+                    int detail = buffer.get();
+                    buffer.getShort();
+                    int amount = buffer.getInt();
+                    if (type == null) {
+                        continue;
+                    }
+                    events[type.ordinal()]++;
+                    switch (type) {
+                        case START -> startUsers.add(userId);
+                        case CALLBACK -> {
+                            if (detail == buyKey) {
+                                buyKeyUsers.add(userId);
+                            } else if (detail == payVpn) {
+                                payUsers.add(userId);
+                            }
+                        }
+                        case PAYMENT_SUCCEEDED -> {
+                            paidUsers.add(userId);
+                            if (paidRefs.add(ref)) {
+                                revenue += amount;
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+                buffer.compact();
+            }
+        } catch (NoSuchFileException e) {
+            // Файл удалили между проверкой и чтением
+        }
+        return new DailyRollup(day, events, startUsers.size(), buyKeyUsers.size(), payUsers.size(), paidUsers.size(), revenue);
+    }
+
+    /**
+     * Текст отчета для команды /analytics
+     */
+    public String report(String tenant, int days) throws IOException {
+        List<DailyRollup> rollups = lastDays(tenant, days);
+        StringBuilder out = new StringBuilder();
+        out.append("📊 Аналитика за ").append(rollups.size()).append(" дн.\n\n<pre>");
+        out.append(String.format("%-10s %6s %6s %6s %6s %10s %6s%n", "день", "start", "buy", "pay", "paid", "выручка", "сбои"));
+        long revenue = 0;
+        long issued = 0;
+        long failed = 0;
+        for (DailyRollup r : rollups) {
+            out.append(String.format("%-10s %6d %6d %6d %6d %10.2f %5.1f%%%n", r.day(), r.startUsers(), r.buyKeyUsers(),
+                    r.payUsers(), r.paidUsers(), r.revenueKopecks() / 100.0, r.provisioningFailureRate() * 100));
+            revenue += r.revenueKopecks();
+            issued += r.count(EventType.KEY_ISSUED);
+            failed += r.count(EventType.KEY_FAILED);
+        }
+        out.append("</pre>\n");
+        out.append(String.format("Выручка: %.2f руб.%n", revenue / 100.0));
+        out.append(String.format("Ключей выдано: %d, неудачных выдач: %d%n", issued, failed));
+        out.append("Столбцы воронки — уникальные пользователи за день.");
+        return out.toString();
+    }
+}
@@ -0,0 +1,258 @@
+package org.example.analytics;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.example.callbacks.CallbackAction;
+import org.example.callbacks.CallbackCodec;
+import org.example.config.AnalyticsConfig;
+import org.example.tenancy.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Журнал доменных событий только на дозапись: по файлу events-ГГГГММДД.bin на день, записи фиксированной длины.
+ * У ботов арендаторов (bot.tenancy) свои файлы events-арендатор-ГГГГММДД.bin, арендатор берется из TenantContext.
+ * BotLogic кладет событие в очередь и сразу идет дальше, в файл пишет отдельный поток пачками.
+ * Аналитика читает эти файлы и не трогает таблицы, в которые пишет бот.
+ *
+ * Запись (32 байта, big-endian): время epoch millis(8) userId(8) ref(8) тип(1) detail(1) резерв(2) сумма в копейках(4).
+ * Недописанный хвост файла после падения просто не читается.
+ */
+@Component
+public class EventLog {
+    private static final Logger logger = LoggerFactory.getLogger(EventLog.class);
+    static final int RECORD_BYTES = 32;
+    private static final int BATCH = 1024;
+
+    // Коды кнопок для событий CALLBACK; 0 — неизвестная кнопка. Порядок не менять, коды записаны в файлах
+    static final String[] CALLBACKS = {
+            "other", "buy_key", "pay_vpn", "show_key", "instructions", "main_menu",
+            "check_payment", "cancel_payment", "show_qr"
+    };
+    // Код аналитики по CallbackAction.ordinal()
+    private static final int[] ACTION_CODES = new int[CallbackAction.values().length];
+
+    static {
+        for (CallbackAction action : CallbackAction.values()) {
+            ACTION_CODES[action.ordinal()] = Math.max(0, Arrays.asList(CALLBACKS).indexOf(action.id()));
+        }
+    }
+
+    private final AnalyticsConfig config;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final BlockingQueue<Event> queue;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread writer;
+    // Открытые файлы дня channelDay, по одному на арендатора
+    private final Map<Path, FileChannel> channels = new HashMap<>();
+    private LocalDate channelDay;
+
+    private record Event(String tenant, long timestamp, long userId, long ref, byte type, byte detail, int amount) {
+    }
+
+    public EventLog(AnalyticsConfig config, MeterRegistry registry) {
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(Math.max(BATCH, config.getQueueSize()));
+        this.dropped = Counter.builder("analytics.events.dropped").register(registry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Files.createDirectories(Path.of(config.getDir()));
+        running = true;
+        writer = new Thread(this::writeLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        // Без interrupt: прерванный FileChannel закрывается. Писатель сам выйдет, дописав очередь
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void record(EventType type, long userId) {
+        record(type, userId, 0, 0, 0);
+    }
+
+    public void callback(long userId, String callbackData) {
+        record(EventType.CALLBACK, userId, 0, callbackCode(callbackData), 0);
+    }
+
+    public void payment(EventType type, long userId, String paymentId, BigDecimal amount) {
+        int kopecks = amount != null ? amount.movePointRight(2).intValue() : 0;
+        record(type, userId, paymentRef(paymentId), 0, kopecks);
+    }
+
+    private void record(EventType type, long userId, long ref, int detail, int amount) {
+        if (!running) {
+            return;
+        }
+        Event event = new Event(TenantContext.current(), System.currentTimeMillis(), userId, ref, (byte) type.ordinal(), (byte) detail, amount);
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Файл событий арендатора за день. Сегодняшний файл еще дописывается.
+     */
+    public Path fileFor(String tenant, LocalDate day) {
+        String prefix = TenantContext.DEFAULT.equals(tenant) ? "events-" : "events-" + tenant + "-";
+        return Path.of(config.getDir()).resolve(String.format("%s%04d%02d%02d.bin",
+                prefix, day.getYear(), day.getMonthValue(), day.getDayOfMonth()));
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    static int callbackCode(String callbackData) {
+        CallbackAction action = CallbackCodec.action(callbackData);
+        if (action != null) {
+            return ACTION_CODES[action.ordinal()];
+        }
+        // Старые кнопки и имена действий (buy_key, check_payment:...)
+        for (int i = 1; i < CALLBACKS.length; i++) {
+            if (callbackData.startsWith(CALLBACKS[i])) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Хеш paymentId: по нему аналитика не считает повторную проверку одного платежа второй выручкой
+     */
+    static long paymentRef(String paymentId) {
+        if (paymentId == null) {
+            return 0;
+        }
+        long hash = 1125899906842597L;
+        for (int i = 0; i < paymentId.length(); i++) {
+            hash = 31 * hash + paymentId.charAt(i);
+        }
+        return hash;
+    }
+
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>(BATCH);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH * RECORD_BYTES);
+        while (running || !queue.isEmpty()) {
+            try {
+                Event first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                write(batch, buffer);
+            } catch (IOException e) {
+                logger.error("Failed to write {} analytics event(s): {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+        closeChannels();
+    }
+
+    // Пачка раскладывается по файлам (арендатор и день), внутри файла порядок событий сохраняется
+    private void write(List<Event> batch, ByteBuffer buffer) throws IOException {
+        Map<Path, List<Event>> byFile = new LinkedHashMap<>();
+        Map<Path, LocalDate> days = new HashMap<>();
+        for (Event event : batch) {
+            LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(event.timestamp()), zone);
+            Path file = fileFor(event.tenant(), day);
+            byFile.computeIfAbsent(file, f -> new ArrayList<>()).add(event);
+            days.putIfAbsent(file, day);
+        }
+        for (Map.Entry<Path, List<Event>> entry : byFile.entrySet()) {
+            buffer.clear();
+            for (Event event : entry.getValue()) {
+                buffer.putLong(event.timestamp());
+                buffer.putLong(event.userId());
+                buffer.putLong(event.ref());
+                buffer.put(event.type());
+                buffer.put(event.detail());
+                buffer.putShort((short) 0);
+                buffer.putInt(event.amount());
+            }
+            flush(buffer, entry.getKey(), days.get(entry.getKey()));
+        }
+    }
+
+    private void flush(ByteBuffer buffer, Path file, LocalDate day) throws IOException {
+        if (!day.equals(channelDay)) {
+            closeChannels();
+            channelDay = day;
+        }
+        FileChannel channel = channels.get(file);
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            // Хвост от прошлого падения обрезаем по границе записи, иначе все следующие записи съедут
+            long size = channel.size();
+            if (size % RECORD_BYTES != 0) {
+                channel.truncate(size - size % RECORD_BYTES);
+            }
+            channels.put(file, channel);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void closeChannels() {
+        for (FileChannel channel : channels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close analytics file: {}", e.getMessage());
+            }
+        }
+        channels.clear();
+        channelDay = null;
+    }
+}
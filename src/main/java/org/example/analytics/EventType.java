@@ -0,0 +1,23 @@
+package org.example.analytics;
+
+/**
+ * Доменные события бота. Код события — порядковый номер, он записан в файлах, поэтому новые типы только в конец.
+ */
+public enum EventType {
+    START,
+    MESSAGE,
+    // detail — код кнопки, см. EventLog.callbackCode
+    CALLBACK,
+    // amount — сумма в копейках, ref — хеш paymentId
+    PAYMENT_CREATED,
+    PAYMENT_SUCCEEDED,
+    PAYMENT_CANCELLED,
+    KEY_ISSUED,
+    KEY_FAILED;
+
+    private static final EventType[] VALUES = values();
+
+    static EventType of(int code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+    }
+}
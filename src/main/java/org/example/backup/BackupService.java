@@ -0,0 +1,331 @@
+package org.example.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.example.config.BackupConfig;
+import org.example.config.HibernateConfig;
+import org.example.stats.BotStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.core.DB;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Резервные копии SQLite без остановки бота. Копия снимается через backup API SQLite на отдельном соединении
+ * небольшими шагами по bot.backup.pagesPerStep страниц: блокировка на чтение держится только на время шага,
+ * а между шагами записи бота проходят. В режиме WAL читатель писателям не мешает, и база копируется за один шаг.
+ * Готовая копия сжимается в bot.backup.dir/vpn_bot-ГГГГММДД-ЧЧММСС.db.gz, хранятся последние bot.backup.keep копий.
+ *
+ * Метрики: backup.duration, backup.write.stall.max (самый долгий шаг последнего копирования, мс — столько
+ * в худшем случае ждала запись бота), backup.failures, backup.size (байт в последней копии).
+ */
+@Component
+public class BackupService {
+    private static final Logger logger = LoggerFactory.getLogger(BackupService.class);
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String PREFIX = "vpn_bot-";
+    private static final String SUFFIX = ".db.gz";
+    // Сколько раз шаг повторяется, если база занята
+    private static final int BUSY_RETRIES = 100;
+
+    private final BackupConfig config;
+    private final String url;
+    private final boolean sqlite;
+    private final BotStats stats;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Timer duration;
+    private final Counter failures;
+    private final AtomicLong lastStallMs = new AtomicLong();
+    private final AtomicLong lastSizeBytes = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    public BackupService(BackupConfig config, HibernateConfig hibernateConfig, Environment env, BotStats stats,
+                         MeterRegistry registry) {
+        this.config = config;
+        this.url = env.getRequiredProperty("spring.datasource.url");
+        this.sqlite = HibernateConfig.SQLITE.equals(hibernateConfig.backend());
+        this.stats = stats;
+        this.duration = Timer.builder("backup.duration").register(registry);
+        this.failures = Counter.builder("backup.failures").register(registry);
+        Gauge.builder("backup.write.stall.max", lastStallMs, AtomicLong::get).baseUnit("milliseconds").register(registry);
+        Gauge.builder("backup.size", lastSizeBytes, AtomicLong::get).baseUnit("bytes").register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!config.isEnabled() || !sqlite || config.getIntervalMinutes() <= 0) {
+            logger.info("Scheduled backups disabled (enabled={}, sqlite={})", config.isEnabled(), sqlite);
+            return;
+        }
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                backup();
+            } catch (IOException | SQLException | RuntimeException e) {
+                logger.error("Scheduled backup failed: {}", e.getMessage(), e);
+            }
+        }, config.getIntervalMinutes(), config.getIntervalMinutes(), TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Выполняет операцию в потоке копирования, не занимая обработчик апдейта
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(operation.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Снимает и сжимает копию живой базы
+     *
+     * @return Файл копии
+     */
+    public Path backup() throws IOException, SQLException {
+        requireSqlite();
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("Backup or restore is already running");
+        }
+        try {
+            return backupLocked("");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Копии от новых к старым
+     */
+    public List<String> list() throws IOException {
+        List<String> names = new ArrayList<>();
+        for (Path file : snapshots(Path.of(config.getDir()))) {
+            names.add(file.getFileName().toString());
+        }
+        names.sort(Comparator.reverseOrder());
+        return names;
+    }
+
+    /**
+     * Восстанавливает базу из копии. Копия распаковывается во временный файл и проверяется PRAGMA integrity_check;
+     * только потом с живой базы снимается страховочная копия и содержимое заменяется через backup API
+     * (одним шагом под блокировкой, соединения бота видят новую базу со следующей транзакции).
+     *
+     * @param name Имя файла в bot.backup.dir
+     * @return Страховочная копия базы до восстановления
+     */
+    public Path restore(String name) throws IOException, SQLException {
+        requireSqlite();
+        Path dir = Path.of(config.getDir()).toAbsolutePath().normalize();
+        Path snapshot = dir.resolve(name).normalize();
+        if (!snapshot.getParent().equals(dir) || !isSnapshot(snapshot) || !Files.isRegularFile(snapshot)) {
+            throw new IllegalArgumentException("No backup named " + name);
+        }
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("Backup or restore is already running");
+        }
+        Path unpacked = Files.createTempFile(dir, "restore-", ".db");
+        try {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot));
+                 OutputStream out = Files.newOutputStream(unpacked)) {
+                in.transferTo(out);
+            }
+            verify(unpacked);
+
+            Path safety = backupLocked("-pre-restore");
+            try (Connection connection = DriverManager.getConnection(url)) {
+                int rc = connection.unwrap(SQLiteConnection.class).getDatabase()
+                        .restore("main", unpacked.toString(), null, (int) config.getStepPauseMs(), BUSY_RETRIES, -1);
+                if (rc != SQLiteErrorCode.SQLITE_OK.code) {
+                    throw new SQLException("Restore failed with SQLite code " + rc);
+                }
+            }
+            stats.rebuild();
+            logger.warn("Database restored from {}, previous state saved to {}", snapshot, safety);
+            return safety;
+        } finally {
+            Files.deleteIfExists(unpacked);
+            lock.unlock();
+        }
+    }
+
+    private Path backupLocked(String suffix) throws IOException, SQLException {
+        long started = System.nanoTime();
+        Path dir = Files.createDirectories(Path.of(config.getDir()));
+        String name = PREFIX + LocalDateTime.now().format(STAMP) + suffix;
+        Path copy = dir.resolve(name + ".db.tmp");
+        Path target = dir.resolve(name + SUFFIX);
+        try {
+            long stallMs = copyLive(copy);
+            try (InputStream in = Files.newInputStream(copy);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            long elapsed = System.nanoTime() - started;
+            duration.record(elapsed, TimeUnit.NANOSECONDS);
+            lastStallMs.set(stallMs);
+            lastSizeBytes.set(Files.size(target));
+            logger.info("Backup {} written in {} ms, longest write stall {} ms",
+                    target, TimeUnit.NANOSECONDS.toMillis(elapsed), stallMs);
+            rotate(dir);
+            return target;
+        } catch (IOException | SQLException | RuntimeException e) {
+            failures.increment();
+            Files.deleteIfExists(target);
+            throw e;
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    /**
+     * @return Самый долгий шаг копирования, мс; в режиме WAL шаг записи не блокирует, и это 0
+     */
+    private long copyLive(Path copy) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            boolean wal = "wal".equalsIgnoreCase(pragma(connection, "journal_mode"));
+            int pagesPerStep = wal ? -1 : Math.max(1, config.getPagesPerStep());
+            StepTimer steps = new StepTimer(config.getStepPauseMs());
+            int rc = connection.unwrap(SQLiteConnection.class).getDatabase()
+                    .backup("main", copy.toString(), steps, (int) config.getStepPauseMs(), BUSY_RETRIES, pagesPerStep);
+            if (rc != SQLiteErrorCode.SQLITE_OK.code) {
+                throw new SQLException("Backup failed with SQLite code " + rc);
+            }
+            return wal ? 0 : TimeUnit.NANOSECONDS.toMillis(steps.maxStepNanos);
+        }
+    }
+
+    private static void verify(Path database) throws SQLException {
+        SQLiteConfig readOnly = new SQLiteConfig();
+        readOnly.setReadOnly(true);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database, readOnly.toProperties())) {
+            String integrity = pragma(connection, "integrity_check");
+            if (!"ok".equalsIgnoreCase(integrity)) {
+                throw new IllegalStateException("Backup failed integrity check: " + integrity);
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet tables = statement.executeQuery(
+                         "select count(*) from sqlite_master where type = 'table' and name = 'bot_users'")) {
+                if (!tables.next() || tables.getInt(1) == 0) {
+                    throw new IllegalStateException("Backup has no bot_users table");
+                }
+            }
+        }
+    }
+
+    private static String pragma(Connection connection, String name) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA " + name)) {
+            return result.next() ? result.getString(1) : "";
+        }
+    }
+
+    private void rotate(Path dir) throws IOException {
+        List<Path> files = snapshots(dir);
+        files.sort(Comparator.comparing(Path::getFileName).reversed());
+        for (int i = Math.max(1, config.getKeep()); i < files.size(); i++) {
+            Files.deleteIfExists(files.get(i));
+            logger.info("Rotated out backup {}", files.get(i).getFileName());
+        }
+    }
+
+    private static List<Path> snapshots(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, BackupService::isSnapshot)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static boolean isSnapshot(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private void requireSqlite() {
+        if (!sqlite) {
+            throw new IllegalStateException("Online backups are implemented for SQLite only, use pg_dump for PostgreSQL");
+        }
+    }
+
+    /**
+     * Вызывается после каждого шага: меряет, сколько шаг держал базу, и делает паузу, пока блокировка отпущена
+     */
+    private static final class StepTimer implements DB.ProgressObserver {
+        private final long pauseMs;
+        private long stepStarted = System.nanoTime();
+        private long maxStepNanos;
+
+        StepTimer(long pauseMs) {
+            this.pauseMs = pauseMs;
+        }
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            maxStepNanos = Math.max(maxStepNanos, System.nanoTime() - stepStarted);
+            if (remaining > 0 && pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            stepStarted = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.callbacks;
+
+/**
+ * Действия inline-кнопок. В callback_data действие занимает один символ кода.
+ * Коды не менять и не переиспользовать: они уже отправлены пользователям в старых сообщениях.
+ * id — прежнее имя кнопки, по нему считается аналитика и пишутся логи.
+ */
+public enum CallbackAction {
+    BUY_KEY('b', "buy_key", false),
+    PAY_VPN('p', "pay_vpn", false),
+    SHOW_KEY('k', "show_key", false),
+    INSTRUCTIONS('i', "instructions", false),
+    MAIN_MENU('m', "main_menu", false),
+    CHECK_PAYMENT('c', "check_payment", true),
+    CANCEL_PAYMENT('x', "cancel_payment", true),
+    SHOW_QR('q', "show_qr", false);
+
+    // Действие по коду; коды — ASCII, поиск — одно обращение к массиву
+    private static final CallbackAction[] BY_CODE = new CallbackAction[128];
+
+    static {
+        for (CallbackAction action : values()) {
+            if (action.code >= BY_CODE.length || BY_CODE[action.code] != null) {
+                throw new ExceptionInInitializerError("Invalid or duplicate callback code " + action.code);
+            }
+            BY_CODE[action.code] = action;
+        }
+    }
+
+    private final char code;
+    private final String id;
+    private final boolean hasPayload;
+
+    CallbackAction(char code, String id, boolean hasPayload) {
+        this.code = code;
+        this.id = id;
+        this.hasPayload = hasPayload;
+    }
+
+    public char code() {
+        return code;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return true, если у кнопки есть параметр (paymentId)
+     */
+    public boolean hasPayload() {
+        return hasPayload;
+    }
+
+    /**
+     * @return Действие или null, если код неизвестен
+     */
+    public static CallbackAction byCode(char code) {
+        return code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.callbacks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Формат callback_data: версия формата (1 символ), код действия (1 символ) и параметр в base64url без паддинга.
+ * paymentId ЮKassa — UUID, он кодируется 16 байтами: 22 символа вместо 36. Любой другой параметр
+ * кодируется как UTF-8 с префиксом '~'. Telegram принимает не больше 64 байт, длиннее кнопку не собрать.
+ *
+ * Разбор не создает промежуточных строк: версия и код читаются по индексу, UUID собирается из символов
+ * сразу в два long. Данные другой версии считаются устаревшими.
+ *
+ * Кнопки оплаты прежнего формата (check_payment:id, cancel_payment:id) еще висят под неоплаченными счетами,
+ * поэтому пока они разбираются как обычные; старые кнопки навигации без параметра остаются устаревшими.
+ */
+public final class CallbackCodec {
+    public static final char VERSION = '1';
+    // Лимит Telegram на callback_data
+    public static final int MAX_LENGTH = 64;
+
+    private static final char TEXT_PAYLOAD = '~';
+    private static final char LEGACY_SEPARATOR = ':';
+    // Действия, кнопки которых в прежнем формате несли paymentId
+    private static final CallbackAction[] LEGACY_ACTIONS = {CallbackAction.CHECK_PAYMENT, CallbackAction.CANCEL_PAYMENT};
+    private static final int UUID_CHARS = 22;
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final byte[] SEXTETS = new byte[128];
+
+    static {
+        Arrays.fill(SEXTETS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            SEXTETS[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private CallbackCodec() {
+    }
+
+    public static String encode(CallbackAction action) {
+        if (action.hasPayload()) {
+            throw new IllegalArgumentException("Callback " + action.id() + " requires a payload");
+        }
+        return prefix(action);
+    }
+
+    public static String encode(CallbackAction action, String payload) {
+        if (!action.hasPayload()) {
+            throw new IllegalArgumentException("Callback " + action.id() + " takes no payload");
+        }
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        UUID uuid = canonicalUuid(payload);
+        String data;
+        if (uuid != null) {
+            byte[] bytes = ByteBuffer.allocate(16)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+            data = prefix(action) + encoder.encodeToString(bytes);
+        } else {
+            data = prefix(action) + TEXT_PAYLOAD + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        }
+        if (data.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Callback payload is too long: " + payload);
+        }
+        return data;
+    }
+
+    /**
+     * Начало callback_data действия: по нему можно найти кнопку в клавиатуре
+     */
+    public static String prefix(CallbackAction action) {
+        return new String(new char[]{VERSION, action.code()});
+    }
+
+    /**
+     * @return Действие или null, если кнопка из старой версии или код неизвестен
+     */
+    public static CallbackAction action(String data) {
+        if (data == null || data.length() < 2) {
+            return null;
+        }
+        if (data.charAt(0) != VERSION) {
+            return legacyAction(data);
+        }
+        return CallbackAction.byCode(data.charAt(1));
+    }
+
+    /**
+     * @return Параметр кнопки или null, если его нет или он не разбирается
+     */
+    public static String payload(String data) {
+        if (data == null || data.length() <= 2) {
+            return null;
+        }
+        if (data.charAt(0) != VERSION) {
+            CallbackAction legacy = legacyAction(data);
+            return legacy != null ? data.substring(legacy.id().length() + 1) : null;
+        }
+        if (data.charAt(2) == TEXT_PAYLOAD) {
+            try {
+                return new String(Base64.getUrlDecoder().decode(data.substring(3)), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (data.length() != 2 + UUID_CHARS) {
+            return null;
+        }
+        // 21 символ дают 126 бит, от последнего берутся старшие 2 бита из 6
+        long hi = 0;
+        long lo = 0;
+        for (int i = 2; i < 2 + UUID_CHARS; i++) {
+            int sextet = sextet(data.charAt(i));
+            if (sextet < 0) {
+                return null;
+            }
+            if (i < 2 + UUID_CHARS - 1) {
+                hi = (hi << 6) | (lo >>> 58);
+                lo = (lo << 6) | sextet;
+            } else {
+                hi = (hi << 2) | (lo >>> 62);
+                lo = (lo << 2) | (sextet >>> 4);
+            }
+        }
+        return new UUID(hi, lo).toString();
+    }
+
+    // check_payment:id → CHECK_PAYMENT; пустой id не подходит
+    private static CallbackAction legacyAction(String data) {
+        for (CallbackAction action : LEGACY_ACTIONS) {
+            String id = action.id();
+            if (data.length() > id.length() + 1 && data.startsWith(id)
+                    && data.charAt(id.length()) == LEGACY_SEPARATOR) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    private static int sextet(char c) {
+        return c < SEXTETS.length ? SEXTETS[c] : -1;
+    }
+
+    // UUID, только если строка — его каноническая запись: иначе после разбора вернулась бы другая строка
+    private static UUID canonicalUuid(String value) {
+        if (value.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.callbacks;
+
+/**
+ * Обработчик нажатия кнопки
+ *
+ * @param <C> Контекст нажатия (чат, пользователь, язык), его собирает вызывающий код
+ */
+@FunctionalInterface
+public interface CallbackHandler<C> {
+
+    /**
+     * @param payload Параметр кнопки или null, если у действия его нет
+     */
+    void handle(C context, String payload);
+}
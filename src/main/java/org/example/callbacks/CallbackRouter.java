@@ -0,0 +1,49 @@
+package org.example.callbacks;
+
+/**
+ * Разбор нажатий inline-кнопок. Действие находится по коду из таблицы, обработчик — по ordinal из массива,
+ * так что цепочки startsWith и switch по строкам нет. Новая кнопка — константа в CallbackAction и register().
+ *
+ * @param <C> Контекст нажатия, который получают обработчики
+ */
+public class CallbackRouter<C> {
+
+    public enum Result {
+        HANDLED,
+        // Кнопка из старой версии бота или с испорченными данными
+        STALE,
+        // Действие известно, но обработчик не зарегистрирован
+        UNHANDLED
+    }
+
+    @SuppressWarnings("unchecked")
+    private final CallbackHandler<C>[] handlers = new CallbackHandler[CallbackAction.values().length];
+
+    public CallbackRouter<C> register(CallbackAction action, CallbackHandler<C> handler) {
+        if (handlers[action.ordinal()] != null) {
+            throw new IllegalStateException("Callback " + action.id() + " is already registered");
+        }
+        handlers[action.ordinal()] = handler;
+        return this;
+    }
+
+    public Result dispatch(String data, C context) {
+        CallbackAction action = CallbackCodec.action(data);
+        if (action == null) {
+            return Result.STALE;
+        }
+        CallbackHandler<C> handler = handlers[action.ordinal()];
+        if (handler == null) {
+            return Result.UNHANDLED;
+        }
+        String payload = null;
+        if (action.hasPayload()) {
+            payload = CallbackCodec.payload(data);
+            if (payload == null) {
+                return Result.STALE;
+            }
+        }
+        handler.handle(context, payload);
+        return Result.HANDLED;
+    }
+}
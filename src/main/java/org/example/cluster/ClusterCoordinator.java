@@ -0,0 +1,343 @@
+package org.example.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.example.config.ClusterConfig;
+import org.example.db.ClusterRepository;
+import org.example.db.QueuedUpdate;
+import org.example.logic.BotLogic;
+import org.example.updates.BotUpdate;
+import org.example.updates.BotUpdateCodec;
+import org.example.updates.LongPollUpdateSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Кластерный режим: Telegram отдает getUpdates только одному потребителю на токен,
+ * поэтому опрашивает лишь экземпляр, держащий аренду "leader", и складывает апдейты в общую очередь в базе.
+ * Очередь поделена на партиции по chat_id; каждый экземпляр арендует свою долю партиций и обрабатывает их апдейты.
+ *
+ * Если лидер перестал продлевать аренду, через bot.cluster.leaseSeconds ее забирает другой экземпляр
+ * и продолжает опрос с offset, сохраненного в аренде. Партиции упавшего экземпляра так же переходят к живым.
+ * Гарантия — "хотя бы один раз": апдейт, обработанный, но не удаленный из очереди до падения, обработается повторно.
+ */
+@Component
+public class ClusterCoordinator {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+    private static final String LEADER_LEASE = "leader";
+    private static final String MEMBER_PREFIX = "member-";
+    private static final String PARTITION_PREFIX = "partition-";
+
+    private final ClusterConfig config;
+    private final ClusterRepository repository;
+    private final LongPollUpdateSource updateSource;
+    private final BotLogic botLogic;
+    private final String instanceId;
+
+    // Партиции, которые мы держим, и те из них, что worker должен отдать на границе пачки
+    private final Set<Integer> owned = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> releasing = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService leaseScheduler;
+    private Thread worker;
+    private volatile boolean running;
+    private volatile boolean leader;
+    private volatile long lastRenewedAt;
+
+    public ClusterCoordinator(ClusterConfig config, ClusterRepository repository,
+                              LongPollUpdateSource updateSource, BotLogic botLogic) {
+        this.config = config;
+        this.repository = repository;
+        this.updateSource = updateSource;
+        this.botLogic = botLogic;
+        this.instanceId = config.resolveInstanceId();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        leaseScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "cluster-leases"));
+        leaseScheduler.scheduleWithFixedDelay(this::renewLeases, 0, config.getRenewSeconds(), TimeUnit.SECONDS);
+
+        worker = new Thread(this::consumeLoop, "cluster-queue-worker");
+        worker.start();
+        logger.info("Cluster member {} started ({} partitions, lease {}s)",
+                instanceId, config.getPartitions(), config.getLeaseSeconds());
+    }
+
+    @PreDestroy
+    public void stop() {
+        stop(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Сначала лидер перестает забирать апдейты у Telegram, затем worker дорабатывает текущий апдейт.
+     * Необработанное остается в очереди и достанется другим экземплярам.
+     *
+     * @param timeoutMs Сколько ждать опрос и worker
+     */
+    public synchronized void stop(long timeoutMs) {
+        if (!running) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        running = false;
+        if (leader) {
+            updateSource.stop(timeoutMs);
+        }
+        leaseScheduler.shutdownNow();
+        try {
+            leaseScheduler.awaitTermination(5, TimeUnit.SECONDS);
+            worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Отдаем аренды сразу, чтобы другие экземпляры не ждали их истечения
+        try {
+            stepDown();
+            for (Integer partition : owned) {
+                repository.releaseLease(PARTITION_PREFIX + partition, instanceId);
+            }
+            repository.releaseLease(MEMBER_PREFIX + instanceId, instanceId);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to release cluster leases: {}", e.getMessage());
+        }
+        owned.clear();
+        releasing.clear();
+        logger.info("Cluster member {} stopped", instanceId);
+    }
+
+    private void renewLeases() {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + TimeUnit.SECONDS.toMillis(config.getLeaseSeconds());
+        try {
+            repository.tryAcquireLease(MEMBER_PREFIX + instanceId, instanceId, now, expiresAt);
+            renewLeadership(now, expiresAt);
+            balancePartitions(now, expiresAt);
+            lastRenewedAt = now;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to renew cluster leases: {}", e.getMessage());
+            // Аренды вот-вот истекут: другой экземпляр может их забрать, поэтому перестаем ими пользоваться заранее
+            long safeMs = TimeUnit.SECONDS.toMillis(config.getLeaseSeconds() - config.getRenewSeconds());
+            if (now - lastRenewedAt >= safeMs) {
+                stepDown();
+                owned.clear();
+                releasing.clear();
+            }
+        }
+    }
+
+    private void renewLeadership(long now, long expiresAt) {
+        boolean acquired = repository.tryAcquireLease(LEADER_LEASE, instanceId, now, expiresAt);
+        if (acquired && !leader) {
+            leader = true;
+            try {
+                updateSource.start(this::enqueue, new ClusterOffsetStore(repository, LEADER_LEASE, instanceId));
+                logger.info("Instance {} became leader and started polling", instanceId);
+            } catch (IOException e) {
+                logger.error("Failed to start polling as leader: {}", e.getMessage());
+                leader = false;
+                repository.releaseLease(LEADER_LEASE, instanceId);
+            }
+        } else if (!acquired && leader) {
+            logger.warn("Instance {} lost leadership", instanceId);
+            stepDown();
+        }
+    }
+
+    private void stepDown() {
+        if (!leader) {
+            return;
+        }
+        leader = false;
+        updateSource.stop();
+        repository.releaseLease(LEADER_LEASE, instanceId);
+    }
+
+    /**
+     * Держим не больше ceil(partitions / живых экземпляров) партиций: лишние отдаем, свободные и истекшие забираем
+     */
+    private void balancePartitions(long now, long expiresAt) {
+        int partitions = config.getPartitions();
+        long members = Math.max(1, repository.countLiveLeases(MEMBER_PREFIX, now));
+        int fairShare = (int) ((partitions + members - 1) / members);
+
+        for (Integer partition : owned) {
+            if (!repository.tryAcquireLease(PARTITION_PREFIX + partition, instanceId, now, expiresAt)) {
+                logger.warn("Partition {} was taken over by another instance", partition);
+                owned.remove(partition);
+                releasing.remove(partition);
+            }
+        }
+
+        int kept = owned.size() - releasing.size();
+        for (Integer partition : owned) {
+            if (kept <= fairShare) {
+                break;
+            }
+            if (releasing.add(partition)) {
+                kept--;
+            }
+        }
+
+        // Начинаем перебор с разных партиций, чтобы экземпляры не толкались за одни и те же
+        int first = Math.floorMod(instanceId.hashCode(), partitions);
+        for (int i = 0; i < partitions && kept < fairShare; i++) {
+            int partition = (first + i) % partitions;
+            if (!owned.contains(partition)
+                    && repository.tryAcquireLease(PARTITION_PREFIX + partition, instanceId, now, expiresAt)) {
+                owned.add(partition);
+                kept++;
+            }
+        }
+    }
+
+    /**
+     * Обработчик для LongPollUpdateSource лидера. Offset сдвинется только после того, как апдейт лег в очередь,
+     * поэтому при ошибке базы повторяем, пока мы лидер.
+     */
+    private void enqueue(BotUpdate update) {
+        if (!update.isMessage() && !update.isCallback()) {
+            return;
+        }
+        int partition = Math.floorMod(update.chatId(), config.getPartitions());
+        byte[] payload = BotUpdateCodec.encode(update);
+        while (leader) {
+            try {
+                repository.enqueue(update.updateId(), partition, payload);
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to enqueue update {}, retrying: {}", update.updateId(), e.getMessage());
+                if (!pause(config.getPollIntervalMs())) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void consumeLoop() {
+        while (running) {
+            try {
+                releasePending();
+                List<Integer> partitions = new ArrayList<>(owned);
+                partitions.removeAll(releasing);
+                if (partitions.isEmpty()) {
+                    if (!pause(config.getPollIntervalMs())) {
+                        return;
+                    }
+                    continue;
+                }
+
+                List<QueuedUpdate> batch = repository.fetchBatch(partitions, config.getBatchSize());
+                if (batch.isEmpty() && !pause(config.getPollIntervalMs())) {
+                    return;
+                }
+                // Пачка уходит в пул обработки целиком, чтобы приоритеты работали между чатами; апдейт чата ставится
+                // в пул только после предыдущего апдейта того же чата, так что внутри чата порядок сохраняется.
+                // Следующая пачка читается, когда строки этой удалены, иначе fetchBatch вернул бы их снова
+                Map<Long, CompletableFuture<Void>> lastByChat = new HashMap<>();
+                List<CompletableFuture<Void>> processing = new ArrayList<>(batch.size());
+                for (QueuedUpdate queued : batch) {
+                    if (!running || !owned.contains(queued.getPartition())) {
+                        break;
+                    }
+                    BotUpdate update = BotUpdateCodec.decode(queued.getUpdateId(), queued.getPayload());
+                    CompletableFuture<Void> previous = lastByChat.get(update.chatId());
+                    CompletableFuture<Void> next = previous == null
+                            ? process(queued, update)
+                            : previous.handle((ignored, error) -> null).thenCompose(ignored -> process(queued, update));
+                    lastByChat.put(update.chatId(), next);
+                    processing.add(next);
+                }
+                awaitBatch(processing);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to read update queue: {}", e.getMessage());
+                if (!pause(config.getPollIntervalMs())) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<Void> process(QueuedUpdate queued, BotUpdate update) {
+        CompletableFuture<Void> handled;
+        try {
+            handled = botLogic.handleQueuedUpdate(update);
+        } catch (RuntimeException e) {
+            logger.error("Failed to handle queued update {}: {}", update.updateId(), e.getMessage(), e);
+            handled = CompletableFuture.completedFuture(null);
+        }
+        return handled.thenRun(() -> repository.remove(queued.getId()));
+    }
+
+    /**
+     * Ждет каждый апдейт пачки, даже если какой-то уже завершился ошибкой: пока не удалены все строки, следующая
+     * пачка вернула бы еще обрабатываемые апдейты второй раз. При остановке не ждет дольше интервала опроса:
+     * цикл чтения на этом заканчивается, необработанные строки останутся в очереди
+     */
+    private void awaitBatch(List<CompletableFuture<Void>> processing) {
+        for (CompletableFuture<Void> future : processing) {
+            while (true) {
+                try {
+                    future.get(config.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (!running) {
+                        return;
+                    }
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to remove processed update from the queue: {}", e.getCause().getMessage());
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void releasePending() {
+        for (Integer partition : releasing) {
+            repository.releaseLease(PARTITION_PREFIX + partition, instanceId);
+            owned.remove(partition);
+            releasing.remove(partition);
+            logger.info("Released partition {} for rebalancing", partition);
+        }
+    }
+
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.cluster;
+
+import java.io.IOException;
+
+import org.example.db.ClusterRepository;
+import org.example.updates.OffsetStore;
+
+/**
+ * Offset getUpdates хранится в аренде лидера, чтобы новый лидер продолжил с того же места.
+ * Записать его может только текущий владелец аренды.
+ */
+final class ClusterOffsetStore implements OffsetStore {
+    private final ClusterRepository repository;
+    private final String leaseName;
+    private final String owner;
+
+    ClusterOffsetStore(ClusterRepository repository, String leaseName, String owner) {
+        this.repository = repository;
+        this.leaseName = leaseName;
+        this.owner = owner;
+    }
+
+    @Override
+    public long load() {
+        return repository.loadCursor(leaseName);
+    }
+
+    @Override
+    public void commit(long offset) throws IOException {
+        if (!repository.commitCursor(leaseName, owner, offset)) {
+            throw new IOException("Leader lease is no longer held by " + owner);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Соединениями управляет пул базы
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.analytics")
+public class AnalyticsConfig {
+    private boolean enabled = true;
+    // Каталог с файлами событий, по файлу на день
+    private String dir = "events";
+    // Очередь событий перед записью; если писатель не успевает, лишние события отбрасываются
+    private int queueSize = 65536;
+    // Сколько последних дней разрешено запрашивать командой /analytics
+    private int maxReportDays = 90;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getMaxReportDays() {
+        return maxReportDays;
+    }
+
+    public void setMaxReportDays(int maxReportDays) {
+        this.maxReportDays = maxReportDays;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.backup")
+public class BackupConfig {
+    // Резервные копии делаются только для SQLite; для PostgreSQL — pg_dump
+    private boolean enabled = true;
+    // Каталог со сжатыми копиями
+    private String dir = "backups";
+    // Период копирования, минут
+    private int intervalMinutes = 360;
+    // Сколько последних копий хранить
+    private int keep = 14;
+    // Страниц за шаг копирования; между шагами база свободна для записи (в режиме WAL копируется за один шаг)
+    private int pagesPerStep = 256;
+    // Пауза между шагами, чтобы ожидающие записи успели пройти
+    private long stepPauseMs = 20;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public int getIntervalMinutes() {
+        return intervalMinutes;
+    }
+
+    public void setIntervalMinutes(int intervalMinutes) {
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    public int getKeep() {
+        return keep;
+    }
+
+    public void setKeep(int keep) {
+        this.keep = keep;
+    }
+
+    public int getPagesPerStep() {
+        return pagesPerStep;
+    }
+
+    public void setPagesPerStep(int pagesPerStep) {
+        this.pagesPerStep = pagesPerStep;
+    }
+
+    public long getStepPauseMs() {
+        return stepPauseMs;
+    }
+
+    public void setStepPauseMs(long stepPauseMs) {
+        this.stepPauseMs = stepPauseMs;
+    }
+}
@@ -1,5 +1,10 @@
 package org.example.config;
 
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.example.tenancy.TenantContext;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -9,6 +14,19 @@ public class BotConfig {
     private String token;
     public String username;
     public String nickname;
+    // Базовый адрес Bot API: публичный сервер или свой telegram-bot-api (http://localhost:8081), /bot можно не писать
+    private String apiUrl = "https://api.telegram.org/bot";
+    // Свой сервер запущен с --local и видит каталог bot.media.dir: картинки передаются путем file://, без загрузки
+    private boolean localApi = false;
+    // Языки сообщений (бандлы messages/bot_<язык>.properties) и язык для остальных пользователей
+    private List<String> locales = List.of("ru", "en");
+    private String defaultLocale = "ru";
+    // Telegram ID администраторов: им доступны служебные команды (/analytics)
+    private List<Long> adminIds = List.of();
+    // Цена ключа за одну оплату, рублей
+    private BigDecimal price = new BigDecimal("100.00");
+    // Арендатор, чьи строки в базе видит бот; задается только ботам из bot.tenancy.tenants
+    private String tenant = TenantContext.DEFAULT;
 
     public String getNickname() {
         return nickname;
@@ -33,4 +51,68 @@ public class BotConfig {
     public void setUsername(String username) {
         this.username = username;
     }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public void setApiUrl(String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
+
+    /**
+     * Адрес, к которому дописываются токен и метод: apiUrl с /bot на конце
+     */
+    public String botApiUrl() {
+        String url = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        return url.endsWith("/bot") ? url : url + "/bot";
+    }
+
+    public boolean isLocalApi() {
+        return localApi;
+    }
+
+    public void setLocalApi(boolean localApi) {
+        this.localApi = localApi;
+    }
+
+    public List<String> getLocales() {
+        return locales;
+    }
+
+    public void setLocales(List<String> locales) {
+        this.locales = locales;
+    }
+
+    public String getDefaultLocale() {
+        return defaultLocale;
+    }
+
+    public void setDefaultLocale(String defaultLocale) {
+        this.defaultLocale = defaultLocale;
+    }
+
+    public List<Long> getAdminIds() {
+        return adminIds;
+    }
+
+    public void setAdminIds(List<Long> adminIds) {
+        this.adminIds = adminIds;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
 }
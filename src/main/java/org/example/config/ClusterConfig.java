@@ -0,0 +1,96 @@
+package org.example.config;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.cluster")
+public class ClusterConfig {
+    // Несколько экземпляров над одной базой: опрашивает только лидер, обрабатывают все
+    private boolean enabled = false;
+    // Имя экземпляра в арендах; если пусто — хост и pid
+    private String instanceId = "";
+    // Через сколько секунд без продления аренду может забрать другой экземпляр
+    private int leaseSeconds = 30;
+    // Как часто продлевать аренды
+    private int renewSeconds = 5;
+    // Число партиций очереди (апдейты одного чата всегда в одной партиции)
+    private int partitions = 16;
+    // Пауза между опросами очереди, когда она пуста
+    private long pollIntervalMs = 200;
+    // Сколько апдейтов забирать из очереди за раз
+    private int batchSize = 50;
+
+    public String resolveInstanceId() {
+        if (instanceId != null && !instanceId.isBlank()) {
+            return instanceId;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getPid();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    public int getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    public void setLeaseSeconds(int leaseSeconds) {
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    public int getRenewSeconds() {
+        return renewSeconds;
+    }
+
+    public void setRenewSeconds(int renewSeconds) {
+        this.renewSeconds = renewSeconds;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.export")
+public class ExportConfig {
+    // Сколько строк драйвер забирает из базы за один раз
+    private int fetchSize = 500;
+    // Сколько строк читается в одной транзакции; между порциями блокировки базы отпускаются и записи бота проходят
+    private int chunkRows = 5000;
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    public void setChunkRows(int chunkRows) {
+        this.chunkRows = chunkRows;
+    }
+}
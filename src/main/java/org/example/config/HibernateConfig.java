@@ -1,32 +1,61 @@
 package org.example.config;
 
+import org.example.db.TenantMigration;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.JpaVendorAdapter;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.persistence.EntityManagerFactory;
+
 import javax.sql.DataSource;
 import java.util.Properties;
 
+/**
+ * Хранилище выбирается свойством bot.database.backend: sqlite (по умолчанию) или postgresql.
+ * Драйвер и диалект берутся по бэкенду, если не заданы явно в spring.datasource.driver-class-name
+ * и spring.jpa.database-platform. Соединения — из пула HikariCP.
+ */
 @Configuration
 @EnableTransactionManagement
 public class HibernateConfig {
+    public static final String SQLITE = "sqlite";
+    public static final String POSTGRESQL = "postgresql";
 
     @Autowired
     private Environment env;
 
     @Bean
     public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(env.getProperty("spring.datasource.driver-class-name"));
-        dataSource.setUrl(env.getProperty("spring.datasource.url"));
-        return dataSource;
+        String backend = backend();
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("vpn-bot-" + backend);
+        config.setDriverClassName(env.getProperty("spring.datasource.driver-class-name",
+                SQLITE.equals(backend) ? "org.sqlite.JDBC" : "org.postgresql.Driver"));
+        config.setJdbcUrl(env.getRequiredProperty("spring.datasource.url"));
+        config.setUsername(env.getProperty("spring.datasource.username"));
+        config.setPassword(env.getProperty("spring.datasource.password"));
+        // SQLite все равно пишет в один поток, большой пул там только множит ожидание блокировки
+        config.setMaximumPoolSize(env.getProperty("bot.database.maxPoolSize", Integer.class,
+                SQLITE.equals(backend) ? 4 : 10));
+        config.setConnectionTimeout(env.getProperty("bot.database.connectionTimeoutMs", Long.class, 30_000L));
+        if (SQLITE.equals(backend)) {
+            // Ждать занятую базу вместо немедленного SQLITE_BUSY (несколько соединений или экземпляров)
+            config.addDataSourceProperty("busy_timeout", env.getProperty("bot.database.busyTimeoutMs", "5000"));
+            // Транзакция сразу берет блокировку записи: иначе два соединения, прочитавшие строку, не могут
+            // одновременно поднять блокировку до записи, и SQLite отвечает SQLITE_BUSY, не дожидаясь busy_timeout
+            config.addDataSourceProperty("transaction_mode", "IMMEDIATE");
+        }
+        return new HikariDataSource(config);
     }
 
     @Bean
@@ -35,8 +64,15 @@ public class HibernateConfig {
         em.setDataSource(dataSource());
         em.setPackagesToScan("org.example.db");
         
-        // Создаем и настраиваем JPA адаптер для Hibernate
-        JpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        // Создаем и настраиваем JPA адаптер для Hibernate. Перенос базы на арендаторов идет сразу после обновления схемы,
+        // в том же потоке сборки (при backgroundBootstrap — в фоне), поэтому первый запрос уже видит перенесенные данные
+        JpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public void postProcessEntityManagerFactory(EntityManagerFactory emf) {
+                super.postProcessEntityManagerFactory(emf);
+                TenantMigration.run(emf);
+            }
+        };
         em.setJpaVendorAdapter(vendorAdapter);
         
         // Устанавливаем дополнительные свойства Hibernate
@@ -44,23 +80,56 @@ public class HibernateConfig {
         
         // Явно устанавливаем интерфейс EntityManagerFactory
         em.setEntityManagerFactoryInterface(jakarta.persistence.EntityManagerFactory.class);
-        
+
+        // Hibernate со сканированием сущностей и hbm2ddl собирается в фоне, пока поднимается остальной контекст;
+        // первое обращение к EntityManager дождется конца сборки. Ошибка схемы при этом всплывет не при старте, а при первом запросе
+        if (env.getProperty("bot.database.backgroundBootstrap", Boolean.class, false)) {
+            SimpleAsyncTaskExecutor bootstrapExecutor = new SimpleAsyncTaskExecutor("jpa-bootstrap-");
+            bootstrapExecutor.setDaemon(true);
+            em.setBootstrapExecutor(bootstrapExecutor);
+        }
+
         return em;
     }
 
     private Properties hibernateProperties() {
+        String backend = backend();
         Properties properties = new Properties();
-        properties.put("hibernate.dialect", env.getProperty("spring.jpa.database-platform"));
-        properties.put("hibernate.show_sql", env.getProperty("spring.jpa.show-sql"));
-        properties.put("hibernate.format_sql", env.getProperty("spring.jpa.properties.hibernate.format_sql"));
-        properties.put("hibernate.hbm2ddl.auto", env.getProperty("spring.jpa.hibernate.ddl-auto"));
+        properties.put("hibernate.dialect", env.getProperty("spring.jpa.database-platform",
+                SQLITE.equals(backend)
+                        ? "org.hibernate.community.dialect.SQLiteDialect"
+                        : "org.hibernate.dialect.PostgreSQLDialect"));
+        properties.put("hibernate.show_sql", env.getProperty("spring.jpa.show-sql", "false"));
+        properties.put("hibernate.format_sql", env.getProperty("spring.jpa.properties.hibernate.format_sql", "false"));
+        properties.put("hibernate.hbm2ddl.auto", env.getProperty("spring.jpa.hibernate.ddl-auto", "update"));
+
+        // Пакетные вставки и обновления; для сущностей с IDENTITY (очередь кластера, история ключей) Hibernate вставляет по одной
+        properties.put("hibernate.jdbc.batch_size", env.getProperty("bot.database.batchSize", "50"));
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.order_updates", "true");
         return properties;
     }
 
+    /**
+     * @return {@link #SQLITE} или {@link #POSTGRESQL}
+     */
+    public String backend() {
+        String backend = env.getProperty("bot.database.backend");
+        if (backend == null || backend.isBlank()) {
+            String url = env.getProperty("spring.datasource.url", "");
+            return url.startsWith("jdbc:postgresql:") ? POSTGRESQL : SQLITE;
+        }
+        backend = backend.trim().toLowerCase();
+        if (!SQLITE.equals(backend) && !POSTGRESQL.equals(backend)) {
+            throw new IllegalStateException("Unsupported bot.database.backend: " + backend);
+        }
+        return backend;
+    }
+
     @Bean
     public JpaTransactionManager transactionManager() {
         JpaTransactionManager transactionManager = new JpaTransactionManager();
         transactionManager.setEntityManagerFactory(entityManagerFactory().getObject());
         return transactionManager;
     }
-}
\ No newline at end of file
+}
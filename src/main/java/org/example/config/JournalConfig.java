@@ -0,0 +1,58 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.journal")
+public class JournalConfig {
+    private boolean enabled = true;
+    // Каталог с сегментами журнала
+    private String dir = "journal";
+    // Размер одного сегмента, после заполнения открывается следующий
+    private int segmentSizeBytes = 4 * 1024 * 1024;
+    // Сбрасывать страницы на диск после каждой записи. Нужно только против отключения питания, стоит миллисекунды
+    private boolean syncOnAppend = false;
+    // Сколько последних update_id помнить, чтобы отбрасывать повторные доставки. Переживает перезапуск
+    private int dedupeWindow = 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public int getSegmentSizeBytes() {
+        return segmentSizeBytes;
+    }
+
+    public void setSegmentSizeBytes(int segmentSizeBytes) {
+        this.segmentSizeBytes = segmentSizeBytes;
+    }
+
+    public boolean isSyncOnAppend() {
+        return syncOnAppend;
+    }
+
+    public void setSyncOnAppend(boolean syncOnAppend) {
+        this.syncOnAppend = syncOnAppend;
+    }
+
+    public int getDedupeWindow() {
+        return dedupeWindow;
+    }
+
+    public void setDedupeWindow(int dedupeWindow) {
+        this.dedupeWindow = dedupeWindow;
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.media")
+public class MediaConfig {
+    // Каталог со статическими картинками: подкаталог на группу, например media/instructions/android.png
+    private String dir = "media";
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.polling")
+public class PollingConfig {
+    // library — DefaultBotSession из telegrambots, lean — LongPollUpdateSource поверх OkHttp
+    private String source = "library";
+    // Сколько секунд Telegram держит getUpdates, если апдейтов нет
+    private int timeoutSeconds = 50;
+    // Сколько апдейтов забирать за один запрос (максимум у Telegram — 100)
+    private int limit = 100;
+    // Файл с offset последнего обработанного апдейта
+    private String offsetFile = "update_offset.bin";
+
+    public boolean isLeanSource() {
+        return "lean".equalsIgnoreCase(source);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public String getOffsetFile() {
+        return offsetFile;
+    }
+
+    public void setOffsetFile(String offsetFile) {
+        this.offsetFile = offsetFile;
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.qr")
+public class QrConfig {
+    // Сторона картинки в пикселях
+    private int sizePx = 512;
+    // Сколько готовых PNG держать в памяти до загрузки в Telegram
+    private int cacheSize = 256;
+    // Потоки рендера и загрузки; обработка апдейтов их не ждет
+    private int renderThreads = 2;
+    // Очередь на рендер; если заполнена, пользователь получит просьбу повторить позже
+    private int queueSize = 64;
+
+    public int getSizePx() {
+        return sizePx;
+    }
+
+    public void setSizePx(int sizePx) {
+        this.sizePx = sizePx;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getRenderThreads() {
+        return renderThreads;
+    }
+
+    public void setRenderThreads(int renderThreads) {
+        this.renderThreads = renderThreads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.ratelimit")
+public class RateLimitConfig {
+    private boolean enabled = true;
+    // На сколько независимых частей поделена таблица корзин (степень двойки)
+    private int stripes = 16;
+    // Корзина пользователя, который столько секунд ничего не делал, удаляется
+    private int idleEvictSeconds = 600;
+
+    // Меню, инструкция, показ ключа: дешевые действия
+    private Budget menu = new Budget(20, 2.0);
+    // Создание и отмена платежа: каждое нажатие — запрос в ЮKassa
+    private Budget payment = new Budget(3, 0.05);
+    // Проверка оплаты: запрос в ЮKassa и, возможно, создание пользователя в Hiddify
+    private Budget provisioning = new Budget(5, 0.1);
+    // Как часто напоминать пользователю, что он упирается в лимит
+    private Budget notice = new Budget(1, 1.0 / 30);
+
+    /**
+     * Корзина: capacity запросов подряд, дальше — refillPerSecond запросов в секунду
+     */
+    public static class Budget {
+        private int capacity;
+        private double refillPerSecond;
+
+        public Budget() {
+        }
+
+        public Budget(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    public int getIdleEvictSeconds() {
+        return idleEvictSeconds;
+    }
+
+    public void setIdleEvictSeconds(int idleEvictSeconds) {
+        this.idleEvictSeconds = idleEvictSeconds;
+    }
+
+    public Budget getMenu() {
+        return menu;
+    }
+
+    public void setMenu(Budget menu) {
+        this.menu = menu;
+    }
+
+    public Budget getPayment() {
+        return payment;
+    }
+
+    public void setPayment(Budget payment) {
+        this.payment = payment;
+    }
+
+    public Budget getProvisioning() {
+        return provisioning;
+    }
+
+    public void setProvisioning(Budget provisioning) {
+        this.provisioning = provisioning;
+    }
+
+    public Budget getNotice() {
+        return notice;
+    }
+
+    public void setNotice(Budget notice) {
+        this.notice = notice;
+    }
+}
@@ -0,0 +1,190 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.resilience")
+public class ResilienceConfig {
+    private UpstreamSettings hiddify = new UpstreamSettings(8_000);
+    private UpstreamSettings yookassa = new UpstreamSettings(5_000);
+
+    /**
+     * Ограничения для одного внешнего сервиса: свой пул потоков и свой автомат-предохранитель
+     */
+    public static class UpstreamSettings {
+        // Сколько запросов к сервису одновременно
+        private int maxConcurrent = 8;
+        // Сколько запросов может ждать свободный поток; остальные сразу получают отказ
+        private int queueSize = 16;
+        // Сколько обработчик ждет ответа, прежде чем считать вызов неудачным
+        private long callTimeoutMs;
+        // По скольким последним вызовам считается доля ошибок
+        private int slidingWindowSize = 20;
+        // Меньше вызовов в окне — предохранитель не срабатывает
+        private int minimumCalls = 5;
+        // Доля ошибок в процентах, при которой предохранитель размыкается
+        private int failureRateThreshold = 50;
+        // Сколько секунд после размыкания запросы отклоняются сразу
+        private int openSeconds = 30;
+        // Сколько пробных запросов пропустить после паузы; все успешны — предохранитель замыкается
+        private int halfOpenProbes = 2;
+
+        // Для идемпотентных чтений: повторить запрос, если ответа нет дольше p95
+        private boolean hedgeEnabled = true;
+        // Повторы — не больше этого процента от обычных вызовов
+        private int hedgeBudgetPercent = 10;
+        // Раньше этого не повторять, даже если p95 меньше
+        private long hedgeMinDelayMs = 50;
+        // Таймаут идемпотентного чтения — p99 окна, умноженный на это число, но не меньше minTimeoutMs и не больше callTimeoutMs
+        private double timeoutMultiplier = 3.0;
+        private long minTimeoutMs = 1_000;
+        // За сколько последних секунд считаются перцентили и сколько замеров для этого нужно
+        private int latencyWindowSeconds = 60;
+        private int latencyMinSamples = 20;
+
+        public UpstreamSettings() {
+            this(10_000);
+        }
+
+        public UpstreamSettings(long callTimeoutMs) {
+            this.callTimeoutMs = callTimeoutMs;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public long getCallTimeoutMs() {
+            return callTimeoutMs;
+        }
+
+        public void setCallTimeoutMs(long callTimeoutMs) {
+            this.callTimeoutMs = callTimeoutMs;
+        }
+
+        public int getSlidingWindowSize() {
+            return slidingWindowSize;
+        }
+
+        public void setSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public int getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getOpenSeconds() {
+            return openSeconds;
+        }
+
+        public void setOpenSeconds(int openSeconds) {
+            this.openSeconds = openSeconds;
+        }
+
+        public int getHalfOpenProbes() {
+            return halfOpenProbes;
+        }
+
+        public void setHalfOpenProbes(int halfOpenProbes) {
+            this.halfOpenProbes = halfOpenProbes;
+        }
+
+        public boolean isHedgeEnabled() {
+            return hedgeEnabled;
+        }
+
+        public void setHedgeEnabled(boolean hedgeEnabled) {
+            this.hedgeEnabled = hedgeEnabled;
+        }
+
+        public int getHedgeBudgetPercent() {
+            return hedgeBudgetPercent;
+        }
+
+        public void setHedgeBudgetPercent(int hedgeBudgetPercent) {
+            this.hedgeBudgetPercent = hedgeBudgetPercent;
+        }
+
+        public long getHedgeMinDelayMs() {
+            return hedgeMinDelayMs;
+        }
+
+        public void setHedgeMinDelayMs(long hedgeMinDelayMs) {
+            this.hedgeMinDelayMs = hedgeMinDelayMs;
+        }
+
+        public double getTimeoutMultiplier() {
+            return timeoutMultiplier;
+        }
+
+        public void setTimeoutMultiplier(double timeoutMultiplier) {
+            this.timeoutMultiplier = timeoutMultiplier;
+        }
+
+        public long getMinTimeoutMs() {
+            return minTimeoutMs;
+        }
+
+        public void setMinTimeoutMs(long minTimeoutMs) {
+            this.minTimeoutMs = minTimeoutMs;
+        }
+
+        public int getLatencyWindowSeconds() {
+            return latencyWindowSeconds;
+        }
+
+        public void setLatencyWindowSeconds(int latencyWindowSeconds) {
+            this.latencyWindowSeconds = latencyWindowSeconds;
+        }
+
+        public int getLatencyMinSamples() {
+            return latencyMinSamples;
+        }
+
+        public void setLatencyMinSamples(int latencyMinSamples) {
+            this.latencyMinSamples = latencyMinSamples;
+        }
+    }
+
+    public UpstreamSettings getHiddify() {
+        return hiddify;
+    }
+
+    public void setHiddify(UpstreamSettings hiddify) {
+        this.hiddify = hiddify;
+    }
+
+    public UpstreamSettings getYookassa() {
+        return yookassa;
+    }
+
+    public void setYookassa(UpstreamSettings yookassa) {
+        this.yookassa = yookassa;
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.scheduler")
+public class SchedulerConfig {
+    // Потоки обработки апдейтов; 0 — обрабатывать в потоке получения, без очереди и приоритетов
+    private int threads = 4;
+    // Через сколько миллисекунд ожидания задача поднимается на один класс приоритета
+    private long agingMs = 2000;
+    // Очередь на класс приоритета; при переполнении апдейт обрабатывается в потоке получения, и прием замедляется
+    private int queueCapacity = 1000;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getAgingMs() {
+        return agingMs;
+    }
+
+    public void setAgingMs(long agingMs) {
+        this.agingMs = agingMs;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
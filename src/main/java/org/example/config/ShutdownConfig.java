@@ -0,0 +1,29 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.shutdown")
+public class ShutdownConfig {
+    // Сколько всего ждать начатые обработчики при остановке; должно быть меньше, чем оркестратор ждет до SIGKILL
+    private int deadlineSeconds = 25;
+    // Сессия библиотеки останавливается, когда она столько миллисекунд не отдавала апдейтов (их успели отложить в журнал)
+    private long quietMillis = 200;
+
+    public int getDeadlineSeconds() {
+        return deadlineSeconds;
+    }
+
+    public void setDeadlineSeconds(int deadlineSeconds) {
+        this.deadlineSeconds = deadlineSeconds;
+    }
+
+    public long getQuietMillis() {
+        return quietMillis;
+    }
+
+    public void setQuietMillis(long quietMillis) {
+        this.quietMillis = quietMillis;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.stats")
+public class StatsConfig {
+    // Срок действия выданного ключа; по нему считаются активные и истекающие ключи
+    private int keyValidityDays = 30;
+    // Как часто счетчики пересобираются из базы (правки с других узлов кластера, откаченные транзакции); 0 — только при старте
+    private int resyncMinutes = 60;
+
+    public int getKeyValidityDays() {
+        return keyValidityDays;
+    }
+
+    public void setKeyValidityDays(int keyValidityDays) {
+        this.keyValidityDays = keyValidityDays;
+    }
+
+    public int getResyncMinutes() {
+        return resyncMinutes;
+    }
+
+    public void setResyncMinutes(int resyncMinutes) {
+        this.resyncMinutes = resyncMinutes;
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.subscription")
+public class SubscriptionConfig {
+    // Отдавать подписки из процесса бота вместо панели
+    private boolean enabled = false;
+    // Адрес и порт встроенного HTTP-сервера
+    private String bindAddress = "0.0.0.0";
+    private int port = 8090;
+    // Путь, под которым отдаются подписки: {path}/{uuid}[/формат]
+    private String path = "/sub";
+    // Внешний адрес сервера (например, https://sub.example.com); если задан, новые ссылки бот выдает на него
+    private String publicUrl = "";
+    // Сколько конфиг отдается из кеша без похода в панель
+    private int ttlSeconds = 300;
+    // Сколько помнить, что пользователя в панели нет
+    private int notFoundTtlSeconds = 30;
+    // Сколько после истечения TTL еще можно отдавать старый конфиг, если панель не отвечает
+    private int staleIfErrorSeconds = 3600;
+    // Не больше стольких пользователей в кеше
+    private int maxUsers = 20000;
+    // Потоков обработки запросов
+    private int threads = 8;
+    // Предел запроса к панели
+    private long upstreamTimeoutMs = 10000;
+    // Параметры query, которые передаются панели и различают варианты конфига; остальные отбрасываются.
+    // Пусто — query передается как есть
+    private List<String> queryParams = new ArrayList<>();
+    // Не больше стольких вариантов на пользователя: иначе любой, кто знает ссылку, раздует кеш разными query
+    private int maxVariantsPerUser = 16;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    public void setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getPublicUrl() {
+        return publicUrl;
+    }
+
+    public void setPublicUrl(String publicUrl) {
+        this.publicUrl = publicUrl;
+    }
+
+    public int getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public int getNotFoundTtlSeconds() {
+        return notFoundTtlSeconds;
+    }
+
+    public void setNotFoundTtlSeconds(int notFoundTtlSeconds) {
+        this.notFoundTtlSeconds = notFoundTtlSeconds;
+    }
+
+    public int getStaleIfErrorSeconds() {
+        return staleIfErrorSeconds;
+    }
+
+    public void setStaleIfErrorSeconds(int staleIfErrorSeconds) {
+        this.staleIfErrorSeconds = staleIfErrorSeconds;
+    }
+
+    public int getMaxUsers() {
+        return maxUsers;
+    }
+
+    public void setMaxUsers(int maxUsers) {
+        this.maxUsers = maxUsers;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getUpstreamTimeoutMs() {
+        return upstreamTimeoutMs;
+    }
+
+    public void setUpstreamTimeoutMs(long upstreamTimeoutMs) {
+        this.upstreamTimeoutMs = upstreamTimeoutMs;
+    }
+
+    public List<String> getQueryParams() {
+        return queryParams;
+    }
+
+    public void setQueryParams(List<String> queryParams) {
+        this.queryParams = queryParams;
+    }
+
+    public int getMaxVariantsPerUser() {
+        return maxVariantsPerUser;
+    }
+
+    public void setMaxVariantsPerUser(int maxVariantsPerUser) {
+        this.maxVariantsPerUser = maxVariantsPerUser;
+    }
+
+    /**
+     * @return Начало ссылок на подписку через бота или null, если ссылки должны вести прямо в панель
+     */
+    public String linkBase() {
+        if (!enabled || publicUrl == null || publicUrl.isBlank()) {
+            return null;
+        }
+        String base = publicUrl.endsWith("/") ? publicUrl.substring(0, publicUrl.length() - 1) : publicUrl;
+        return base + path;
+    }
+}
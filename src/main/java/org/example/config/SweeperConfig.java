@@ -0,0 +1,119 @@
+package org.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.sweeper")
+public class SweeperConfig {
+    // Фоновая чистка пользователей панели
+    private boolean enabled = true;
+    // Только писать в лог, что было бы сделано; по умолчанию включено, чтобы сначала посмотреть на список
+    private boolean dryRun = true;
+    // Период чистки, минут
+    private int intervalMinutes = 1440;
+    // Что делать с истекшими: disable — выключить (продление включит обратно), delete — удалить и снять ключ в базе
+    private String expiredAction = "disable";
+    // Сколько дней после истечения пользователя не трогать
+    private int graceDays = 3;
+    // Удалять созданных ботом пользователей панели, на которых не ссылается ни один ключ в базе
+    private boolean deleteOrphans = true;
+    // Более свежих сирот не трогать: ключ мог еще не сохраниться в базе
+    private int orphanGraceDays = 2;
+    // Строк на одну страницу: пользователей панели при сверке и ключей при чтении базы
+    private int pageSize = 500;
+    // Запросов к панели в одной пачке
+    private int batchSize = 20;
+    // Пауза между пачками
+    private long batchPauseMs = 1000;
+    // Не больше стольких изменений за одну чистку
+    private int maxActions = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public int getIntervalMinutes() {
+        return intervalMinutes;
+    }
+
+    public void setIntervalMinutes(int intervalMinutes) {
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    public String getExpiredAction() {
+        return expiredAction;
+    }
+
+    public void setExpiredAction(String expiredAction) {
+        this.expiredAction = expiredAction;
+    }
+
+    public int getGraceDays() {
+        return graceDays;
+    }
+
+    public void setGraceDays(int graceDays) {
+        this.graceDays = graceDays;
+    }
+
+    public boolean isDeleteOrphans() {
+        return deleteOrphans;
+    }
+
+    public void setDeleteOrphans(boolean deleteOrphans) {
+        this.deleteOrphans = deleteOrphans;
+    }
+
+    public int getOrphanGraceDays() {
+        return orphanGraceDays;
+    }
+
+    public void setOrphanGraceDays(int orphanGraceDays) {
+        this.orphanGraceDays = orphanGraceDays;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getBatchPauseMs() {
+        return batchPauseMs;
+    }
+
+    public void setBatchPauseMs(long batchPauseMs) {
+        this.batchPauseMs = batchPauseMs;
+    }
+
+    public int getMaxActions() {
+        return maxActions;
+    }
+
+    public void setMaxActions(int maxActions) {
+        this.maxActions = maxActions;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bot.tenancy")
+public class TenancyConfig {
+    // Дополнительные боты в этом процессе; основной бот по-прежнему настраивается через bot.*, hiddify.* и yookassa.*
+    private List<Tenant> tenants = new ArrayList<>();
+
+    public static class Tenant {
+        // Имя арендатора в базе, метриках и файлах: строчная латиница, цифры, - и _
+        private String id;
+        // Токен, имя, цена, языки и свои adminIds бота; администраторы основного бота здесь не действуют
+        private BotConfig bot = new BotConfig();
+        // Своя панель Hiddify
+        private HiddifyConfig hiddify = new HiddifyConfig();
+        // Свой магазин ЮKassa
+        private YooKassaConfig yookassa = new YooKassaConfig();
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public BotConfig getBot() {
+            return bot;
+        }
+
+        public void setBot(BotConfig bot) {
+            this.bot = bot;
+        }
+
+        public HiddifyConfig getHiddify() {
+            return hiddify;
+        }
+
+        public void setHiddify(HiddifyConfig hiddify) {
+            this.hiddify = hiddify;
+        }
+
+        public YooKassaConfig getYookassa() {
+            return yookassa;
+        }
+
+        public void setYookassa(YooKassaConfig yookassa) {
+            this.yookassa = yookassa;
+        }
+    }
+
+    public List<Tenant> getTenants() {
+        return tenants;
+    }
+
+    public void setTenants(List<Tenant> tenants) {
+        this.tenants = tenants;
+    }
+}
@@ -9,6 +9,8 @@ public class YooKassaConfig {
     private String shopID;
     private String secretKey;
     private String returnUrl;
+    // Переопределяется для нагрузочных прогонов против локальной заглушки
+    private String apiUrl = "https://api.yookassa.ru/v3/payments";
 
     public String getShopID() {
         return shopID;
@@ -33,4 +35,12 @@ public class YooKassaConfig {
     public void setReturnUrl(String returnUrl) {
         this.returnUrl = returnUrl;
     }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public void setApiUrl(String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
 }
@@ -0,0 +1,48 @@
+package org.example.db;
+
+import jakarta.persistence.*;
+
+// Аренда в кластерном режиме: лидер, участник кластера или партиция очереди
+
+@Entity
+@Table(name = "cluster_leases")
+public class ClusterLease {
+    @Id
+    @Column(name = "lease_name")
+    private String name;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    // Момент истечения аренды, epoch millis
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+
+    // Для аренды лидера — offset getUpdates, с которого продолжит следующий лидер
+    @Column(name = "update_cursor", nullable = false)
+    private long cursor;
+
+    public ClusterLease() {}
+
+    public ClusterLease(String name, String owner, long expiresAt) {
+        this.name = name;
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.db;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Аренды и общая очередь апдейтов для кластерного режима.
+ * Все решения принимаются условными UPDATE, поэтому работают одинаково для любого числа процессов над одной базой.
+ */
+@Repository
+public class ClusterRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Берет или продлевает аренду, если она свободна, истекла или уже наша
+     *
+     * @return true, если аренда теперь принадлежит owner
+     */
+    @Transactional
+    public boolean tryAcquireLease(String name, String owner, long now, long expiresAt) {
+        int updated = entityManager.createQuery(
+                        "update ClusterLease l set l.owner = :owner, l.expiresAt = :expiresAt " +
+                        "where l.name = :name and (l.owner = :owner or l.expiresAt < :now)")
+                .setParameter("owner", owner)
+                .setParameter("expiresAt", expiresAt)
+                .setParameter("name", name)
+                .setParameter("now", now)
+                .executeUpdate();
+        if (updated > 0) {
+            return true;
+        }
+        if (entityManager.find(ClusterLease.class, name) != null) {
+            return false;
+        }
+        // Аренды еще нет. Если ее одновременно создаст другой узел, commit упадет на первичном ключе
+        entityManager.persist(new ClusterLease(name, owner, expiresAt));
+        entityManager.flush();
+        return true;
+    }
+
+    /**
+     * Отдает аренду досрочно, чтобы ее сразу мог взять другой узел
+     */
+    @Transactional
+    public void releaseLease(String name, String owner) {
+        entityManager.createQuery(
+                        "update ClusterLease l set l.expiresAt = 0 where l.name = :name and l.owner = :owner")
+                .setParameter("name", name)
+                .setParameter("owner", owner)
+                .executeUpdate();
+    }
+
+    @Transactional(readOnly = true)
+    public long countLiveLeases(String namePrefix, long now) {
+        return entityManager.createQuery(
+                        "select count(l) from ClusterLease l where l.name like :prefix and l.expiresAt >= :now", Long.class)
+                .setParameter("prefix", namePrefix + "%")
+                .setParameter("now", now)
+                .getSingleResult();
+    }
+
+    @Transactional(readOnly = true)
+    public long loadCursor(String leaseName) {
+        ClusterLease lease = entityManager.find(ClusterLease.class, leaseName);
+        return lease != null ? lease.getCursor() : 0;
+    }
+
+    /**
+     * Сохраняет offset, только пока owner держит аренду
+     *
+     * @return false, если аренду уже перехватили
+     */
+    @Transactional
+    public boolean commitCursor(String leaseName, String owner, long cursor) {
+        return entityManager.createQuery(
+                        "update ClusterLease l set l.cursor = :cursor where l.name = :name and l.owner = :owner")
+                .setParameter("cursor", cursor)
+                .setParameter("name", leaseName)
+                .setParameter("owner", owner)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Кладет апдейт в очередь, если его там еще нет (новый лидер может получить тот же апдейт повторно)
+     */
+    @Transactional
+    public void enqueue(long updateId, int partition, byte[] payload) {
+        Long existing = entityManager.createQuery(
+                        "select count(q) from QueuedUpdate q where q.updateId = :updateId", Long.class)
+                .setParameter("updateId", updateId)
+                .getSingleResult();
+        if (existing == 0) {
+            entityManager.persist(new QueuedUpdate(updateId, partition, payload, System.currentTimeMillis()));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<QueuedUpdate> fetchBatch(Collection<Integer> partitions, int limit) {
+        return entityManager.createQuery(
+                        "select q from QueuedUpdate q where q.partition in :partitions order by q.id", QueuedUpdate.class)
+                .setParameter("partitions", partitions)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Transactional
+    public void remove(long id) {
+        entityManager.createQuery("delete from QueuedUpdate q where q.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+}
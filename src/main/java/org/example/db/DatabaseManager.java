@@ -1,5 +1,7 @@
 package org.example.db;
 
+import org.example.stats.BotStats;
+import org.example.tenancy.TenantContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -8,8 +10,10 @@ import org.springframework.transaction.annotation.Transactional;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 @Repository
 public class DatabaseManager {
@@ -18,6 +22,12 @@ public class DatabaseManager {
     @PersistenceContext
     private EntityManager entityManager;
 
+    private final BotStats stats;
+
+    public DatabaseManager(BotStats stats) {
+        this.stats = stats;
+    }
+
     /**
      * Добавляет нового пользователя или обновляет существующего
      *
@@ -26,13 +36,14 @@ public class DatabaseManager {
     @Transactional
     public void addUser(long userId) {
         try {
-            User user = entityManager.find(User.class, userId);
+            User user = find(userId);
             if (user == null) {
-                user = new User(userId);
+                user = new User(TenantContext.current(), userId);
                 user.setKey("");
                 user.setData("");
                 logger.info("Adding new user with ID: {}", userId);
                 entityManager.persist(user);
+                stats.userAdded();
             } else {
                 entityManager.merge(user);
             }
@@ -53,20 +64,27 @@ public class DatabaseManager {
     @Transactional
     public void saveVpnKey(long userId, String vpnKey) {
         try {
-            User user = entityManager.find(User.class, userId);
+            User user = find(userId);
+            String previousData = null;
+            LocalDateTime now = LocalDateTime.now();
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             if (user == null) {
-                user = new User(userId);
+                // Ключ и дата заполняются до persist: оба столбца not null
+                user = new User(TenantContext.current(), userId);
+                user.setKey(vpnKey);
+                user.setData(now.format(formatter));
                 logger.info("Creating new user with ID: {} for VPN key", userId);
                 entityManager.persist(user);
+                stats.userAdded();
+            } else {
+                if (user.getKey() != null && !user.getKey().isEmpty()) {
+                    previousData = user.getData();
+                }
+                user.setKey(vpnKey);
+                user.setData(now.format(formatter));
+                entityManager.merge(user);
             }
-
-            user.setKey(vpnKey);
-
-            LocalDateTime now = LocalDateTime.now();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            user.setData(now.format(formatter));
-
-            entityManager.merge(user);
+            stats.keyIssued(previousData, user.getData());
 
             logger.info("VPN key saved for user: {}", userId);
         } catch (Exception e) {
@@ -83,7 +101,7 @@ public class DatabaseManager {
     @Transactional(readOnly = true)
     public String getVpnKey(long userId) {
         try {
-            User user = entityManager.find(User.class, userId);
+            User user = find(userId);
 
             if (user != null && user.getKey() != null && !user.getKey().isEmpty()) {
                 logger.info("Retrieved VPN key for user: {}", userId);
@@ -106,7 +124,7 @@ public class DatabaseManager {
     @Transactional(readOnly = true)
     public String getKeyCreationDate(long userId) {
         try {
-            User user = entityManager.find(User.class, userId);
+            User user = find(userId);
 
             if (user != null && user.getData() != null && !user.getData().isEmpty()) {
                 return user.getData();
@@ -127,13 +145,17 @@ public class DatabaseManager {
     @Transactional
     public void updateKeyCreationDate(long userId) {
         try {
-            User user = entityManager.find(User.class, userId);
+            User user = find(userId);
             if (user != null) {
+                String previousData = user.getData();
                 LocalDateTime now = LocalDateTime.now();
                 DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
                 user.setData(now.format(formatter));
 
                 entityManager.merge(user);
+                if (user.getKey() != null && !user.getKey().isEmpty()) {
+                    stats.keyIssued(previousData, user.getData());
+                }
 
                 logger.info("Key creation date updated for user: {}", userId);
                 return;
@@ -145,4 +167,73 @@ public class DatabaseManager {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Порция ключей арендатора, выданных раньше issuedBefore: строки [id, ключ, дата выдачи] по возрастанию id.
+     * Дата хранится как yyyy-MM-dd HH:mm:ss, поэтому срок сравнивается строкой прямо в запросе
+     *
+     * @param afterUserId id последней строки предыдущей порции; для первой — Long.MIN_VALUE
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> listKeysIssuedBefore(LocalDate issuedBefore, long afterUserId, int limit) {
+        return entityManager.createQuery(
+                        "select u.id, u.key, u.data from User u where u.tenantId = :tenant and u.key <> '' " +
+                        "and u.data <> '' and u.data < :before and u.id > :after order by u.id", Object[].class)
+                .setParameter("tenant", TenantContext.current())
+                .setParameter("before", issuedBefore.toString())
+                .setParameter("after", afterUserId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Порция выданных ключей арендатора: строки [id, ключ] по возрастанию id
+     *
+     * @param afterUserId id последней строки предыдущей порции; для первой — Long.MIN_VALUE
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> listKeys(long afterUserId, int limit) {
+        return entityManager.createQuery(
+                        "select u.id, u.key from User u where u.tenantId = :tenant and u.key <> '' and u.id > :after " +
+                        "order by u.id", Object[].class)
+                .setParameter("tenant", TenantContext.current())
+                .setParameter("after", afterUserId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Забирает у пользователя ключ, если это все еще тот же ключ (его пользователя панели удалили)
+     *
+     * @return true, если ключ снят
+     */
+    @Transactional
+    public boolean clearVpnKey(long userId, String vpnKey) {
+        User user = find(userId);
+        if (user == null || !vpnKey.equals(user.getKey())) {
+            return false;
+        }
+        // Дата тоже в условии: если ключ тем временем продлили, он не снимается, а счетчики не уходят
+        String data = user.getData();
+        int updated = entityManager.createQuery(
+                        "update User u set u.key = '' where u.tenantId = :tenant and u.id = :userId and u.key = :key " +
+                        "and u.data = :data")
+                .setParameter("tenant", TenantContext.current())
+                .setParameter("userId", userId)
+                .setParameter("key", vpnKey)
+                .setParameter("data", data)
+                .executeUpdate();
+        if (updated > 0) {
+            stats.keyCleared(data);
+            logger.info("VPN key cleared for user: {}", userId);
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Пользователь текущего арендатора (TenantContext) или null
+     */
+    private User find(long userId) {
+        return entityManager.find(User.class, new User.Key(TenantContext.current(), userId));
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.db;
+
+import jakarta.persistence.*;
+
+// Выдача или продление ключа: одна строка на оплату. Последняя строка пользователя — его текущий пользователь панели
+
+@Entity
+@Table(name = "key_history", indexes = {
+        @Index(name = "idx_key_history_tenant_user", columnList = "tenant_id, user_id, issued_at"),
+        @Index(name = "idx_key_history_uuid", columnList = "panel_uuid")
+})
+public class KeyHistory {
+    public static final String ISSUED = "issued";
+    public static final String RENEWED = "renewed";
+
+    // IDENTITY, как у QueuedUpdate: последовательность на SQLite двигается вторым соединением и упирается в блокировку
+    // транзакции выдачи. Строка пишется одна на оплату, пакетные вставки здесь не нужны
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Бот (bot.tenancy), который выдал ключ; у строк до появления столбца проставляется при старте
+    @Column(name = "tenant_id")
+    private String tenantId;
+
+    @Column(name = "user_id", nullable = false)
+    private long userId;
+
+    // UUID пользователя в панели Hiddify
+    @Column(name = "panel_uuid", nullable = false)
+    private String panelUuid;
+
+    // issued — создан новый пользователь панели, renewed — продлен существующий
+    @Column(name = "action", nullable = false)
+    private String action;
+
+    // Оплата, за которую выдан ключ; уникальность не дает продлить дважды за одну оплату
+    @Column(name = "payment_id", unique = true)
+    private String paymentId;
+
+    // Срок пакета в панели после выдачи, дней от issued_at
+    @Column(name = "package_days", nullable = false)
+    private int packageDays;
+
+    // epoch millis
+    @Column(name = "issued_at", nullable = false)
+    private long issuedAt;
+
+    public KeyHistory() {}
+
+    public KeyHistory(String tenantId, long userId, String panelUuid, String action, String paymentId, int packageDays,
+                      long issuedAt) {
+        this.tenantId = tenantId;
+        this.userId = userId;
+        this.panelUuid = panelUuid;
+        this.action = action;
+        this.paymentId = paymentId;
+        this.packageDays = packageDays;
+        this.issuedAt = issuedAt;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getPanelUuid() {
+        return panelUuid;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getPaymentId() {
+        return paymentId;
+    }
+
+    public int getPackageDays() {
+        return packageDays;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.db;
+
+import java.util.List;
+
+import org.example.tenancy.TenantContext;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * История выдачи и продления ключей текущего арендатора (TenantContext). Запросы идут по индексам
+ * (tenant_id, user_id, issued_at) и panel_uuid, без просмотра таблицы пользователей.
+ */
+@Repository
+public class KeyHistoryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Записывает выдачу и в той же транзакции отмечает ключ за оплату выданным
+     *
+     * @param paymentId Оплата или null, если ключ выдан не за оплату
+     */
+    @Transactional
+    public void record(long userId, String panelUuid, String action, String paymentId, int packageDays) {
+        long now = System.currentTimeMillis();
+        String tenant = TenantContext.current();
+        entityManager.persist(new KeyHistory(tenant, userId, panelUuid, action, paymentId, packageDays, now));
+        if (paymentId != null) {
+            entityManager.createQuery(
+                            "update Payment p set p.keyIssuedAt = :now where p.paymentId = :paymentId and p.tenantId = :tenant")
+                    .setParameter("now", now)
+                    .setParameter("paymentId", paymentId)
+                    .setParameter("tenant", tenant)
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * @return Последняя выдача пользователю или null
+     */
+    @Transactional(readOnly = true)
+    public KeyHistory latest(long userId) {
+        List<KeyHistory> rows = entityManager.createQuery(
+                        "select h from KeyHistory h where h.tenantId = :tenant and h.userId = :userId order by h.issuedAt desc",
+                        KeyHistory.class)
+                .setParameter("tenant", TenantContext.current())
+                .setParameter("userId", userId)
+                .setMaxResults(1)
+                .getResultList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Выдачи пользователю, от новых к старым
+     */
+    @Transactional(readOnly = true)
+    public List<KeyHistory> history(long userId, int limit) {
+        return entityManager.createQuery(
+                        "select h from KeyHistory h where h.tenantId = :tenant and h.userId = :userId order by h.issuedAt desc",
+                        KeyHistory.class)
+                .setParameter("tenant", TenantContext.current())
+                .setParameter("userId", userId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * @return Telegram ID владельца пользователя панели или null, если бот такого не выдавал
+     */
+    @Transactional(readOnly = true)
+    public Long ownerOf(String panelUuid) {
+        List<Long> owners = entityManager.createQuery(
+                        "select h.userId from KeyHistory h where h.panelUuid = :uuid and h.tenantId = :tenant order by h.issuedAt desc",
+                        Long.class)
+                .setParameter("uuid", panelUuid)
+                .setParameter("tenant", TenantContext.current())
+                .setMaxResults(1)
+                .getResultList();
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.db;
+
+import jakarta.persistence.*;
+
+// Файл, уже загруженный в Telegram: повторно отправляется по file_id без рендера и загрузки
+
+@Entity
+@Table(name = "media_files")
+public class MediaFile {
+    @Id
+    @Column(name = "media_key")
+    private String key;
+
+    @Column(name = "file_id", nullable = false)
+    private String fileId;
+
+    // Хеш содержимого, из которого получен file_id; если содержимое поменялось, файл загружается заново
+    @Column(name = "content_hash")
+    private String contentHash;
+
+    // Момент загрузки, epoch millis
+    @Column(name = "uploaded_at", nullable = false)
+    private long uploadedAt;
+
+    public MediaFile() {}
+
+    public MediaFile(String key, String fileId, String contentHash, long uploadedAt) {
+        this.key = key;
+        this.fileId = fileId;
+        this.contentHash = contentHash;
+        this.uploadedAt = uploadedAt;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public long getUploadedAt() {
+        return uploadedAt;
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.db;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * file_id файлов, загруженных в Telegram. Общие для всех экземпляров бота над одной базой.
+ */
+@Repository
+public class MediaRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @return Запись о загруженном файле или null, если файл еще не загружался
+     */
+    @Transactional(readOnly = true)
+    public MediaFile find(String key) {
+        return entityManager.find(MediaFile.class, key);
+    }
+
+    /**
+     * Запоминает file_id. Повторная загрузка того же файла (например, с двух узлов сразу) просто перезапишет запись.
+     */
+    @Transactional
+    public void save(String key, String fileId, String contentHash) {
+        entityManager.merge(new MediaFile(key, fileId, contentHash, System.currentTimeMillis()));
+    }
+}
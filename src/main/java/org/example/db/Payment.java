@@ -0,0 +1,105 @@
+package org.example.db;
+
+import jakarta.persistence.*;
+
+// Платеж ЮKassa и его состояние у нас: pending → succeeded или canceled
+
+@Entity
+@Table(name = "payments", indexes = @Index(name = "idx_payments_status", columnList = "status"))
+public class Payment {
+    public static final String PENDING = "pending";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String CANCELED = "canceled";
+
+    @Id
+    @Column(name = "payment_id")
+    private String paymentId;
+
+    // Бот (bot.tenancy), через который создан платеж; у строк до появления столбца проставляется при старте
+    @Column(name = "tenant_id")
+    private String tenantId;
+
+    @Column(name = "user_id", nullable = false)
+    private long userId;
+
+    @Column(name = "amount_kopecks", nullable = false)
+    private long amountKopecks;
+
+    @Column(name = "status", nullable = false)
+    private String status;
+
+    // epoch millis
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    // Момент перехода в succeeded или canceled, epoch millis
+    @Column(name = "closed_at")
+    private Long closedAt;
+
+    // Узел занял выдачу ключа за эту оплату, epoch millis
+    @Column(name = "key_claimed_at")
+    private Long keyClaimedAt;
+
+    // Ключ за эту оплату выдан или продлен, epoch millis
+    @Column(name = "key_issued_at")
+    private Long keyIssuedAt;
+
+    public Payment() {}
+
+    public Payment(String tenantId, String paymentId, long userId, long amountKopecks, long createdAt) {
+        this.tenantId = tenantId;
+        this.paymentId = paymentId;
+        this.userId = userId;
+        this.amountKopecks = amountKopecks;
+        this.status = PENDING;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Оплата, созданная до появления таблицы payments: о ней известно только то, что ЮKassa подтвердила ее сейчас.
+     * Строка сразу закрыта как succeeded и занята под выдачу ключа
+     */
+    static Payment legacyClaim(String tenantId, String paymentId, long userId, long amountKopecks, long now) {
+        Payment payment = new Payment(tenantId, paymentId, userId, amountKopecks, now);
+        payment.status = SUCCEEDED;
+        payment.closedAt = now;
+        payment.keyClaimedAt = now;
+        return payment;
+    }
+
+    public String getPaymentId() {
+        return paymentId;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getAmountKopecks() {
+        return amountKopecks;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getClosedAt() {
+        return closedAt;
+    }
+
+    public Long getKeyClaimedAt() {
+        return keyClaimedAt;
+    }
+
+    public Long getKeyIssuedAt() {
+        return keyIssuedAt;
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.db;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.example.stats.BotStats;
+import org.example.tenancy.TenantContext;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Платежи и переходы их состояний. Переход из pending — условный UPDATE, поэтому он случается ровно один раз,
+ * даже если оплату проверяют несколько раз или с разных узлов. Бот видит только платежи своего арендатора
+ * (TenantContext): чужой paymentId в данных кнопки ничего не найдет и не изменит.
+ */
+@Repository
+public class PaymentRepository {
+    // Через сколько выдачу ключа, занятую упавшим узлом, можно занять снова
+    private static final long KEY_CLAIM_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final BotStats stats;
+
+    public PaymentRepository(BotStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Запоминает созданный платеж в состоянии pending; повторный вызов с тем же paymentId ничего не меняет
+     */
+    @Transactional
+    public void create(String paymentId, long userId, BigDecimal amount) {
+        if (entityManager.find(Payment.class, paymentId) != null) {
+            return;
+        }
+        entityManager.persist(new Payment(TenantContext.current(), paymentId, userId, toKopecks(amount),
+                System.currentTimeMillis()));
+        stats.paymentCreated();
+    }
+
+    /**
+     * @return true, если платеж только что перешел из pending в succeeded
+     */
+    @Transactional
+    public boolean markSucceeded(String paymentId) {
+        long now = System.currentTimeMillis();
+        if (!close(paymentId, Payment.SUCCEEDED, now)) {
+            return false;
+        }
+        Payment payment = find(paymentId);
+        stats.paymentSucceeded(payment.getAmountKopecks(), now);
+        return true;
+    }
+
+    /**
+     * @return true, если платеж только что перешел из pending в canceled
+     */
+    @Transactional
+    public boolean markCanceled(String paymentId) {
+        if (!close(paymentId, Payment.CANCELED, System.currentTimeMillis())) {
+            return false;
+        }
+        stats.paymentCanceled();
+        return true;
+    }
+
+    /**
+     * Занимает выдачу ключа за оплату. Повторная проверка оплаты, двойное нажатие или другой узел получат false,
+     * поэтому за одну оплату ключ продлевается один раз. Выдача, которую не завершили за KEY_CLAIM_TIMEOUT_MS
+     * (узел упал посреди запроса к панели), занимается снова. Оплата, созданная до появления таблицы payments,
+     * записывается при первой выдаче, так что и ее повторная проверка ключ второй раз не продлит.
+     *
+     * @param userId Владелец и сумма нужны, только если оплаты еще нет в таблице
+     * @return true, если ключ за эту оплату выдает вызывающий
+     */
+    @Transactional
+    public boolean claimKeyIssue(String paymentId, long userId, BigDecimal amount) {
+        Payment payment = entityManager.find(Payment.class, paymentId);
+        if (payment == null) {
+            long now = System.currentTimeMillis();
+            long amountKopecks = toKopecks(amount);
+            entityManager.persist(Payment.legacyClaim(TenantContext.current(), paymentId, userId, amountKopecks, now));
+            stats.legacyPaymentSucceeded(amountKopecks, now);
+            return true;
+        }
+        if (!TenantContext.current().equals(payment.getTenantId())) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        return entityManager.createQuery(
+                        "update Payment p set p.keyClaimedAt = :now " +
+                        "where p.paymentId = :paymentId and p.tenantId = :tenant and p.keyIssuedAt is null " +
+                        "and (p.keyClaimedAt is null or p.keyClaimedAt < :stale)")
+                .setParameter("now", now)
+                .setParameter("paymentId", paymentId)
+                .setParameter("tenant", TenantContext.current())
+                .setParameter("stale", now - KEY_CLAIM_TIMEOUT_MS)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Снимает занятость, если выдать ключ не удалось: следующая проверка оплаты попробует снова
+     */
+    @Transactional
+    public void releaseKeyIssue(String paymentId) {
+        entityManager.createQuery(
+                        "update Payment p set p.keyClaimedAt = null " +
+                        "where p.paymentId = :paymentId and p.tenantId = :tenant and p.keyIssuedAt is null")
+                .setParameter("paymentId", paymentId)
+                .setParameter("tenant", TenantContext.current())
+                .executeUpdate();
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isKeyIssued(String paymentId) {
+        Payment payment = find(paymentId);
+        return payment != null && payment.getKeyIssuedAt() != null;
+    }
+
+    private boolean close(String paymentId, String status, long now) {
+        return entityManager.createQuery(
+                        "update Payment p set p.status = :status, p.closedAt = :now " +
+                        "where p.paymentId = :paymentId and p.tenantId = :tenant and p.status = :pending")
+                .setParameter("status", status)
+                .setParameter("now", now)
+                .setParameter("paymentId", paymentId)
+                .setParameter("tenant", TenantContext.current())
+                .setParameter("pending", Payment.PENDING)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Платеж текущего арендатора или null
+     */
+    private Payment find(String paymentId) {
+        Payment payment = entityManager.find(Payment.class, paymentId);
+        return payment != null && TenantContext.current().equals(payment.getTenantId()) ? payment : null;
+    }
+
+    public static long toKopecks(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.db;
+
+import jakarta.persistence.*;
+
+// Апдейт в общей очереди кластера. Строка удаляется только после обработки
+
+@Entity
+@Table(name = "update_queue", indexes = {
+        @Index(name = "idx_update_queue_partition", columnList = "partition_no, id")
+})
+public class QueuedUpdate {
+    // IDENTITY, а не последовательность: на SQLite Hibernate ведет последовательность в отдельной таблице и двигает ее
+    // через второе соединение, которое ждет блокировку, уже взятую транзакцией enqueue. Апдейты ставятся по одному,
+    // так что пакетные вставки очереди не нужны
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "update_id", nullable = false, unique = true)
+    private long updateId;
+
+    // chat_id по модулю числа партиций: апдейты одного чата обрабатываются по порядку одним узлом
+    @Column(name = "partition_no", nullable = false)
+    private int partition;
+
+    // BotUpdate в формате BotUpdateCodec
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "enqueued_at", nullable = false)
+    private long enqueuedAt;
+
+    public QueuedUpdate() {}
+
+    public QueuedUpdate(long updateId, int partition, byte[] payload, long enqueuedAt) {
+        this.updateId = updateId;
+        this.partition = partition;
+        this.payload = payload;
+        this.enqueuedAt = enqueuedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getUpdateId() {
+        return updateId;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.db;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+
+import org.example.tenancy.TenantContext;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Перенос базы без арендаторов: пользователи из users (ключ — только Telegram ID) копируются в bot_users
+ * основному боту, платежи и история ключей без tenant_id отдаются ему же, а users переименовывается в users_legacy.
+ * Все в одной транзакции сразу после обновления схемы Hibernate и до первого запроса; на уже перенесенной базе
+ * это одна проверка метаданных.
+ */
+public final class TenantMigration {
+    private static final Logger logger = LoggerFactory.getLogger(TenantMigration.class);
+    private static final String LEGACY_USERS = "users";
+    private static final String RENAMED_USERS = "users_legacy";
+
+    private TenantMigration() {
+    }
+
+    public static void run(EntityManagerFactory entityManagerFactory) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            entityManager.unwrap(Session.class).doWork(TenantMigration::migrate);
+            entityManager.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+            throw new IllegalStateException("Tenant migration failed: " + e.getMessage(), e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static void migrate(Connection connection) throws SQLException {
+        // Только схема соединения: users из других схем (information_schema в H2, чужие таблицы в PostgreSQL) не наши
+        String schema = connection.getSchema();
+        if (!tableExists(connection, schema, LEGACY_USERS)) {
+            return;
+        }
+        String users = qualified(schema, LEGACY_USERS);
+        try (PreparedStatement copy = connection.prepareStatement(
+                "insert into bot_users (tenant_id, id, user_key, user_data) " +
+                "select ?, u.id, u.user_key, u.user_data from " + users + " u " +
+                "where not exists (select 1 from bot_users b where b.tenant_id = ? and b.id = u.id)")) {
+            copy.setString(1, TenantContext.DEFAULT);
+            copy.setString(2, TenantContext.DEFAULT);
+            logger.info("Moved {} users to the default tenant", copy.executeUpdate());
+        }
+        for (String table : List.of("payments", "key_history")) {
+            try (PreparedStatement backfill = connection.prepareStatement(
+                    "update " + table + " set tenant_id = ? where tenant_id is null")) {
+                backfill.setString(1, TenantContext.DEFAULT);
+                logger.info("Assigned {} rows of {} to the default tenant", backfill.executeUpdate(), table);
+            }
+        }
+        try (Statement rename = connection.createStatement()) {
+            rename.executeUpdate("alter table " + users + " rename to " + RENAMED_USERS);
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String schema, String name) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // H2 хранит имена без кавычек в верхнем регистре
+        String pattern = metaData.storesUpperCaseIdentifiers() ? name.toUpperCase(Locale.ROOT) : name;
+        try (ResultSet tables = metaData.getTables(connection.getCatalog(), schema, pattern, new String[] {"TABLE"})) {
+            return tables.next();
+        }
+    }
+
+    // В SQLite схем нет, и getSchema() возвращает null
+    private static String qualified(String schema, String table) {
+        return schema == null || schema.isEmpty() ? table : schema + "." + table;
+    }
+}
@@ -1,12 +1,22 @@
 package org.example.db;
 
+import java.io.Serializable;
+import java.util.Objects;
+
 import jakarta.persistence.*;
 
-// Данная сущность нам нужна для сохранения данных в бд
+// Данная сущность нам нужна для сохранения данных в бд.
+// Один и тот же человек в двух ботах (bot.tenancy) — два разных пользователя, поэтому ключ — (арендатор, Telegram ID).
+// Таблица users со старым ключом только по Telegram ID переносится сюда при старте (TenantMigration)
 
 @Entity
-@Table(name = "users")
+@Table(name = "bot_users")
+@IdClass(User.Key.class)
 public class User {
+    @Id
+    @Column(name = "tenant_id")
+    private String tenantId;
+
     @Id
     private Long id;
 
@@ -16,9 +26,32 @@ public class User {
     @Column(name = "user_data", nullable = false)
     private String data;
 
+    public static class Key implements Serializable {
+        private String tenantId;
+        private Long id;
+
+        public Key() {}
+
+        public Key(String tenantId, Long id) {
+            this.tenantId = tenantId;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Objects.equals(tenantId, other.tenantId) && Objects.equals(id, other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenantId, id);
+        }
+    }
+
     public User() {}
 
-    public User(Long id) {
+    public User(String tenantId, Long id) {
+        this.tenantId = tenantId;
         this.id = id;
     }
 
@@ -38,6 +71,10 @@ public class User {
         this.data = data;
     }
 
+    public String getTenantId() {
+        return tenantId;
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,29 @@
+package org.example.export;
+
+public enum ExportFormat {
+    CSV("csv"),
+    // Объект на строку (JSON Lines), чтобы файл можно было читать потоком
+    JSON("jsonl");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * @return Формат по имени без учета регистра или null
+     */
+    public static ExportFormat of(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPOutputStream;
+
+import org.example.config.ExportConfig;
+import org.example.tenancy.TenantContext;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Выгрузка пользователей и платежей арендатора, запросившего выгрузку, в сжатые gzip файлы CSV или JSON Lines.
+ *
+ * Строки читаются через StatelessSession как наборы столбцов, без сущностей и кеша первого уровня,
+ * прокручиваемым курсором с фиксированным fetchSize. Таблица читается порциями по chunkRows строк
+ * в отдельных коротких транзакциях с продолжением по первичному ключу, поэтому читающая транзакция
+ * не держит базу (в SQLite — блокировку на чтение) дольше одной порции. Память не зависит от числа строк.
+ */
+@Component
+@Lazy
+public class ExportService {
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private static final List<Table> TABLES = List.of(
+            new Table("users",
+                    new String[] {"user_id", "key", "key_created_at"},
+                    "select u.id, u.key, u.data from User u where u.tenantId = :tenant and u.id > :after order by u.id",
+                    Long.MIN_VALUE,
+                    row -> new Object[] {row[0], emptyToNull(row[1]), emptyToNull(row[2])}),
+            new Table("payments",
+                    new String[] {"payment_id", "user_id", "amount", "status", "created_at", "closed_at"},
+                    "select p.paymentId, p.userId, p.amountKopecks, p.status, p.createdAt, p.closedAt " +
+                    "from Payment p where p.tenantId = :tenant and p.paymentId > :after order by p.paymentId",
+                    "",
+                    row -> new Object[] {row[0], row[1], BigDecimal.valueOf((Long) row[2], 2).toPlainString(), row[3],
+                            instant(row[4]), instant(row[5])}));
+
+    private final ExportConfig config;
+    private final SessionFactory sessionFactory;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "admin-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param query Запрос; первый столбец — первичный ключ, с него продолжается следующая порция
+     * @param start Значение меньше любого ключа таблицы
+     */
+    private record Table(String name, String[] columns, String query, Object start, UnaryOperator<Object[]> mapper) {
+    }
+
+    /**
+     * Готовый файл выгрузки; удаляется после того, как его передали в onDone
+     */
+    public record ExportFile(String name, Path path, long rows) {
+    }
+
+    public ExportService(ExportConfig config, EntityManagerFactory entityManagerFactory) {
+        this.config = config;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    /**
+     * Запускает выгрузку строк текущего арендатора (TenantContext) в фоне
+     *
+     * @param onDone    Получает файлы выгрузки; после возврата файлы удаляются
+     * @param onFailure Вызывается вместо onDone при ошибке
+     * @return false, если предыдущая выгрузка еще не закончилась
+     */
+    public boolean start(ExportFormat format, Consumer<List<ExportFile>> onDone, Consumer<Exception> onFailure) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        // Поток выгрузки общий, арендатора запоминаем в потоке бота
+        String tenant = TenantContext.current();
+        executor.execute(() -> {
+            List<ExportFile> files = new ArrayList<>();
+            try {
+                for (Table table : TABLES) {
+                    files.add(export(table, format, tenant));
+                }
+                onDone.accept(files);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Export failed: {}", e.getMessage(), e);
+                onFailure.accept(e);
+            } finally {
+                for (ExportFile file : files) {
+                    deleteQuietly(file.path());
+                }
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private ExportFile export(Table table, ExportFormat format, String tenant) throws IOException {
+        long started = System.nanoTime();
+        String name = table.name() + "." + format.extension() + ".gz";
+        Path path = Files.createTempFile("export-" + table.name() + "-", "." + format.extension() + ".gz");
+        int chunkRows = Math.max(1, config.getChunkRows());
+        long rows = 0;
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(path)), 64 * 1024);
+             RowWriter writer = RowWriter.open(format, out, table.columns())) {
+            Object after = table.start();
+            int read;
+            do {
+                read = 0;
+                try (StatelessSession session = sessionFactory.openStatelessSession()) {
+                    Transaction transaction = session.beginTransaction();
+                    try (ScrollableResults<Object[]> results = session.createSelectionQuery(table.query(), Object[].class)
+                            .setParameter("after", after)
+                            .setParameter("tenant", tenant)
+                            .setMaxResults(chunkRows)
+                            .setFetchSize(config.getFetchSize())
+                            .scroll(ScrollMode.FORWARD_ONLY)) {
+                        while (results.next()) {
+                            Object[] row = results.get();
+                            after = row[0];
+                            writer.write(table.mapper().apply(row));
+                            read++;
+                        }
+                    }
+                    transaction.commit();
+                }
+                rows += read;
+            } while (read == chunkRows);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(path);
+            throw e;
+        }
+        logger.info("Exported {} rows from {} of tenant {} in {} ms", rows, table.name(), tenant,
+                (System.nanoTime() - started) / 1_000_000);
+        return new ExportFile(name, path, rows);
+    }
+
+    private static Object emptyToNull(Object value) {
+        return value == null || value.toString().isEmpty() ? null : value;
+    }
+
+    private static Object instant(Object epochMillis) {
+        return epochMillis == null ? null : Instant.ofEpochMilli((Long) epochMillis).toString();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete export file {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+/**
+ * Построчная запись выгрузки. Строка уходит в поток сразу, в памяти ничего не копится.
+ */
+abstract class RowWriter implements AutoCloseable {
+    protected final String[] columns;
+
+    RowWriter(String[] columns) {
+        this.columns = columns;
+    }
+
+    static RowWriter open(ExportFormat format, OutputStream out, String[] columns) throws IOException {
+        return switch (format) {
+            case CSV -> new Csv(out, columns);
+            case JSON -> new JsonLines(out, columns);
+        };
+    }
+
+    /**
+     * @param values Значения в порядке столбцов; null пишется пустым полем
+     */
+    abstract void write(Object[] values) throws IOException;
+
+    @Override
+    public abstract void close() throws IOException;
+
+    private static final class Csv extends RowWriter {
+        private final Writer writer;
+
+        Csv(OutputStream out, String[] columns) throws IOException {
+            super(columns);
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            write(columns);
+        }
+
+        @Override
+        void write(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeField(values[i].toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // RFC 4180: поле с запятой, кавычкой или переводом строки берется в кавычки, кавычки удваиваются
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class JsonLines extends RowWriter {
+        private static final JsonFactory FACTORY = new JsonFactory();
+
+        private final JsonGenerator generator;
+
+        JsonLines(OutputStream out, String[] columns) throws IOException {
+            super(columns);
+            this.generator = FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        void write(Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    generator.writeNullField(columns[i]);
+                } else if (value instanceof Long number) {
+                    generator.writeNumberField(columns[i], number);
+                } else {
+                    generator.writeStringField(columns[i], value.toString());
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeRaw('\n');
+            generator.close();
+        }
+    }
+}
@@ -3,15 +3,31 @@ package org.example.hiddify;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.example.config.HiddifyConfig;
+import org.example.config.ResilienceConfig;
+import org.example.config.SubscriptionConfig;
+import org.example.resilience.HedgedOperation;
+import org.example.resilience.UpstreamGuard;
+import org.example.resilience.UpstreamUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -22,21 +38,71 @@ import okhttp3.Response;
 @Component
 public class HiddifyApiClient {
     private static final Logger logger = LoggerFactory.getLogger(HiddifyApiClient.class);
+    // Комментарий пользователей, созданных ботом: по нему чистильщик отличает их от заведенных вручную
+    public static final String CREATED_BY_BOT = "Created via Telegram Bot";
+    // Список всех пользователей читается дольше обычного запроса, поэтому у него свой предел
+    private static final long LIST_TIMEOUT_MINUTES = 5;
     private final OkHttpClient httpClient;
     private final String apiBaseUrl;
     private final String adminProxyPath;
     private final String userProxyPath;
     private final String secretApiKey;
     private final Gson gson;
+    private final UpstreamGuard guard;
+    private final HedgedOperation userLookup;
+    // Начало ссылок на подписку через бота (bot.subscription) или null — ссылки ведут прямо в панель
+    private final String subscriptionLinkBase;
+    // Кому сообщить, что пользователь панели изменился (продлен, выключен, удален)
+    private final List<Consumer<String>> userChangeListeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public HiddifyApiClient(HiddifyConfig config, ResilienceConfig resilienceConfig, SubscriptionConfig subscriptionConfig,
+                            MeterRegistry meterRegistry) {
+        this(config, new UpstreamGuard("hiddify", resilienceConfig.getHiddify(), meterRegistry), subscriptionConfig.linkBase(),
+                // callTimeout не дает зависшему запросу держать поток пула дольше, чем его ждет обработчик
+                new OkHttpClient.Builder().connectTimeout(30, TimeUnit.SECONDS).readTimeout(30, TimeUnit.SECONDS).writeTimeout(30, TimeUnit.SECONDS)
+                        .callTimeout(resilienceConfig.getHiddify().getCallTimeoutMs(), TimeUnit.MILLISECONDS).build());
+    }
 
-    public HiddifyApiClient(HiddifyConfig config) {
+    private HiddifyApiClient(HiddifyConfig config, UpstreamGuard guard, String subscriptionLinkBase, OkHttpClient httpClient) {
         this.apiBaseUrl = config.getApiURL();  // Домен моего сервака
         this.adminProxyPath = config.getAdminProxyPath();  // Взято из настроек, нужно для отправки запросов
         this.userProxyPath = config.getUserProxyPath();  // Взято из настроек, нужно для составления ключа
         this.secretApiKey = config.getSecretApi();  // UUID админа панели Hiddify
         this.gson = new Gson();
+        this.subscriptionLinkBase = subscriptionLinkBase;
+        this.guard = guard;
+        this.userLookup = guard.idempotent("user_lookup");
+        this.httpClient = httpClient;
+    }
 
-        this.httpClient = new OkHttpClient.Builder().connectTimeout(30, TimeUnit.SECONDS).readTimeout(30, TimeUnit.SECONDS).writeTimeout(30, TimeUnit.SECONDS).build();
+    /**
+     * Клиент панели другого бота (bot.tenancy). Пул соединений и диспетчер OkHttp общие с этим клиентом,
+     * а предохранитель свой (метрики с upstream=hiddify-{tenantId}): сбои одной панели не закрывают остальные.
+     * Прокси подписок обслуживает только основную панель, поэтому ссылки ведут прямо в панель арендатора.
+     */
+    public HiddifyApiClient forTenant(String tenantId, HiddifyConfig config, ResilienceConfig resilienceConfig,
+                                      MeterRegistry meterRegistry) {
+        return new HiddifyApiClient(config, new UpstreamGuard("hiddify-" + tenantId, resilienceConfig.getHiddify(), meterRegistry),
+                null, httpClient);
+    }
+
+    @PreDestroy
+    public void close() {
+        guard.close();
+    }
+
+    /**
+     * @param listener Получает uuid пользователя панели после его продления, выключения или удаления
+     */
+    public void addUserChangeListener(Consumer<String> listener) {
+        userChangeListeners.add(listener);
+    }
+
+    private void userChanged(String uuid) {
+        for (Consumer<String> listener : userChangeListeners) {
+            listener.accept(uuid);
+        }
     }
 
     /**
@@ -44,99 +110,350 @@ public class HiddifyApiClient {
      *
      * @param userId Telegram ID пользователя
      * @return VPN ключ или null в случае ошибки
+     * @throws UpstreamUnavailableException Панель сейчас недоступна, запрос не отправлялся или не дождался ответа
      */
     public String createUser(long userId, int gigabytes, int days) {
         try {
-            // Текущая дата в формате YYYY-MM-DD
-            String currentDate = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+            return guard.call(() -> requestCreateUser(userId, gigabytes, days));
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error creating Hiddify user: {}", e.getMessage(), e);
+            return null;
+        }
+    }
 
-            // Создаем данные пользователя
-            JsonObject userJson = new JsonObject();
-            userJson.addProperty("added_by_uuid", (String) null);
-            userJson.addProperty("comment", "Created via Telegram Bot");
-            userJson.addProperty("current_usage_GB", 0); // 50 GB согласно требованиям
-            userJson.addProperty("ed25519_private_key", "string"); // Будет сгенерировано сервером
-            userJson.addProperty("ed25519_public_key", "string");  // Будет сгенерировано сервером
-            userJson.addProperty("enable", true);
-            userJson.addProperty("is_active", true);
-            userJson.addProperty("lang", "ru"); // Используем русский язык для пользователей
-            userJson.addProperty("last_online", (String) null);
-            userJson.addProperty("last_reset_time", (String) null);
-            userJson.addProperty("mode", "no_reset"); // Согласно требованиям
-            userJson.addProperty("name", "");  // Имя пустое ибо нафиг
-            userJson.addProperty("package_days", days); // 30 дней согласно требованиям
-            userJson.addProperty("start_date", currentDate);
-            userJson.addProperty("telegram_id", userId); // Telegram ID пользователя
-            userJson.addProperty("usage_limit_GB", gigabytes); // 100 GB согласно требованиям
-            userJson.addProperty("uuid", (String) null); // Будет сгенерировано сервером
-            userJson.addProperty("wg_pk", "string"); // Будет сгенерировано сервером
-            userJson.addProperty("wg_psk", "string"); // Будет сгенерировано сервером
-            userJson.addProperty("wg_pub", "string"); // Будет сгенерировано сервером
+    /**
+     * Сам запрос к панели. Любая неудача — исключение, чтобы ее засчитал предохранитель.
+     */
+    private String requestCreateUser(long userId, int gigabytes, int days) throws IOException {
+        String jsonPayload = buildCreateUserPayload(userId, gigabytes, days);
+        logger.info("Sending user creation request: {}", jsonPayload);
+
+        // Создаем запрос
+        RequestBody body = RequestBody.create(jsonPayload, MediaType.get("application/json"));
+
+        // Формируем полный URL для API
+        String fullUrl = apiBaseUrl + adminProxyPath + "/api/v2/admin/user/";
+        logger.info("API URL: {}", fullUrl);
+
+        /*
+         * Отправка запроса.
+         * Всего в запросе 3 заголовка и 1 тело, и всё.
+         */
+        logger.info("apiBaseUrl: {}", apiBaseUrl);
+        logger.info("adminProxyPath: {}", adminProxyPath);
+        logger.info("Full API URL: {}", fullUrl);
+        Request request = new Request.Builder().url(fullUrl)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Accept", "application/json")
+                .addHeader("Hiddify-API-Key", secretApiKey)
+                .post(body)
+                .build();
+
+
+        // Выполняем запрос
+        try (Response response = httpClient.newCall(request).execute()) {
+            logger.info("Response code: {}", response.code());
+
+            // Обрабатываем ошибку
+            if (!response.isSuccessful()) {
+                String errorBody = response.body() != null ? response.body().string() : "No response body";
+                logger.error("Failed to create user. Status code: {}, Error: {}", response.code(), errorBody);
+                throw new IOException("Hiddify responded with HTTP " + response.code());
+            }
 
-            String jsonPayload = gson.toJson(userJson);
-            logger.info("Sending user creation request: {}", jsonPayload);
+            // Парсим ответ
+            if (response.body() != null) {
+                String responseBody = response.body().string();
+                logger.info("Response body: {}", responseBody);
 
-            // Создаем запрос
-            RequestBody body = RequestBody.create(jsonPayload, MediaType.get("application/json"));
+                JsonObject responseJson = gson.fromJson(responseBody, JsonObject.class);
 
-            // Формируем полный URL для API
-            String fullUrl = apiBaseUrl + adminProxyPath + "/api/v2/admin/user/";
-            logger.info("API URL: {}", fullUrl);
-
-            /*
-             * Отправка запроса.
-             * Всего в запросе 3 заголовка и 1 тело, и всё.
-             */
-            logger.info("apiBaseUrl: {}", apiBaseUrl);
-            logger.info("adminProxyPath: {}", adminProxyPath);
-            logger.info("Full API URL: {}", fullUrl);
-            Request request = new Request.Builder().url(fullUrl)
-                    .addHeader("Content-Type", "application/json")
-                    .addHeader("Accept", "application/json")
-                    .addHeader("Hiddify-API-Key", secretApiKey)
-                    .post(body)
-                    .build();
+                // Проверяем наличие UUID в ответе
+                if (responseJson.has("uuid")) {
+                    String uuid = responseJson.get("uuid").getAsString();
 
+                    // Генерируем ссылку подключения
+                    return generateConnectionLink(uuid);
+                } else {
+                    logger.error("UUID not found in response: {}", responseBody);
+                }
+            } else {
+                logger.error("Response body is null");
+            }
 
-            // Выполняем запрос
-            try (Response response = httpClient.newCall(request).execute()) {
-                logger.info("Response code: {}", response.code());
+            throw new IOException("Hiddify response has no user UUID");
+        }
+    }
 
-                // Обрабатываем ошибку
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "No response body";
-                    logger.error("Failed to create user. Status code: {}, Error: {}", response.code(), errorBody);
-                    return null;
-                }
 
-                // Парсим ответ
-                if (response.body() != null) {
-                    String responseBody = response.body().string();
-                    logger.info("Response body: {}", responseBody);
+    /**
+     * Получает пользователя панели. Это идемпотентный GET, поэтому медленный запрос повторяется (hedging).
+     *
+     * @param uuid UUID пользователя в панели
+     * @return Пользователь или null, если его нет или панель ответила ошибкой
+     * @throws UpstreamUnavailableException Панель сейчас недоступна
+     */
+    public HiddifyUser getUser(String uuid) {
+        try {
+            return userLookup.call(() -> requestUser(uuid));
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error getting Hiddify user {}: {}", uuid, e.getMessage());
+            return null;
+        }
+    }
+
+    private HiddifyUser requestUser(String uuid) throws IOException {
+        Request request = new Request.Builder().url(apiBaseUrl + adminProxyPath + "/api/v2/admin/user/" + uuid + "/")
+                .addHeader("Accept", "application/json")
+                .addHeader("Hiddify-API-Key", secretApiKey)
+                .get()
+                .build();
 
-                    JsonObject responseJson = gson.fromJson(responseBody, JsonObject.class);
+        try (Response response = httpClient.newCall(request).execute()) {
+            // Пользователя нет — это ответ, а не сбой панели
+            if (response.code() == 404) {
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Hiddify responded with HTTP " + response.code());
+            }
 
-                    // Проверяем наличие UUID в ответе
-                    if (responseJson.has("uuid")) {
-                        String uuid = responseJson.get("uuid").getAsString();
+            return parseUser(gson.fromJson(response.body().string(), JsonObject.class));
+        }
+    }
 
-                        // Генерируем ссылку подключения
-                        return generateConnectionLink(uuid);
-                    } else {
-                        logger.error("UUID not found in response: {}", responseBody);
-                    }
-                } else {
-                    logger.error("Response body is null");
-                }
+    /**
+     * Продлевает существующего пользователя панели: обнуляет расход и выставляет новый пакет с сегодняшнего дня.
+     * Неистекшие дни старого пакета сохраняются, uuid и ссылка подключения не меняются.
+     *
+     * @param uuid UUID пользователя в панели
+     * @return Пользователь после продления или null, если такого пользователя в панели больше нет
+     * @throws UpstreamUnavailableException Панель сейчас недоступна
+     * @throws IllegalStateException        Панель ответила ошибкой; нового пользователя в этом случае создавать нельзя
+     */
+    public HiddifyUser renewUser(String uuid, int gigabytes, int days) {
+        try {
+            // Здесь нужен именно requestUser: getUser не отличает отсутствие пользователя от ошибки панели
+            HiddifyUser current = userLookup.call(() -> requestUser(uuid));
+            if (current == null) {
+                return null;
+            }
+            int packageDays = remainingDays(current, LocalDate.now()) + days;
+            HiddifyUser renewed = guard.call(() -> requestRenewUser(uuid, gigabytes, packageDays));
+            userChanged(uuid);
+            return renewed;
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error renewing Hiddify user {}: {}", uuid, e.getMessage(), e);
+            throw new IllegalStateException("Hiddify user " + uuid + " was not renewed", e);
+        }
+    }
 
+    private HiddifyUser requestRenewUser(String uuid, int gigabytes, int packageDays) throws IOException {
+        String jsonPayload = buildRenewUserPayload(gigabytes, packageDays);
+        logger.info("Sending user renewal request for {}: {}", uuid, jsonPayload);
+
+        Request request = new Request.Builder().url(apiBaseUrl + adminProxyPath + "/api/v2/admin/user/" + uuid + "/")
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Accept", "application/json")
+                .addHeader("Hiddify-API-Key", secretApiKey)
+                .patch(RequestBody.create(jsonPayload, MediaType.get("application/json")))
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.code() == 404) {
                 return null;
             }
-        } catch (IOException e) {
-            logger.error("Error creating Hiddify user: {}", e.getMessage(), e);
-            return null;
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Hiddify responded with HTTP " + response.code());
+            }
+            return parseUser(gson.fromJson(response.body().string(), JsonObject.class));
         }
     }
 
+    /**
+     * Читает всех пользователей панели и отдает их страницами по pageSize. Ответ разбирается потоком,
+     * поэтому в памяти одновременно только одна страница, сколько бы пользователей ни было в панели.
+     *
+     * @param page Вызывается на каждую страницу, пока открыт ответ панели: долгую работу в нем не делать
+     * @throws IOException Панель не ответила или ответила ошибкой
+     */
+    public void listUsers(int pageSize, Consumer<List<HiddifyUser>> page) throws IOException {
+        Request request = new Request.Builder().url(apiBaseUrl + adminProxyPath + "/api/v2/admin/user/")
+                .addHeader("Accept", "application/json")
+                .addHeader("Hiddify-API-Key", secretApiKey)
+                .get()
+                .build();
+        OkHttpClient listClient = httpClient.newBuilder().callTimeout(LIST_TIMEOUT_MINUTES, TimeUnit.MINUTES).build();
+
+        try (Response response = listClient.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Hiddify responded with HTTP " + response.code());
+            }
+            List<HiddifyUser> users = new ArrayList<>(pageSize);
+            try (JsonReader reader = new JsonReader(response.body().charStream())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    users.add(parseUser(gson.fromJson(reader, JsonObject.class)));
+                    if (users.size() >= pageSize) {
+                        page.accept(users);
+                        users = new ArrayList<>(pageSize);
+                    }
+                }
+                reader.endArray();
+            }
+            if (!users.isEmpty()) {
+                page.accept(users);
+            }
+        }
+    }
+
+    /**
+     * Выключает пользователя панели; продление включит его снова с той же ссылкой
+     *
+     * @return false, если такого пользователя в панели уже нет
+     * @throws UpstreamUnavailableException Панель сейчас недоступна
+     */
+    public boolean disableUser(String uuid) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("enable", false);
+        return modifyUser(uuid, new Request.Builder()
+                .patch(RequestBody.create(gson.toJson(payload), MediaType.get("application/json"))));
+    }
+
+    /**
+     * Удаляет пользователя панели
+     *
+     * @return false, если такого пользователя в панели уже нет
+     * @throws UpstreamUnavailableException Панель сейчас недоступна
+     */
+    public boolean deleteUser(String uuid) {
+        return modifyUser(uuid, new Request.Builder().delete());
+    }
+
+    private boolean modifyUser(String uuid, Request.Builder method) {
+        Request request = method.url(apiBaseUrl + adminProxyPath + "/api/v2/admin/user/" + uuid + "/")
+                .addHeader("Accept", "application/json")
+                .addHeader("Hiddify-API-Key", secretApiKey)
+                .build();
+        try {
+            boolean changed = guard.call(() -> {
+                try (Response response = httpClient.newCall(request).execute()) {
+                    if (response.code() == 404) {
+                        return false;
+                    }
+                    if (!response.isSuccessful()) {
+                        throw new IOException("Hiddify responded with HTTP " + response.code());
+                    }
+                    return true;
+                }
+            });
+            userChanged(uuid);
+            return changed;
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(request.method() + " of Hiddify user " + uuid + " failed", e);
+        }
+    }
+
+    private static HiddifyUser parseUser(JsonObject json) {
+        return new HiddifyUser(
+                json.get("uuid").getAsString(),
+                !json.has("enable") || json.get("enable").getAsBoolean(),
+                number(json, "usage_limit_GB"),
+                number(json, "current_usage_GB"),
+                (int) number(json, "package_days"),
+                string(json, "start_date"),
+                string(json, "comment")
+        );
+    }
+
+    private static String string(JsonObject json, String field) {
+        JsonElement element = json.get(field);
+        return element != null && !element.isJsonNull() ? element.getAsString() : null;
+    }
+
+    /**
+     * Сколько дней осталось у пакета пользователя на дату today; у выключенного или истекшего — 0
+     */
+    static int remainingDays(HiddifyUser user, LocalDate today) {
+        LocalDate expires = user.expiresOn();
+        if (!user.enabled() || expires == null) {
+            return 0;
+        }
+        return (int) Math.max(0, ChronoUnit.DAYS.between(today, expires));
+    }
+
+    private static double number(JsonObject json, String field) {
+        JsonElement element = json.get(field);
+        return element != null && !element.isJsonNull() ? element.getAsDouble() : 0;
+    }
+
+    /**
+     * Достает UUID пользователя панели из ссылки подключения, выданной {@link #createUser}
+     */
+    public static String uuidFromConnectionLink(String connectionLink) {
+        String link = connectionLink.endsWith("/") ? connectionLink.substring(0, connectionLink.length() - 1) : connectionLink;
+        return link.substring(link.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Собирает JSON тела запроса на создание пользователя
+     *
+     * @param userId Telegram ID пользователя
+     * @return JSON для POST /api/v2/admin/user/
+     */
+    String buildCreateUserPayload(long userId, int gigabytes, int days) {
+        // Текущая дата в формате YYYY-MM-DD
+        String currentDate = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+
+        // Создаем данные пользователя
+        JsonObject userJson = new JsonObject();
+        userJson.addProperty("added_by_uuid", (String) null);
+        userJson.addProperty("comment", CREATED_BY_BOT);
+        userJson.addProperty("current_usage_GB", 0); // 50 GB согласно требованиям
+        userJson.addProperty("ed25519_private_key", "string"); // Будет сгенерировано сервером
+        userJson.addProperty("ed25519_public_key", "string");  // Будет сгенерировано сервером
+        userJson.addProperty("enable", true);
+        userJson.addProperty("is_active", true);
+        userJson.addProperty("lang", "ru"); // Используем русский язык для пользователей
+        userJson.addProperty("last_online", (String) null);
+        userJson.addProperty("last_reset_time", (String) null);
+        userJson.addProperty("mode", "no_reset"); // Согласно требованиям
+        userJson.addProperty("name", "");  // Имя пустое ибо нафиг
+        userJson.addProperty("package_days", days); // 30 дней согласно требованиям
+        userJson.addProperty("start_date", currentDate);
+        userJson.addProperty("telegram_id", userId); // Telegram ID пользователя
+        userJson.addProperty("usage_limit_GB", gigabytes); // 100 GB согласно требованиям
+        userJson.addProperty("uuid", (String) null); // Будет сгенерировано сервером
+        userJson.addProperty("wg_pk", "string"); // Будет сгенерировано сервером
+        userJson.addProperty("wg_psk", "string"); // Будет сгенерировано сервером
+        userJson.addProperty("wg_pub", "string"); // Будет сгенерировано сервером
+
+        return gson.toJson(userJson);
+    }
+
+    /**
+     * Собирает JSON тела запроса на продление: только меняемые поля
+     *
+     * @return JSON для PATCH /api/v2/admin/user/{uuid}/
+     */
+    String buildRenewUserPayload(int gigabytes, int packageDays) {
+        JsonObject userJson = new JsonObject();
+        userJson.addProperty("current_usage_GB", 0);
+        userJson.addProperty("usage_limit_GB", gigabytes);
+        userJson.addProperty("package_days", packageDays);
+        userJson.addProperty("start_date", LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
+        userJson.addProperty("enable", true);
+        userJson.addProperty("is_active", true);
+        return gson.toJson(userJson);
+    }
 
     /**
      * deepseek порекомендовал мне сделать вот так, потом посмотрю что лучше
@@ -211,6 +528,10 @@ public class HiddifyApiClient {
     private String generateConnectionLink(String userUuid) {
         // Формат: https://45.67.231.231.sslip.io/aMwTnyTwAxHZo/uuid
         // Это старый сервак если что
+        if (subscriptionLinkBase != null) {
+            // Подписка через кеш бота: https://sub.example.com/sub/uuid
+            return subscriptionLinkBase + "/" + userUuid;
+        }
 
         return apiBaseUrl + userProxyPath + "/" + userUuid;
     }
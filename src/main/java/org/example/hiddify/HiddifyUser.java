@@ -0,0 +1,25 @@
+package org.example.hiddify;
+
+import java.time.LocalDate;
+
+/**
+ * Пользователь панели Hiddify (только нужные боту поля)
+ *
+ * @param uuid           UUID пользователя в панели
+ * @param enabled        Включен ли пользователь
+ * @param usageLimitGb   Лимит трафика, ГБ
+ * @param currentUsageGb Израсходовано, ГБ
+ * @param packageDays    Срок действия пакета, дней
+ * @param startDate      Дата начала пакета (YYYY-MM-DD) или null
+ * @param comment        Комментарий в панели; у созданных ботом — {@link HiddifyApiClient#CREATED_BY_BOT}
+ */
+public record HiddifyUser(String uuid, boolean enabled, double usageLimitGb, double currentUsageGb,
+                          int packageDays, String startDate, String comment) {
+
+    /**
+     * @return Первый день, когда пакет уже не действует, или null, если дата начала неизвестна
+     */
+    public LocalDate expiresOn() {
+        return startDate == null ? null : LocalDate.parse(startDate.substring(0, 10)).plusDays(packageDays);
+    }
+}
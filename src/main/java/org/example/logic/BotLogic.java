@@ -1,46 +1,126 @@
 package org.example.logic;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.admin.AdminCommands;
+import org.example.analytics.EventLog;
+import org.example.analytics.EventType;
+import org.example.callbacks.CallbackAction;
+import org.example.callbacks.CallbackRouter;
 import org.example.config.BotConfig;
 import org.example.db.DatabaseManager;
+import org.example.db.KeyHistory;
+import org.example.db.KeyHistoryRepository;
+import org.example.db.PaymentRepository;
 import org.example.hiddify.HiddifyApiClient;
+import org.example.hiddify.HiddifyUser;
+import org.example.media.QrCodeService;
+import org.example.media.StaticMediaService;
+import org.example.messages.Keyboards;
+import org.example.messages.MessageTemplates;
+import org.example.messages.TemplateRegistry;
+import org.example.ratelimit.UserAction;
+import org.example.ratelimit.UserRateLimiter;
+import org.example.resilience.UpstreamUnavailableException;
+import org.example.scheduling.PriorityExecutor;
+import org.example.scheduling.WorkPriority;
+import org.example.stats.BotStats;
+import org.example.tenancy.TenantContext;
+import org.example.updates.BotUpdate;
+import org.example.updates.UpdateJournal;
 import org.example.yookassa.YooKassaPayment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
-import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 @Service
 public class BotLogic extends TelegramLongPollingBot {
     private static final Logger logger = LoggerFactory.getLogger(BotLogic.class);
-    private static final BigDecimal VPN_PRICE = new BigDecimal("100.00");
+    // Пакет за одну оплату
+    private static final int KEY_TRAFFIC_GB = 100;
+    private static final int KEY_DAYS = 30;
+    // Скриншоты инструкции: bot.media.dir/instructions
+    private static final String INSTRUCTIONS_MEDIA = "instructions";
 
     private final BotConfig botConfig;
     private final DatabaseManager dbManager;
+    private final PaymentRepository payments;
+    private final KeyHistoryRepository keyHistory;
     private final HiddifyApiClient hiddifyClient;
     private final YooKassaPayment yooKassaPayment;
-
-    @Deprecated
-    public BotLogic(BotConfig botConfig, HiddifyApiClient hiddifyClient, DatabaseManager dbManager, YooKassaPayment yooKassaPayment) {
+    private final UpdateJournal updateJournal;
+    private final UserRateLimiter rateLimiter;
+    private final QrCodeService qrCodes;
+    private final StaticMediaService staticMedia;
+    private final EventLog eventLog;
+    private final AdminCommands adminCommands;
+    private final BotStats stats;
+    private final PriorityExecutor scheduler;
+    private final TemplateRegistry templates;
+    private final CallbackRouter<Press> callbacks = new CallbackRouter<>();
+
+    // Контекст нажатия кнопки для обработчиков CallbackRouter
+    private record Press(String chatId, long userId, int messageId, MessageTemplates t) {
+    }
+
+    // Апдейты, которые сейчас обрабатываются, и момент последней доставки от сессии библиотеки (для остановки)
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long lastDeliveryNanos = System.nanoTime();
+    private volatile boolean draining;
+    // Последняя поставленная задача каждого чата: следующая задача того же чата уходит в пул только после нее
+    private final Map<Long, CompletableFuture<Void>> lastByChat = new ConcurrentHashMap<>();
+
+    // QR-коды, картинки и команды администратора нужны не с первого апдейта: вместо них внедряются
+    // ленивые прокси, и сами сервисы создаются при первом вызове, а не при старте
+    public BotLogic(BotConfig botConfig, HiddifyApiClient hiddifyClient, DatabaseManager dbManager, PaymentRepository payments,
+                    KeyHistoryRepository keyHistory, YooKassaPayment yooKassaPayment, UpdateJournal updateJournal, UserRateLimiter rateLimiter, @Lazy QrCodeService qrCodes,
+                    @Lazy StaticMediaService staticMedia, EventLog eventLog, @Lazy AdminCommands adminCommands, BotStats stats,
+                    PriorityExecutor scheduler) {
+        super(createBotOptions(botConfig), botConfig.getToken());
         this.botConfig = botConfig;
         this.dbManager = dbManager;
+        this.payments = payments;
+        this.keyHistory = keyHistory;
         this.hiddifyClient = hiddifyClient;
         this.yooKassaPayment = yooKassaPayment;
+        this.updateJournal = updateJournal;
+        this.rateLimiter = rateLimiter;
+        this.qrCodes = qrCodes;
+        this.staticMedia = staticMedia;
+        this.eventLog = eventLog;
+        this.adminCommands = adminCommands;
+        this.stats = stats;
+        this.scheduler = scheduler;
+        this.templates = TemplateRegistry.load(botConfig, botConfig.getPrice());
+        registerCallbacks();
         logger.info("BotLogic initialized with YooKassa payment integration");
     }
 
+    /**
+     * Настройки клиента Bot API: адрес сервера берется из конфига
+     */
+    private static DefaultBotOptions createBotOptions(BotConfig botConfig) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(botConfig.botApiUrl());
+        return options;
+    }
+
     @Override
     public String getBotUsername() {
         return botConfig.getUsername();
@@ -55,163 +135,234 @@ public class BotLogic extends TelegramLongPollingBot {
     // Обрабатываем поступающие обновления. Либо это сообщение, либо нажатие на кнопку
     @Override
     public void onUpdateReceived(Update update) {
-        if (update.hasMessage() && update.getMessage().hasText()) {
-            handleTextMessage(update.getMessage());
-        } else if (update.hasCallbackQuery()) {
-            handleCallbackQuery(update.getCallbackQuery());
+        BotUpdate botUpdate = BotUpdate.from(update);
+        lastDeliveryNanos = System.nanoTime();
+        if (draining) {
+            // Сессия библиотеки уже подтвердила этот апдейт Telegram: откладываем его в журнал до следующего старта
+            if (updateJournal.append(botUpdate)) {
+                logger.info("Deferred update {} to the next start", botUpdate.updateId());
+            }
+            return;
         }
+        handleUpdate(botUpdate);
     }
 
-    // Если нам поступило сообщение старт, то выводим меню, иначе выводим что не понял
-    private void handleTextMessage(Message message) {
-        long userId = message.getFrom().getId();
-        String chatId = message.getChatId().toString();
-        String receivedText = message.getText();
-        String username = message.getFrom().getUserName();
-
-        logger.info("Received message '{}' from user {} (username: {})", receivedText, userId, username);
-
-        dbManager.addUser(userId);
-
-        if ("/start".equals(receivedText)) {
-            sendMainMenu(chatId);
-        } else {
-            SendMessage answerMessage = new SendMessage();
-            answerMessage.setChatId(chatId);
-            answerMessage.setText("Некорректное сообщение");
-            sendMessage(answerMessage);
-        }
+    /**
+     * Начало остановки: новые апдейты от сессии библиотеки больше не обрабатываются, а откладываются в журнал
+     */
+    public void beginDrain() {
+        draining = true;
     }
 
-    private void handleCallbackQuery(CallbackQuery callbackQuery) {
-        String callbackData = callbackQuery.getData();  // Данные с кнопки
-        String chatId = callbackQuery.getMessage().getChatId().toString();
-        long userId = callbackQuery.getFrom().getId();
-        int messageId = callbackQuery.getMessage().getMessageId();
-
-        logger.info("Received callback '{}' from user {}", callbackData, userId);
-
-        // Отдельно обрабатываем кнопку проверки оплаты
-        if (callbackData.startsWith("check_payment:")) {  // Если нажали на кнопку проверки оплаты
-            String paymentId = callbackData.substring("check_payment:".length());
-            checkPaymentStatus(chatId, userId, paymentId);
-            removeInlineKeyboard(chatId, messageId);
-            removeInlineKeyboard(chatId, messageId);
-            return;
+    /**
+     * Ждет, пока закончатся начатые обработчики
+     *
+     * @return false, если к сроку что-то еще обрабатывается
+     */
+    public boolean awaitIdle(long deadlineNanos) throws InterruptedException {
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            Thread.sleep(20);
         }
+        return true;
+    }
 
-        // Отдельно обрабатываем кнопку отмены оплаты
-        if (callbackData.startsWith("cancel_payment:")) {  // Если нажали на кнопку отмены оплаты
-            String paymentId = callbackData.substring("cancel_payment:".length());
-            cancelPayment(chatId, userId, paymentId);
-            removeInlineKeyboard(chatId, messageId);
-            return;
-        }
+    /**
+     * @return Сколько миллисекунд назад сессия библиотеки отдала последний апдейт
+     */
+    public long millisSinceLastDelivery() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastDeliveryNanos);
+    }
 
-        switch (callbackData) {
-            case "buy_key" -> {
-                handleBuyKeyRequest(chatId, userId);
-                removeInlineKeyboard(chatId, messageId);
+    /**
+     * Общая точка входа для всех источников апдейтов (сессия библиотеки или LongPollUpdateSource).
+     * Апдейт попадает в журнал до обработки, так что падение посреди обработки его не потеряет.
+     * Сама обработка идет в пуле PriorityExecutor: проверка оплаты раньше создания платежа, а оно раньше меню.
+     * Апдейты одного чата при этом идут по порядку: задача чата попадает в пул, когда закончилась предыдущая.
+     */
+    public void handleUpdate(BotUpdate update) {
+        stats.updateReceived(botConfig.getTenant());
+        inFlight.incrementAndGet();
+        boolean scheduled = false;
+        try {
+            if (!admit(update)) {
+                return;
             }
-            case "show_key" -> {
-                handleShowExistingKey(chatId, userId);
-                removeInlineKeyboard(chatId, messageId);
+            if (!updateJournal.append(update)) {
+                logger.info("Skipping already journaled update {}", update.updateId());
+                return;
             }
-            case "instructions" -> {
-                sendInstructions(chatId);
-                removeInlineKeyboard(chatId, messageId);
-            }
-            case "main_menu" -> {
-                sendMainMenu(chatId);
-                removeInlineKeyboard(chatId, messageId);
-
+            // Дальше счетчик начатых обработчиков уменьшает сама задача
+            scheduled = true;
+            long chatId = update.chatId();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            Runnable submit = () -> scheduler.execute(priorityOf(update), () -> {
+                try {
+                    dispatch(update);
+                } finally {
+                    updateJournal.markDone(update.updateId());
+                    inFlight.decrementAndGet();
+                    lastByChat.remove(chatId, done);
+                    done.complete(null);
+                }
+            });
+            // Апдейты приходят из одного потока источника, так что put задает порядок внутри чата
+            CompletableFuture<Void> previous = lastByChat.put(chatId, done);
+            if (previous == null) {
+                submit.run();
+            } else {
+                previous.whenComplete((ignored, error) -> submit.run());
             }
-            case "pay_vpn" -> {
-                initiatePayment(chatId, userId);
-                removeInlineKeyboard(chatId, messageId);
-
+        } finally {
+            if (!scheduled) {
+                inFlight.decrementAndGet();
             }
         }
     }
 
-    // Отдельные методы для inline кнопок
-    
     /**
-     * Создает клавиатуру с одной кнопкой "Назад в меню"
+     * Повторно обрабатывает апдейты, которые не успели обработать до падения.
+     * Вызывается при старте до того, как начнут приходить новые апдейты.
      */
-    private InlineKeyboardMarkup createBackToMenuKeyboard() {
-        return createKeyboard(
-            createButtonRow(createButton("⬅️ Назад в меню", "main_menu"))
-        );
+    public void replayJournal() {
+        for (BotUpdate update : updateJournal.takePendingReplay()) {
+            logger.info("Replaying update {} from journal", update.updateId());
+            try {
+                dispatch(update);
+            } catch (RuntimeException e) {
+                logger.error("Failed to replay update {}: {}", update.updateId(), e.getMessage());
+            } finally {
+                updateJournal.markDone(update.updateId());
+            }
+        }
     }
-    
+
     /**
-     * Создает клавиатуру с двумя кнопками: "Инструкция" и "Назад в меню"
+     * Обработка апдейта из общей очереди кластера. Журнал не нужен: строка очереди удаляется только после обработки,
+     * а партиция при переезде на другой узел продолжит с той же строки.
+     *
+     * @return Завершается, когда апдейт обработан (успешно или с ошибкой) или отклонен лимитом
      */
-    private InlineKeyboardMarkup createInstructionsAndMenuKeyboard() {
-        return createKeyboard(
-            createButtonRow(createButton("📖 Инструкция", "instructions")),
-            createButtonRow(createButton("⬅️ Назад в меню", "main_menu"))
-        );
+    public CompletableFuture<Void> handleQueuedUpdate(BotUpdate update) {
+        stats.updateReceived(botConfig.getTenant());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        inFlight.incrementAndGet();
+        if (!admit(update)) {
+            inFlight.decrementAndGet();
+            done.complete(null);
+            return done;
+        }
+        scheduler.execute(priorityOf(update), () -> {
+            try {
+                dispatch(update);
+            } catch (RuntimeException e) {
+                logger.error("Failed to handle queued update {}: {}", update.updateId(), e.getMessage(), e);
+            } finally {
+                inFlight.decrementAndGet();
+                done.complete(null);
+            }
+        });
+        return done;
     }
-    
-    /**
-     * Создает кнопку проверки оплаты и кнопку возврата
-     */
-    private InlineKeyboardMarkup createPaymentCheckKeyboard(String paymentId) {
-        return createKeyboard(
-            createButtonRow(createButton("✅ Проверить оплату", "check_payment:" + paymentId)),
-            createButtonRow(createButton("⬅️ Отменить и вернуться в меню", "cancel_payment:" + paymentId))
-        );
+
+    private static WorkPriority priorityOf(BotUpdate update) {
+        return WorkPriority.of(UserAction.of(update));
     }
-    
+
     /**
-     * Создает кнопку для создания кнопок Telegram
+     * Проверка лимита до любой работы: ни журнала, ни базы, ни внешних сервисов.
+     * Отклоненный апдейт просто отбрасывается; напоминание о лимите тоже ограничено своим бюджетом.
      */
-    private InlineKeyboardButton createButton(String text, String callbackData) {
-        InlineKeyboardButton button = new InlineKeyboardButton();
-        button.setText(text);
-        button.setCallbackData(callbackData);
-        return button;
+    private boolean admit(BotUpdate update) {
+        if (!update.isMessage() && !update.isCallback()) {
+            return true;
+        }
+        UserAction action = UserAction.of(update);
+        if (rateLimiter.tryAcquire(update.userId(), action)) {
+            return true;
+        }
+        logger.debug("Throttled {} update {} from user {}", action, update.updateId(), update.userId());
+        if (rateLimiter.tryAcquire(update.userId(), UserAction.NOTICE)) {
+            String text = templates.forLanguage(update.languageCode()).throttled();
+            sendMessage(createMessage(Long.toString(update.chatId()), text, null));
+        }
+        return false;
     }
-    
-    /**
-     * Создает кнопку с URL
-     */
-    private InlineKeyboardButton createUrlButton() {
-        InlineKeyboardButton button = new InlineKeyboardButton();
-        button.setText("📞 Поддержка");
-        button.setUrl("https://t.me/caucasian114");
-        return button;
+
+    // Потоки пула общие для всех ботов процесса: репозитории узнают арендатора из TenantContext
+    private void dispatch(BotUpdate update) {
+        TenantContext.run(botConfig.getTenant(), () -> {
+            if (update.isMessage()) {
+                handleTextMessage(update);
+            } else if (update.isCallback()) {
+                handleCallbackQuery(update);
+            }
+        });
     }
-    
-    /**
-     * Создает ряд кнопок
-     */
-    private List<InlineKeyboardButton> createButtonRow(InlineKeyboardButton... buttons) {
-        List<InlineKeyboardButton> row = new ArrayList<>();
-        Collections.addAll(row, buttons);
-        return row;
+
+    // Если нам поступило сообщение старт, то выводим меню, иначе выводим что не понял
+    private void handleTextMessage(BotUpdate message) {
+        long userId = message.userId();
+        String chatId = Long.toString(message.chatId());
+        String receivedText = message.text();
+        String username = message.username();
+        MessageTemplates t = templates.forLanguage(message.languageCode());
+
+        logger.info("Received message '{}' from user {} (username: {})", receivedText, userId, username);
+
+        dbManager.addUser(userId);
+        eventLog.record("/start".equals(receivedText) ? EventType.START : EventType.MESSAGE, userId);
+
+        if ("/start".equals(receivedText)) {
+            sendMainMenu(chatId, t);
+        } else if (!adminCommands.handle(this, botConfig, userId, chatId, receivedText)) {
+            sendMessage(createMessage(chatId, t.invalidMessage(), null));
+        }
     }
-    
-    /**
-     * Создает клавиатуру из рядов кнопок
-     */
-    @SafeVarargs  // Нужно для подавления 
-    private InlineKeyboardMarkup createKeyboard(List<InlineKeyboardButton>... rows) {
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-        Collections.addAll(keyboard, rows);
-        markup.setKeyboard(keyboard);
-        return markup;
+
+    private void handleCallbackQuery(BotUpdate callbackQuery) {
+        String callbackData = callbackQuery.callbackData();  // Данные с кнопки
+        String chatId = Long.toString(callbackQuery.chatId());
+        long userId = callbackQuery.userId();
+        int messageId = callbackQuery.messageId();
+        MessageTemplates t = templates.forLanguage(callbackQuery.languageCode());
+
+        logger.info("Received callback '{}' from user {}", callbackData, userId);
+        eventLog.callback(userId, callbackData);
+
+        switch (callbacks.dispatch(callbackData, new Press(chatId, userId, messageId, t))) {
+            case HANDLED -> removeInlineKeyboard(chatId, messageId);
+            case STALE -> {
+                // Кнопка из сообщения, отправленного прошлой версией бота: вместо нее актуальное меню
+                sendMessage(createMessage(chatId, t.staleButton(), null));
+                sendMainMenu(chatId, t);
+                removeInlineKeyboard(chatId, messageId);
+            }
+            case UNHANDLED -> logger.warn("No handler for callback '{}'", callbackData);
+        }
     }
-    
+
+    private void registerCallbacks() {
+        callbacks.register(CallbackAction.BUY_KEY, (p, payload) -> handleBuyKeyRequest(p.chatId(), p.t(), p.userId()))
+                .register(CallbackAction.SHOW_KEY, (p, payload) -> handleShowExistingKey(p.chatId(), p.t(), p.userId()))
+                .register(CallbackAction.SHOW_QR, (p, payload) -> sendQrCode(p.chatId(), p.t(), p.userId()))
+                .register(CallbackAction.INSTRUCTIONS, (p, payload) -> sendInstructions(p.chatId(), p.t()))
+                .register(CallbackAction.MAIN_MENU, (p, payload) -> sendMainMenu(p.chatId(), p.t()))
+                .register(CallbackAction.PAY_VPN, (p, payload) -> initiatePayment(p.chatId(), p.t(), p.userId()))
+                .register(CallbackAction.CHECK_PAYMENT, (p, paymentId) -> checkPaymentStatus(p.chatId(), p.t(), p.userId(), paymentId))
+                .register(CallbackAction.CANCEL_PAYMENT, (p, paymentId) -> cancelPayment(p.chatId(), p.t(), p.userId(), paymentId));
+    }
+
     // Отдельные методы для сообщений
-    
+    // (package-private, чтобы их можно было замерить бенчмарками из src/jmh).
+    // Тексты и клавиатуры берутся готовыми из MessageTemplates, здесь собирается только SendMessage.
+
     /**
      * Создает базовое сообщение с клавиатурой
      */
-    private SendMessage createMessage(String chatId, String text, InlineKeyboardMarkup keyboard) {
+    SendMessage createMessage(String chatId, String text, InlineKeyboardMarkup keyboard) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(text);
@@ -222,7 +373,7 @@ public class BotLogic extends TelegramLongPollingBot {
     /**
      * Создает HTML сообщение с клавиатурой
      */
-    private SendMessage createHtmlMessage(String chatId, String text, InlineKeyboardMarkup keyboard) {
+    SendMessage createHtmlMessage(String chatId, String text, InlineKeyboardMarkup keyboard) {
         SendMessage message = createMessage(chatId, text, keyboard);
         message.setParseMode("HTML");
         return message;
@@ -231,12 +382,19 @@ public class BotLogic extends TelegramLongPollingBot {
     /**
      * Создает Markdown сообщение с клавиатурой
      */
-    private SendMessage createMarkdownMessage(String chatId, String text, InlineKeyboardMarkup keyboard) {
+    SendMessage createMarkdownMessage(String chatId, String text, InlineKeyboardMarkup keyboard) {
         SendMessage message = createMessage(chatId, text, keyboard);
         message.enableMarkdown(true);
         return message;
     }
 
+    /**
+     * Главное меню: текст и клавиатура готовые, новый только сам SendMessage
+     */
+    SendMessage createMainMenuMessage(String chatId, MessageTemplates t) {
+        return createHtmlMessage(chatId, t.welcome(), t.mainMenuKeyboard());
+    }
+
     /**
      * Безопасно отправляет сообщение с логированием
      */
@@ -252,20 +410,22 @@ public class BotLogic extends TelegramLongPollingBot {
     /**
      * Отправляет сообщение об ошибке с кнопкой возврата в меню
      */
-    private void sendErrorMessage(String chatId, String errorText) {
-        sendMessage(createMessage(chatId, errorText, createBackToMenuKeyboard()));
+    private void sendErrorMessage(String chatId, MessageTemplates t, String errorText) {
+        sendMessage(createMessage(chatId, errorText, t.backToMenuKeyboard()));
     }
 
     /**
      * Отправляет сообщение об ошибке с кнопкой поддержки
      */
-    private void sendSupportErrorMessage(String chatId, String errorText) {
-        InlineKeyboardMarkup keyboard = createKeyboard(
-            createButtonRow(createUrlButton()),
-            createButtonRow(createButton("⬅️ Вернуться в меню", "main_menu"))
-        );
-        
-        sendMessage(createMessage(chatId, errorText, keyboard));
+    private void sendSupportErrorMessage(String chatId, MessageTemplates t, String errorText) {
+        sendMessage(createMessage(chatId, errorText, t.supportKeyboard()));
+    }
+
+    /**
+     * Ответ, когда внешний сервис недоступен: приходит сразу, без ожидания таймаутов
+     */
+    private void sendDegradedMessage(String chatId, String text, InlineKeyboardMarkup keyboard) {
+        sendMessage(createMessage(chatId, text, keyboard));
     }
 
     private void sendCancelPaymentMessage(String chatId, String errorText) {
@@ -277,105 +437,76 @@ public class BotLogic extends TelegramLongPollingBot {
     /**
      * Отправляет главное меню с инлайн-кнопками
      */
-    private void sendMainMenu(String chatId) {
-        InlineKeyboardMarkup keyboard = createKeyboard(
-            createButtonRow(createButton("\uD83D\uDCB3 Купить ключ", "buy_key")),
-            createButtonRow(
-                createButton("\uD83D\uDD11 Мой ключ", "show_key"),
-                createButton("\uD83D\uDCD6 Инструкция", "instructions")
-            )
-        );
-        
-        SendMessage message = createMessage(
-            chatId, 
-            "\uD83C\uDF0D Добро пожаловать в " + botConfig.getNickname() + "! \uD83D\uDD12",
-            keyboard
-        );
-        message.setParseMode("HTML");
-        
-        sendMessage(message);
+    private void sendMainMenu(String chatId, MessageTemplates t) {
+        sendMessage(createMainMenuMessage(chatId, t));
     }
 
     /**
      * Обрабатывает запрос на покупку ключа
      */
-    private void handleBuyKeyRequest(String chatId, long userId) {
+    private void handleBuyKeyRequest(String chatId, MessageTemplates t, long userId) {
         // Сначала проверяем, есть ли у пользователя уже ключ
         String existingKey = dbManager.getVpnKey(userId);
 
         if (existingKey != null && !existingKey.isEmpty()) {
             // У пользователя уже есть ключ
-            showExistingKeyDetails(chatId, userId, existingKey);
+            showExistingKeyDetails(chatId, t, userId, existingKey);
         } else {
             // Отправляем предложение об оплате
-            sendPaymentOffer(chatId);
+            sendPaymentOffer(chatId, t);
         }
     }
 
     /**
      * Отображает детали существующего ключа
      */
-    private void showExistingKeyDetails(String chatId, long userId, String key) {
+    private void showExistingKeyDetails(String chatId, MessageTemplates t, long userId, String key) {
         String keyDate = dbManager.getKeyCreationDate(userId);
-        String dateInfo = (keyDate != null) ? "\uD83D\uDDD3️ Ключ создан: " + keyDate : "";
-        String formattedKey = "<code>" + key + "</code>";
-        
-        String text = "\uD83D\uDD27 Ваш ключ VPN:\n\n" + formattedKey +
-                "\n\n" + "<i>⬆ Нажмите чтобы скопировать</i>" +
-                "\n\n" + dateInfo + "\n" +
-                "\n❗ Этот ключ действителен 30 дней с момента получения. \n\n" +
-                "⚙️ Для инструкции по подключению нажмите кнопку \"Инструкция\".";
-                
-        sendMessage(createHtmlMessage(chatId, text, createInstructionsAndMenuKeyboard()));
+        String text = t.keyDetails(key, keyDate);
+        sendMessage(createHtmlMessage(chatId, text, t.keyDetailsKeyboard()));
     }
 
     /**
-     * Отправляет предложение об оплате
+     * Отправляет предложение об оплате.
+     * Кнопка pay_vpn ведет в initiatePayment, main_menu — в sendMainMenu.
      */
-    private void sendPaymentOffer(String chatId) {
-        InlineKeyboardMarkup keyboard = createKeyboard(
-                // Если ты нажал на pay_vpn, то выполнится initiatePayment
-                // Если ты нажал на main_menu, то выполнится sendMainMenu
-            createButtonRow(createButton("Оплатить " + VPN_PRICE + " руб.", "pay_vpn")),
-            createButtonRow(createButton("⬅️ Назад в меню", "main_menu"))
-        );
-        
-        String text = "💳 Для получения ключа VPN необходимо произвести оплату в размере " + VPN_PRICE + " руб.";
-        
-        sendMessage(createHtmlMessage(chatId, text, keyboard));
+    private void sendPaymentOffer(String chatId, MessageTemplates t) {
+        sendMessage(createHtmlMessage(chatId, t.paymentOffer(), t.paymentOfferKeyboard()));
     }
 
     /**
      * Инициирует процесс оплаты через YooKassa
      */
-    private void initiatePayment(String chatId, long userId) {
+    private void initiatePayment(String chatId, MessageTemplates t, long userId) {
         logger.info("Initiating payment for user {}", userId);
 
         try {
             // Создаем платеж через YooKassa
             String description = "Оплата VPN ключа для пользователя " + userId;
             // Метод createPayment возвращает нам ссылку для оплаты
-            String confirmationUrl = yooKassaPayment.createPayment(VPN_PRICE, description);
+            String confirmationUrl = yooKassaPayment.createPayment(botConfig.getPrice(), description);
 
             // Извлекаем payment_id из URL
             String paymentId = confirmationUrl.substring(confirmationUrl.lastIndexOf("=") + 1);
-            
-            String text = "💳 Для оплаты перейдите по ссылке ниже:\n\n" + confirmationUrl +
-                    "\n\n⏳ После оплаты нажмите кнопку 'Проверить оплату'";
-            
-            sendMessage(createHtmlMessage(chatId, text, createPaymentCheckKeyboard(paymentId)));
+            payments.create(paymentId, userId, botConfig.getPrice());
+
+            sendMessage(createHtmlMessage(chatId, t.paymentLink(confirmationUrl), t.paymentCheckKeyboard(paymentId)));
+            eventLog.payment(EventType.PAYMENT_CREATED, userId, paymentId, botConfig.getPrice());
             
             logger.info("Payment link sent to user {}, paymentId: {}", userId, paymentId);
+        } catch (UpstreamUnavailableException e) {
+            logger.warn("Payment for user {} not created: {}", userId, e.getMessage());
+            sendDegradedMessage(chatId, t.paymentsDegraded(), t.backToMenuKeyboard());
         } catch (Exception e) {
             logger.error("Error initiating payment for user {}: {}", userId, e.getMessage());
-            sendErrorMessage(chatId, "❌ Произошла ошибка при создании платежа. Пожалуйста, попробуйте позже.");
+            sendErrorMessage(chatId, t, t.errorCreatePayment());
         }
     }
 
     /**
      * Проверяет статус оплаты
      */
-    private void checkPaymentStatus(String chatId, long userId, String paymentId) {
+    private void checkPaymentStatus(String chatId, MessageTemplates t, long userId, String paymentId) {
         logger.info("Checking payment status for user {}, paymentId: {}", userId, paymentId);
 
         try {
@@ -383,40 +514,44 @@ public class BotLogic extends TelegramLongPollingBot {
             logger.info("Payment status for paymentId {}: {}", paymentId, status);
 
             switch (status) {
-                case "succeeded" -> processSuccessfulPayment(chatId, userId);
-                case "pending" -> {
-                    String text = "⏳ Ваш платеж обрабатывается. Пожалуйста, подождите немного и проверьте статус снова.";
-                    InlineKeyboardMarkup keyboard = createKeyboard(
-                        createButtonRow(createButton("🔄 Проверить снова", "check_payment:" + paymentId)),
-                        createButtonRow(createButton("⬅️ Вернуться в меню", "main_menu"))
-                    );
-                    sendMessage(createMessage(chatId, text, keyboard));
+                case "succeeded" -> {
+                    // Событие и выручка — только при первом переходе, повторные проверки их не дублируют
+                    if (payments.markSucceeded(paymentId)) {
+                        eventLog.payment(EventType.PAYMENT_SUCCEEDED, userId, paymentId, botConfig.getPrice());
+                    }
+                    processSuccessfulPayment(chatId, t, userId, paymentId);
                 }
+                case "pending" -> sendMessage(createMessage(chatId, t.paymentPending(), t.checkAgainKeyboard(paymentId)));
                 default -> {
-                    String text = "❌ Платеж не был завершен. Статус: " + status + ". Пожалуйста, попробуйте еще раз.";
-                    InlineKeyboardMarkup keyboard = createKeyboard(
-                        createButtonRow(createButton("🔄 Попробовать снова", "buy_key")),
-                        createButtonRow(createButton("⬅️ Вернуться в меню", "main_menu"))
-                    );
-                    sendMessage(createMessage(chatId, text, keyboard));
+                    payments.markCanceled(paymentId);
+                    sendMessage(createMessage(chatId, t.paymentFailed(status), t.paymentFailedKeyboard()));
                 }
             }
+        } catch (UpstreamUnavailableException e) {
+            logger.warn("Payment status for user {} not checked: {}", userId, e.getMessage());
+            sendDegradedMessage(chatId, t.paymentsDegraded(), t.checkAgainKeyboard(paymentId));
         } catch (Exception e) {
             logger.error("Error checking payment status for user {}: {}", userId, e.getMessage());
-            sendErrorMessage(chatId, "❌ Произошла ошибка при проверке статуса платежа. Пожалуйста, попробуйте позже.");
+            sendErrorMessage(chatId, t, t.errorCheckPayment());
         }
     }
 
-    private void cancelPayment(String chatId, long userId, String paymentId) {
+    private void cancelPayment(String chatId, MessageTemplates t, long userId, String paymentId) {
         logger.info("Cancel payment for user {}, paymentId: {}", userId, paymentId);
         try {
             yooKassaPayment.cancelPayment(paymentId);
-            sendCancelPaymentMessage(chatId, "\uD83D\uDCC9 Платёж отменён");
+            sendCancelPaymentMessage(chatId, t.paymentCanceled());
+            if (payments.markCanceled(paymentId)) {
+                eventLog.payment(EventType.PAYMENT_CANCELLED, userId, paymentId, botConfig.getPrice());
+            }
 
             logger.info("Payment successfully canceled for user {}, paymentId: {}", userId, paymentId);
+        } catch (UpstreamUnavailableException e) {
+            logger.warn("Payment for user {} not canceled: {}", userId, e.getMessage());
+            sendDegradedMessage(chatId, t.paymentsDegraded(), t.backToMenuKeyboard());
         } catch (Exception e) {
             logger.error("Error cancel payment for user {}: {}", userId, e.getMessage());
-            sendErrorMessage(chatId, "❌ Произошла ошибка при отмене платежа. Пожалуйста, попробуйте позже.");
+            sendErrorMessage(chatId, t, t.errorCancelPayment());
         }
     }
 
@@ -424,7 +559,7 @@ public class BotLogic extends TelegramLongPollingBot {
         EditMessageReplyMarkup editMessageReplyMarkup = new EditMessageReplyMarkup();
         editMessageReplyMarkup.setChatId(chatId);
         editMessageReplyMarkup.setMessageId(messageId);
-        editMessageReplyMarkup.setReplyMarkup(new InlineKeyboardMarkup(Collections.emptyList())); // Создаем пустую клавиатуру
+        editMessageReplyMarkup.setReplyMarkup(Keyboards.EMPTY); // Общая пустая клавиатура
 
         try {
             execute(editMessageReplyMarkup);
@@ -434,104 +569,149 @@ public class BotLogic extends TelegramLongPollingBot {
     }
 
     /**
-     * Обрабатывает успешную оплату и генерирует VPN ключ
+     * Обрабатывает успешную оплату: продлевает ключ, если он уже есть, иначе создает новый.
+     * За одну оплату ключ выдается один раз, даже если оплату проверяют повторно.
      */
-    private void processSuccessfulPayment(String chatId, long userId) {
+    private void processSuccessfulPayment(String chatId, MessageTemplates t, long userId, String paymentId) {
         logger.info("Processing successful payment for user {}", userId);
 
+        if (!payments.claimKeyIssue(paymentId, userId, botConfig.getPrice())) {
+            String key = dbManager.getVpnKey(userId);
+            if (key != null && payments.isKeyIssued(paymentId)) {
+                sendMessage(createHtmlMessage(chatId, t.keyReady(key), t.keyReadyKeyboard()));
+            } else {
+                // Ключ за эту оплату прямо сейчас выдает другой обработчик
+                sendMessage(createMessage(chatId, t.keyGenerating(), t.getKeyKeyboard(paymentId)));
+            }
+            return;
+        }
+
+        // Панель уже выдала или продлила ключ: даже если запись об этом не удалась, занятость не снимается,
+        // иначе повторная проверка оплаты продлила бы ключ второй раз
+        boolean panelDone = false;
         try {
             // Отправляем сообщение о начале генерации ключа
-            sendMessage(createMessage(
-                chatId, 
-                "✅ Оплата успешно произведена! ⏳ Генерируем для вас ключ VPN...",
-                null
-            ));
+            sendMessage(createMessage(chatId, t.keyGenerating(), null));
+
+            // Есть ключ — продлеваем того же пользователя панели, ссылка не меняется
+            String existingKey = dbManager.getVpnKey(userId);
+            HiddifyUser renewed = existingKey == null ? null
+                    : hiddifyClient.renewUser(HiddifyApiClient.uuidFromConnectionLink(existingKey), KEY_TRAFFIC_GB, KEY_DAYS);
+
+            if (renewed != null) {
+                panelDone = true;
+                dbManager.saveVpnKey(userId, existingKey);
+                keyHistory.record(userId, renewed.uuid(), KeyHistory.RENEWED, paymentId, renewed.packageDays());
+                sendMessage(createHtmlMessage(chatId, t.keyRenewed(existingKey, renewed.packageDays()), t.keyReadyKeyboard()));
+                eventLog.record(EventType.KEY_ISSUED, userId);
+
+                logger.info("VPN key of user {} renewed for {} days", userId, renewed.packageDays());
+                return;
+            }
 
             // Создаем VPN ключ
-            String vpnKey = hiddifyClient.createUser(userId, 100, 30);
+            String vpnKey = hiddifyClient.createUser(userId, KEY_TRAFFIC_GB, KEY_DAYS);
 
             if (vpnKey != null) {
+                panelDone = true;
                 // Обновляем дату создания ключа и сохраняем ключ в базе данных
                 // А также выводим текст о готовности ключа
-                updateAndSave(chatId, userId, vpnKey);
+                updateAndSave(chatId, t, userId, vpnKey);
+                keyHistory.record(userId, HiddifyApiClient.uuidFromConnectionLink(vpnKey), KeyHistory.ISSUED, paymentId, KEY_DAYS);
+                eventLog.record(EventType.KEY_ISSUED, userId);
 
                 logger.info("VPN key successfully generated and sent to user {}", userId);
             } else {
                 logger.error("Failed to generate VPN key for user {} after successful payment", userId);
-                sendSupportErrorMessage(chatId, 
-                    "❌ Не удалось сгенерировать ключ VPN. Пожалуйста, попробуйте позже или обратитесь в поддержку."
-                );
+                eventLog.record(EventType.KEY_FAILED, userId);
+                sendSupportErrorMessage(chatId, t, t.errorKeyNotGenerated());
             }
+        } catch (UpstreamUnavailableException e) {
+            // Платеж уже прошел: повторная проверка оплаты снова попробует выдать ключ
+            logger.warn("VPN key for user {} postponed: {}", userId, e.getMessage());
+            eventLog.record(EventType.KEY_FAILED, userId);
+            sendDegradedMessage(chatId, t.keyPostponed(), t.getKeyKeyboard(paymentId));
         } catch (Exception e) {
             logger.error("Error processing successful payment for user {}: {}", userId, e.getMessage());
-            sendSupportErrorMessage(chatId, 
-                "❌ Произошла ошибка при генерации ключа. Пожалуйста, обратитесь в поддержку."
-            );
+            eventLog.record(EventType.KEY_FAILED, userId);
+            sendSupportErrorMessage(chatId, t, t.errorKeyGeneration());
+        } finally {
+            if (!panelDone) {
+                payments.releaseKeyIssue(paymentId);
+            }
         }
     }
 
-    private void updateAndSave(String chatId, long userId, String vpnKey) {
+    private void updateAndSave(String chatId, MessageTemplates t, long userId, String vpnKey) {
         dbManager.updateKeyCreationDate(userId);
         dbManager.saveVpnKey(userId, vpnKey);
 
-        String formattedKey = "<code>" + vpnKey + "</code>";
-        String text = "✅ Ваш ключ VPN готов:\n\n" + formattedKey +
-                "\n" + "<i>⬆ Нажмите чтобы скопировать</i>" +
-                "\n\n❗ Этот ключ действителен на 30 дней и имеет лимит 100 ГБ трафика.";
-
-        InlineKeyboardMarkup keyboard = createKeyboard(
-            createButtonRow(createButton("📖 Инструкция по подключению", "instructions")),
-            createButtonRow(createButton("⬅️ В главное меню", "main_menu"))
-        );
-
-        sendMessage(createHtmlMessage(chatId, text, keyboard));
+        sendMessage(createHtmlMessage(chatId, t.keyReady(vpnKey), t.keyReadyKeyboard()));
     }
 
     /**
      * Показывает существующий ключ пользователя
      */
-    private void handleShowExistingKey(String chatId, long userId) {
+    private void handleShowExistingKey(String chatId, MessageTemplates t, long userId) {
         String existingKey = dbManager.getVpnKey(userId);
 
         if (existingKey != null && !existingKey.isEmpty()) {
-            showExistingKeyDetails(chatId, userId, existingKey);
+            showExistingKeyDetails(chatId, t, userId, existingKey);
         } else {
-            InlineKeyboardMarkup keyboard = createKeyboard(
-                createButtonRow(createButton("💳 Купить ключ", "buy_key")),
-                createButtonRow(createButton("⬅️ В главное меню", "main_menu"))
-            );
-            
-            sendMessage(createMessage(chatId, "\uD83D\uDCC9 У вас еще нет ключа VPN.", keyboard));
+            sendMessage(createMessage(chatId, t.keyNone(), t.noKeyKeyboard()));
+        }
+    }
+
+    /**
+     * Отправляет QR-код ссылки подписки. Первый раз картинка рисуется и загружается в фоне,
+     * дальше фото уходит по сохраненному file_id.
+     */
+    private void sendQrCode(String chatId, MessageTemplates t, long userId) {
+        String key = dbManager.getVpnKey(userId);
+        if (key == null || key.isEmpty()) {
+            sendMessage(createMessage(chatId, t.keyNone(), t.noKeyKeyboard()));
+            return;
+        }
+
+        boolean accepted = qrCodes.send(HiddifyApiClient.uuidFromConnectionLink(key), key,
+                photo -> sendPhoto(chatId, photo, t.qrCaption(), t.backToMenuKeyboard()),
+                () -> sendErrorMessage(chatId, t, t.qrFailed()));
+        if (!accepted) {
+            sendErrorMessage(chatId, t, t.qrBusy());
+        }
+    }
+
+    /**
+     * @return file_id самого большого размера отправленного фото
+     */
+    private String sendPhoto(String chatId, InputFile photo, String caption, InlineKeyboardMarkup keyboard)
+            throws TelegramApiException {
+        SendPhoto sendPhoto = new SendPhoto();
+        sendPhoto.setChatId(chatId);
+        sendPhoto.setPhoto(photo);
+        sendPhoto.setCaption(caption);
+        sendPhoto.setReplyMarkup(keyboard);
+        Message sent = execute(sendPhoto);
+        logger.info("Photo sent successfully to chat {}", chatId);
+        if (sent == null || sent.getPhoto() == null || sent.getPhoto().isEmpty()) {
+            return null;
         }
+        PhotoSize largest = sent.getPhoto().get(sent.getPhoto().size() - 1);
+        return largest.getFileId();
     }
 
     /**
-     * Отправляет инструкцию по подключению с кнопкой возврата в главное меню
+     * Отправляет скриншоты по платформам одним альбомом, затем инструкцию по подключению с кнопкой возврата в меню.
+     * У альбома не может быть клавиатуры, поэтому текст идет отдельным сообщением.
      */
-    private void sendInstructions(String chatId) {
-        String instructions = """
-    📱 *Инструкция по подключению к VPN*
-
-    1️⃣ *Установите приложение Hiddify:*
-    ▪️ Android: [Google Play](https://play.google.com/store/apps/details?id=app.hiddify.com)
-    ▪️ iOS: [App Store](https://apps.apple.com/app/hiddify/id6444472349)
-    ▪️ Windows: [Скачать](https://github.com/hiddify/hiddify-next/releases/latest)
-
-    2️⃣ *Подключение к серверу:*
-    ▪️ Скопируйте купленный ключ
-    ▪️ Откройте установленное приложение
-    ▪️ Нажмите на + в правом верхнем углу
-    ▪️ Выберите "Импорт из URL"
-    ▪️ Готово!
-
-    3️⃣ *Использование:*
-    ▪️ Выберите добавленный сервер
-    ▪️ Нажмите кнопку подключения (круглая кнопка посередине)
-    ▪️ Готово! Вы подключены к VPN
-
-    ❓ Если у вас возникли вопросы, обратитесь в [поддержку](https://t.me/caucasian114).
-    """;
-
-        sendMessage(createMarkdownMessage(chatId, instructions, createBackToMenuKeyboard()));
+    private void sendInstructions(String chatId, MessageTemplates t) {
+        if (staticMedia.hasGroup(INSTRUCTIONS_MEDIA)) {
+            try {
+                staticMedia.sendGroup(this, chatId, INSTRUCTIONS_MEDIA);
+            } catch (TelegramApiException e) {
+                logger.error("Failed to send instruction screenshots to chat {}: {}", chatId, e.getMessage());
+            }
+        }
+        sendMessage(createMarkdownMessage(chatId, t.instructions(), t.backToMenuKeyboard()));
     }
 }
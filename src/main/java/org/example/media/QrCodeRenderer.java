@@ -0,0 +1,54 @@
+package org.example.media;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * Рисует QR-код ссылки в черно-белый PNG. Один бит на пиксель, поэтому картинка 512×512 весит пару килобайт.
+ */
+final class QrCodeRenderer {
+    private static final Map<EncodeHintType, Object> HINTS = Map.of(
+            EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M,
+            EncodeHintType.MARGIN, 2,
+            EncodeHintType.CHARACTER_SET, "UTF-8");
+
+    private QrCodeRenderer() {
+    }
+
+    static byte[] renderPng(String content, int sizePx) throws IOException {
+        BitMatrix matrix;
+        try {
+            matrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, sizePx, sizePx, HINTS);
+        } catch (WriterException e) {
+            throw new IOException("Failed to encode QR code: " + e.getMessage(), e);
+        }
+
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = image.getRaster();
+        int[] line = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                line[x] = matrix.get(x, y) ? 0 : 1;  // 0 — черный, 1 — белый
+            }
+            raster.setSamples(0, y, width, 1, 0, line);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.media;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.config.QrConfig;
+import org.example.db.MediaFile;
+import org.example.db.MediaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * QR-коды ссылок подписки. Первый раз картинка рисуется и загружается в Telegram в отдельном пуле потоков,
+ * полученный file_id сохраняется в media_files. Дальше фото отправляется по file_id: без рендера и без загрузки.
+ * Готовые PNG держатся в ограниченном LRU по uuid: если загрузка не удалась или file_id перестал работать,
+ * картинка не рисуется заново.
+ */
+@Component
+@Lazy
+public class QrCodeService {
+    private static final Logger logger = LoggerFactory.getLogger(QrCodeService.class);
+    private static final String KEY_PREFIX = "qr:";
+
+    /**
+     * Отправка фото от имени бота
+     */
+    @FunctionalInterface
+    public interface PhotoSender {
+        /**
+         * @return file_id отправленного фото
+         */
+        String send(InputFile photo) throws TelegramApiException;
+    }
+
+    private final QrConfig config;
+    private final MediaRepository mediaRepository;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, byte[]> pngCache;
+    private final Counter sentByFileId;
+    private final Counter uploaded;
+    private final Counter rendered;
+
+    public QrCodeService(QrConfig config, MediaRepository mediaRepository, MeterRegistry registry) {
+        this.config = config;
+        this.mediaRepository = mediaRepository;
+
+        int maxEntries = Math.max(1, config.getCacheSize());
+        this.pngCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        int threads = Math.max(1, config.getRenderThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueSize())), r -> {
+            Thread thread = new Thread(r, "qr-render-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        this.sentByFileId = Counter.builder("qr.sent").tag("source", "file_id").register(registry);
+        this.uploaded = Counter.builder("qr.sent").tag("source", "upload").register(registry);
+        this.rendered = Counter.builder("qr.rendered").register(registry);
+        Gauge.builder("qr.cache.size", this, QrCodeService::cachedImages).register(registry);
+    }
+
+    /**
+     * Отправляет QR-код ссылки. Если файл уже есть в Telegram, отправка идет сразу в вызывающем потоке,
+     * иначе рендер и загрузка уходят в пул, а метод возвращается сразу. Если Telegram не принял старый file_id,
+     * картинка загружается заново.
+     *
+     * @param uuid      UUID пользователя панели: по нему кешируются картинка и file_id
+     * @param link      Ссылка подписки, которую кодирует QR
+     * @param onFailure Вызывается, если загрузить картинку не удалось (в потоке пула)
+     * @return false, если очередь рендера заполнена и запрос не принят
+     */
+    public boolean send(String uuid, String link, PhotoSender sender, Runnable onFailure) {
+        String key = KEY_PREFIX + uuid;
+        MediaFile stored = mediaRepository.find(key);
+        if (stored != null) {
+            try {
+                sender.send(new InputFile(stored.getFileId()));
+                sentByFileId.increment();
+                return true;
+            } catch (TelegramApiException e) {
+                logger.warn("Stored QR file_id for {} rejected, uploading again: {}", uuid, e.getMessage());
+            }
+        }
+
+        try {
+            executor.execute(() -> upload(key, uuid, link, sender, onFailure));
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.warn("QR render queue is full, request for {} rejected", uuid);
+            return false;
+        }
+    }
+
+    private void upload(String key, String uuid, String link, PhotoSender sender, Runnable onFailure) {
+        try {
+            byte[] png = cachedPng(uuid);
+            if (png == null) {
+                png = QrCodeRenderer.renderPng(link, config.getSizePx());
+                rendered.increment();
+                synchronized (pngCache) {
+                    pngCache.put(uuid, png);
+                }
+            }
+            String fileId = sender.send(new InputFile(new ByteArrayInputStream(png), "qr-" + uuid + ".png"));
+            uploaded.increment();
+            if (fileId != null) {
+                mediaRepository.save(key, fileId, null);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to send QR code for {}: {}", uuid, e.getMessage());
+            onFailure.run();
+        }
+    }
+
+    private byte[] cachedPng(String uuid) {
+        synchronized (pngCache) {
+            return pngCache.get(uuid);
+        }
+    }
+
+    private int cachedImages() {
+        synchronized (pngCache) {
+            return pngCache.size();
+        }
+    }
+
+    /**
+     * Уже принятые отправки дорабатываются: это ответы пользователям, а не фоновая работа
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("QR uploads did not finish before shutdown");
+        }
+    }
+}
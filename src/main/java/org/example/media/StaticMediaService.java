@@ -0,0 +1,258 @@
+package org.example.media;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.example.config.BotConfig;
+import org.example.config.MediaConfig;
+import org.example.db.MediaFile;
+import org.example.db.MediaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Статические картинки (скриншоты инструкции и т.п.) из bot.media.dir.
+ * Каждая картинка загружается в Telegram один раз на токен бота, дальше отправляется по file_id из media_files.
+ * Вместе с file_id хранится SHA-256 файла: если файл заменили, при следующей отправке он загрузится заново.
+ * Картинки группы уходят одним sendMediaGroup. С bot.localApi файл не читается ботом: свой сервер Bot API
+ * получает путь file:// и загружает его сам, без ограничения публичного сервера на размер.
+ */
+@Component
+@Lazy
+public class StaticMediaService {
+    private static final Logger logger = LoggerFactory.getLogger(StaticMediaService.class);
+    // Ограничение Telegram на число элементов в sendMediaGroup
+    private static final int MAX_GROUP_SIZE = 10;
+
+    private final MediaConfig config;
+    private final MediaRepository mediaRepository;
+    private final boolean localApi;
+    // file_id принадлежат боту, поэтому в ключе — id бота из токена
+    private final String keyPrefix;
+    private final Map<String, List<Asset>> groups = new LinkedHashMap<>();
+
+    private static final class Asset {
+        final String key;
+        final Path file;
+        long size = -1;
+        long modified = -1;
+        String hash;
+        String fileId;
+        boolean lookedUp;
+
+        Asset(String key, Path file) {
+            this.key = key;
+            this.file = file;
+        }
+    }
+
+    public StaticMediaService(BotConfig botConfig, MediaConfig config, MediaRepository mediaRepository) {
+        this.config = config;
+        this.mediaRepository = mediaRepository;
+        this.localApi = botConfig.isLocalApi();
+        String token = String.valueOf(botConfig.getToken());
+        this.keyPrefix = "asset:" + token.substring(0, Math.max(0, token.indexOf(':'))) + ":";
+    }
+
+    /**
+     * Находит группы картинок: подкаталоги bot.media.dir с файлами .png, .jpg, .jpeg в порядке имен
+     */
+    @PostConstruct
+    public void scan() throws IOException {
+        Path dir = Path.of(config.getDir());
+        if (!Files.isDirectory(dir)) {
+            logger.info("Media directory {} not found, static images disabled", dir.toAbsolutePath());
+            return;
+        }
+        try (DirectoryStream<Path> groupDirs = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path groupDir : groupDirs) {
+                String group = groupDir.getFileName().toString();
+                List<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(groupDir, StaticMediaService::isImage)) {
+                    stream.forEach(files::add);
+                }
+                files.sort(null);
+                if (files.size() > MAX_GROUP_SIZE) {
+                    logger.warn("Media group {} has {} images, only the first {} are sent", group, files.size(), MAX_GROUP_SIZE);
+                    files = files.subList(0, MAX_GROUP_SIZE);
+                }
+                List<Asset> assets = new ArrayList<>();
+                for (Path file : files) {
+                    assets.add(new Asset(keyPrefix + group + "/" + file.getFileName(), file));
+                }
+                if (!assets.isEmpty()) {
+                    groups.put(group, List.copyOf(assets));
+                }
+            }
+        }
+        logger.info("Media groups in {}: {}", dir.toAbsolutePath(), groups.keySet());
+    }
+
+    public boolean hasGroup(String group) {
+        return groups.containsKey(group);
+    }
+
+    /**
+     * Отправляет картинки группы одним запросом. Уже загруженные уходят по file_id, новые и измененные — файлами,
+     * и их file_id из ответа сохраняются.
+     */
+    public void sendGroup(AbsSender sender, String chatId, String group) throws TelegramApiException {
+        List<Asset> assets = groups.get(group);
+        if (assets == null) {
+            return;
+        }
+
+        if (assets.size() == 1) {
+            // В sendMediaGroup нужно от 2 картинок
+            Asset asset = assets.get(0);
+            String fileId = resolveFileId(asset);
+            SendPhoto sendPhoto = new SendPhoto();
+            sendPhoto.setChatId(chatId);
+            sendPhoto.setPhoto(fileId != null ? new InputFile(fileId) : upload(asset));
+            Message sent = sender.execute(sendPhoto);
+            if (fileId == null) {
+                remember(assets, List.of(sent), assets);
+            }
+            return;
+        }
+
+        List<Asset> uploading = new ArrayList<>();
+        List<InputMedia> medias = new ArrayList<>(assets.size());
+        for (Asset asset : assets) {
+            String fileId = resolveFileId(asset);
+            if (fileId != null) {
+                medias.add(new InputMediaPhoto(fileId));
+            } else if (localApi) {
+                medias.add(new InputMediaPhoto(localUri(asset)));
+                uploading.add(asset);
+            } else {
+                InputMediaPhoto photo = new InputMediaPhoto();
+                photo.setMedia(new ByteArrayInputStream(read(asset)), asset.file.getFileName().toString());
+                medias.add(photo);
+                uploading.add(asset);
+            }
+        }
+
+        SendMediaGroup sendMediaGroup = new SendMediaGroup();
+        sendMediaGroup.setChatId(chatId);
+        sendMediaGroup.setMedias(medias);
+        List<Message> sent = sender.execute(sendMediaGroup);
+
+        if (!uploading.isEmpty()) {
+            remember(assets, sent, uploading);
+        }
+    }
+
+    /**
+     * file_id картинки или null, если ее нужно загрузить. Раз в отправку сверяет размер и время изменения файла,
+     * хеш пересчитывается, только если они поменялись.
+     */
+    private String resolveFileId(Asset asset) {
+        synchronized (asset) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(asset.file, BasicFileAttributes.class);
+                long modified = attributes.lastModifiedTime().toMillis();
+                if (attributes.size() != asset.size || modified != asset.modified) {
+                    asset.hash = sha256(Files.readAllBytes(asset.file));
+                    asset.size = attributes.size();
+                    asset.modified = modified;
+                    asset.fileId = null;
+                    asset.lookedUp = false;
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to check media file {}: {}", asset.file, e.getMessage());
+            }
+
+            if (!asset.lookedUp) {
+                MediaFile stored = mediaRepository.find(asset.key);
+                asset.fileId = stored != null && stored.getContentHash() != null && stored.getContentHash().equals(asset.hash)
+                        ? stored.getFileId()
+                        : null;
+                asset.lookedUp = true;
+            }
+            return asset.fileId;
+        }
+    }
+
+    private void remember(List<Asset> assets, List<Message> sent, List<Asset> uploading) {
+        for (int i = 0; i < assets.size() && i < sent.size(); i++) {
+            Asset asset = assets.get(i);
+            if (!uploading.contains(asset)) {
+                continue;
+            }
+            String fileId = largestPhotoId(sent.get(i));
+            if (fileId == null) {
+                continue;
+            }
+            synchronized (asset) {
+                asset.fileId = fileId;
+                mediaRepository.save(asset.key, fileId, asset.hash);
+            }
+            logger.info("Uploaded media {} to Telegram", asset.key);
+        }
+    }
+
+    private static String largestPhotoId(Message message) {
+        if (message == null || message.getPhoto() == null || message.getPhoto().isEmpty()) {
+            return null;
+        }
+        List<PhotoSize> sizes = message.getPhoto();
+        return sizes.get(sizes.size() - 1).getFileId();
+    }
+
+    private InputFile upload(Asset asset) throws TelegramApiException {
+        return localApi
+                ? new InputFile(localUri(asset))
+                : new InputFile(new ByteArrayInputStream(read(asset)), asset.file.getFileName().toString());
+    }
+
+    private static String localUri(Asset asset) {
+        return asset.file.toAbsolutePath().toUri().toString();
+    }
+
+    private static byte[] read(Asset asset) throws TelegramApiException {
+        try {
+            return Files.readAllBytes(asset.file);
+        } catch (IOException e) {
+            throw new TelegramApiException("Failed to read media file " + asset.file, e);
+        }
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(file) && (name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg"));
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
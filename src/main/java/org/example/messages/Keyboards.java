@@ -0,0 +1,43 @@
+package org.example.messages;
+
+import java.util.List;
+
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+/**
+ * Сборка неизменяемых инлайн-клавиатур. Готовые клавиатуры общие для всех сообщений,
+ * поэтому кнопки после сборки никто не меняет, а списки рядов неизменяемые.
+ */
+public final class Keyboards {
+    /**
+     * Пустая клавиатура: ей убираются кнопки у старого сообщения
+     */
+    public static final InlineKeyboardMarkup EMPTY = new InlineKeyboardMarkup(List.of());
+
+    private Keyboards() {
+    }
+
+    public static InlineKeyboardButton button(String text, String callbackData) {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(text);
+        button.setCallbackData(callbackData);
+        return button;
+    }
+
+    public static InlineKeyboardButton urlButton(String text, String url) {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(text);
+        button.setUrl(url);
+        return button;
+    }
+
+    public static List<InlineKeyboardButton> row(InlineKeyboardButton... buttons) {
+        return List.of(buttons);
+    }
+
+    @SafeVarargs
+    public static InlineKeyboardMarkup keyboard(List<InlineKeyboardButton>... rows) {
+        return new InlineKeyboardMarkup(List.of(rows));
+    }
+}
@@ -0,0 +1,306 @@
+package org.example.messages;
+
+import static org.example.messages.Keyboards.button;
+import static org.example.messages.Keyboards.keyboard;
+import static org.example.messages.Keyboards.row;
+import static org.example.messages.Keyboards.urlButton;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import org.example.callbacks.CallbackAction;
+import org.example.callbacks.CallbackCodec;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+/**
+ * Тексты и клавиатуры одного языка, собранные при старте.
+ * Неизменные ответы отдаются готовыми общими экземплярами, в остальных заполняются только ключ, дата или paymentId.
+ */
+public final class MessageTemplates {
+    private final Locale locale;
+
+    private final String welcome;
+    private final String invalidMessage;
+    private final String staleButton;
+    private final String throttled;
+    private final String keyNone;
+    private final String keyGenerating;
+    private final String keyPostponed;
+    private final String paymentOffer;
+    private final String paymentPending;
+    private final String paymentCanceled;
+    private final String paymentsDegraded;
+    private final String errorCreatePayment;
+    private final String errorCheckPayment;
+    private final String errorCancelPayment;
+    private final String errorKeyNotGenerated;
+    private final String errorKeyGeneration;
+    private final String instructions;
+    private final String qrCaption;
+    private final String qrBusy;
+    private final String qrFailed;
+
+    private final TextTemplate keyDetails;
+    private final TextTemplate keyCreated;
+    private final TextTemplate keyReady;
+    private final TextTemplate keyRenewed;
+    private final TextTemplate paymentLink;
+    private final TextTemplate paymentFailed;
+
+    private final InlineKeyboardMarkup mainMenuKeyboard;
+    private final InlineKeyboardMarkup backToMenuKeyboard;
+    private final InlineKeyboardMarkup keyDetailsKeyboard;
+    private final InlineKeyboardMarkup paymentOfferKeyboard;
+    private final InlineKeyboardMarkup supportKeyboard;
+    private final InlineKeyboardMarkup noKeyKeyboard;
+    private final InlineKeyboardMarkup keyReadyKeyboard;
+    private final InlineKeyboardMarkup paymentFailedKeyboard;
+
+    // Общие ряды для клавиатур, в которых меняется только кнопка с paymentId
+    private final String checkPaymentText;
+    private final String checkAgainText;
+    private final String getKeyText;
+    private final String cancelPaymentText;
+    private final List<InlineKeyboardButton> returnToMenuRow;
+
+    /**
+     * @param bundle    Бандл языка (с откатом на базовый bot.properties)
+     * @param constants Значения {nickname}, {price} и других подстановок, известных при старте
+     */
+    MessageTemplates(Locale locale, ResourceBundle bundle, Map<String, String> constants) {
+        this.locale = locale;
+
+        welcome = text(bundle, "welcome", constants);
+        invalidMessage = text(bundle, "invalid_message", constants);
+        staleButton = text(bundle, "stale_button", constants);
+        throttled = text(bundle, "throttled", constants);
+        keyNone = text(bundle, "key.none", constants);
+        keyGenerating = text(bundle, "key.generating", constants);
+        keyPostponed = text(bundle, "key.postponed", constants);
+        paymentOffer = text(bundle, "payment.offer", constants);
+        paymentPending = text(bundle, "payment.pending", constants);
+        paymentCanceled = text(bundle, "payment.canceled", constants);
+        paymentsDegraded = text(bundle, "payment.degraded", constants);
+        errorCreatePayment = text(bundle, "error.create_payment", constants);
+        errorCheckPayment = text(bundle, "error.check_payment", constants);
+        errorCancelPayment = text(bundle, "error.cancel_payment", constants);
+        errorKeyNotGenerated = text(bundle, "error.key_not_generated", constants);
+        errorKeyGeneration = text(bundle, "error.key_generation", constants);
+        instructions = text(bundle, "instructions", constants);
+        qrCaption = text(bundle, "qr.caption", constants);
+        qrBusy = text(bundle, "qr.busy", constants);
+        qrFailed = text(bundle, "qr.failed", constants);
+
+        keyDetails = template(bundle, "key.details", constants);
+        keyCreated = template(bundle, "key.created", constants);
+        keyReady = template(bundle, "key.ready", constants);
+        keyRenewed = template(bundle, "key.renewed", constants);
+        paymentLink = template(bundle, "payment.link", constants);
+        paymentFailed = template(bundle, "payment.failed", constants);
+
+        InlineKeyboardButton instructionsButton = button(text(bundle, "button.instructions", constants), CallbackCodec.encode(CallbackAction.INSTRUCTIONS));
+        InlineKeyboardButton buyKeyButton = button(text(bundle, "button.buy_key", constants), CallbackCodec.encode(CallbackAction.BUY_KEY));
+        InlineKeyboardButton mainMenuButton = button(text(bundle, "button.main_menu", constants), CallbackCodec.encode(CallbackAction.MAIN_MENU));
+        List<InlineKeyboardButton> backToMenuRow = row(button(text(bundle, "button.back_to_menu", constants), CallbackCodec.encode(CallbackAction.MAIN_MENU)));
+        returnToMenuRow = row(button(text(bundle, "button.return_to_menu", constants), CallbackCodec.encode(CallbackAction.MAIN_MENU)));
+
+        mainMenuKeyboard = keyboard(
+                row(buyKeyButton),
+                row(button(text(bundle, "button.show_key", constants), CallbackCodec.encode(CallbackAction.SHOW_KEY)), instructionsButton));
+        backToMenuKeyboard = keyboard(backToMenuRow);
+        InlineKeyboardButton qrButton = button(text(bundle, "button.qr", constants), CallbackCodec.encode(CallbackAction.SHOW_QR));
+        keyDetailsKeyboard = keyboard(
+                row(button(text(bundle, "button.renew", constants), CallbackCodec.encode(CallbackAction.PAY_VPN))),
+                row(qrButton, instructionsButton),
+                backToMenuRow);
+        paymentOfferKeyboard = keyboard(row(button(text(bundle, "button.pay", constants), CallbackCodec.encode(CallbackAction.PAY_VPN))), backToMenuRow);
+        supportKeyboard = keyboard(
+                row(urlButton(text(bundle, "button.support", constants), constants.get("support"))),
+                returnToMenuRow);
+        noKeyKeyboard = keyboard(row(buyKeyButton), row(mainMenuButton));
+        keyReadyKeyboard = keyboard(
+                row(button(text(bundle, "button.connection_guide", constants), CallbackCodec.encode(CallbackAction.INSTRUCTIONS))),
+                row(qrButton),
+                row(mainMenuButton));
+        paymentFailedKeyboard = keyboard(
+                row(button(text(bundle, "button.try_again", constants), CallbackCodec.encode(CallbackAction.BUY_KEY))),
+                returnToMenuRow);
+
+        checkPaymentText = text(bundle, "button.check_payment", constants);
+        checkAgainText = text(bundle, "button.check_again", constants);
+        getKeyText = text(bundle, "button.get_key", constants);
+        cancelPaymentText = text(bundle, "button.cancel_payment", constants);
+    }
+
+    private static String text(ResourceBundle bundle, String key, Map<String, String> constants) {
+        return template(bundle, key, constants).text();
+    }
+
+    private static TextTemplate template(ResourceBundle bundle, String key, Map<String, String> constants) {
+        return TextTemplate.compile(bundle.getString(key), constants);
+    }
+
+    public Locale locale() {
+        return locale;
+    }
+
+    // Готовые тексты
+
+    public String welcome() {
+        return welcome;
+    }
+
+    public String invalidMessage() {
+        return invalidMessage;
+    }
+
+    public String staleButton() {
+        return staleButton;
+    }
+
+    public String throttled() {
+        return throttled;
+    }
+
+    public String keyNone() {
+        return keyNone;
+    }
+
+    public String keyGenerating() {
+        return keyGenerating;
+    }
+
+    public String keyPostponed() {
+        return keyPostponed;
+    }
+
+    public String paymentOffer() {
+        return paymentOffer;
+    }
+
+    public String paymentPending() {
+        return paymentPending;
+    }
+
+    public String paymentCanceled() {
+        return paymentCanceled;
+    }
+
+    public String paymentsDegraded() {
+        return paymentsDegraded;
+    }
+
+    public String errorCreatePayment() {
+        return errorCreatePayment;
+    }
+
+    public String errorCheckPayment() {
+        return errorCheckPayment;
+    }
+
+    public String errorCancelPayment() {
+        return errorCancelPayment;
+    }
+
+    public String errorKeyNotGenerated() {
+        return errorKeyNotGenerated;
+    }
+
+    public String errorKeyGeneration() {
+        return errorKeyGeneration;
+    }
+
+    public String instructions() {
+        return instructions;
+    }
+
+    public String qrCaption() {
+        return qrCaption;
+    }
+
+    public String qrBusy() {
+        return qrBusy;
+    }
+
+    public String qrFailed() {
+        return qrFailed;
+    }
+
+    // Тексты с подстановками
+
+    /**
+     * @param createdAt Дата создания ключа или null
+     */
+    public String keyDetails(String key, String createdAt) {
+        return keyDetails.render(key, createdAt != null ? keyCreated.render(createdAt) : "");
+    }
+
+    public String keyReady(String key) {
+        return keyReady.render(key);
+    }
+
+    public String keyRenewed(String key, int days) {
+        return keyRenewed.render(key, Integer.toString(days));
+    }
+
+    public String paymentLink(String confirmationUrl) {
+        return paymentLink.render(confirmationUrl);
+    }
+
+    public String paymentFailed(String status) {
+        return paymentFailed.render(status);
+    }
+
+    // Готовые клавиатуры
+
+    public InlineKeyboardMarkup mainMenuKeyboard() {
+        return mainMenuKeyboard;
+    }
+
+    public InlineKeyboardMarkup backToMenuKeyboard() {
+        return backToMenuKeyboard;
+    }
+
+    public InlineKeyboardMarkup keyDetailsKeyboard() {
+        return keyDetailsKeyboard;
+    }
+
+    public InlineKeyboardMarkup paymentOfferKeyboard() {
+        return paymentOfferKeyboard;
+    }
+
+    public InlineKeyboardMarkup supportKeyboard() {
+        return supportKeyboard;
+    }
+
+    public InlineKeyboardMarkup noKeyKeyboard() {
+        return noKeyKeyboard;
+    }
+
+    public InlineKeyboardMarkup keyReadyKeyboard() {
+        return keyReadyKeyboard;
+    }
+
+    public InlineKeyboardMarkup paymentFailedKeyboard() {
+        return paymentFailedKeyboard;
+    }
+
+    // Клавиатуры с paymentId: новая только кнопка с callback-данными, ряд возврата в меню общий
+
+    public InlineKeyboardMarkup paymentCheckKeyboard(String paymentId) {
+        return keyboard(
+                row(button(checkPaymentText, CallbackCodec.encode(CallbackAction.CHECK_PAYMENT, paymentId))),
+                row(button(cancelPaymentText, CallbackCodec.encode(CallbackAction.CANCEL_PAYMENT, paymentId))));
+    }
+
+    public InlineKeyboardMarkup checkAgainKeyboard(String paymentId) {
+        return keyboard(row(button(checkAgainText, CallbackCodec.encode(CallbackAction.CHECK_PAYMENT, paymentId))), returnToMenuRow);
+    }
+
+    public InlineKeyboardMarkup getKeyKeyboard(String paymentId) {
+        return keyboard(row(button(getKeyText, CallbackCodec.encode(CallbackAction.CHECK_PAYMENT, paymentId))), returnToMenuRow);
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.messages;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import org.example.config.BotConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Шаблоны сообщений всех языков из bot.locales, собранные один раз при старте из бандлов messages/bot*.properties.
+ * Выбор языка для сообщения — поиск в HashMap по language_code пользователя, без разбора и копирования строк.
+ */
+public final class TemplateRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateRegistry.class);
+    private static final String BUNDLE = "messages.bot";
+    // Ключи бандла с этим префиксом подставляются в тексты как {имя}
+    private static final String CONSTANT_PREFIX = "constant.";
+
+    private final Map<String, MessageTemplates> byLanguage = new HashMap<>();
+    private final String[] languages;
+    private final MessageTemplates[] templates;
+    private final MessageTemplates defaults;
+
+    private TemplateRegistry(Map<String, MessageTemplates> loaded, String defaultLanguage) {
+        byLanguage.putAll(loaded);
+        languages = loaded.keySet().toArray(new String[0]);
+        templates = loaded.values().toArray(new MessageTemplates[0]);
+        defaults = loaded.get(defaultLanguage);
+        if (defaults == null) {
+            throw new IllegalArgumentException("Default locale " + defaultLanguage + " is not in bot.locales " + loaded.keySet());
+        }
+    }
+
+    /**
+     * @param price Цена ключа, подставляется в тексты как {price}
+     * @throws java.util.MissingResourceException если в бандле нет нужного ключа
+     */
+    public static TemplateRegistry load(BotConfig botConfig, BigDecimal price) {
+        Map<String, MessageTemplates> loaded = new LinkedHashMap<>();
+        Set<String> languages = new LinkedHashSet<>(botConfig.getLocales());
+        languages.add(botConfig.getDefaultLocale());
+        for (String language : languages) {
+            Locale locale = Locale.forLanguageTag(language);
+            // Без отката на язык JVM: для ru нужен базовый бандл, а не bot_en на машине с английской локалью
+            ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE, locale,
+                    ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES));
+
+            Map<String, String> constants = new HashMap<>();
+            for (String key : bundle.keySet()) {
+                if (key.startsWith(CONSTANT_PREFIX)) {
+                    constants.put(key.substring(CONSTANT_PREFIX.length()), bundle.getString(key));
+                }
+            }
+            constants.put("nickname", String.valueOf(botConfig.getNickname()));
+            constants.put("price", price.toPlainString());
+
+            loaded.put(language, new MessageTemplates(locale, bundle, constants));
+        }
+        logger.info("Message templates loaded for locales {}, default {}", loaded.keySet(), botConfig.getDefaultLocale());
+        return new TemplateRegistry(loaded, botConfig.getDefaultLocale());
+    }
+
+    public MessageTemplates defaults() {
+        return defaults;
+    }
+
+    /**
+     * Шаблоны для language_code пользователя: точное совпадение, затем основной язык ("pt-br" → "pt"),
+     * иначе язык по умолчанию
+     */
+    public MessageTemplates forLanguage(String languageCode) {
+        if (languageCode == null) {
+            return defaults;
+        }
+        MessageTemplates exact = byLanguage.get(languageCode);
+        if (exact != null) {
+            return exact;
+        }
+        for (int i = 0; i < languages.length; i++) {
+            String language = languages[i];
+            if (languageCode.length() > language.length() && languageCode.charAt(language.length()) == '-'
+                    && languageCode.regionMatches(true, 0, language, 0, language.length())) {
+                return templates[i];
+            }
+        }
+        return defaults;
+    }
+}
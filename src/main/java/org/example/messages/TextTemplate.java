@@ -0,0 +1,85 @@
+package org.example.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Текст, разобранный один раз при старте: неизменные куски и номера подстановок между ними.
+ * {имя} подставляется сразу из constants, {0}, {1}... — при каждом render.
+ */
+public final class TextTemplate {
+    private final String[] literals;
+    private final int[] slots;
+    private final int literalLength;
+
+    private TextTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * @param source    Текст из бандла
+     * @param constants Значения именованных подстановок, известные при старте
+     * @throws IllegalArgumentException если в тексте есть неизвестная именованная подстановка
+     */
+    public static TextTemplate compile(String source, Map<String, String> constants) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(source.length());
+        int i = 0;
+        while (i < source.length()) {
+            int open = source.indexOf('{', i);
+            int close = open >= 0 ? source.indexOf('}', open) : -1;
+            if (close < 0) {
+                literal.append(source, i, source.length());
+                break;
+            }
+            literal.append(source, i, open);
+            String name = source.substring(open + 1, close);
+            if (!name.isEmpty() && name.chars().allMatch(Character::isDigit)) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(Integer.parseInt(name));
+            } else if (constants.containsKey(name)) {
+                literal.append(constants.get(name));
+            } else {
+                throw new IllegalArgumentException("Unknown placeholder {" + name + "} in template: " + source);
+            }
+            i = close + 1;
+        }
+        literals.add(literal.toString());
+        return new TextTemplate(literals.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Готовый текст шаблона без подстановок. Строка общая, повторный вызов ничего не создает.
+     */
+    public String text() {
+        if (slots.length != 0) {
+            throw new IllegalStateException("Template has " + slots.length + " argument(s)");
+        }
+        return literals[0];
+    }
+
+    /**
+     * Подставляет аргументы в заранее разобранный текст за один проход
+     */
+    public String render(String... args) {
+        int length = literalLength;
+        for (int slot : slots) {
+            length += args[slot].length();
+        }
+        StringBuilder out = new StringBuilder(length);
+        out.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(args[slots[i]]).append(literals[i + 1]);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Таблица корзин с ключом long: открытая адресация поверх двух AtomicLongArray, без объектов на запись.
+ * Состояние корзины упаковано в один long — время последнего пополнения (старшие 40 бит, мс)
+ * и запас в тысячных долях жетона (младшие 24 бита), поэтому списание — один CAS без блокировок.
+ *
+ * Таблица поделена на полосы (stripes). Поиск и списание не блокируют ничего; вставка нового ключа,
+ * рост таблицы и вычистка простаивающих корзин берут блокировку только своей полосы.
+ * Списание, попавшее в старую копию полосы во время роста или вычистки, теряется — это лишь несколько
+ * лишних жетонов одному пользователю, точнее ограничителю быть и не нужно.
+ */
+final class TokenBucketTable {
+    static final long MILLI = 1_000;
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicLongArray states;
+        final int mask;
+        int size;  // Только под блокировкой полосы
+
+        Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.states = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+    }
+
+    private static final class Stripe {
+        volatile Table table = new Table(INITIAL_CAPACITY);
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    TokenBucketTable(int stripeCount) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = count - 1;
+    }
+
+    static long state(long timeMs, long milliTokens) {
+        return (timeMs << TOKEN_BITS) | milliTokens;
+    }
+
+    static long timeOf(long state) {
+        return state >>> TOKEN_BITS;
+    }
+
+    static long tokensOf(long state) {
+        return state & TOKEN_MASK;
+    }
+
+    static long maxMilliTokens() {
+        return TOKEN_MASK;
+    }
+
+    /**
+     * Пытается списать один жетон
+     *
+     * @param key                Ненулевой ключ корзины
+     * @param nowMs              Текущее время, мс от старта ограничителя
+     * @param capacityMilli      Емкость корзины в тысячных жетона
+     * @param refillMilliPerMs   Пополнение в тысячных жетона за мс
+     * @return true, если жетон был
+     */
+    boolean tryAcquire(long key, long nowMs, long capacityMilli, double refillMilliPerMs) {
+        long hash = mix(key);
+        Stripe stripe = stripes[(int) (hash >>> 40) & stripeMask];
+        while (true) {
+            Table table = stripe.table;
+            int slot = find(table, key, (int) hash);
+            if (slot < 0) {
+                insert(stripe, key, (int) hash, state(nowMs, capacityMilli));
+                continue;
+            }
+
+            long current = table.states.get(slot);
+            long elapsed = Math.max(0, nowMs - timeOf(current));
+            long tokens = Math.min(capacityMilli, tokensOf(current) + (long) (elapsed * refillMilliPerMs));
+            if (tokens < MILLI) {
+                return false;
+            }
+            if (table.states.compareAndSet(slot, current, state(nowMs, tokens - MILLI))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Удаляет корзины, к которым не обращались с idleBeforeMs
+     *
+     * @return Сколько корзин осталось
+     */
+    int evictIdle(long idleBeforeMs) {
+        int remaining = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Table table = stripe.table;
+                int live = 0;
+                for (int i = 0; i <= table.mask; i++) {
+                    if (table.keys.get(i) != 0 && timeOf(table.states.get(i)) >= idleBeforeMs) {
+                        live++;
+                    }
+                }
+                if (live < table.size) {
+                    stripe.table = copy(table, capacityFor(live), idleBeforeMs);
+                }
+                remaining += stripe.table.size;
+            }
+        }
+        return remaining;
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.table.size;
+            }
+        }
+        return size;
+    }
+
+    private void insert(Stripe stripe, long key, int hash, long initialState) {
+        synchronized (stripe) {
+            Table table = stripe.table;
+            if (find(table, key, hash) >= 0) {
+                return;  // Вставил другой поток
+            }
+            if ((table.size + 1) * 2 > table.mask + 1) {
+                table = copy(table, (table.mask + 1) * 2, Long.MIN_VALUE);
+                stripe.table = table;
+            }
+            int slot = hash & table.mask;
+            while (table.keys.get(slot) != 0) {
+                slot = (slot + 1) & table.mask;
+            }
+            // Сначала состояние, потом ключ: кто увидел ключ, увидит и состояние
+            table.states.set(slot, initialState);
+            table.keys.set(slot, key);
+            table.size++;
+        }
+    }
+
+    private static Table copy(Table from, int capacity, long idleBeforeMs) {
+        Table to = new Table(capacity);
+        for (int i = 0; i <= from.mask; i++) {
+            long key = from.keys.get(i);
+            long state = from.states.get(i);
+            if (key == 0 || timeOf(state) < idleBeforeMs) {
+                continue;
+            }
+            int slot = (int) mix(key) & to.mask;
+            while (to.keys.get(slot) != 0) {
+                slot = (slot + 1) & to.mask;
+            }
+            to.states.set(slot, state);
+            to.keys.set(slot, key);
+            to.size++;
+        }
+        return to;
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = INITIAL_CAPACITY;
+        while (entries * 2 > capacity) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int find(Table table, long key, int hash) {
+        int slot = hash & table.mask;
+        while (true) {
+            long current = table.keys.get(slot);
+            if (current == key) {
+                return slot;
+            }
+            if (current == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & table.mask;
+        }
+    }
+
+    // Финализатор murmur3: младшие биты выбирают ячейку, старшие — полосу
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
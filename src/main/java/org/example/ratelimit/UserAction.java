@@ -0,0 +1,34 @@
+package org.example.ratelimit;
+
+import org.example.callbacks.CallbackAction;
+import org.example.callbacks.CallbackCodec;
+import org.example.updates.BotUpdate;
+
+/**
+ * Классы действий пользователя, у каждого свой бюджет
+ */
+public enum UserAction {
+    MENU,
+    PAYMENT,
+    PROVISIONING,
+    // Не действие пользователя: бюджет уведомлений "слишком часто"
+    NOTICE;
+
+    /**
+     * Класс действия по апдейту. Строки не создаются: действие берется из кода кнопки.
+     */
+    public static UserAction of(BotUpdate update) {
+        String data = update.callbackData();
+        if (data == null) {
+            return MENU;
+        }
+        CallbackAction action = CallbackCodec.action(data);
+        if (action == CallbackAction.CHECK_PAYMENT) {
+            return PROVISIONING;
+        }
+        if (action == CallbackAction.PAY_VPN || action == CallbackAction.CANCEL_PAYMENT) {
+            return PAYMENT;
+        }
+        return MENU;
+    }
+}
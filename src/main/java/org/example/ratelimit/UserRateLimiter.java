@@ -0,0 +1,141 @@
+package org.example.ratelimit;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.example.config.RateLimitConfig;
+import org.example.config.RateLimitConfig.Budget;
+import org.example.tenancy.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ограничение частоты действий каждого пользователя: корзина жетонов на пару (пользователь, класс действия).
+ * Проверка не блокирует и ничего не выделяет, так что ее можно делать до любой работы с апдейтом.
+ * У бота арендатора (bot.tenancy) свои корзины ({@link #forTenant}): чужой трафик их не расходует, а лишних корзин
+ * вычищает поток основного лимитера.
+ *
+ * Метрики: ratelimit.throttled (теги action и tenant), ratelimit.buckets (тег tenant).
+ */
+@Component
+public class UserRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(UserRateLimiter.class);
+    private static final int ACTION_BITS = 2;
+
+    private final RateLimitConfig config;
+    private final MeterRegistry meterRegistry;
+    private final TokenBucketTable table;
+    private final long startedAtMs = System.currentTimeMillis();
+    private final long[] capacityMilli = new long[UserAction.values().length];
+    private final double[] refillMilliPerMs = new double[UserAction.values().length];
+    private final Counter[] throttled = new Counter[UserAction.values().length];
+    // Лимитеры ботов арендаторов; их корзины вычищает evictor основного
+    private final List<UserRateLimiter> tenants = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService evictor;
+
+    @Autowired
+    public UserRateLimiter(RateLimitConfig config, MeterRegistry meterRegistry) {
+        this(config, meterRegistry, TenantContext.DEFAULT);
+    }
+
+    private UserRateLimiter(RateLimitConfig config, MeterRegistry meterRegistry, String tenant) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.table = new TokenBucketTable(config.getStripes());
+
+        Map<UserAction, Budget> budgets = new EnumMap<>(UserAction.class);
+        budgets.put(UserAction.MENU, config.getMenu());
+        budgets.put(UserAction.PAYMENT, config.getPayment());
+        budgets.put(UserAction.PROVISIONING, config.getProvisioning());
+        budgets.put(UserAction.NOTICE, config.getNotice());
+        for (Map.Entry<UserAction, Budget> entry : budgets.entrySet()) {
+            int index = entry.getKey().ordinal();
+            capacityMilli[index] = Math.min(TokenBucketTable.maxMilliTokens(),
+                    entry.getValue().getCapacity() * TokenBucketTable.MILLI);
+            // refillPerSecond жетонов в секунду = refillPerSecond тысячных жетона в мс
+            refillMilliPerMs[index] = entry.getValue().getRefillPerSecond();
+            throttled[index] = Counter.builder("ratelimit.throttled")
+                    .tag("action", entry.getKey().name().toLowerCase())
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("ratelimit.buckets", table, TokenBucketTable::size).tag("tenant", tenant).register(meterRegistry);
+    }
+
+    /**
+     * Лимитер бота арендатора с теми же бюджетами, но своими корзинами
+     */
+    public UserRateLimiter forTenant(String tenantId) {
+        UserRateLimiter limiter = new UserRateLimiter(config, meterRegistry, tenantId);
+        tenants.add(limiter);
+        return limiter;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long periodSeconds = Math.max(1, config.getIdleEvictSeconds() / 2);
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ratelimit-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    /**
+     * Списывает жетон из корзины пользователя для этого класса действий
+     *
+     * @return true, если действие разрешено
+     */
+    public boolean tryAcquire(long userId, UserAction action) {
+        return tryAcquire(userId, action, System.currentTimeMillis() - startedAtMs);
+    }
+
+    boolean tryAcquire(long userId, UserAction action, long nowMs) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        int index = action.ordinal();
+        // +1: нулевой ключ в таблице означает пустую ячейку
+        long key = (userId << ACTION_BITS) + index + 1;
+        if (table.tryAcquire(key, nowMs, capacityMilli[index], refillMilliPerMs[index])) {
+            return true;
+        }
+        if (action != UserAction.NOTICE) {
+            throttled[index].increment();
+        }
+        return false;
+    }
+
+    void evictIdle() {
+        long idleBefore = System.currentTimeMillis() - startedAtMs - TimeUnit.SECONDS.toMillis(config.getIdleEvictSeconds());
+        int remaining = table.evictIdle(idleBefore);
+        for (UserRateLimiter tenant : tenants) {
+            tenant.evictIdle();
+        }
+        logger.debug("Rate limiter eviction done, {} bucket(s) tracked", remaining);
+    }
+}
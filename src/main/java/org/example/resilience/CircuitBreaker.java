@@ -0,0 +1,145 @@
+package org.example.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.example.config.ResilienceConfig.UpstreamSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Автомат-предохранитель по доле ошибок в скользящем окне последних вызовов.
+ * CLOSED — вызовы идут как обычно; OPEN — сразу отказ; HALF_OPEN — пропускается несколько пробных вызовов,
+ * все успешны — снова CLOSED, хоть один неудачен — снова OPEN.
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Разрешение на вызов. Результат пробного вызова засчитывается только пока автомат полуоткрыт,
+     * результат обычного — только пока замкнут: ответы, пришедшие после смены состояния, не путают счет.
+     */
+    public enum Permit { DENIED, CALL, PROBE }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final LongSupplier clock;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int recorded;
+    private int failures;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    public CircuitBreaker(String name, UpstreamSettings settings) {
+        this(name, settings, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, UpstreamSettings settings, LongSupplier clock) {
+        this.name = name;
+        this.window = new boolean[Math.max(1, settings.getSlidingWindowSize())];
+        this.minimumCalls = Math.max(1, settings.getMinimumCalls());
+        this.failureRateThreshold = settings.getFailureRateThreshold();
+        this.openNanos = TimeUnit.SECONDS.toNanos(settings.getOpenSeconds());
+        this.halfOpenProbes = Math.max(1, settings.getHalfOpenProbes());
+        this.clock = clock;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public synchronized Permit tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openNanos) {
+                return Permit.DENIED;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                return Permit.DENIED;
+            }
+            probesInFlight++;
+            return Permit.PROBE;
+        }
+        return Permit.CALL;
+    }
+
+    public synchronized void onSuccess(Permit permit) {
+        if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (++probeSuccesses >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (permit == Permit.CALL && state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(Permit permit) {
+        if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (permit == Permit.CALL && state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Возвращает разрешение, если вызов так и не состоялся (например, пул переполнен)
+     */
+    public synchronized void release(Permit permit) {
+        if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[windowIndex]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            failures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State next) {
+        State previous = state;
+        state = next;
+        switch (next) {
+            case OPEN -> openedAt = clock.getAsLong();
+            case HALF_OPEN -> {
+                probesInFlight = 0;
+                probeSuccesses = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                recorded = 0;
+                failures = 0;
+            }
+        }
+        if (next == State.OPEN) {
+            logger.warn("Circuit breaker '{}' {} -> OPEN", name, previous);
+        } else {
+            logger.info("Circuit breaker '{}' {} -> {}", name, previous, next);
+        }
+    }
+}
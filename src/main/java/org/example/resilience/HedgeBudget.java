@@ -0,0 +1,36 @@
+package org.example.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничивает дополнительную нагрузку от повторных (hedged) запросов: каждый обычный вызов
+ * добавляет percent/100 жетона, повтор тратит целый жетон. Запас — не больше MAX_BURST повторов подряд.
+ */
+final class HedgeBudget {
+    private static final long TOKEN = 1_000;
+    private static final long MAX_BURST = 10 * TOKEN;
+
+    private final long earnedPerCall;
+    private final AtomicLong balance = new AtomicLong();
+
+    HedgeBudget(int percent) {
+        this.earnedPerCall = TOKEN * Math.max(0, percent) / 100;
+    }
+
+    void onCall() {
+        if (earnedPerCall > 0 && balance.get() < MAX_BURST) {
+            balance.getAndUpdate(value -> Math.min(MAX_BURST, value + earnedPerCall));
+        }
+    }
+
+    boolean tryAcquire() {
+        long value;
+        do {
+            value = balance.get();
+            if (value < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(value, value - TOKEN));
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.resilience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.example.config.ResilienceConfig.UpstreamSettings;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Идемпотентное чтение через UpstreamGuard. Если первая попытка не ответила за p95 последних задержек,
+ * отправляется вторая, и берется тот ответ, что пришел раньше. Повторы ограничены HedgeBudget.
+ * Таймаут не фиксирован, а следует за p99 той же гистограммы.
+ *
+ * В гистограмму попадают не только ответы: попытка, прерванная по таймауту или проигравшая повтору, записывается
+ * со временем, которое она успела прождать. Это нижняя оценка ее задержки, но без нее медленный хвост
+ * выпадал бы из окна, и p95/p99 снижались бы именно тогда, когда сервис тормозит.
+ *
+ * Для предохранителя это один вызов: одно разрешение, один исход.
+ * Метрики (теги upstream, operation): upstream.hedges, upstream.hedge.wins, upstream.adaptive.timeout.
+ */
+public class HedgedOperation {
+    private final UpstreamGuard guard;
+    private final UpstreamSettings settings;
+    private final LatencyHistogram histogram;
+    private final HedgeBudget budget;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+
+    HedgedOperation(UpstreamGuard guard, String operation, UpstreamSettings settings, MeterRegistry registry) {
+        this.guard = guard;
+        this.settings = settings;
+        this.histogram = new LatencyHistogram(settings.getLatencyWindowSeconds());
+        this.budget = new HedgeBudget(settings.getHedgeBudgetPercent());
+        this.hedges = Counter.builder("upstream.hedges")
+                .tag("upstream", guard.getName()).tag("operation", operation).register(registry);
+        this.hedgeWins = Counter.builder("upstream.hedge.wins")
+                .tag("upstream", guard.getName()).tag("operation", operation).register(registry);
+        Gauge.builder("upstream.adaptive.timeout", this, op -> op.timeoutNanos() / 1e6)
+                .tag("upstream", guard.getName()).tag("operation", operation)
+                .baseUnit("milliseconds").register(registry);
+    }
+
+    /**
+     * @see UpstreamGuard#call
+     */
+    public <T> T call(Callable<T> action) throws Exception {
+        CircuitBreaker.Permit permit = guard.acquirePermit();
+        budget.onCall();
+
+        long started = System.nanoTime();
+        long deadline = started + timeoutNanos();
+        long hedgeDelay = hedgeDelayNanos();
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(guard.getExecutor());
+        List<Future<T>> attempts = new ArrayList<>(2);
+        // Когда попытка начала выполняться в пуле; 0 — еще ждет в очереди и к сервису не обращалась
+        List<AtomicLong> attemptStarts = new ArrayList<>(2);
+        try {
+            try {
+                AtomicLong attemptStarted = new AtomicLong();
+                attempts.add(completion.submit(timed(action, attemptStarted)));
+                attemptStarts.add(attemptStarted);
+            } catch (RejectedExecutionException e) {
+                throw guard.onRejected(permit);
+            }
+
+            Future<T> done = null;
+            if (hedgeDelay > 0 && hedgeDelay < deadline - started) {
+                done = completion.poll(hedgeDelay, TimeUnit.NANOSECONDS);
+                if (done == null && budget.tryAcquire()) {
+                    try {
+                        AtomicLong attemptStarted = new AtomicLong();
+                        attempts.add(completion.submit(timed(action, attemptStarted)));
+                        attemptStarts.add(attemptStarted);
+                        hedges.increment();
+                    } catch (RejectedExecutionException e) {
+                        // Пул занят: повтор только добавил бы нагрузки, ждем первую попытку
+                    }
+                }
+            }
+
+            ExecutionException lastFailure = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (done == null) {
+                    long remaining = deadline - System.nanoTime();
+                    done = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (done == null) {
+                        throw guard.onTimeout(permit);
+                    }
+                }
+                try {
+                    T result = done.get();
+                    if (attempts.size() > 1 && done == attempts.get(1)) {
+                        hedgeWins.increment();
+                    }
+                    guard.onSuccess(permit);
+                    return result;
+                } catch (ExecutionException e) {
+                    lastFailure = e;  // Может, вторая попытка окажется удачнее
+                    done = null;
+                }
+            }
+            throw guard.onFailure(permit, lastFailure);
+        } catch (InterruptedException e) {
+            throw guard.onInterrupted(permit);
+        } finally {
+            long now = System.nanoTime();
+            for (int i = 0; i < attempts.size(); i++) {
+                // cancel() вернет true только для незавершенной попытки: таймаут или проигравший повтор
+                long attemptStarted = attemptStarts.get(i).get();
+                if (attempts.get(i).cancel(true) && attemptStarted != 0) {
+                    histogram.record(now - attemptStarted);
+                }
+            }
+            guard.getCallTimer().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> Callable<T> timed(Callable<T> action, AtomicLong attemptStarted) {
+        return () -> {
+            long started = System.nanoTime();
+            attemptStarted.set(started);
+            T result = action.call();
+            histogram.record(System.nanoTime() - started);
+            return result;
+        };
+    }
+
+    /**
+     * p99 окна, умноженный на timeoutMultiplier, в пределах [minTimeoutMs, callTimeoutMs].
+     * Пока замеров мало — callTimeoutMs.
+     */
+    long timeoutNanos() {
+        long max = TimeUnit.MILLISECONDS.toNanos(guard.getCallTimeoutMs());
+        long p99 = histogram.percentileNanos(0.99, settings.getLatencyMinSamples());
+        if (p99 < 0) {
+            return max;
+        }
+        long min = TimeUnit.MILLISECONDS.toNanos(settings.getMinTimeoutMs());
+        return Math.max(min, Math.min(max, (long) (p99 * settings.getTimeoutMultiplier())));
+    }
+
+    /**
+     * Через сколько повторять запрос, или -1, если не повторять
+     */
+    long hedgeDelayNanos() {
+        if (!settings.isHedgeEnabled()) {
+            return -1;
+        }
+        long p95 = histogram.percentileNanos(0.95, settings.getLatencyMinSamples());
+        if (p95 < 0) {
+            return -1;
+        }
+        return Math.max(p95, TimeUnit.MILLISECONDS.toNanos(settings.getHedgeMinDelayMs()));
+    }
+}
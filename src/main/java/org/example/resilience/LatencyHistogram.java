@@ -0,0 +1,107 @@
+package org.example.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Скользящая гистограмма задержек: окно разбито на несколько отрезков, устаревший отрезок обнуляется при записи.
+ * Корзины растут геометрически (шаг 25%) от 1 мс до ~36 с, так что перцентиль точен до четверти значения.
+ */
+final class LatencyHistogram {
+    private static final int SLICES = 6;
+    private static final int BUCKETS = 48;
+    private static final long[] UPPER_BOUNDS_NANOS = new long[BUCKETS];
+
+    static {
+        double bound = TimeUnit.MILLISECONDS.toNanos(1);
+        for (int i = 0; i < BUCKETS; i++) {
+            UPPER_BOUNDS_NANOS[i] = (long) bound;
+            bound *= 1.25;
+        }
+    }
+
+    private static final class Slice {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        volatile long epoch = -1;
+    }
+
+    private final long sliceNanos;
+    private final Slice[] slices = new Slice[SLICES];
+
+    LatencyHistogram(long windowSeconds) {
+        this.sliceNanos = Math.max(1, TimeUnit.SECONDS.toNanos(windowSeconds) / SLICES);
+        for (int i = 0; i < SLICES; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    void record(long latencyNanos) {
+        current(System.nanoTime()).counts.incrementAndGet(bucketOf(latencyNanos));
+    }
+
+    /**
+     * Значение перцентиля за окно
+     *
+     * @param quantile   Например 0.95
+     * @param minSamples Сколько замеров нужно, чтобы перцентилю можно было верить
+     * @return Верхняя граница корзины в наносекундах или -1, если замеров мало
+     */
+    long percentileNanos(double quantile, int minSamples) {
+        long currentEpoch = System.nanoTime() / sliceNanos;
+        long total = 0;
+        long[] merged = new long[BUCKETS];
+        for (Slice slice : slices) {
+            if (currentEpoch - slice.epoch >= SLICES) {
+                continue;  // Отрезок старше окна
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = slice.counts.get(i);
+                merged[i] += count;
+                total += count;
+            }
+        }
+        if (total < Math.max(1, minSamples)) {
+            return -1;
+        }
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return UPPER_BOUNDS_NANOS[i];
+            }
+        }
+        return UPPER_BOUNDS_NANOS[BUCKETS - 1];
+    }
+
+    private Slice current(long now) {
+        long epoch = now / sliceNanos;
+        Slice slice = slices[(int) (epoch % SLICES)];
+        if (slice.epoch != epoch) {
+            synchronized (slice) {
+                if (slice.epoch != epoch) {
+                    for (int i = 0; i < BUCKETS; i++) {
+                        slice.counts.set(i, 0);
+                    }
+                    slice.epoch = epoch;
+                }
+            }
+        }
+        return slice;
+    }
+
+    private static int bucketOf(long latencyNanos) {
+        int low = 0;
+        int high = BUCKETS - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (UPPER_BOUNDS_NANOS[mid] < latencyNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
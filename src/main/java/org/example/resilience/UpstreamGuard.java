@@ -0,0 +1,194 @@
+package org.example.resilience;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.config.ResilienceConfig.UpstreamSettings;
+import org.example.resilience.UpstreamUnavailableException.Reason;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Изоляция одного внешнего сервиса: запросы к нему идут в собственном ограниченном пуле (bulkhead)
+ * и через автомат-предохранитель. Медленный сервис занимает только свой пул, а обработчик апдейта
+ * ждет не дольше callTimeoutMs или получает отказ сразу.
+ *
+ * Метрики (тег upstream): upstream.circuit.state (0 — CLOSED, 1 — OPEN, 2 — HALF_OPEN),
+ * upstream.bulkhead.active, upstream.bulkhead.queued, upstream.calls (тег outcome), upstream.call.duration.
+ */
+public class UpstreamGuard implements AutoCloseable {
+
+    enum Outcome { SUCCESS, FAILURE, TIMEOUT, CIRCUIT_OPEN, BULKHEAD_FULL }
+
+    private final String name;
+    private final UpstreamSettings settings;
+    private final MeterRegistry registry;
+    private final long callTimeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final CircuitBreaker breaker;
+
+    private final Timer callTimer;
+    private final Map<Outcome, Counter> outcomes = new EnumMap<>(Outcome.class);
+
+    public UpstreamGuard(String name, UpstreamSettings settings, MeterRegistry registry) {
+        this.name = name;
+        this.settings = settings;
+        this.registry = registry;
+        this.callTimeoutMs = settings.getCallTimeoutMs();
+        this.breaker = new CircuitBreaker(name, settings);
+
+        int threads = Math.max(1, settings.getMaxConcurrent());
+        BlockingQueue<Runnable> queue = settings.getQueueSize() > 0
+                ? new ArrayBlockingQueue<>(settings.getQueueSize())
+                : new SynchronousQueue<>();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, r -> {
+            Thread thread = new Thread(r, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("upstream.circuit.state", breaker, b -> b.getState().ordinal())
+                .tag("upstream", name).register(registry);
+        Gauge.builder("upstream.bulkhead.active", executor, ThreadPoolExecutor::getActiveCount)
+                .tag("upstream", name).register(registry);
+        Gauge.builder("upstream.bulkhead.queued", executor, e -> e.getQueue().size())
+                .tag("upstream", name).register(registry);
+        this.callTimer = Timer.builder("upstream.call.duration").tag("upstream", name).register(registry);
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, Counter.builder("upstream.calls")
+                    .tag("upstream", name)
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    public CircuitBreaker.State getState() {
+        return breaker.getState();
+    }
+
+    /**
+     * Создает операцию для идемпотентного чтения: с адаптивным таймаутом и повтором медленного запроса.
+     * Неидемпотентные вызовы (создание платежа, пользователя) должны идти только через {@link #call}.
+     *
+     * @param operation Имя операции для метрик; у каждой операции своя гистограмма задержек
+     */
+    public HedgedOperation idempotent(String operation) {
+        return new HedgedOperation(this, operation, settings, registry);
+    }
+
+    /**
+     * Выполняет вызов в пуле сервиса
+     *
+     * @return Результат action
+     * @throws UpstreamUnavailableException Предохранитель разомкнут, пул переполнен или вызов не уложился в таймаут
+     * @throws Exception                    Исключение самого action (оно засчитывается предохранителю как ошибка)
+     */
+    public <T> T call(Callable<T> action) throws Exception {
+        CircuitBreaker.Permit permit = acquirePermit();
+        Future<T> future = submit(action, permit);
+
+        long started = System.nanoTime();
+        try {
+            T result = future.get(callTimeoutMs, TimeUnit.MILLISECONDS);
+            onSuccess(permit);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw onTimeout(permit);
+        } catch (ExecutionException e) {
+            throw onFailure(permit, e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw onInterrupted(permit);
+        } finally {
+            callTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    CircuitBreaker.Permit acquirePermit() {
+        CircuitBreaker.Permit permit = breaker.tryAcquirePermission();
+        if (permit == CircuitBreaker.Permit.DENIED) {
+            outcomes.get(Outcome.CIRCUIT_OPEN).increment();
+            throw new UpstreamUnavailableException(name, Reason.CIRCUIT_OPEN);
+        }
+        return permit;
+    }
+
+    <T> Future<T> submit(Callable<T> action, CircuitBreaker.Permit permit) {
+        try {
+            return executor.submit(action);
+        } catch (RejectedExecutionException e) {
+            throw onRejected(permit);
+        }
+    }
+
+    ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    long getCallTimeoutMs() {
+        return callTimeoutMs;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Timer getCallTimer() {
+        return callTimer;
+    }
+
+    void onSuccess(CircuitBreaker.Permit permit) {
+        breaker.onSuccess(permit);
+        outcomes.get(Outcome.SUCCESS).increment();
+    }
+
+    UpstreamUnavailableException onRejected(CircuitBreaker.Permit permit) {
+        breaker.release(permit);
+        outcomes.get(Outcome.BULKHEAD_FULL).increment();
+        return new UpstreamUnavailableException(name, Reason.BULKHEAD_FULL);
+    }
+
+    UpstreamUnavailableException onTimeout(CircuitBreaker.Permit permit) {
+        breaker.onFailure(permit);
+        outcomes.get(Outcome.TIMEOUT).increment();
+        return new UpstreamUnavailableException(name, Reason.TIMEOUT);
+    }
+
+    UpstreamUnavailableException onInterrupted(CircuitBreaker.Permit permit) {
+        breaker.release(permit);
+        Thread.currentThread().interrupt();
+        return new UpstreamUnavailableException(name, Reason.INTERRUPTED);
+    }
+
+    /**
+     * Засчитывает ошибку и возвращает исходное исключение action для повторного выброса
+     */
+    Exception onFailure(CircuitBreaker.Permit permit, ExecutionException e) {
+        breaker.onFailure(permit);
+        outcomes.get(Outcome.FAILURE).increment();
+        Throwable cause = e.getCause();
+        return cause instanceof Exception exception ? exception : new IllegalStateException(cause);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
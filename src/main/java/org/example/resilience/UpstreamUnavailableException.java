@@ -0,0 +1,27 @@
+package org.example.resilience;
+
+/**
+ * Вызов внешнего сервиса отклонен без ожидания или не уложился в таймаут.
+ * Обработчик должен ответить пользователю сразу, а не повторять запрос.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    public enum Reason { CIRCUIT_OPEN, BULKHEAD_FULL, TIMEOUT, INTERRUPTED }
+
+    private final String upstream;
+    private final Reason reason;
+
+    public UpstreamUnavailableException(String upstream, Reason reason) {
+        super(upstream + " unavailable: " + reason);
+        this.upstream = upstream;
+        this.reason = reason;
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
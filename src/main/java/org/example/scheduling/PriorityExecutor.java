@@ -0,0 +1,189 @@
+package org.example.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.example.config.ClusterConfig;
+import org.example.config.JournalConfig;
+import org.example.config.SchedulerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Пул обработки апдейтов с очередью на каждый класс WorkPriority. Свободный поток берет задачу высшего класса,
+ * поэтому проверка оплаты не ждет за сотнями нажатий меню. Чтобы низкий класс не голодал, задача за каждые
+ * bot.scheduler.agingMs ожидания поднимается на класс: из голов очередей выбирается задача с наименьшим
+ * "класс минус ступени ожидания", при равенстве — исходно более высокого класса. Внутри класса порядок FIFO.
+ *
+ * Отправки в Telegram идут из потока, который обрабатывает апдейт, так что получают тот же приоритет.
+ *
+ * Метрики: scheduler.queue.wait и scheduler.queue.size (тег priority).
+ */
+@Component
+public class PriorityExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(PriorityExecutor.class);
+
+    private record Task(Runnable work, WorkPriority priority, long enqueuedAt) {
+    }
+
+    private final SchedulerConfig config;
+    private final JournalConfig journalConfig;
+    private final ClusterConfig clusterConfig;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Task>[] queues;
+    private final Timer[] waitTimers;
+    private final long agingNanos;
+
+    private volatile boolean running;
+    private Thread[] workers;
+
+    @SuppressWarnings("unchecked")
+    public PriorityExecutor(SchedulerConfig config, JournalConfig journalConfig, ClusterConfig clusterConfig,
+                            MeterRegistry registry) {
+        this.config = config;
+        this.journalConfig = journalConfig;
+        this.clusterConfig = clusterConfig;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getAgingMs()));
+        WorkPriority[] priorities = WorkPriority.values();
+        this.queues = new ArrayDeque[priorities.length];
+        this.waitTimers = new Timer[priorities.length];
+        for (WorkPriority priority : priorities) {
+            ArrayDeque<Task> queue = new ArrayDeque<>();
+            queues[priority.ordinal()] = queue;
+            waitTimers[priority.ordinal()] = Timer.builder("scheduler.queue.wait")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .publishPercentiles(0.5, 0.99)
+                    .register(registry);
+            Gauge.builder("scheduler.queue.size", this, executor -> executor.queued(priority))
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (config.getThreads() <= 0) {
+            logger.info("Priority scheduling disabled: updates are handled on the receiving thread");
+            return;
+        }
+        // Источник подтверждает апдейт Telegram, как только тот поставлен в очередь; без журнала очередь пропала бы
+        // при падении или по сроку остановки. В кластере апдейт остается в очереди в базе до конца обработки
+        if (!journalConfig.isEnabled() && !clusterConfig.isEnabled()) {
+            throw new IllegalStateException("bot.scheduler.threads > 0 requires bot.journal.enabled=true; "
+                    + "set bot.scheduler.threads=0 to handle updates on the receiving thread without the journal");
+        }
+        running = true;
+        workers = new Thread[config.getThreads()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::workLoop, "update-worker-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Остановка без ожидания: очередь к этому моменту уже дождался GracefulShutdown,
+     * а то, что не успело выполниться, повторится из журнала или очереди кластера
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (workers != null) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Ставит задачу в очередь ее класса. Если пул выключен или очередь полна, задача выполняется сразу в вызывающем потоке.
+     */
+    public void execute(WorkPriority priority, Runnable work) {
+        if (running) {
+            lock.lock();
+            try {
+                ArrayDeque<Task> queue = queues[priority.ordinal()];
+                if (queue.size() < config.getQueueCapacity()) {
+                    queue.addLast(new Task(work, priority, System.nanoTime()));
+                    notEmpty.signal();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            logger.debug("{} queue is full, running on the caller thread", priority);
+        }
+        waitTimers[priority.ordinal()].record(0, TimeUnit.NANOSECONDS);
+        work.run();
+    }
+
+    public int queued(WorkPriority priority) {
+        lock.lock();
+        try {
+            return queues[priority.ordinal()].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        while (running) {
+            Task task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            waitTimers[task.priority().ordinal()].record(System.nanoTime() - task.enqueuedAt(), TimeUnit.NANOSECONDS);
+            try {
+                task.work().run();
+            } catch (RuntimeException e) {
+                logger.error("Unhandled error in {} task: {}", task.priority(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private Task take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                Task task = pollNext(System.nanoTime());
+                if (task != null) {
+                    return task;
+                }
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Под lock: голова очереди — самая старая задача своего класса, так что сравнивать достаточно голов
+    private Task pollNext(long now) {
+        int best = -1;
+        long bestRank = Long.MAX_VALUE;
+        for (int i = 0; i < queues.length; i++) {
+            Task head = queues[i].peekFirst();
+            if (head == null) {
+                continue;
+            }
+            long rank = i - (now - head.enqueuedAt()) / agingNanos;
+            if (rank < bestRank) {
+                best = i;
+                bestRank = rank;
+            }
+        }
+        return best < 0 ? null : queues[best].pollFirst();
+    }
+}
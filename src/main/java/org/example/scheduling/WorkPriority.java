@@ -0,0 +1,23 @@
+package org.example.scheduling;
+
+import org.example.ratelimit.UserAction;
+
+/**
+ * Классы приоритета обработки, от высшего к низшему
+ */
+public enum WorkPriority {
+    // Проверка оплаты и выдача ключа: пользователь уже заплатил
+    PROVISIONING,
+    // Создание и отмена платежа
+    PAYMENT,
+    // Меню, инструкция, ключ, QR и текстовые сообщения
+    NAVIGATION;
+
+    public static WorkPriority of(UserAction action) {
+        return switch (action) {
+            case PROVISIONING -> PROVISIONING;
+            case PAYMENT -> PAYMENT;
+            default -> NAVIGATION;
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.shutdown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.example.cluster.ClusterCoordinator;
+import org.example.config.ClusterConfig;
+import org.example.config.PollingConfig;
+import org.example.config.ShutdownConfig;
+import org.example.logic.BotLogic;
+import org.example.tenancy.TenantBots;
+import org.example.updates.LongPollUpdateSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.generics.BotSession;
+
+/**
+ * Упорядоченная остановка по SIGTERM. Spring останавливает SmartLifecycle до уничтожения бинов,
+ * поэтому база, журнал, журнал событий и пулы внешних сервисов еще работают, пока дорабатывают обработчики:
+ * <ol>
+ *     <li>перестаем забирать апдейты у Telegram; источник сохраняет offset последнего принятого апдейта;</li>
+ *     <li>ждем принятые апдейты в пуле и начатые обработчики (вместе с их отправками) до bot.shutdown.deadlineSeconds.</li>
+ * </ol>
+ * Журнал апдейтов, журнал событий и пул отправки QR-кодов дописываются уже в своих @PreDestroy.
+ *
+ * Для LongPollUpdateSource и кластера это точная граница: непринятые апдейты Telegram (или очередь в базе) отдаст снова,
+ * а принятые, но не обработанные к сроку лежат в журнале и обработаются при следующем старте. Без журнала
+ * пул обработки не запускается, так что принятый апдейт не теряется. Сессия библиотеки подтверждает апдейты при получении, поэтому
+ * полученные после начала остановки апдейты откладываются в журнал и обрабатываются при следующем старте.
+ * Боты арендаторов (bot.tenancy) останавливаются вместе с основным и в тот же срок.
+ */
+@Component
+public class GracefulShutdown implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(GracefulShutdown.class);
+
+    private final ShutdownConfig config;
+    private final ClusterConfig clusterConfig;
+    private final PollingConfig pollingConfig;
+    private final BotLogic botLogic;
+    private final LongPollUpdateSource updateSource;
+    private final ClusterCoordinator clusterCoordinator;
+    private final TenantBots tenantBots;
+
+    private volatile boolean running;
+    private volatile BotSession librarySession;
+
+    public GracefulShutdown(ShutdownConfig config, ClusterConfig clusterConfig, PollingConfig pollingConfig, BotLogic botLogic,
+                            LongPollUpdateSource updateSource, ClusterCoordinator clusterCoordinator, TenantBots tenantBots) {
+        this.config = config;
+        this.clusterConfig = clusterConfig;
+        this.pollingConfig = pollingConfig;
+        this.botLogic = botLogic;
+        this.updateSource = updateSource;
+        this.clusterCoordinator = clusterCoordinator;
+        this.tenantBots = tenantBots;
+    }
+
+    /**
+     * Сессия DefaultBotSession, если бот зарегистрирован через TelegramBotsApi
+     */
+    public void setLibrarySession(BotSession librarySession) {
+        this.librarySession = librarySession;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.SECONDS.toNanos(config.getDeadlineSeconds());
+        logger.info("Shutting down: draining in-flight updates (deadline {}s)", config.getDeadlineSeconds());
+
+        List<TenantBots.Running> tenants = tenantBots.running();
+        botLogic.beginDrain();
+        tenants.forEach(tenant -> tenant.bot().beginDrain());
+        try {
+            if (clusterConfig.isEnabled()) {
+                clusterCoordinator.stop(remainingMillis(deadline));
+            } else if (pollingConfig.isLeanSource()) {
+                updateSource.stop(remainingMillis(deadline));
+                for (TenantBots.Running tenant : tenants) {
+                    tenant.source().stop(remainingMillis(deadline));
+                }
+            }
+            boolean idle = botLogic.awaitIdle(deadline);
+            for (TenantBots.Running tenant : tenants) {
+                idle &= tenant.bot().awaitIdle(deadline);
+            }
+            stopLibrarySession(botLogic, librarySession, deadline);
+            for (TenantBots.Running tenant : tenants) {
+                stopLibrarySession(tenant.bot(), tenant.session(), deadline);
+            }
+
+            if (idle) {
+                logger.info("Shutdown drain finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } else {
+                logger.warn("Shutdown deadline of {}s reached with updates still in flight; they will be replayed from the journal",
+                        config.getDeadlineSeconds());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Shutdown drain interrupted");
+        }
+    }
+
+    /**
+     * Ждем паузы в доставке: все, что сессия успела получить, к этому моменту отложено в журнал
+     */
+    private void stopLibrarySession(BotLogic bot, BotSession session, long deadline) throws InterruptedException {
+        if (session == null || !session.isRunning()) {
+            return;
+        }
+        while (bot.millisSinceLastDelivery() < config.getQuietMillis() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(config.getQuietMillis() / 4 + 1);
+        }
+        session.stop();
+        logger.info("Telegram session of @{} stopped", bot.getBotUsername());
+    }
+
+    private static long remainingMillis(long deadline) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Останавливаемся первыми, раньше любых других SmartLifecycle
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+}
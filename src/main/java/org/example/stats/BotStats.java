@@ -0,0 +1,350 @@
+package org.example.stats;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.example.config.StatsConfig;
+import org.example.db.Payment;
+import org.example.tenancy.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Оперативные показатели для команды /stats. Считаются инкрементально в момент изменения данных,
+ * поэтому снимок стоит несколько десятков сложений вместо запросов к базе. При старте и раз в
+ * resyncMinutes счетчики пересобираются из базы: так подтягиваются изменения с других узлов кластера
+ * и исправляется расхождение после откаченных транзакций.
+ *
+ * Ключи хранятся как число ключей по дню окончания срока, выручка — как сумма в копейках по дню оплаты.
+ * Дни в прошлом из счетчиков ключей выбрасываются при снимке. У каждого арендатора (bot.tenancy) свои показатели:
+ * изменения попадают в счетчики арендатора из TenantContext, пересборка раскладывает строки базы по tenant_id.
+ */
+@Component
+public class BotStats {
+    private static final Logger logger = LoggerFactory.getLogger(BotStats.class);
+    private static final int WINDOW_SECONDS = 60;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final StatsConfig config;
+    private final TransactionTemplate readOnly;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final Map<String, TenantStats> tenants = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService resync;
+
+    private static final class TenantStats {
+        // Пересборка подменяет объект целиком, чтобы снимок не увидел наполовину заполненные счетчики
+        volatile Counters counters = new Counters();
+
+        // Апдейты по секундам за последнюю минуту: слот — секунда по модулю 60, рядом — какой секунде он принадлежит
+        final AtomicLongArray windowCounts = new AtomicLongArray(WINDOW_SECONDS);
+        final AtomicLongArray windowSeconds = new AtomicLongArray(WINDOW_SECONDS);
+    }
+
+    private static final class Counters {
+        final LongAdder users = new LongAdder();
+        final LongAdder pendingPayments = new LongAdder();
+        final Map<Long, LongAdder> expiriesByDay = new ConcurrentHashMap<>();
+        final Map<Long, LongAdder> revenueByDay = new ConcurrentHashMap<>();
+
+        void add(Map<Long, LongAdder> buckets, long day, long delta) {
+            buckets.computeIfAbsent(day, d -> new LongAdder()).add(delta);
+        }
+    }
+
+    /**
+     * @param activeKeys      Ключи, срок которых еще не истек
+     * @param expiringWeek    Из них истекают в ближайшие 7 дней, включая сегодня
+     * @param revenueToday    Выручка за сегодня, коп.
+     * @param revenueMonth    Выручка с начала месяца, коп.
+     * @param pendingPayments Платежи, ожидающие оплаты
+     * @param updatesPerMinute Апдейты за последние 60 секунд на этом узле
+     */
+    public record Snapshot(long users, long activeKeys, long expiringWeek, long revenueToday, long revenueMonth,
+                           long pendingPayments, long updatesPerMinute) {
+    }
+
+    /**
+     * @param transactionManager null — счетчики без базы, rebuild() ничего не делает
+     */
+    public BotStats(StatsConfig config, PlatformTransactionManager transactionManager) {
+        this.config = config;
+        if (transactionManager != null) {
+            this.readOnly = new TransactionTemplate(transactionManager);
+            this.readOnly.setReadOnly(true);
+        } else {
+            this.readOnly = null;
+        }
+    }
+
+    /**
+     * Первая сборка тоже идет в фоне: старт бота не ждет подсчета по всей таблице пользователей
+     */
+    @PostConstruct
+    public void start() {
+        resync = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stats-resync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (config.getResyncMinutes() > 0) {
+            resync.scheduleWithFixedDelay(this::rebuild, 0, config.getResyncMinutes(), TimeUnit.MINUTES);
+        } else {
+            resync.execute(this::rebuild);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (resync != null) {
+            resync.shutdownNow();
+        }
+    }
+
+    /**
+     * Пересобирает счетчики из базы. Изменения, пришедшие во время пересборки, могут потеряться
+     * или учесться дважды; это исправит следующая пересборка.
+     */
+    public void rebuild() {
+        if (readOnly == null) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            Map<String, Counters> fresh = readOnly.execute(status -> load(LocalDate.now(zone)));
+            fresh.keySet().forEach(this::tenant);
+            // Арендатор без строк в базе получает пустые счетчики
+            tenants.forEach((tenant, stats) -> stats.counters = fresh.getOrDefault(tenant, new Counters()));
+            logger.info("Stats rebuilt from database in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            logger.error("Failed to rebuild stats: {}", e.getMessage(), e);
+        }
+    }
+
+    // В транзакции только для чтения: потоки результатов держат курсор, и оба закрываются сразу после прохода
+    private Map<String, Counters> load(LocalDate today) {
+        Map<String, Counters> fresh = new HashMap<>();
+
+        for (Object[] row : entityManager.createQuery("select u.tenantId, count(*) from User u group by u.tenantId",
+                Object[].class).getResultList()) {
+            counters(fresh, row[0]).users.add((Long) row[1]);
+        }
+        try (Stream<Object[]> keys = entityManager.createQuery(
+                        "select u.tenantId, u.data from User u where u.key <> ''", Object[].class)
+                .getResultStream()) {
+            keys.forEach(row -> {
+                LocalDate expiry = expiryDay((String) row[1]);
+                if (expiry != null && !expiry.isBefore(today)) {
+                    Counters counters = counters(fresh, row[0]);
+                    counters.add(counters.expiriesByDay, expiry.toEpochDay(), 1);
+                }
+            });
+        }
+
+        for (Object[] row : entityManager.createQuery(
+                        "select p.tenantId, count(p) from Payment p where p.status = :status group by p.tenantId",
+                        Object[].class)
+                .setParameter("status", Payment.PENDING)
+                .getResultList()) {
+            counters(fresh, row[0]).pendingPayments.add((Long) row[1]);
+        }
+        long monthStart = today.withDayOfMonth(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        try (Stream<Object[]> payments = entityManager.createQuery(
+                        "select p.tenantId, p.closedAt, p.amountKopecks from Payment p " +
+                        "where p.status = :status and p.closedAt >= :since", Object[].class)
+                .setParameter("status", Payment.SUCCEEDED)
+                .setParameter("since", monthStart)
+                .getResultStream()) {
+            payments.forEach(row -> {
+                Counters counters = counters(fresh, row[0]);
+                counters.add(counters.revenueByDay, epochDay((Long) row[1]), (Long) row[2]);
+            });
+        }
+        return fresh;
+    }
+
+    // Строки без tenant_id (до переноса TenantMigration) принадлежат основному боту
+    private static Counters counters(Map<String, Counters> fresh, Object tenant) {
+        return fresh.computeIfAbsent(tenant != null ? (String) tenant : TenantContext.DEFAULT, t -> new Counters());
+    }
+
+    private TenantStats tenant(String tenant) {
+        return tenants.computeIfAbsent(tenant, t -> new TenantStats());
+    }
+
+    // Счетчики арендатора, от имени которого работает поток
+    private Counters counters() {
+        return tenant(TenantContext.current()).counters;
+    }
+
+    public void userAdded() {
+        counters().users.increment();
+    }
+
+    /**
+     * Ключ выдан или продлен
+     *
+     * @param previousData Прежняя дата выдачи (поле user_data) или null, если ключа не было
+     * @param data         Новая дата выдачи
+     */
+    public void keyIssued(String previousData, String data) {
+        Counters current = counters();
+        long today = LocalDate.now(zone).toEpochDay();
+        LocalDate previous = previousData == null ? null : expiryDay(previousData);
+        // Прошедшие дни уже выброшены из счетчиков, вычитать из них нечего
+        if (previous != null && previous.toEpochDay() >= today) {
+            current.add(current.expiriesByDay, previous.toEpochDay(), -1);
+        }
+        LocalDate expiry = expiryDay(data);
+        if (expiry != null && expiry.toEpochDay() >= today) {
+            current.add(current.expiriesByDay, expiry.toEpochDay(), 1);
+        }
+    }
+
+    /**
+     * Ключ снят с пользователя (его пользователя панели удалили)
+     *
+     * @param data Дата выдачи снятого ключа
+     */
+    public void keyCleared(String data) {
+        Counters current = counters();
+        LocalDate expiry = expiryDay(data);
+        if (expiry != null && expiry.toEpochDay() >= LocalDate.now(zone).toEpochDay()) {
+            current.add(current.expiriesByDay, expiry.toEpochDay(), -1);
+        }
+    }
+
+    public void paymentCreated() {
+        counters().pendingPayments.increment();
+    }
+
+    public void paymentSucceeded(long amountKopecks, long closedAtMillis) {
+        Counters current = counters();
+        current.pendingPayments.decrement();
+        current.add(current.revenueByDay, epochDay(closedAtMillis), amountKopecks);
+    }
+
+    /**
+     * Оплата, которой не было в pending: создана до появления таблицы payments и записана только при выдаче ключа
+     */
+    public void legacyPaymentSucceeded(long amountKopecks, long closedAtMillis) {
+        Counters current = counters();
+        current.add(current.revenueByDay, epochDay(closedAtMillis), amountKopecks);
+    }
+
+    public void paymentCanceled() {
+        counters().pendingPayments.decrement();
+    }
+
+    /**
+     * @param tenant Арендатор бота, получившего апдейт; вызывается до разбора апдейта, вне TenantContext
+     */
+    public void updateReceived(String tenant) {
+        TenantStats stats = tenant(tenant);
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % WINDOW_SECONDS);
+        long owner = stats.windowSeconds.get(slot);
+        if (owner != second && stats.windowSeconds.compareAndSet(slot, owner, second)) {
+            // Инкременты соседних потоков между CAS и set теряются; для оценки нагрузки это допустимо
+            stats.windowCounts.set(slot, 0);
+        }
+        stats.windowCounts.incrementAndGet(slot);
+    }
+
+    /**
+     * Показатели арендатора, от имени которого работает поток
+     */
+    public Snapshot snapshot() {
+        TenantStats stats = tenant(TenantContext.current());
+        Counters current = stats.counters;
+        LocalDate date = LocalDate.now(zone);
+        long today = date.toEpochDay();
+        long monthStart = date.withDayOfMonth(1).toEpochDay();
+
+        long active = 0;
+        long expiringWeek = 0;
+        for (Map.Entry<Long, LongAdder> bucket : current.expiriesByDay.entrySet()) {
+            long day = bucket.getKey();
+            if (day < today) {
+                current.expiriesByDay.remove(day);
+                continue;
+            }
+            long keys = bucket.getValue().sum();
+            active += keys;
+            if (day < today + 7) {
+                expiringWeek += keys;
+            }
+        }
+
+        long revenueToday = 0;
+        long revenueMonth = 0;
+        for (Map.Entry<Long, LongAdder> bucket : current.revenueByDay.entrySet()) {
+            long day = bucket.getKey();
+            if (day < monthStart) {
+                current.revenueByDay.remove(day);
+                continue;
+            }
+            long kopecks = bucket.getValue().sum();
+            revenueMonth += kopecks;
+            if (day == today) {
+                revenueToday += kopecks;
+            }
+        }
+
+        return new Snapshot(current.users.sum(), active, expiringWeek, revenueToday, revenueMonth,
+                Math.max(0, current.pendingPayments.sum()), updatesPerMinute(stats));
+    }
+
+    private static long updatesPerMinute(TenantStats stats) {
+        long now = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+            // Текущая секунда еще не закончилась, берем 60 полных секунд до нее
+            long second = stats.windowSeconds.get(slot);
+            if (second < now && now - second <= WINDOW_SECONDS) {
+                total += stats.windowCounts.get(slot);
+            }
+        }
+        return total;
+    }
+
+    private long epochDay(long epochMillis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(epochMillis), zone).toEpochDay();
+    }
+
+    /**
+     * День окончания срока ключа по дате выдачи в формате DatabaseManager ("yyyy-MM-dd HH:mm:ss")
+     */
+    private LocalDate expiryDay(String data) {
+        if (data == null || data.length() < 10) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(data.substring(0, 10)).plusDays(config.getKeyValidityDays());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
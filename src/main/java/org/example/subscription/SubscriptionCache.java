@@ -0,0 +1,139 @@
+package org.example.subscription;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кеш конфигов подписки по uuid пользователя панели. У одного пользователя несколько вариантов (формат в пути,
+ * тип клиента), они хранятся вместе и сбрасываются вместе при изменении пользователя.
+ *
+ * Промах кеша идет в панель один раз на вариант (single-flight): остальные запросы того же варианта ждут тот же ответ.
+ * Ответ, полученный до сброса, в кеш не попадает: счетчик поколений меняется при каждом сбросе.
+ * Вариантов на пользователя не больше maxVariants: новый вариант сверх предела отдается, но не запоминается,
+ * пока не устареют прежние.
+ */
+class SubscriptionCache {
+
+    /**
+     * Ответ панели
+     *
+     * @param status    HTTP-статус (200 или 404)
+     * @param headers   Заголовки, которые передаются клиенту
+     * @param etag      ETag тела в кавычках
+     * @param expiresAt Когда запись перестает быть свежей, System.nanoTime()
+     */
+    record Entry(int status, Map<String, String> headers, byte[] body, String etag, long expiresAt) {
+        boolean isFresh(long now) {
+            return now - expiresAt < 0;
+        }
+    }
+
+    @FunctionalInterface
+    interface Fetcher {
+        Entry fetch() throws Exception;
+    }
+
+    private final Map<String, Map<String, Entry>> users = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final int maxUsers;
+    private final int maxVariants;
+    private final long waitTimeoutMs;
+
+    SubscriptionCache(int maxUsers, int maxVariants, long waitTimeoutMs) {
+        this.maxUsers = maxUsers;
+        this.maxVariants = Math.max(1, maxVariants);
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    /**
+     * @return Запись из кеша (возможно, уже не свежая) или null
+     */
+    Entry get(String uuid, String variant) {
+        Map<String, Entry> variants = users.get(uuid);
+        return variants == null ? null : variants.get(variant);
+    }
+
+    /**
+     * Загружает вариант из панели; одновременные запросы того же варианта получают один и тот же результат
+     */
+    Entry load(String uuid, String variant, Fetcher fetcher) throws Exception {
+        String key = uuid + '|' + variant;
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            } catch (TimeoutException e) {
+                throw new TimeoutException("Subscription " + uuid + " is still loading");
+            }
+        }
+
+        long startedGeneration = generation.get();
+        try {
+            Entry entry = fetcher.fetch();
+            if (generation.get() == startedGeneration) {
+                store(uuid, variant, entry);
+            }
+            mine.complete(entry);
+            return entry;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Сбрасывает все варианты пользователя: его ключ продлили, выключили или удалили
+     */
+    void invalidate(String uuid) {
+        generation.incrementAndGet();
+        users.remove(uuid);
+    }
+
+    int size() {
+        return users.size();
+    }
+
+    private void store(String uuid, String variant, Entry entry) {
+        if (users.size() >= maxUsers && !users.containsKey(uuid)) {
+            evict();
+        }
+        Map<String, Entry> variants = users.computeIfAbsent(uuid, k -> new ConcurrentHashMap<>());
+        if (variants.size() >= maxVariants && !variants.containsKey(variant)) {
+            long now = System.nanoTime();
+            variants.values().removeIf(stored -> !stored.isFresh(now));
+            if (variants.size() >= maxVariants) {
+                return;
+            }
+        }
+        variants.put(variant, entry);
+    }
+
+    /**
+     * Освобождает место: сначала выкидывает несвежие записи, если их нет — любую десятую часть
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        users.values().forEach(variants -> variants.values().removeIf(entry -> !entry.isFresh(now)));
+        users.values().removeIf(Map::isEmpty);
+        if (users.size() < maxUsers) {
+            return;
+        }
+        Iterator<String> uuids = users.keySet().iterator();
+        for (int i = 0; i < Math.max(1, maxUsers / 10) && uuids.hasNext(); i++) {
+            uuids.next();
+            uuids.remove();
+        }
+    }
+}
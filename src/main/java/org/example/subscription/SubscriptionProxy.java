@@ -0,0 +1,282 @@
+package org.example.subscription;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.example.config.HiddifyConfig;
+import org.example.config.SubscriptionConfig;
+import org.example.hiddify.HiddifyApiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Подписки Hiddify из процесса бота. Клиентские приложения обновляют подписку по расписанию, и при тысячах
+ * пользователей эти обновления — основная нагрузка на панель. Здесь конфиг берется из панели один раз
+ * за bot.subscription.ttlSeconds на пользователя и вариант, а повторный запрос с If-None-Match получает 304 без тела.
+ * Когда бот продлевает, выключает или удаляет пользователя панели, его записи сбрасываются сразу.
+ *
+ * Вариант — это путь после uuid, query и тип клиента (первое слово User-Agent): панель отдает разным приложениям
+ * разные форматы. Из query остаются только параметры bot.subscription.queryParams, а вариантов на пользователя
+ * не больше bot.subscription.maxVariantsPerUser, так что случайные query не раздувают кеш и не обходят его. Если панель не отвечает, до bot.subscription.staleIfErrorSeconds отдается последний конфиг.
+ *
+ * Метрики: subscription.requests (тег result: hit, miss, not_modified, stale, error), subscription.upstream.duration,
+ * subscription.cache.users.
+ */
+@Component
+public class SubscriptionProxy {
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionProxy.class);
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    // Заголовки панели, которые нужны клиентским приложениям
+    private static final List<String> FORWARDED_HEADERS = List.of("Content-Type", "Content-Disposition",
+            "Subscription-Userinfo", "Profile-Update-Interval", "Profile-Title", "Profile-Web-Page-Url", "Support-Url");
+
+    private final SubscriptionConfig config;
+    private final HiddifyApiClient hiddifyClient;
+    private final String upstreamBase;
+    private final SubscriptionCache cache;
+    private final OkHttpClient httpClient;
+    private final MeterRegistry registry;
+    private final Timer upstreamTimer;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public SubscriptionProxy(SubscriptionConfig config, HiddifyConfig hiddifyConfig, HiddifyApiClient hiddifyClient,
+                             MeterRegistry registry) {
+        this.config = config;
+        this.hiddifyClient = hiddifyClient;
+        this.upstreamBase = hiddifyConfig.getApiURL() + hiddifyConfig.getUserProxyPath() + "/";
+        this.cache = new SubscriptionCache(config.getMaxUsers(), config.getMaxVariantsPerUser(), config.getUpstreamTimeoutMs());
+        this.httpClient = new OkHttpClient.Builder()
+                .callTimeout(config.getUpstreamTimeoutMs(), TimeUnit.MILLISECONDS)
+                .build();
+        this.registry = registry;
+        this.upstreamTimer = Timer.builder("subscription.upstream.duration").register(registry);
+        Gauge.builder("subscription.cache.users", cache, SubscriptionCache::size).register(registry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        hiddifyClient.addUserChangeListener(cache::invalidate);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, config.getThreads()), r -> {
+            Thread thread = new Thread(r, "subscription-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(config.getBindAddress(), config.getPort()), 1024);
+        server.setExecutor(executor);
+        server.createContext(config.getPath(), exchange -> {
+            try {
+                handle(exchange);
+            } catch (RuntimeException e) {
+                logger.error("Subscription request {} failed: {}", exchange.getRequestURI(), e.getMessage(), e);
+                sendEmpty(exchange, 500);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        logger.info("Subscription proxy listening on {}:{}{}, links: {}", config.getBindAddress(), config.getPort(),
+                config.getPath(), config.linkBase() != null ? config.linkBase() : "panel");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            sendEmpty(exchange, 405);
+            return;
+        }
+
+        // {path}/{uuid}[/остаток]
+        String rest = exchange.getRequestURI().getRawPath().substring(config.getPath().length());
+        rest = rest.startsWith("/") ? rest.substring(1) : rest;
+        int slash = rest.indexOf('/');
+        String uuid = slash < 0 ? rest : rest.substring(0, slash);
+        if (!UUID_PATTERN.matcher(uuid).matches()) {
+            sendEmpty(exchange, 404);
+            return;
+        }
+        String suffix = slash < 0 ? "" : rest.substring(slash);
+        String query = filterQuery(exchange.getRequestURI().getRawQuery(), config.getQueryParams());
+        String userAgent = exchange.getRequestHeaders().getFirst("User-Agent");
+        String variant = suffix + (query != null ? "?" + query : "") + "|" + clientFamily(userAgent);
+
+        long now = System.nanoTime();
+        SubscriptionCache.Entry entry = cache.get(uuid, variant);
+        String result = "hit";
+        if (entry == null || !entry.isFresh(now)) {
+            SubscriptionCache.Entry stale = entry;
+            try {
+                String url = upstreamBase + uuid + suffix + (query != null ? "?" + query : "");
+                entry = cache.load(uuid, variant, () -> fetch(url, userAgent));
+                result = "miss";
+            } catch (Exception e) {
+                long staleLimit = TimeUnit.SECONDS.toNanos(config.getStaleIfErrorSeconds());
+                if (stale == null || now - stale.expiresAt() > staleLimit) {
+                    logger.warn("Subscription {} not loaded: {}", uuid, e.getMessage());
+                    count("error");
+                    sendEmpty(exchange, 502);
+                    return;
+                }
+                entry = stale;
+                result = "stale";
+            }
+        }
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (entry.status() == 200 && ifNoneMatch != null && ifNoneMatch.contains(entry.etag())) {
+            count("not_modified");
+            exchange.getResponseHeaders().set("ETag", entry.etag());
+            sendEmpty(exchange, 304);
+            return;
+        }
+        count(result);
+        send(exchange, entry, "HEAD".equals(method));
+    }
+
+    private SubscriptionCache.Entry fetch(String url, String userAgent) throws IOException {
+        Request.Builder request = new Request.Builder().url(url).get();
+        if (userAgent != null) {
+            request.header("User-Agent", userAgent);
+        }
+        long started = System.nanoTime();
+        try (Response response = httpClient.newCall(request.build()).execute()) {
+            if (response.code() != 200 && response.code() != 404) {
+                throw new IOException("Hiddify responded with HTTP " + response.code());
+            }
+            byte[] body = response.body() != null ? response.body().bytes() : new byte[0];
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (String name : FORWARDED_HEADERS) {
+                String value = response.header(name);
+                if (value != null) {
+                    headers.put(name, value);
+                }
+            }
+            int ttl = response.code() == 200 ? config.getTtlSeconds() : config.getNotFoundTtlSeconds();
+            return new SubscriptionCache.Entry(response.code(), headers, body, etag(body),
+                    System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl));
+        } finally {
+            upstreamTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void send(HttpExchange exchange, SubscriptionCache.Entry entry, boolean headOnly) throws IOException {
+        entry.headers().forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+        if (entry.status() == 200) {
+            exchange.getResponseHeaders().set("ETag", entry.etag());
+            exchange.getResponseHeaders().set("Cache-Control", "private, max-age=" + config.getTtlSeconds());
+            exchange.getResponseHeaders().set("Vary", "User-Agent");
+        }
+        if (headOnly) {
+            exchange.sendResponseHeaders(entry.status(), -1);
+            return;
+        }
+        exchange.sendResponseHeaders(entry.status(), entry.body().length == 0 ? -1 : entry.body().length);
+        if (entry.body().length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(entry.body());
+            }
+        }
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private void count(String result) {
+        registry.counter("subscription.requests", "result", result).increment();
+    }
+
+    /**
+     * Оставляет в query только разрешенные параметры, по имени в порядке возрастания: ?b=1&a=2 и ?a=2&b=1 — один вариант
+     *
+     * @param allowed Разрешенные имена; пусто — query не меняется
+     * @return Query без '?' или null, если ничего не осталось
+     */
+    static String filterQuery(String rawQuery, List<String> allowed) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return null;
+        }
+        if (allowed.isEmpty()) {
+            return rawQuery;
+        }
+        List<String> kept = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            if (allowed.contains(paramName(pair))) {
+                kept.add(pair);
+            }
+        }
+        if (kept.isEmpty()) {
+            return null;
+        }
+        kept.sort(Comparator.comparing(SubscriptionProxy::paramName));
+        return String.join("&", kept);
+    }
+
+    private static String paramName(String pair) {
+        int eq = pair.indexOf('=');
+        return eq < 0 ? pair : pair.substring(0, eq);
+    }
+
+    /**
+     * Тип клиента для ключа кеша: имя приложения из User-Agent без версии (HiddifyNext/2.5.7 → hiddifynext)
+     */
+    static String clientFamily(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return "";
+        }
+        String first = userAgent.trim().split("[\\s/;(]", 2)[0];
+        return first.toLowerCase(Locale.ROOT);
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package org.example.sweeper;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.example.config.ClusterConfig;
+import org.example.config.StatsConfig;
+import org.example.config.SweeperConfig;
+import org.example.db.ClusterRepository;
+import org.example.db.DatabaseManager;
+import org.example.hiddify.HiddifyApiClient;
+import org.example.hiddify.HiddifyUser;
+import org.example.resilience.UpstreamUnavailableException;
+import org.example.tenancy.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Чистка панели Hiddify от пользователей, которые больше не нужны.
+ *
+ * Истекшие: база дает кандидатов — ключи, выданные раньше срока действия и bot.sweeper.graceDays (срок проверяет
+ * запрос, неистекшие ключи не читаются), а панель подтверждает, что пакет действительно закончился (продленный
+ * с переносом дней не тронется). Сироты: созданные ботом пользователи панели, на uuid которых не ссылается ни один ключ
+ * в базе. База и список панели читаются страницами по bot.sweeper.pageSize, панель сверяется с базой на лету,
+ * а изменения уходят в панель пачками по bot.sweeper.batchSize с паузой между ними.
+ *
+ * У каждого арендатора (bot.tenancy) своя панель: по расписанию они чистятся по очереди, каждая — от имени своего
+ * арендатора. Сиротой считается только uuid, на который не ссылается ключ ни одного арендатора, поэтому
+ * общая для нескольких ботов панель не теряет чужих пользователей.
+ *
+ * Метрики: sweeper.duration, sweeper.reclaimed (тег kind: expired или orphan), sweeper.failures.
+ */
+@Component
+public class PanelSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(PanelSweeper.class);
+    private static final String LEASE = "panel-sweeper";
+
+    /**
+     * Итог чистки. В пробном режиме reclaimed = 0, а expired и orphans — сколько было бы обработано.
+     */
+    public record SweepReport(boolean dryRun, int scanned, int expired, int orphans, int reclaimed, int failed,
+                              long durationMs) {
+    }
+
+    private record KeyRef(long userId, String key) {
+    }
+
+    // userId == null — сирота
+    private record Target(HiddifyUser panelUser, Long userId, String key) {
+        String kind() {
+            return userId == null ? "orphan" : "expired";
+        }
+    }
+
+    private final SweeperConfig config;
+    private final StatsConfig statsConfig;
+    // Панель каждого арендатора; основной бот — TenantContext.DEFAULT
+    private final Map<String, HiddifyApiClient> panels = new ConcurrentHashMap<>();
+    private final DatabaseManager db;
+    private final ClusterConfig clusterConfig;
+    private final ClusterRepository cluster;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Timer duration;
+    private final Counter expiredReclaimed;
+    private final Counter orphansReclaimed;
+    private final Counter failures;
+
+    private ScheduledExecutorService executor;
+
+    public PanelSweeper(SweeperConfig config, StatsConfig statsConfig, HiddifyApiClient hiddify, DatabaseManager db,
+                        ClusterConfig clusterConfig, ClusterRepository cluster, MeterRegistry registry) {
+        this.config = config;
+        this.statsConfig = statsConfig;
+        this.panels.put(TenantContext.DEFAULT, hiddify);
+        this.db = db;
+        this.clusterConfig = clusterConfig;
+        this.cluster = cluster;
+        this.duration = Timer.builder("sweeper.duration").register(registry);
+        this.expiredReclaimed = Counter.builder("sweeper.reclaimed").tag("kind", "expired").register(registry);
+        this.orphansReclaimed = Counter.builder("sweeper.reclaimed").tag("kind", "orphan").register(registry);
+        this.failures = Counter.builder("sweeper.failures").register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "panel-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!config.isEnabled() || config.getIntervalMinutes() <= 0) {
+            logger.info("Panel sweeper disabled");
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::scheduledSweep,
+                config.getIntervalMinutes(), config.getIntervalMinutes(), TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Подключает панель бота арендатора; вызывается при сборке ботов, до первой чистки
+     */
+    public void addTenant(String tenantId, HiddifyApiClient hiddify) {
+        panels.put(tenantId, hiddify);
+    }
+
+    /**
+     * Запускает чистку панели текущего арендатора (TenantContext) вне расписания в потоке чистильщика
+     */
+    public CompletableFuture<SweepReport> submit(boolean dryRun) {
+        String tenant = TenantContext.current();
+        CompletableFuture<SweepReport> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(sweep(tenant, dryRun));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private void scheduledSweep() {
+        // В кластере чистит один узел за период: аренда не продлевается и сама истекает к следующему запуску
+        if (clusterConfig.isEnabled()) {
+            long now = System.currentTimeMillis();
+            long expiresAt = now + TimeUnit.MINUTES.toMillis(config.getIntervalMinutes()) - TimeUnit.MINUTES.toMillis(1);
+            if (!cluster.tryAcquireLease(LEASE, clusterConfig.resolveInstanceId(), now, expiresAt)) {
+                logger.debug("Panel sweep skipped: another instance holds the lease");
+                return;
+            }
+        }
+        for (String tenant : panels.keySet()) {
+            try {
+                sweep(tenant, config.isDryRun());
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                logger.error("Panel sweep of tenant {} failed: {}", tenant, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Чистит панель арендатора; запросы к базе идут от его имени
+     */
+    public SweepReport sweep(String tenant, boolean dryRun) throws IOException {
+        HiddifyApiClient hiddify = panels.get(tenant);
+        if (hiddify == null) {
+            throw new IllegalArgumentException("Unknown tenant: " + tenant);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Panel sweep is already running");
+        }
+        try {
+            long started = System.nanoTime();
+            LocalDate today = LocalDate.now();
+            boolean deleteExpired = "delete".equalsIgnoreCase(config.getExpiredAction());
+
+            int pageSize = Math.max(1, config.getPageSize());
+            LocalDate issuedBefore = today.minusDays(statsConfig.getKeyValidityDays() + (long) config.getGraceDays());
+            LocalDate expiredBefore = today.minusDays(config.getGraceDays());
+            LocalDate orphanBefore = today.minusDays(config.getOrphanGraceDays());
+
+            // Кандидаты в истекшие по uuid панели — ключи, выданные раньше срока действия и запаса
+            Map<String, KeyRef> keys = TenantContext.call(tenant, () -> loadExpiredKeys(issuedBefore, pageSize));
+            // Без удаления сирот все ключи базы читать незачем
+            Set<String> referenced = config.isDeleteOrphans() ? referencedByAnyTenant(pageSize) : Set.of();
+
+            List<Target> targets = new ArrayList<>();
+            int[] scanned = {0};
+            hiddify.listUsers(pageSize, page -> {
+                scanned[0] += page.size();
+                for (HiddifyUser panelUser : page) {
+                    if (targets.size() >= config.getMaxActions()) {
+                        return;
+                    }
+                    KeyRef ref = keys.get(panelUser.uuid());
+                    if (ref == null) {
+                        if (config.isDeleteOrphans() && !referenced.contains(panelUser.uuid())
+                                && isOrphan(panelUser, orphanBefore)) {
+                            targets.add(new Target(panelUser, null, null));
+                        }
+                    } else if (expiredBefore(panelUser, expiredBefore) && (deleteExpired || panelUser.enabled())) {
+                        targets.add(new Target(panelUser, ref.userId(), ref.key()));
+                    }
+                }
+            });
+
+            int expired = 0;
+            int orphans = 0;
+            int reclaimed = 0;
+            int failed = 0;
+            for (int i = 0; i < targets.size(); i++) {
+                Target target = targets.get(i);
+                if (target.userId() == null) {
+                    orphans++;
+                } else {
+                    expired++;
+                }
+                if (dryRun) {
+                    logger.info("Dry run: would {} {} panel user {}",
+                            target.userId() == null || deleteExpired ? "delete" : "disable", target.kind(), target.panelUser().uuid());
+                    continue;
+                }
+                if (i > 0 && i % Math.max(1, config.getBatchSize()) == 0) {
+                    try {
+                        Thread.sleep(config.getBatchPauseMs());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failed += targets.size() - i;
+                        break;
+                    }
+                }
+                try {
+                    if (TenantContext.call(tenant, () -> reclaim(hiddify, target, deleteExpired))) {
+                        reclaimed++;
+                        (target.userId() == null ? orphansReclaimed : expiredReclaimed).increment();
+                    }
+                } catch (UpstreamUnavailableException e) {
+                    // Панель перегружена или недоступна: остальное дождется следующей чистки
+                    logger.warn("Panel sweep stopped: {}", e.getMessage());
+                    failed += targets.size() - i;
+                    break;
+                } catch (RuntimeException e) {
+                    failed++;
+                    logger.warn("Failed to reclaim {} panel user {}: {}", target.kind(), target.panelUser().uuid(), e.getMessage());
+                }
+            }
+            failures.increment(failed);
+
+            long elapsed = System.nanoTime() - started;
+            duration.record(elapsed, TimeUnit.NANOSECONDS);
+            SweepReport report = new SweepReport(dryRun, scanned[0], expired, orphans, reclaimed, failed,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+            logger.info("Panel sweep{} of tenant {}: scanned {} panel users, expired {}, orphans {}, reclaimed {}, failed {} in {} ms",
+                    dryRun ? " (dry run)" : "", tenant, report.scanned(), expired, orphans, reclaimed, failed, report.durationMs());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private boolean reclaim(HiddifyApiClient hiddify, Target target, boolean deleteExpired) {
+        String uuid = target.panelUser().uuid();
+        if (target.userId() == null) {
+            return hiddify.deleteUser(uuid);
+        }
+        if (!deleteExpired) {
+            return hiddify.disableUser(uuid);
+        }
+        boolean deleted = hiddify.deleteUser(uuid);
+        // Пользователя панели больше нет — ключ в базе тоже не рабочий; продление создаст новый
+        db.clearVpnKey(target.userId(), target.key());
+        return deleted;
+    }
+
+    private Map<String, KeyRef> loadExpiredKeys(LocalDate issuedBefore, int pageSize) {
+        Map<String, KeyRef> keys = new HashMap<>();
+        long after = Long.MIN_VALUE;
+        List<Object[]> page;
+        do {
+            page = db.listKeysIssuedBefore(issuedBefore, after, pageSize);
+            for (Object[] row : page) {
+                after = (Long) row[0];
+                String data = (String) row[2];
+                try {
+                    LocalDate.parse(data.substring(0, 10));
+                } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+                    // Дата не разобралась — ключ не считается истекшим, но и сиротой его пользователь не станет
+                    continue;
+                }
+                String key = (String) row[1];
+                keys.put(HiddifyApiClient.uuidFromConnectionLink(key), new KeyRef(after, key));
+            }
+        } while (page.size() == pageSize);
+        return keys;
+    }
+
+    // uuid панели из ключей всех арендаторов: панель может быть общей у нескольких ботов
+    private Set<String> referencedByAnyTenant(int pageSize) {
+        Set<String> uuids = new HashSet<>();
+        for (String tenant : panels.keySet()) {
+            TenantContext.run(tenant, () -> {
+                long after = Long.MIN_VALUE;
+                List<Object[]> page;
+                do {
+                    page = db.listKeys(after, pageSize);
+                    for (Object[] row : page) {
+                        after = (Long) row[0];
+                        uuids.add(HiddifyApiClient.uuidFromConnectionLink((String) row[1]));
+                    }
+                } while (page.size() == pageSize);
+            });
+        }
+        return uuids;
+    }
+
+    // Пользователь с неразборчивой датой в панели не трогается ни как истекший, ни как сирота
+
+    private static boolean expiredBefore(HiddifyUser panelUser, LocalDate day) {
+        try {
+            LocalDate expires = panelUser.expiresOn();
+            return expires != null && !expires.isAfter(day);
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    private static boolean isOrphan(HiddifyUser panelUser, LocalDate createdBefore) {
+        if (!HiddifyApiClient.CREATED_BY_BOT.equals(panelUser.comment()) || panelUser.startDate() == null) {
+            return false;
+        }
+        try {
+            return LocalDate.parse(panelUser.startDate().substring(0, 10)).isBefore(createdBefore);
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+}
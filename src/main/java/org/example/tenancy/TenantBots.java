@@ -0,0 +1,243 @@
+package org.example.tenancy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.example.admin.AdminCommands;
+import org.example.analytics.EventLog;
+import org.example.config.BotConfig;
+import org.example.config.ClusterConfig;
+import org.example.config.JournalConfig;
+import org.example.config.MediaConfig;
+import org.example.config.PollingConfig;
+import org.example.config.ResilienceConfig;
+import org.example.config.TenancyConfig;
+import org.example.db.DatabaseManager;
+import org.example.db.KeyHistoryRepository;
+import org.example.db.MediaRepository;
+import org.example.db.PaymentRepository;
+import org.example.hiddify.HiddifyApiClient;
+import org.example.logic.BotLogic;
+import org.example.media.QrCodeService;
+import org.example.media.StaticMediaService;
+import org.example.ratelimit.UserRateLimiter;
+import org.example.scheduling.PriorityExecutor;
+import org.example.stats.BotStats;
+import org.example.sweeper.PanelSweeper;
+import org.example.updates.LongPollUpdateSource;
+import org.example.updates.UpdateJournal;
+import org.example.updates.UpdateOffsetStore;
+import org.example.yookassa.YooKassaPayment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Дополнительные боты из bot.tenancy.tenants в том же процессе, что и основной. У каждого свои токен, администраторы,
+ * панель Hiddify, магазин ЮKassa, журнал апдейтов, корзины лимита, файлы событий, показатели /stats и строки в базе
+ * (столбец tenant_id), а общими остаются пул обработки PriorityExecutor, пул соединений к базе, пулы OkHttp,
+ * RestTemplate ЮKassa, QR-коды и потоки записи событий и чистки корзин лимита. Свои потоки бота — только получение апдейтов: один поток с bot.polling.source=lean,
+ * два потока сессии библиотеки иначе; пулы предохранителей его панели и магазина создают потоки только на время запросов.
+ *
+ * Чистильщик панели обходит панели всех арендаторов, а /export выгружает строки арендатора, которому отправлена команда;
+ * прокси подписок работает только с основным ботом.
+ */
+@Component
+public class TenantBots {
+    private static final Logger logger = LoggerFactory.getLogger(TenantBots.class);
+    private static final Pattern TENANT_ID = Pattern.compile("[a-z0-9_-]{1,32}");
+
+    /**
+     * Бот арендатора; source или session заполнены после start()
+     */
+    public record Running(String id, BotLogic bot, LongPollUpdateSource source, BotSession session) {
+    }
+
+    private record Tenant(String id, BotLogic bot, BotConfig botConfig, HiddifyApiClient hiddify, YooKassaPayment yooKassa,
+                          UpdateJournal journal) {
+    }
+
+    private final TenancyConfig config;
+    private final BotConfig primaryBot;
+    private final ClusterConfig clusterConfig;
+    private final PollingConfig pollingConfig;
+    private final JournalConfig journalConfig;
+    private final MediaConfig mediaConfig;
+    private final ResilienceConfig resilienceConfig;
+    private final MeterRegistry registry;
+    private final HiddifyApiClient primaryHiddify;
+    private final YooKassaPayment primaryYooKassa;
+    private final LongPollUpdateSource primarySource;
+    private final DatabaseManager db;
+    private final PaymentRepository payments;
+    private final KeyHistoryRepository keyHistory;
+    private final MediaRepository mediaRepository;
+    private final UserRateLimiter rateLimiter;
+    private final QrCodeService qrCodes;
+    private final EventLog eventLog;
+    private final AdminCommands adminCommands;
+    private final BotStats stats;
+    private final PriorityExecutor scheduler;
+    private final PanelSweeper sweeper;
+
+    private final List<Tenant> tenants = new ArrayList<>();
+    private final List<Running> running = new ArrayList<>();
+
+    public TenantBots(TenancyConfig config, BotConfig primaryBot, ClusterConfig clusterConfig, PollingConfig pollingConfig,
+                      JournalConfig journalConfig, MediaConfig mediaConfig, ResilienceConfig resilienceConfig,
+                      MeterRegistry registry, HiddifyApiClient primaryHiddify, YooKassaPayment primaryYooKassa,
+                      LongPollUpdateSource primarySource, DatabaseManager db, PaymentRepository payments,
+                      KeyHistoryRepository keyHistory, MediaRepository mediaRepository, UserRateLimiter rateLimiter,
+                      @Lazy QrCodeService qrCodes, EventLog eventLog, @Lazy AdminCommands adminCommands, BotStats stats,
+                      PriorityExecutor scheduler, PanelSweeper sweeper) {
+        this.config = config;
+        this.primaryBot = primaryBot;
+        this.clusterConfig = clusterConfig;
+        this.pollingConfig = pollingConfig;
+        this.journalConfig = journalConfig;
+        this.mediaConfig = mediaConfig;
+        this.resilienceConfig = resilienceConfig;
+        this.registry = registry;
+        this.primaryHiddify = primaryHiddify;
+        this.primaryYooKassa = primaryYooKassa;
+        this.primarySource = primarySource;
+        this.db = db;
+        this.payments = payments;
+        this.keyHistory = keyHistory;
+        this.mediaRepository = mediaRepository;
+        this.rateLimiter = rateLimiter;
+        this.qrCodes = qrCodes;
+        this.eventLog = eventLog;
+        this.adminCommands = adminCommands;
+        this.stats = stats;
+        this.scheduler = scheduler;
+        this.sweeper = sweeper;
+    }
+
+    /**
+     * Собирает ботов арендаторов; ошибка в настройках останавливает старт, как и ошибка настроек основного бота
+     */
+    @PostConstruct
+    public void create() throws IOException {
+        List<TenancyConfig.Tenant> configured = config.getTenants();
+        if (configured.isEmpty()) {
+            return;
+        }
+        if (clusterConfig.isEnabled()) {
+            throw new IllegalStateException("bot.tenancy.tenants is not supported together with bot.cluster.enabled");
+        }
+        Set<String> ids = new HashSet<>();
+        Set<String> tokens = new HashSet<>();
+        tokens.add(primaryBot.getToken());
+        for (TenancyConfig.Tenant tenant : configured) {
+            String id = tenant.getId();
+            if (id == null || !TENANT_ID.matcher(id).matches() || TenantContext.DEFAULT.equals(id)) {
+                throw new IllegalStateException("Invalid tenant id: " + id);
+            }
+            if (!ids.add(id)) {
+                throw new IllegalStateException("Duplicate tenant id: " + id);
+            }
+            if (!tokens.add(tenant.getBot().getToken())) {
+                throw new IllegalStateException("Tenant " + id + " reuses the token of another bot");
+            }
+            tenants.add(createTenant(tenant));
+        }
+        logger.info("Tenant bots created: {}", ids);
+    }
+
+    private Tenant createTenant(TenancyConfig.Tenant tenant) throws IOException {
+        String id = tenant.getId();
+        BotConfig botConfig = tenant.getBot();
+        botConfig.setTenant(id);
+
+        HiddifyApiClient hiddify = primaryHiddify.forTenant(id, tenant.getHiddify(), resilienceConfig, registry);
+        YooKassaPayment yooKassa = primaryYooKassa.forShop(id, tenant.getYookassa(), resilienceConfig, registry);
+        sweeper.addTenant(id, hiddify);
+
+        JournalConfig tenantJournal = new JournalConfig();
+        tenantJournal.setEnabled(journalConfig.isEnabled());
+        tenantJournal.setDir(suffixed(journalConfig.getDir(), id));
+        tenantJournal.setSegmentSizeBytes(journalConfig.getSegmentSizeBytes());
+        tenantJournal.setSyncOnAppend(journalConfig.isSyncOnAppend());
+        tenantJournal.setDedupeWindow(journalConfig.getDedupeWindow());
+        UpdateJournal journal = new UpdateJournal(tenantJournal);
+        journal.open();
+
+        StaticMediaService staticMedia = new StaticMediaService(botConfig, mediaConfig, mediaRepository);
+        staticMedia.scan();
+
+        BotLogic bot = new BotLogic(botConfig, hiddify, db, payments, keyHistory, yooKassa, journal,
+                rateLimiter.forTenant(id), qrCodes,
+                staticMedia, eventLog, adminCommands, stats, scheduler);
+        return new Tenant(id, bot, botConfig, hiddify, yooKassa, journal);
+    }
+
+    /**
+     * Дописывает журналы и подключает ботов к Telegram тем же способом, что и основной бот
+     *
+     * @param botsApi Для сессий библиотеки; null, если основной бот опрашивает через LongPollUpdateSource
+     */
+    public synchronized void start(TelegramBotsApi botsApi) throws TelegramApiException, IOException {
+        for (Tenant tenant : tenants) {
+            tenant.bot().replayJournal();
+            if (botsApi == null) {
+                tenant.bot().clearWebhook();
+                LongPollUpdateSource source = primarySource.forBot(tenant.botConfig());
+                source.start(tenant.bot()::handleUpdate,
+                        new UpdateOffsetStore(Path.of(suffixed(pollingConfig.getOffsetFile(), tenant.id()))));
+                running.add(new Running(tenant.id(), tenant.bot(), source, null));
+            } else {
+                running.add(new Running(tenant.id(), tenant.bot(), null, botsApi.registerBot(tenant.bot())));
+            }
+            logger.info("Tenant bot {} (@{}) started", tenant.id(), tenant.botConfig().getUsername());
+        }
+    }
+
+    /**
+     * Запущенные боты арендаторов, для упорядоченной остановки
+     */
+    public synchronized List<Running> running() {
+        return List.copyOf(running);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        // Обычно источники уже остановлены в GracefulShutdown; здесь — если контекст закрывается без него
+        for (Running bot : running) {
+            if (bot.source() != null) {
+                bot.source().stop();
+            }
+        }
+        for (Tenant tenant : tenants) {
+            tenant.journal().close();
+            tenant.hiddify().close();
+            tenant.yooKassa().close();
+        }
+    }
+
+    /**
+     * journal → journal-brand2, update_offset.bin → update_offset-brand2.bin: файлы арендатора рядом с файлами основного бота
+     */
+    static String suffixed(String path, String tenantId) {
+        Path file = Path.of(path);
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String renamed = dot > 0
+                ? name.substring(0, dot) + "-" + tenantId + name.substring(dot)
+                : name + "-" + tenantId;
+        return file.resolveSibling(renamed).toString();
+    }
+}
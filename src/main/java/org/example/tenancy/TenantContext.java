@@ -0,0 +1,46 @@
+package org.example.tenancy;
+
+import java.util.function.Supplier;
+
+/**
+ * Арендатор (бот из bot.tenancy.tenants), от имени которого работает текущий поток. Репозитории берут его отсюда
+ * и видят только строки этого арендатора. Основной бот работает как {@link #DEFAULT}; фоновые задачи, которые
+ * обслуживают арендаторов (чистильщик, выгрузка), запоминают арендатора сами и выполняются от его имени.
+ */
+public final class TenantContext {
+    public static final String DEFAULT = "default";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    public static String current() {
+        String tenant = CURRENT.get();
+        return tenant != null ? tenant : DEFAULT;
+    }
+
+    /**
+     * Выполняет задачу от имени арендатора и восстанавливает прежнего (потоки пула общие для всех ботов)
+     */
+    public static void run(String tenant, Runnable task) {
+        call(tenant, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public static <T> T call(String tenant, Supplier<T> task) {
+        String previous = CURRENT.get();
+        CURRENT.set(tenant);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.updates;
+
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Апдейт Telegram, урезанный до полей, которые читает BotLogic.
+ * Если нет ни текста, ни данных кнопки — боту в нем ничего не нужно, но update_id все равно учитывается.
+ *
+ * @param updateId     update_id
+ * @param userId       from.id отправителя сообщения или нажавшего кнопку
+ * @param username     from.username (только для логов, может быть null)
+ * @param chatId       chat.id
+ * @param messageId    message_id сообщения (для кнопки — сообщения, к которому она прикреплена)
+ * @param text         Текст сообщения или null
+ * @param callbackData Данные нажатой кнопки или null
+ * @param languageCode from.language_code (язык интерфейса Telegram у пользователя, может быть null)
+ */
+public record BotUpdate(long updateId, long userId, String username, long chatId, int messageId,
+                        String text, String callbackData, String languageCode) {
+
+    public static BotUpdate message(long updateId, long userId, String username, long chatId, int messageId, String text) {
+        return message(updateId, userId, username, chatId, messageId, text, null);
+    }
+
+    public static BotUpdate message(long updateId, long userId, String username, long chatId, int messageId, String text,
+                                    String languageCode) {
+        return new BotUpdate(updateId, userId, username, chatId, messageId, text, null, languageCode);
+    }
+
+    public static BotUpdate callback(long updateId, long userId, String username, long chatId, int messageId, String data) {
+        return callback(updateId, userId, username, chatId, messageId, data, null);
+    }
+
+    public static BotUpdate callback(long updateId, long userId, String username, long chatId, int messageId, String data,
+                                     String languageCode) {
+        return new BotUpdate(updateId, userId, username, chatId, messageId, null, data, languageCode);
+    }
+
+    public static BotUpdate ignored(long updateId) {
+        return new BotUpdate(updateId, 0, null, 0, 0, null, null, null);
+    }
+
+    /**
+     * Переводит полный Update библиотеки в урезанный вид
+     */
+    public static BotUpdate from(Update update) {
+        long updateId = update.getUpdateId() != null ? update.getUpdateId() : 0;
+        if (update.hasMessage() && update.getMessage().hasText()) {
+            Message message = update.getMessage();
+            return message(updateId, message.getFrom().getId(), message.getFrom().getUserName(),
+                    message.getChatId(), message.getMessageId(), message.getText(), message.getFrom().getLanguageCode());
+        }
+        if (update.hasCallbackQuery()) {
+            CallbackQuery callbackQuery = update.getCallbackQuery();
+            return callback(updateId, callbackQuery.getFrom().getId(), callbackQuery.getFrom().getUserName(),
+                    callbackQuery.getMessage().getChatId(), callbackQuery.getMessage().getMessageId(),
+                    callbackQuery.getData(), callbackQuery.getFrom().getLanguageCode());
+        }
+        return ignored(updateId);
+    }
+
+    public boolean isMessage() {
+        return text != null;
+    }
+
+    public boolean isCallback() {
+        return callbackData != null;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.updates;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Компактное бинарное представление BotUpdate (без update_id — он хранится рядом в заголовке записи).
+ * Формат: userId(8) chatId(8) messageId(4) username text callbackData languageCode,
+ * строки — длина в байтах (4, -1 для null) и UTF-8.
+ * languageCode добавлен позже и читается, только если в записи остались байты: старые записи журнала и очереди
+ * по-прежнему читаются, а старые версии просто не дочитывают новое поле.
+ */
+public final class BotUpdateCodec {
+
+    private BotUpdateCodec() {
+    }
+
+    public static byte[] encode(BotUpdate update) {
+        byte[] username = bytes(update.username());
+        byte[] text = bytes(update.text());
+        byte[] data = bytes(update.callbackData());
+        byte[] languageCode = bytes(update.languageCode());
+
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES
+                + size(username) + size(text) + size(data) + size(languageCode));
+        buffer.putLong(update.userId());
+        buffer.putLong(update.chatId());
+        buffer.putInt(update.messageId());
+        putString(buffer, username);
+        putString(buffer, text);
+        putString(buffer, data);
+        putString(buffer, languageCode);
+        return buffer.array();
+    }
+
+    /**
+     * Читает апдейт с текущей позиции буфера. Буфер должен заканчиваться вместе с записью (limit — конец записи).
+     */
+    public static BotUpdate decode(long updateId, ByteBuffer buffer) {
+        long userId = buffer.getLong();
+        long chatId = buffer.getLong();
+        int messageId = buffer.getInt();
+        String username = getString(buffer);
+        String text = getString(buffer);
+        String data = getString(buffer);
+        String languageCode = buffer.remaining() >= Integer.BYTES ? getString(buffer) : null;
+        return new BotUpdate(updateId, userId, username, chatId, messageId, text, data, languageCode);
+    }
+
+    public static BotUpdate decode(long updateId, byte[] bytes) {
+        return decode(updateId, ByteBuffer.wrap(bytes));
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int size(byte[] value) {
+        return Integer.BYTES + (value != null ? value.length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+package org.example.updates;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.example.config.BotConfig;
+import org.example.config.PollingConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Альтернатива DefaultBotSession: long poll getUpdates на OkHttp.
+ * Ответ разбирается потоково (TelegramUpdateParser), offset сохраняется после каждого апдейта, принятого обработчиком.
+ * BotLogic принимает апдейт, когда записал его в журнал и поставил в очередь пула, а не когда обработал:
+ * после перезапуска принятые, но необработанные апдейты берутся из журнала, а Telegram отдает только непринятые.
+ * Поэтому пул обработки без журнала не запускается (PriorityExecutor).
+ */
+@Component
+public class LongPollUpdateSource {
+    private static final Logger logger = LoggerFactory.getLogger(LongPollUpdateSource.class);
+    private static final String ALLOWED_UPDATES = "[\"message\",\"callback_query\"]";
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final PollingConfig pollingConfig;
+    private final HttpUrl getUpdatesUrl;
+    private final OkHttpClient httpClient;
+    private final String threadName;
+    private final TelegramUpdateParser parser = new TelegramUpdateParser();
+
+    private volatile boolean running;
+    private volatile Call currentCall;
+    private Thread pollThread;
+    private OffsetStore offsetStore;
+    private long offset;
+
+    @Autowired
+    public LongPollUpdateSource(BotConfig botConfig, PollingConfig pollingConfig) {
+        // Таймаут чтения должен быть больше времени, которое Telegram держит запрос
+        this(botConfig, pollingConfig, new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(pollingConfig.getTimeoutSeconds() + 10L, TimeUnit.SECONDS)
+                .build(), "telegram-long-poll");
+    }
+
+    private LongPollUpdateSource(BotConfig botConfig, PollingConfig pollingConfig, OkHttpClient httpClient,
+                                 String threadName) {
+        this.pollingConfig = pollingConfig;
+        this.getUpdatesUrl = HttpUrl.get(botConfig.botApiUrl() + botConfig.getToken() + "/getUpdates");
+        this.httpClient = httpClient;
+        this.threadName = threadName;
+    }
+
+    /**
+     * Источник для другого бота процесса (bot.tenancy) на общем с этим источником пуле соединений OkHttp
+     */
+    public LongPollUpdateSource forBot(BotConfig botConfig) {
+        return new LongPollUpdateSource(botConfig, pollingConfig, httpClient, "telegram-long-poll-" + botConfig.getTenant());
+    }
+
+    /**
+     * Запускает поток опроса с offset в файле bot.polling.offsetFile
+     *
+     * @param handler Кому отдавать апдейты; offset сдвигается после возврата из handler, и с этого момента
+     *                за апдейт отвечает handler (журнал)
+     */
+    public void start(Consumer<BotUpdate> handler) throws IOException {
+        start(handler, new UpdateOffsetStore(Path.of(pollingConfig.getOffsetFile())));
+    }
+
+    /**
+     * Запускает поток опроса. После stop() источник можно запустить снова.
+     *
+     * @param handler     Кому отдавать апдейты; offset сдвигается после возврата из handler, и с этого момента
+     *                    за апдейт отвечает handler (журнал)
+     * @param offsetStore Где хранить offset
+     */
+    public synchronized void start(Consumer<BotUpdate> handler, OffsetStore offsetStore) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Long polling is already running");
+        }
+        this.offsetStore = offsetStore;
+        offset = offsetStore.load();
+        running = true;
+
+        pollThread = new Thread(() -> pollLoop(handler), threadName);
+        pollThread.start();
+        logger.info("Long polling started from offset {} (timeout {}s, limit {})",
+                offset, pollingConfig.getTimeoutSeconds(), pollingConfig.getLimit());
+    }
+
+    @PreDestroy
+    public void stop() {
+        stop(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Перестает забирать апдейты и ждет, пока обработчик примет текущий апдейт.
+     * Остаток уже полученной пачки не принимается: offset на него не сдвигали, и Telegram отдаст его снова.
+     * Принятые апдейты, которые еще в очереди пула, дожидается GracefulShutdown, а не успевшие — повторит журнал.
+     *
+     * @param timeoutMs Сколько ждать обработчик
+     */
+    public synchronized void stop(long timeoutMs) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Call call = currentCall;
+        if (call != null) {
+            call.cancel();
+        }
+        try {
+            pollThread.join(Math.max(1, timeoutMs));
+            if (pollThread.isAlive()) {
+                // Хранилище не закрываем: обработчик еще сдвинет offset, когда закончит
+                logger.warn("Update handler did not finish in {} ms, its update will be delivered again", timeoutMs);
+                return;
+            }
+            offsetStore.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("Failed to close offset store: {}", e.getMessage());
+        }
+        logger.info("Long polling stopped at offset {}", offset);
+    }
+
+    private void pollLoop(Consumer<BotUpdate> handler) {
+        long backoffMs = 0;
+        while (running) {
+            try {
+                List<BotUpdate> updates = fetchUpdates();
+                backoffMs = 0;
+
+                for (BotUpdate update : updates) {
+                    if (!running) {
+                        break;  // Необработанное Telegram отдаст еще раз, offset на них не сдвигали
+                    }
+                    try {
+                        handler.accept(update);
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to handle update {}: {}", update.updateId(), e.getMessage(), e);
+                    }
+                    offset = update.updateId() + 1;
+                    offsetStore.commit(offset);
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    break;
+                }
+                backoffMs = Math.min(backoffMs == 0 ? 500 : backoffMs * 2, MAX_BACKOFF_MS);
+                logger.warn("getUpdates failed, retrying in {} ms: {}", backoffMs, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private List<BotUpdate> fetchUpdates() throws IOException {
+        HttpUrl url = getUpdatesUrl.newBuilder()
+                .addQueryParameter("offset", Long.toString(offset))
+                .addQueryParameter("limit", Integer.toString(pollingConfig.getLimit()))
+                .addQueryParameter("timeout", Integer.toString(pollingConfig.getTimeoutSeconds()))
+                .addQueryParameter("allowed_updates", ALLOWED_UPDATES)
+                .build();
+
+        Call call = httpClient.newCall(new Request.Builder().url(url).get().build());
+        currentCall = call;
+        try (Response response = call.execute()) {
+            ResponseBody body = response.body();
+            if (body == null) {
+                throw new IOException("Empty getUpdates response, HTTP " + response.code());
+            }
+            // Ошибки Telegram тоже приходят JSON с ok=false, парсер превратит их в IOException
+            return parser.parse(body.byteStream());
+        } finally {
+            currentCall = null;
+        }
+    }
+}
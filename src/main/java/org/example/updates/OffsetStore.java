@@ -0,0 +1,20 @@
+package org.example.updates;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Где LongPollUpdateSource хранит offset для getUpdates
+ */
+public interface OffsetStore extends Closeable {
+
+    /**
+     * @return Сохраненный offset или 0, если его еще нет
+     */
+    long load() throws IOException;
+
+    /**
+     * @param offset update_id следующего апдейта, который нужно получить
+     */
+    void commit(long offset) throws IOException;
+}
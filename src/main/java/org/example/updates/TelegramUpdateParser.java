@@ -0,0 +1,182 @@
+package org.example.updates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Потоковый разбор ответа getUpdates.
+ * Читаются только поля, которые нужны BotLogic, все остальное пропускается без построения объектов.
+ */
+public class TelegramUpdateParser {
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Поля одного апдейта, пока он читается. Один экземпляр на вызов parse.
+     */
+    private static final class Fields {
+        long updateId;
+        long userId;
+        String username;
+        long chatId;
+        int messageId;
+        String text;
+        String data;
+        String languageCode;
+
+        void reset() {
+            updateId = 0;
+            userId = 0;
+            username = null;
+            chatId = 0;
+            messageId = 0;
+            text = null;
+            data = null;
+            languageCode = null;
+        }
+
+        BotUpdate toUpdate() {
+            if (data != null) {
+                return BotUpdate.callback(updateId, userId, username, chatId, messageId, data, languageCode);
+            }
+            if (text != null) {
+                return BotUpdate.message(updateId, userId, username, chatId, messageId, text, languageCode);
+            }
+            return BotUpdate.ignored(updateId);
+        }
+    }
+
+    public List<BotUpdate> parse(byte[] body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    public List<BotUpdate> parse(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    private List<BotUpdate> parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("getUpdates response is not a JSON object");
+        }
+
+        boolean ok = false;
+        String description = null;
+        List<BotUpdate> updates = List.of();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "ok" -> ok = parser.getBooleanValue();
+                case "description" -> description = parser.getText();
+                case "result" -> updates = readUpdates(parser);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!ok) {
+            throw new IOException("getUpdates failed: " + description);
+        }
+        return updates;
+    }
+
+    private List<BotUpdate> readUpdates(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return List.of();
+        }
+
+        List<BotUpdate> updates = new ArrayList<>();
+        Fields fields = new Fields();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            fields.reset();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "update_id" -> fields.updateId = parser.getLongValue();
+                    case "message" -> readMessage(parser, fields, true);
+                    case "callback_query" -> readCallbackQuery(parser, fields);
+                    default -> parser.skipChildren();
+                }
+            }
+            updates.add(fields.toUpdate());
+        }
+        return updates;
+    }
+
+    /**
+     * @param withSender false для сообщения внутри callback_query: его from — сам бот
+     */
+    private void readMessage(JsonParser parser, Fields fields, boolean withSender) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "message_id" -> fields.messageId = parser.getIntValue();
+                case "chat" -> fields.chatId = readId(parser);
+                case "from" -> {
+                    if (withSender) {
+                        readSender(parser, fields);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "text" -> {
+                    if (withSender) {
+                        fields.text = parser.getText();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readCallbackQuery(JsonParser parser, Fields fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "from" -> readSender(parser, fields);
+                case "message" -> readMessage(parser, fields, false);
+                case "data" -> fields.data = parser.getText();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readSender(JsonParser parser, Fields fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> fields.userId = parser.getLongValue();
+                case "username" -> fields.username = parser.getText();
+                case "language_code" -> fields.languageCode = parser.getText();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private long readId(JsonParser parser) throws IOException {
+        long id = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                id = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return id;
+    }
+}
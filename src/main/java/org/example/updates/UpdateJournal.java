@@ -0,0 +1,313 @@
+package org.example.updates;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.example.config.JournalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Журнал входящих апдейтов поверх memory-mapped сегментов.
+ * Апдейт пишется в журнал до обработки и помечается выполненным после нее,
+ * поэтому если процесс упал посреди обработки, при следующем старте апдейт будет обработан заново.
+ *
+ * Запись: длина(4) тип(1) update_id(8) тело. Длина пишется последней, так что недописанная запись не читается.
+ * Записи в отображенную память переживают падение JVM без fsync: страницы уже принадлежат ядру.
+ *
+ * Отметка о выполнении пишется в текущий сегмент, а не в сегмент самого апдейта, поэтому сегменты удаляются
+ * только по порядку: сегмент уходит, когда в нем и во всех более старых сегментах не осталось незавершенных апдейтов.
+ * Повторные доставки отбрасываются по окну последних bot.journal.dedupeWindow update_id: окно записывается
+ * в начало каждого нового сегмента, а не по наибольшему update_id, потому что Telegram может начать нумерацию заново.
+ */
+@Component
+public class UpdateJournal {
+    private static final Logger logger = LoggerFactory.getLogger(UpdateJournal.class);
+
+    private static final byte APPEND = 1;
+    private static final byte DONE = 2;
+    // Наибольший update_id из журналов прежних версий; при чтении пропускается
+    private static final byte WATERMARK = 3;
+    // Окно последних update_id на момент открытия сегмента: update_id — размер окна, тело — сами id от старых к новым
+    private static final byte SEEN = 4;
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + Long.BYTES;
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+
+    private final JournalConfig config;
+    private final Object lock = new Object();
+    private final Map<Long, Segment> pendingById = new HashMap<>();
+    // Живые сегменты от старых к новым; последний — active
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final LinkedHashSet<Long> recentIds = new LinkedHashSet<>();
+    private final int dedupeWindow;
+
+    private Segment active;
+    private List<BotUpdate> pendingReplay = new ArrayList<>();
+
+    private static final class Segment {
+        final long index;
+        final Path file;
+        final MappedByteBuffer buffer;
+        int pending;
+
+        Segment(long index, Path file, MappedByteBuffer buffer) {
+            this.index = index;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    public UpdateJournal(JournalConfig config) {
+        this.config = config;
+        // Запись окна должна помещаться в сегмент с запасом
+        this.dedupeWindow = Math.max(0, Math.min(config.getDedupeWindow(), segmentBytes() / 4 / Long.BYTES));
+    }
+
+    /**
+     * Читает старые сегменты, запоминает незавершенные апдейты и переписывает их в новый сегмент
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Path dir = Path.of(config.getDir());
+        Files.createDirectories(dir);
+
+        List<Path> oldSegments = listSegments(dir);
+        Map<Long, BotUpdate> unfinished = new LinkedHashMap<>();
+        long nextIndex = 1;
+        for (Path file : oldSegments) {
+            nextIndex = segmentIndex(file) + 1;
+            scan(file, unfinished);
+        }
+
+        synchronized (lock) {
+            active = createSegment(nextIndex);
+            segments.addLast(active);
+            writeSeen();
+            for (BotUpdate update : unfinished.values()) {
+                writeAppend(update, BotUpdateCodec.encode(update));
+            }
+            pendingReplay = new ArrayList<>(unfinished.values());
+        }
+        for (Path file : oldSegments) {
+            Files.deleteIfExists(file);
+        }
+
+        logger.info("Update journal opened in {}: {} unfinished update(s) to replay, {} recent update_id(s) remembered",
+                dir.toAbsolutePath(), pendingReplay.size(), recentIds.size());
+    }
+
+    /**
+     * Отдает апдейты, которые не были обработаны до падения. Возвращает их только один раз.
+     */
+    public List<BotUpdate> takePendingReplay() {
+        synchronized (lock) {
+            List<BotUpdate> replay = pendingReplay;
+            pendingReplay = new ArrayList<>();
+            return replay;
+        }
+    }
+
+    /**
+     * Записывает апдейт перед обработкой
+     *
+     * @return false, если апдейт с таким update_id уже был в журнале (повторная доставка)
+     */
+    public boolean append(BotUpdate update) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        byte[] body = BotUpdateCodec.encode(update);
+        synchronized (lock) {
+            if (recentIds.contains(update.updateId())) {
+                return false;
+            }
+            writeAppend(update, body);
+        }
+        return true;
+    }
+
+    /**
+     * Помечает апдейт обработанным. Старые сегменты без незавершенных апдейтов удаляются.
+     */
+    public void markDone(long updateId) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        synchronized (lock) {
+            Segment segment = pendingById.remove(updateId);
+            if (segment == null) {
+                return;
+            }
+            writeRecord(DONE, updateId, null);
+            segment.pending--;
+            releaseSegments();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (lock) {
+            if (active != null) {
+                active.buffer.force();
+            }
+        }
+    }
+
+    private void writeAppend(BotUpdate update, byte[] body) {
+        writeRecord(APPEND, update.updateId(), body);
+        active.pending++;
+        pendingById.put(update.updateId(), active);
+        remember(update.updateId());
+    }
+
+    private void writeSeen() {
+        ByteBuffer body = ByteBuffer.allocate(recentIds.size() * Long.BYTES);
+        recentIds.forEach(body::putLong);
+        writeRecord(SEEN, recentIds.size(), body.array());
+    }
+
+    private void remember(long updateId) {
+        if (dedupeWindow == 0 || !recentIds.add(updateId)) {
+            return;
+        }
+        if (recentIds.size() > dedupeWindow) {
+            Iterator<Long> eldest = recentIds.iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Удаляет сегменты с начала, пока в них нет незавершенных апдейтов. Сегмент посередине не трогается:
+     * в нем могут быть отметки о выполнении апдейтов из более старого, еще живого сегмента.
+     */
+    private void releaseSegments() {
+        while (segments.size() > 1 && segments.peekFirst().pending == 0) {
+            delete(segments.pollFirst());
+        }
+    }
+
+    private void writeRecord(byte type, long updateId, byte[] body) {
+        int bodyLength = body != null ? body.length : 0;
+        int recordLength = 1 + Long.BYTES + bodyLength;
+        if (active.buffer.remaining() < Integer.BYTES + recordLength + Integer.BYTES) {
+            roll();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        buffer.position(start + Integer.BYTES);
+        buffer.put(type);
+        buffer.putLong(updateId);
+        if (body != null) {
+            buffer.put(body);
+        }
+        // Длина последней: пока ее нет, запись для чтения не существует
+        buffer.putInt(start, recordLength);
+        if (config.isSyncOnAppend()) {
+            buffer.force();
+        }
+    }
+
+    private void roll() {
+        try {
+            active = createSegment(active.index + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll update journal", e);
+        }
+        segments.addLast(active);
+        // Окно переносится вперед: старые сегменты с ним могут быть удалены
+        writeSeen();
+        releaseSegments();
+    }
+
+    private Segment createSegment(long index) throws IOException {
+        Path file = Path.of(config.getDir()).resolve(String.format("journal-%012d.log", index));
+        int size = segmentBytes();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(index, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private int segmentBytes() {
+        return Math.max(config.getSegmentSizeBytes(), MIN_SEGMENT_BYTES);
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete journal segment {}: {}", segment.file, e.getMessage());
+        }
+    }
+
+    private void scan(Path file, Map<Long, BotUpdate> unfinished) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int recordLength = buffer.getInt();
+                if (recordLength < 1 + Long.BYTES || recordLength > buffer.remaining()) {
+                    break;  // Конец данных или недописанная запись
+                }
+                int next = buffer.position() + recordLength;
+                byte type = buffer.get();
+                long updateId = buffer.getLong();
+                switch (type) {
+                    case APPEND -> {
+                        ByteBuffer body = buffer.slice(buffer.position(), next - buffer.position());
+                        unfinished.put(updateId, BotUpdateCodec.decode(updateId, body));
+                        remember(updateId);
+                    }
+                    case DONE -> unfinished.remove(updateId);
+                    case SEEN -> {
+                        for (long i = 0; i < updateId; i++) {
+                            remember(buffer.getLong());
+                        }
+                    }
+                    case WATERMARK -> {
+                    }
+                    default -> logger.warn("Unknown journal record type {} in {}", type, file);
+                }
+                buffer.position(next);
+            }
+        }
+    }
+
+    private static List<Path> listSegments(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "journal-*.log")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+}
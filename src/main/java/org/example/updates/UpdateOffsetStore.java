@@ -0,0 +1,51 @@
+package org.example.updates;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Хранит offset для getUpdates в файле из 8 байт.
+ * Запись — одна позиционная запись в уже открытый файл, поэтому ее можно делать после каждого апдейта.
+ */
+public class UpdateOffsetStore implements OffsetStore {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    public UpdateOffsetStore(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public synchronized long load() throws IOException {
+        if (channel.size() < Long.BYTES) {
+            return 0;
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    @Override
+    public synchronized void commit(long offset) throws IOException {
+        buffer.clear();
+        buffer.putLong(offset).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // Последний offset должен пережить и падение машины сразу после остановки
+        channel.force(false);
+        channel.close();
+    }
+}
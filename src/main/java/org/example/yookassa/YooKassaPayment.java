@@ -2,14 +2,22 @@ package org.example.yookassa;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.example.config.ResilienceConfig;
 import org.example.config.YooKassaConfig;
+import org.example.resilience.HedgedOperation;
+import org.example.resilience.UpstreamGuard;
+import org.example.resilience.UpstreamUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
@@ -20,25 +28,61 @@ import java.util.UUID;
 @Service
 public class YooKassaPayment {
     private static final Logger log = LoggerFactory.getLogger(YooKassaPayment.class);
-    private static final String YOOKASSA_API_URL = "https://api.yookassa.ru/v3/payments";
 
     private final YooKassaConfig yooKassaConfig;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final UpstreamGuard guard;
+    // Проверка статуса — идемпотентный GET: ее можно повторять. Создание и отмену платежа — нельзя
+    private final HedgedOperation statusCheck;
 
     @Autowired
-    public YooKassaPayment(YooKassaConfig yooKassaConfig) {
+    public YooKassaPayment(YooKassaConfig yooKassaConfig, ResilienceConfig resilienceConfig, MeterRegistry meterRegistry) {
         this.yooKassaConfig = yooKassaConfig;
-        this.restTemplate = new RestTemplate();
+        ResilienceConfig.UpstreamSettings settings = resilienceConfig.getYookassa();
+        this.guard = new UpstreamGuard("yookassa", settings, meterRegistry);
+        this.statusCheck = guard.idempotent("payment_status");
+
+        // Без таймаутов RestTemplate ждет ответа бесконечно и навсегда занимает поток пула
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) Math.min(settings.getCallTimeoutMs(), 10_000));
+        requestFactory.setReadTimeout((int) settings.getCallTimeoutMs());
+        this.restTemplate = new RestTemplate(requestFactory);
         this.objectMapper = new ObjectMapper();
         log.info("YooKassaPayment initialized with shopID: {}", yooKassaConfig.getShopID());
     }
 
+    private YooKassaPayment(YooKassaConfig yooKassaConfig, UpstreamGuard guard, YooKassaPayment shared) {
+        this.yooKassaConfig = yooKassaConfig;
+        this.restTemplate = shared.restTemplate;
+        this.objectMapper = shared.objectMapper;
+        this.guard = guard;
+        this.statusCheck = guard.idempotent("payment_status");
+        log.info("YooKassaPayment initialized with shopID: {}", yooKassaConfig.getShopID());
+    }
+
+    /**
+     * Платежи другого магазина (бот из bot.tenancy) на общем RestTemplate. Предохранитель и пул свои
+     * (метрики с upstream=yookassa-{tenantId}): отказы одного магазина, например отозванный ключ, не размыкают
+     * предохранитель остальным. Закрывается через close(), как и основной.
+     */
+    public YooKassaPayment forShop(String tenantId, YooKassaConfig shopConfig, ResilienceConfig resilienceConfig,
+                                   MeterRegistry meterRegistry) {
+        return new YooKassaPayment(shopConfig,
+                new UpstreamGuard("yookassa-" + tenantId, resilienceConfig.getYookassa(), meterRegistry), this);
+    }
+
+    @PreDestroy
+    public void close() {
+        guard.close();
+    }
+
     /**
      * Creates a payment and returns the confirmation URL
      * @param amount The amount to be paid
      * @param description Payment description
      * @return The URL for the user to complete payment
+     * @throws UpstreamUnavailableException If YooKassa is currently unavailable (circuit open, pool full, timeout)
      */
     public String createPayment(BigDecimal amount, String description) {
         log.info("Creating payment for amount: {} RUB, description: {}", amount, description);
@@ -98,17 +142,17 @@ public class YooKassaPayment {
 
         try {
             log.debug("Sending request to YooKassa API: {}", requestMap);
-            ResponseEntity<String> response = restTemplate.exchange(  // Запрос на API
-                    YOOKASSA_API_URL,  // Ссылка API
+            ResponseEntity<String> response = guard.call(() -> restTemplate.exchange(  // Запрос на API
+                    yooKassaConfig.getApiUrl(),  // Ссылка API
                     HttpMethod.POST,  // Тип запроса
                     requestEntity,  // Сам запрос
                     String.class  // Тип ответа (json в виде строки)
-            );
+            ));
 
             log.debug("Received response from YooKassa API: {}", response.getBody());
 
             if (response.getStatusCode() == HttpStatus.OK) {  // Если запрос успешно обработан
-                JsonNode rootNode = objectMapper.readTree(response.getBody());  // Превращаем строку json в объект JsonNode
+                JsonNode rootNode = parseResponse(response.getBody());  // Превращаем строку json в объект JsonNode
                 String confirmationUrl = rootNode.path("confirmation").path("confirmation_url").asText();  // Ссылка для оплаты
                 String paymentId = rootNode.path("id").asText();  // ID запроса
                 String status = rootNode.path("status").asText();  // Статус запроса
@@ -121,6 +165,8 @@ public class YooKassaPayment {
                 log.error("Failed to create payment. Status code: {}", response.getStatusCode());
                 throw new RuntimeException("Failed to create payment: " + response.getBody());
             }
+        } catch (UpstreamUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Exception occurred while creating payment", e);
             throw new RuntimeException("Failed to create payment", e);
@@ -131,6 +177,7 @@ public class YooKassaPayment {
      * Checks the status of a payment
      * @param paymentId The ID of the payment to check
      * @return The status of the payment
+     * @throws UpstreamUnavailableException If YooKassa is currently unavailable (circuit open, pool full, timeout)
      */
     public String checkPaymentStatus(String paymentId) {
         log.info("Checking status for payment ID: {}", paymentId);
@@ -147,17 +194,17 @@ public class YooKassaPayment {
         HttpEntity<?> requestEntity = new HttpEntity<>(headers);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(
-                    YOOKASSA_API_URL + "/" + paymentId,
+            ResponseEntity<String> response = statusCheck.call(() -> restTemplate.exchange(
+                    yooKassaConfig.getApiUrl() + "/" + paymentId,
                     HttpMethod.GET,
                     requestEntity,
                     String.class
-            );
+            ));
 
             log.debug("Received response from YooKassa API: {}", response.getBody());
 
             if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode rootNode = objectMapper.readTree(response.getBody());
+                JsonNode rootNode = parseResponse(response.getBody());
                 String status = rootNode.path("status").asText();
 
                 log.info("Payment status retrieved. ID: {}, Status: {}", paymentId, status);
@@ -167,6 +214,8 @@ public class YooKassaPayment {
                 log.error("Failed to check payment status. Status code: {}", response.getStatusCode());
                 throw new RuntimeException("Failed to check payment status: " + response.getBody());
             }
+        } catch (UpstreamUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Exception occurred while checking payment status", e);
             throw new RuntimeException("Failed to check payment status", e);
@@ -197,24 +246,24 @@ public class YooKassaPayment {
         headers.set("Authorization", authHeader);
 
         // Формирование URL для запроса отмены платежа
-        String cancelUrl = YOOKASSA_API_URL + "/" + paymentId + "/cancel";
+        String cancelUrl = yooKassaConfig.getApiUrl() + "/" + paymentId + "/cancel";
 
         // Создание HTTP-запроса
         HttpEntity<String> requestEntity = new HttpEntity<>(headers);
 
         try {
             // Отправка запроса на отмену платежа
-            ResponseEntity<String> response = restTemplate.exchange(
+            ResponseEntity<String> response = guard.call(() -> restTemplate.exchange(
                     cancelUrl,
                     HttpMethod.POST,
                     requestEntity,
                     String.class
-            );
+            ));
 
             log.debug("Received response from YooKassa API for cancellation: {}", response.getBody());
 
             if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode rootNode = objectMapper.readTree(response.getBody());
+                JsonNode rootNode = parseResponse(response.getBody());
                 String status = rootNode.path("status").asText();
 
                 if ("canceled".equals(status)) {
@@ -228,10 +277,20 @@ public class YooKassaPayment {
                 log.error("Failed to cancel payment. Status code: {}", response.getStatusCode());
                 return false;
             }
+        } catch (UpstreamUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Exception occurred while canceling payment", e);
             return false;
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Разбирает JSON-ответ ЮKassa в дерево
+     * @param responseBody Тело ответа
+     * @return Корневой узел ответа
+     */
+    JsonNode parseResponse(String responseBody) throws IOException {
+        return objectMapper.readTree(responseBody);
+    }
+}